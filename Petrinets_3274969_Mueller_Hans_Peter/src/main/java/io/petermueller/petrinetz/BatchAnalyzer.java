@@ -0,0 +1,516 @@
+package io.petermueller.petrinetz;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+import io.petermueller.petrinetz.models.filesystem.BinaryNetWriter;
+import io.petermueller.petrinetz.util.AnalysisBudget;
+import io.petermueller.petrinetz.util.AnalysisCache;
+import io.petermueller.petrinetz.util.AnalysisRecordWriter;
+import io.petermueller.petrinetz.util.AnalysisRecordWriter.Format;
+import io.petermueller.petrinetz.util.BatchProcessing;
+import io.petermueller.petrinetz.util.BatchProcessing.ResultListener;
+import io.petermueller.petrinetz.util.BoundednessAnalysis;
+import io.petermueller.petrinetz.util.BoundednessAnalysis.Outcome;
+
+/**
+ * Headless entry point which analyzes PNML files from the command line,
+ * without opening the GUI. It takes files, directories and glob patterns,
+ * analyzes the Petri nets in parallel with {@link BatchProcessing} and writes
+ * one record per Petri net as soon as its analysis has finished, either as
+ * JSON lines or as CSV.
+ * 
+ * <p>Usage:
+ * <pre>
+ * java io.petermueller.petrinetz.BatchAnalyzer [options] path...
+ *   --format json|csv     format of the records (default: json)
+ *   --output file         writes the records to a file instead of stdout
+ *   --threads n           number of threads (default: one per processor)
+ *   --timeout ms          time limit per Petri net, 0 for none
+ *   --max-markings n      marking limit per Petri net, 0 for none
+ *   --cache dir           stores the results in a directory and reuses them
+ *   --cache-size mb       size limit of the cache in MiB (default: 64)
+ * </pre>
+ * A path is a PNML file, a directory, whose PNML files are analyzed, or a
+ * glob pattern like {@code "Beispiele/2*.pnml"} or {@code "nets/**.pnml"}.
+ * Binary Petri nets converted by the {@link BinaryNetWriter} are analyzed
+ * like PNML files. In a directory and for a glob pattern, a PNML file which
+ * has been converted is replaced by its binary Petri net, which loads
+ * faster, unless the PNML file has been changed since. A file given by its
+ * path is always analyzed itself.
+ * The default limits are those of {@link AnalysisBudget#BATCH_DEFAULT}.
+ * The cache only stores the termination paths, not the reachability graphs,
+ * since the records don't need them.
+ * 
+ * <p>The exit status tells the worst thing that happened: {@value #EXIT_OK}
+ * if all Petri nets were analyzed, {@value #EXIT_INCOMPLETE} if an analysis
+ * ran out of its budget, {@value #EXIT_PARSE_ERROR} if a file couldn't be
+ * parsed, {@value #EXIT_FAILED} if an analysis failed,
+ * {@value #EXIT_USAGE} for invalid arguments and {@value #EXIT_IO_ERROR}
+ * if the records couldn't be written.
+ * 
+ * @author Hans Peter Müller (3274969)
+ * @see    AnalysisRecordWriter
+ */
+public class BatchAnalyzer {
+	/**
+	 * Exit status if all Petri nets were analyzed.
+	 */
+	public static final int EXIT_OK = 0;
+	/**
+	 * Exit status if an analysis stopped because it ran out of time or
+	 * markings.
+	 */
+	public static final int EXIT_INCOMPLETE = 1;
+	/**
+	 * Exit status if a file couldn't be parsed.
+	 */
+	public static final int EXIT_PARSE_ERROR = 2;
+	/**
+	 * Exit status if an analysis failed with an error.
+	 */
+	public static final int EXIT_FAILED = 3;
+	/**
+	 * Exit status for invalid arguments or if no PNML file was found.
+	 */
+	public static final int EXIT_USAGE = 64;
+	/**
+	 * Exit status if the records couldn't be written.
+	 */
+	public static final int EXIT_IO_ERROR = 74;
+	private static final String USAGE =
+			"Aufruf: BatchAnalyzer [--format json|csv] [--output Datei] "
+			+ "[--threads n] [--timeout ms] [--max-markings n] "
+			+ "[--cache Verzeichnis] [--cache-size MiB] Pfad...";
+
+	/**
+	 * Main entry point of the command line analysis. Exits with the status
+	 * returned by {@link #run}.
+	 * 
+	 * @param args the options and paths
+	 */
+	public static void main(String[] args) {
+		System.setProperty("java.awt.headless", "true");
+		System.exit(run(args));
+	}
+
+	/**
+	 * Analyzes the PNML files given by the arguments and writes the records.
+	 * 
+	 * @param args the options and paths
+	 * @return     the exit status
+	 */
+	public static int run(String[] args) {
+		Format format = Format.JSON_LINES;
+		String output = null;
+		int threads = Runtime.getRuntime().availableProcessors();
+		long timeout = AnalysisBudget.BATCH_DEFAULT.maxMillis;
+		int maxMarkings = AnalysisBudget.BATCH_DEFAULT.maxMarkings;
+		String cacheDirectory = null;
+		long cacheSize = AnalysisCache.DEFAULT_MAX_BYTES;
+		List<String> paths = new ArrayList<String>();
+		try {
+			for (int i = 0; i < args.length; i++) {
+				switch (args[i]) {
+				case "--format":
+					format = parseFormat(getValue(args, ++i));
+					break;
+				case "--output":
+					output = getValue(args, ++i);
+					break;
+				case "--threads":
+					threads = Integer.parseInt(getValue(args, ++i));
+					break;
+				case "--timeout":
+					timeout = Long.parseLong(getValue(args, ++i));
+					break;
+				case "--max-markings":
+					maxMarkings = Integer.parseInt(getValue(args, ++i));
+					break;
+				case "--cache":
+					cacheDirectory = getValue(args, ++i);
+					break;
+				case "--cache-size":
+					cacheSize = Long.parseLong(getValue(args, ++i))
+							* 1024 * 1024;
+					break;
+				default:
+					if (args[i].startsWith("--")) {
+						throw new IllegalArgumentException(
+								"Unbekannte Option " + args[i]);
+					}
+					paths.add(args[i]);
+				}
+			}
+			if (threads < 1) {
+				throw new IllegalArgumentException(
+						"Die Anzahl der Threads muss positiv sein.");
+			}
+			if (cacheSize < 0) {
+				throw new IllegalArgumentException(
+						"Die Größe des Caches darf nicht negativ sein.");
+			}
+			AnalysisBudget budget = new AnalysisBudget(timeout, maxMarkings);
+			List<File> files = collectFiles(paths);
+			if (files.isEmpty()) {
+				throw new IllegalArgumentException(
+						"Keine PNML Dateien gefunden.");
+			}
+			return analyze(files, format, output, threads, budget,
+					cacheDirectory, cacheSize);
+		} catch (IllegalArgumentException e) {
+			System.err.println(e.getMessage());
+			System.err.println(USAGE);
+			return EXIT_USAGE;
+		}
+	}
+
+	/**
+	 * Analyzes the files and streams the records to the output.
+	 * 
+	 * @param files          the PNML files
+	 * @param format         the format of the records
+	 * @param output         the path of the output file, {@code null} for
+	 *                       stdout
+	 * @param threads        the number of threads
+	 * @param budget         the limits of each analysis
+	 * @param cacheDirectory the directory of the cache, {@code null} for no
+	 *                       cache
+	 * @param cacheSize      the size limit of the cache in bytes
+	 * @return               the exit status
+	 */
+	private static int analyze(
+			List<File> files,
+			Format format,
+			String output,
+			int threads,
+			AnalysisBudget budget,
+			String cacheDirectory,
+			long cacheSize) {
+		long start = System.nanoTime();
+		Writer writer = null;
+		try {
+			AnalysisCache cache = null;
+			if (cacheDirectory != null) {
+				cache = new AnalysisCache(
+						Paths.get(cacheDirectory), cacheSize, false);
+			}
+			if (output == null) {
+				writer = new BufferedWriter(new OutputStreamWriter(
+						System.out, StandardCharsets.UTF_8));
+			} else {
+				writer = Files.newBufferedWriter(
+						Paths.get(output), StandardCharsets.UTF_8);
+			}
+			RecordListener listener = new RecordListener(
+					new AnalysisRecordWriter(writer, format));
+			BatchProcessing batch = BatchProcessing.analyzeFiles(
+					files, threads, budget, cache, listener);
+			if (listener.error != null) {
+				throw listener.error;
+			}
+			System.err.println(batch.analysisList.size() + " von "
+					+ files.size() + " Dateien analysiert in "
+					+ (System.nanoTime() - start) / 1000000L + " ms.");
+			return getExitStatus(batch, files.size());
+		} catch (IOException e) {
+			System.err.println(e);
+			return EXIT_IO_ERROR;
+		} finally {
+			closeOutput(writer, output != null);
+		}
+	}
+
+	/**
+	 * Closes the output file, or flushes stdout, which stays open.
+	 * 
+	 * @param writer the writer of the records, may be {@code null}
+	 * @param isFile {@code true} if the writer writes to a file
+	 */
+	private static void closeOutput(Writer writer, boolean isFile) {
+		if (writer == null) {
+			return;
+		}
+		try {
+			if (isFile) {
+				writer.close();
+			} else {
+				writer.flush();
+			}
+		} catch (IOException e) {
+			System.err.println(e);
+		}
+	}
+
+	/**
+	 * Determines the exit status of a finished batch.
+	 * 
+	 * @param batch     the finished batch
+	 * @param fileCount the number of analyzed files
+	 * @return          the worst status of all analyses
+	 */
+	private static int getExitStatus(BatchProcessing batch, int fileCount) {
+		int status = EXIT_OK;
+		if (batch.analysisList.size() < fileCount) {
+			status = EXIT_FAILED;
+		}
+		for (BoundednessAnalysis analysis : batch.analysisList) {
+			if (analysis.outcome == Outcome.FAILED) {
+				status = Math.max(status, EXIT_FAILED);
+			} else if (analysis.outcome == Outcome.PARSE_ERROR) {
+				status = Math.max(status, EXIT_PARSE_ERROR);
+			} else if (analysis.outcome == Outcome.TIMEOUT ||
+					analysis.outcome == Outcome.BUDGET_EXCEEDED) {
+				status = Math.max(status, EXIT_INCOMPLETE);
+			}
+		}
+		return status;
+	}
+
+	/**
+	 * Collects the PNML files given by paths, directories and glob patterns.
+	 * The files of each path are sorted by name, and files given more than
+	 * once are only analyzed once.
+	 * 
+	 * @param paths the paths from the command line
+	 * @return      the files to analyze
+	 * @throws IllegalArgumentException if a path doesn't exist
+	 */
+	private static List<File> collectFiles(List<String> paths) {
+		Set<File> files = new LinkedHashSet<File>();
+		for (String path : paths) {
+			List<File> found = new ArrayList<File>();
+			File file = new File(path);
+			if (isGlob(path)) {
+				found.addAll(findMatches(path));
+			} else if (file.isDirectory()) {
+				File[] children = file.listFiles();
+				if (children != null) {
+					for (File child : children) {
+						if (isPnmlFile(child.toPath())) {
+							found.add(child);
+						}
+					}
+				}
+			} else if (file.isFile()) {
+				found.add(file);
+			} else {
+				throw new IllegalArgumentException(
+						"Pfad " + path + " nicht gefunden.");
+			}
+			if (!file.isFile()) {
+				found = preferBinaryNets(found);
+			}
+			Collections.sort(found);
+			files.addAll(found);
+		}
+		return new ArrayList<File>(files);
+	}
+
+	/**
+	 * Replaces the PNML files found in a directory or by a glob pattern by
+	 * their binary Petri nets, which load faster. A binary Petri net is only
+	 * used if it is at least as new as its PNML file, so a PNML file which
+	 * has been edited after it was converted is analyzed itself, and a binary
+	 * Petri net found next to its newer PNML file is left out.
+	 * 
+	 * @param found the files found for a path
+	 * @return      the files to analyze
+	 */
+	private static List<File> preferBinaryNets(List<File> found) {
+		Set<File> listed = new HashSet<File>();
+		Map<File, File> sources = new HashMap<File, File>();
+		for (File file : found) {
+			listed.add(file.getAbsoluteFile());
+			if (file.getName().toLowerCase().endsWith(".pnml")) {
+				sources.put(BinaryNetWriter.getBinaryFile(file), file);
+			}
+		}
+		List<File> result = new ArrayList<File>();
+		for (File file : found) {
+			File source = sources.get(file.getAbsoluteFile());
+			if (source != null && !isUpToDate(file, source)) {
+				continue;
+			}
+			if (file.getName().toLowerCase().endsWith(".pnml")) {
+				File binary = new File(file.getParentFile(),
+						BinaryNetWriter.getBinaryFile(file).getName());
+				if (isUpToDate(binary, file)) {
+					if (!listed.contains(binary.getAbsoluteFile())) {
+						result.add(binary);
+					}
+					continue;
+				}
+			}
+			result.add(file);
+		}
+		return result;
+	}
+
+	/**
+	 * Checks if a binary Petri net exists and is at least as new as the PNML
+	 * file it was converted from.
+	 * 
+	 * @param binary the binary Petri net
+	 * @param source the PNML file
+	 * @return       {@code true} if the binary Petri net can be used instead
+	 *               of the PNML file, {@code false} otherwise
+	 */
+	private static boolean isUpToDate(File binary, File source) {
+		return binary.isFile() &&
+				binary.lastModified() >= source.lastModified();
+	}
+
+	/**
+	 * Finds the PNML files matching a glob pattern. The search starts in the
+	 * directory in front of the first wildcard, so {@code **} matches files
+	 * in subdirectories as well.
+	 * 
+	 * @param pattern a glob pattern
+	 * @return        the matching files
+	 */
+	private static List<File> findMatches(String pattern) {
+		int wildcard = pattern.length();
+		for (String character : new String[] {"*", "?", "[", "{"}) {
+			int index = pattern.indexOf(character);
+			if (index != -1 && index < wildcard) {
+				wildcard = index;
+			}
+		}
+		int separator = Math.max(
+				pattern.lastIndexOf('/', wildcard),
+				pattern.lastIndexOf(File.separatorChar, wildcard));
+		Path base = Paths.get(pattern.substring(0, separator + 1));
+		PathMatcher matcher =
+				FileSystems.getDefault().getPathMatcher("glob:" + pattern);
+		List<File> matches = new ArrayList<File>();
+		if (!Files.isDirectory(base.toAbsolutePath())) {
+			return matches;
+		}
+		try (Stream<Path> paths = Files.walk(base)) {
+			Iterator<Path> iterator = paths.iterator();
+			while (iterator.hasNext()) {
+				Path path = iterator.next();
+				if (matcher.matches(path) && isPnmlFile(path)) {
+					matches.add(path.toFile());
+				}
+			}
+		} catch (IOException e) {
+			System.err.println(e);
+		}
+		return matches;
+	}
+
+	/**
+	 * Checks if a path contains glob wildcards.
+	 * 
+	 * @param path a path
+	 * @return     {@code true} if the path is a glob pattern, {@code false}
+	 *             otherwise
+	 */
+	private static boolean isGlob(String path) {
+		return path.contains("*") || path.contains("?") ||
+				path.contains("[") || path.contains("{");
+	}
+
+	/**
+	 * Checks if a path is a regular file with the extension of PNML files or
+	 * binary Petri nets.
+	 * 
+	 * @param path a path
+	 * @return     {@code true} if the path is a PNML file or a binary Petri
+	 *             net, {@code false} otherwise
+	 */
+	private static boolean isPnmlFile(Path path) {
+		String name = path.getFileName().toString().toLowerCase();
+		return Files.isRegularFile(path) && (name.endsWith(".pnml") ||
+				name.endsWith(BinaryNetWriter.EXTENSION));
+	}
+
+	/**
+	 * Returns the value of an option.
+	 * 
+	 * @param args  the arguments
+	 * @param index the index of the value
+	 * @return      the value
+	 * @throws IllegalArgumentException if the value is missing
+	 */
+	private static String getValue(String[] args, int index) {
+		if (index >= args.length) {
+			throw new IllegalArgumentException(
+					"Wert für " + args[index - 1] + " fehlt.");
+		}
+		return args[index];
+	}
+
+	/**
+	 * Parses the value of the {@code --format} option.
+	 * 
+	 * @param value the value
+	 * @return      the format
+	 * @throws IllegalArgumentException if the format is unknown
+	 */
+	private static Format parseFormat(String value) {
+		switch (value) {
+		case "json":
+			return Format.JSON_LINES;
+		case "csv":
+			return Format.CSV;
+		default:
+			throw new IllegalArgumentException(
+					"Unbekanntes Format " + value);
+		}
+	}
+
+	/**
+	 * Writes the record of each analysis as soon as it has finished. Since a
+	 * {@link ResultListener} can't throw an {@link IOException}, the first
+	 * error is kept and no further records are written.
+	 */
+	private static class RecordListener implements ResultListener {
+		private final AnalysisRecordWriter recordWriter;
+		private IOException error;
+
+		/**
+		 * Initializes the listener.
+		 * 
+		 * @param recordWriter writes the records
+		 */
+		private RecordListener(AnalysisRecordWriter recordWriter) {
+			this.recordWriter = recordWriter;
+		}
+
+		@Override
+		public void analysisFinished(
+				BoundednessAnalysis analysis,
+				int finishedCount,
+				int totalCount) {
+			if (error != null) {
+				return;
+			}
+			try {
+				recordWriter.write(analysis);
+			} catch (IOException e) {
+				error = e;
+			}
+		}
+	}
+}
@@ -8,6 +8,7 @@ import io.petermueller.petrinetz.controllers.ToolbarController;
 import io.petermueller.petrinetz.models.filesystem.FileSystemModel;
 import io.petermueller.petrinetz.models.petrinet.PetriNetModel;
 import io.petermueller.petrinetz.models.rgraph.RGraphModel;
+import io.petermueller.petrinetz.util.AnalysisCache;
 import io.petermueller.petrinetz.views.MainFrameView;
 import io.petermueller.petrinetz.views.PetriNetView;
 import io.petermueller.petrinetz.views.RGraphView;
@@ -38,6 +39,7 @@ public class Petrinets_3274969_Mueller_Hans_Peter {
 		RGraphModel rGraphModel = new RGraphModel(
 				petriNetModel,
 				fileSystemModel);
+		AnalysisCache analysisCache = AnalysisCache.openDefault();
 
 		TextAreaView textAreaView = new TextAreaView();
 		StatusBarView statusBarView = new StatusBarView(
@@ -71,7 +73,9 @@ public class Petrinets_3274969_Mueller_Hans_Peter {
 				rGraphModel,
 				rGraphView,
 				textAreaView,
-				mainFrameView);
+				statusBarView,
+				mainFrameView,
+				analysisCache);
 		new RGraphController(
 				rGraphView,
 				rGraphModel,
@@ -81,7 +85,8 @@ public class Petrinets_3274969_Mueller_Hans_Peter {
 				mainFrameView,
 				fileSystemModel,
 				petriNetModel,
-				textAreaView);
+				textAreaView,
+				analysisCache);
 		new TextAreaController(
 				textAreaView);
 	}
@@ -6,11 +6,17 @@ import java.awt.event.ActionListener;
 import java.awt.event.KeyEvent;
 import java.io.File;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
 import javax.swing.JFrame;
 import javax.swing.KeyStroke;
+import javax.swing.SwingWorker;
 import io.petermueller.petrinetz.models.filesystem.FileSystemModel;
 import io.petermueller.petrinetz.models.petrinet.PetriNetModel;
+import io.petermueller.petrinetz.util.AnalysisBudget;
+import io.petermueller.petrinetz.util.AnalysisCache;
 import io.petermueller.petrinetz.util.BatchProcessing;
+import io.petermueller.petrinetz.util.BatchProcessing.ResultListener;
+import io.petermueller.petrinetz.util.BoundednessAnalysis;
 import io.petermueller.petrinetz.views.InfoDialogView;
 import io.petermueller.petrinetz.views.MainFrameView;
 import io.petermueller.petrinetz.views.TextAreaView;
@@ -29,6 +35,7 @@ public class MainFrameController {
 	private FileSystemModel fileSystemModel;
 	private PetriNetModel petriNetModel;
 	private TextAreaView textAreaView;
+	private AnalysisCache analysisCache;
 
 	/**
 	 * Public constructor. Calls further private methods to register event
@@ -38,16 +45,19 @@ public class MainFrameController {
 	 * @param fileSystemModel the filesystem model
 	 * @param petriNetModel the main petri net model
 	 * @param textAreaView the view of the text area at the bottom of the GUI
+	 * @param analysisCache the cache of analysis results, may be {@code null}
 	 */
 	public MainFrameController(
 			MainFrameView mainFrameView,
 			FileSystemModel fileSystemModel,
 			PetriNetModel petriNetModel,
-			TextAreaView textAreaView) {
+			TextAreaView textAreaView,
+			AnalysisCache analysisCache) {
 		this.mainFrameView = mainFrameView;
 		this.fileSystemModel = fileSystemModel;
 		this.petriNetModel = petriNetModel;
 		this.textAreaView = textAreaView;
+		this.analysisCache = analysisCache;
 		addCloseOperation();
 		addMenuListeners();
 		addMenuShortcuts();
@@ -70,6 +80,7 @@ public class MainFrameController {
 		mainFrameView.menuQuit.addActionListener(menuListener);
 		mainFrameView.menuInfo.addActionListener(menuListener);
 		mainFrameView.menuReload.addActionListener(menuListener);
+		mainFrameView.menuSave.addActionListener(menuListener);
 	}
 
 	/**
@@ -90,6 +101,8 @@ public class MainFrameController {
 				KeyEvent.VK_I, maskKey));
 		mainFrameView.menuReload.setAccelerator(KeyStroke.getKeyStroke(
 				KeyEvent.VK_R, maskKey));
+		mainFrameView.menuSave.setAccelerator(KeyStroke.getKeyStroke(
+				KeyEvent.VK_S, maskKey));
 	}
 
 	/**
@@ -110,11 +123,10 @@ public class MainFrameController {
 				}
 				break;
 			case "Analyse mehrerer Dateien…":
-				List<PetriNetModel> petriNets = fileSystemModel.readNewFiles(
+				List<File> files = fileSystemModel.selectFiles(
 						mainFrameView.mainFrame);
-				if (petriNets != null) {
-					BatchProcessing batch = new BatchProcessing(petriNets);
-					textAreaView.printBatchResults(batch);
+				if (files != null) {
+					new BatchWorker(files).execute();
 				}
 				break;
 			case "Beenden":
@@ -127,9 +139,76 @@ public class MainFrameController {
 				break;
 			case "Neu laden":
 				File currentFile = fileSystemModel.getCurrentFile();
-				petriNetModel.load(fileSystemModel.readNewFile(currentFile));
-				fileSystemModel.notifyGui();
+				PetriNetModel reloadedPetriNet =
+						fileSystemModel.readNewFile(currentFile);
+				if (reloadedPetriNet != null) {
+					petriNetModel.load(reloadedPetriNet);
+					fileSystemModel.notifyGui();
+				}
+				break;
+			case "Speichern":
+				fileSystemModel.saveFile(petriNetModel);
+				break;
+			}
+		}
+	}
+
+	/**
+	 * Runs the analysis of multiple files in the background, so the GUI stays
+	 * responsive. The files are parsed and analyzed under the
+	 * {@link AnalysisBudget#BATCH_DEFAULT}, reusing the results stored in the
+	 * {@link AnalysisCache}. Each result is published as soon as its analysis
+	 * has finished and printed as a line on the event dispatch thread. The
+	 * result table is printed once all files have been analyzed.
+	 */
+	private class BatchWorker
+			extends SwingWorker<BatchProcessing, BoundednessAnalysis> {
+		private final List<File> files;
+		private int finishedCount;
+
+		/**
+		 * Initializes the worker.
+		 * 
+		 * @param files the PNML files to analyze
+		 */
+		private BatchWorker(List<File> files) {
+			this.files = files;
+		}
+
+		@Override
+		protected BatchProcessing doInBackground() {
+			return BatchProcessing.analyzeFiles(
+					files,
+					Runtime.getRuntime().availableProcessors(),
+					AnalysisBudget.BATCH_DEFAULT,
+					analysisCache,
+					new ResultListener() {
+						@Override
+						public void analysisFinished(
+								BoundednessAnalysis analysis,
+								int finishedCount,
+								int totalCount) {
+							publish(analysis);
+						}
+					});
+		}
+
+		@Override
+		protected void process(List<BoundednessAnalysis> chunks) {
+			for (BoundednessAnalysis analysis : chunks) {
+				finishedCount++;
+				textAreaView.printBatchProgress(
+						analysis, finishedCount, files.size());
+			}
+		}
+
+		@Override
+		protected void done() {
+			try {
+				textAreaView.printBatchResults(get());
+			} catch (InterruptedException | ExecutionException e) {
+				System.err.println(e);
 			}
 		}
 	}
-}
\ No newline at end of file
+}
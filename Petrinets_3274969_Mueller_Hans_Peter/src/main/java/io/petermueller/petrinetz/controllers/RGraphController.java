@@ -63,11 +63,11 @@ public class RGraphController {
 			public void buttonReleased(String id) {
 				Marking marking = rGraphModel.getMarkingById(id);
 				if (marking.getClass() == Marking.class) {
-					rGraphModel.setToMarking(marking.places);
+					rGraphModel.setToMarking(marking.getPlaces());
 					rGraphView.updateGraph(
 							rGraphModel.markings,
 							rGraphModel.arcs);
-					petriNetModel.setToMarking(marking.places);
+					petriNetModel.setToMarking(marking.getPlaces());
 					petriNetView.updatePetriNet(
 							petriNetModel.transitions,
 							petriNetModel.places,
@@ -2,11 +2,22 @@ package io.petermueller.petrinetz.controllers;
 
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import javax.swing.SwingWorker;
 import io.petermueller.petrinetz.models.filesystem.FileSystemModel;
+import io.petermueller.petrinetz.models.filesystem.PetriNetCache;
 import io.petermueller.petrinetz.models.petrinet.PetriNetModel;
 import io.petermueller.petrinetz.models.rgraph.RGraphModel;
+import io.petermueller.petrinetz.util.AnalysisBudget;
+import io.petermueller.petrinetz.util.AnalysisCache;
 import io.petermueller.petrinetz.util.BoundednessAnalysis;
+import io.petermueller.petrinetz.util.BoundednessAnalysis.Monitor;
+import io.petermueller.petrinetz.util.BoundednessAnalysis.Strategy;
 import io.petermueller.petrinetz.views.RGraphView;
+import io.petermueller.petrinetz.views.StatusBarView;
 import io.petermueller.petrinetz.views.TextAreaView;
 import io.petermueller.petrinetz.views.ToolbarView;
 import io.petermueller.petrinetz.views.DialogWindowView;
@@ -26,6 +37,9 @@ public class ToolbarController {
 	private TextAreaView textAreaView;
 	private RGraphModel rGraphModel;
 	private MainFrameView mainFrameView;
+	private StatusBarView statusBarView;
+	private AnalysisWorker analysisWorker;
+	private AnalysisCache analysisCache;
 
 	/**
 	 * Registers private attributes for easier reference and calls private
@@ -37,7 +51,10 @@ public class ToolbarController {
 	 * @param rGraphModel     the reachability graph model
 	 * @param rGraphView      the reachability graph view
 	 * @param textAreaView    the text area view
+	 * @param statusBarView   the status bar view
 	 * @param mainFrameView   the main frame view
+	 * @param analysisCache   the cache of analysis results, may be
+	 *                        {@code null}
 	 */
 	public ToolbarController(
 			ToolbarView toolbarView,
@@ -46,13 +63,17 @@ public class ToolbarController {
 			RGraphModel rGraphModel,
 			RGraphView rGraphView,
 			TextAreaView textAreaView,
-			MainFrameView mainFrameView) {
+			StatusBarView statusBarView,
+			MainFrameView mainFrameView,
+			AnalysisCache analysisCache) {
 		this.petriNetModel = petriNetModel;
 		this.toolbarView = toolbarView;
 		this.fileSystemModel = fileSystemModel;
 		this.textAreaView = textAreaView;
 		this.rGraphModel = rGraphModel;
 		this.mainFrameView = mainFrameView;
+		this.statusBarView = statusBarView;
+		this.analysisCache = analysisCache;
 		addButtonListeners();
 	}
 
@@ -67,10 +88,32 @@ public class ToolbarController {
 		toolbarView.buttonAddToken.addActionListener(buttonListener);
 		toolbarView.buttonRemoveToken.addActionListener(buttonListener);
 		toolbarView.buttonBoundednessAnalysis.addActionListener(buttonListener);
+		toolbarView.buttonCancelAnalysis.addActionListener(buttonListener);
 		toolbarView.buttonClearRG.addActionListener(buttonListener);
 		toolbarView.buttonClearText.addActionListener(buttonListener);
 	}
 
+	/**
+	 * Opens the previous or next file. If a reachability graph was computed for
+	 * the file before and kept in the {@link PetriNetCache}, it is shown again
+	 * instead of an empty graph.
+	 * 
+	 * @param file the file to open
+	 */
+	private void openFile(File file) {
+		PetriNetModel petriNet = fileSystemModel.readNewFile(file);
+		if (petriNet == null) {
+			return;
+		}
+		petriNetModel.load(petriNet);
+		fileSystemModel.notifyGui();
+		RGraphModel rGraph = fileSystemModel.petriNetCache.getGraph(file);
+		if (rGraph != null) {
+			rGraphModel.load(rGraph);
+			rGraphModel.setToMarking(petriNetModel.places);
+		}
+	}
+
 	/**
 	 * An {@link ActionListener} which handles user input for the button in the
 	 * toolbar.
@@ -80,22 +123,10 @@ public class ToolbarController {
 		public void actionPerformed(ActionEvent e) {
 			switch (e.getActionCommand()) {
 			case "Open previous file":
-				PetriNetModel prevPetrinet = fileSystemModel.readNewFile(
-						fileSystemModel.prevFile
-						);
-				if (prevPetrinet != null) {
-					petriNetModel.load(prevPetrinet);
-					fileSystemModel.notifyGui();
-				}
+				openFile(fileSystemModel.prevFile);
 				break;
 			case "Open next file":
-				PetriNetModel nextPetriNet = fileSystemModel.readNewFile(
-						fileSystemModel.nextFile
-						);
-				if (nextPetriNet != null) {
-					petriNetModel.load(nextPetriNet);
-					fileSystemModel.notifyGui();
-				}
+				openFile(fileSystemModel.nextFile);
 				break;
 			case "Reset Marking":
 				petriNetModel.reset();
@@ -107,15 +138,15 @@ public class ToolbarController {
 				petriNetModel.removeUserToken();
 				break;
 			case "Boundedness Analysis":
-				BoundednessAnalysis analysis = new BoundednessAnalysis(
-						petriNetModel);
-				petriNetModel.load(analysis.petriNet);
-				rGraphModel.load(analysis.rGraph);
-				textAreaView.printBoundednessResults(analysis);
-				String result = (analysis.isBounded)
-						? "Das Petrinetz ist beschränkt."
-								: "Das Petrinetz ist unbeschränkt.";
-				new DialogWindowView(mainFrameView.mainFrame, result);
+				analysisWorker = new AnalysisWorker(
+						new PetriNetModel(petriNetModel));
+				toolbarView.setAnalysisRunning(true);
+				analysisWorker.execute();
+				break;
+			case "Cancel Boundedness Analysis":
+				if (analysisWorker != null) {
+					analysisWorker.cancel(false);
+				}
 				break;
 			case "Reset Reachability Graph":
 				petriNetModel.reset();
@@ -127,4 +158,119 @@ public class ToolbarController {
 			}
 		}
 	}
-}
\ No newline at end of file
+
+	/**
+	 * Runs a boundedness analysis in the background, so the GUI stays
+	 * responsive while the markings are explored.
+	 * 
+	 * <p><strong>Implementation details:</strong><br>
+	 * The analysis works on a copy of the Petri net made on the event
+	 * dispatch thread, so the user can go on editing the net in the meantime.
+	 * The progress reported by the analysis is published to the
+	 * {@link StatusBarView}. When the analysis is done, the results are loaded
+	 * into the {@link PetriNetModel} and the {@link RGraphModel} on the event
+	 * dispatch thread, unless another file was opened or the Petri net was
+	 * changed in the meantime, e.g. by firing transitions or editing the start
+	 * marking. Otherwise the results are only printed, so the user's changes
+	 * aren't replaced by a graph which doesn't belong to them.
+	 * If the Petri net has been analyzed before, the result is restored from
+	 * the {@link AnalysisCache} instead.
+	 */
+	private class AnalysisWorker
+			extends SwingWorker<BoundednessAnalysis, int[]> {
+		private final PetriNetModel petriNet;
+		private final String fingerprint;
+		private final int[] marking;
+		private final long startTime;
+
+		/**
+		 * Initializes the worker.
+		 * 
+		 * @param petriNet a copy of the Petri net to analyze
+		 */
+		private AnalysisWorker(PetriNetModel petriNet) {
+			this.petriNet = petriNet;
+			this.fingerprint = petriNet.getFingerprint();
+			this.marking = petriNet.getMarkingVector();
+			this.startTime = System.nanoTime();
+		}
+
+		/**
+		 * Checks if the Petri net shown in the GUI is still the one which has
+		 * been analyzed: the same file, the same start marking and the same
+		 * current marking.
+		 * 
+		 * @return {@code true} if the Petri net is unchanged, {@code false}
+		 *         otherwise
+		 */
+		private boolean isUnchanged() {
+			return petriNet.fileName.equals(petriNetModel.fileName) &&
+					fingerprint.equals(petriNetModel.getFingerprint()) &&
+					Arrays.equals(marking, petriNetModel.getMarkingVector());
+		}
+
+		@Override
+		protected BoundednessAnalysis doInBackground() {
+			Monitor monitor = new Monitor() {
+				@Override
+				public void progress(int exploredMarkings, int frontierSize) {
+					publish(new int[] {exploredMarkings, frontierSize});
+				}
+
+				@Override
+				public boolean isCancelled() {
+					return AnalysisWorker.this.isCancelled();
+				}
+			};
+			if (analysisCache != null) {
+				return analysisCache.analyze(petriNet,
+						Strategy.LEVEL_SYNCHRONOUS, monitor,
+						AnalysisBudget.UNLIMITED);
+			}
+			return new BoundednessAnalysis(
+					petriNet, Strategy.LEVEL_SYNCHRONOUS, monitor);
+		}
+
+		@Override
+		protected void process(List<int[]> chunks) {
+			int[] latest = chunks.get(chunks.size() - 1);
+			long elapsed = Math.max(1, System.nanoTime() - startTime);
+			statusBarView.setAnalysisProgress(latest[0], latest[1],
+					latest[0] * 1000000000L / elapsed);
+		}
+
+		@Override
+		protected void done() {
+			toolbarView.setAnalysisRunning(false);
+			statusBarView.clearAnalysisProgress();
+			if (isCancelled()) {
+				textAreaView.print("Beschränktheitsanalyse abgebrochen.\n");
+				return;
+			}
+			try {
+				BoundednessAnalysis analysis = get();
+				if (petriNet.fileName.equals(petriNetModel.fileName)) {
+					fileSystemModel.petriNetCache.putGraph(
+							fileSystemModel.getCurrentFile(),
+							petriNet,
+							analysis.rGraph);
+				}
+				if (isUnchanged()) {
+					petriNetModel.load(analysis.petriNet);
+					rGraphModel.load(analysis.rGraph);
+				} else {
+					textAreaView.print("Das Petrinetz wurde während der "
+							+ "Analyse verändert, der Erreichbarkeitsgraph "
+							+ "wird nicht angezeigt.\n");
+				}
+				textAreaView.printBoundednessResults(analysis);
+				String result = (analysis.isBounded)
+						? "Das Petrinetz ist beschränkt."
+								: "Das Petrinetz ist unbeschränkt.";
+				new DialogWindowView(mainFrameView.mainFrame, result);
+			} catch (InterruptedException | ExecutionException e) {
+				System.err.println(e);
+			}
+		}
+	}
+}
@@ -0,0 +1,79 @@
+package io.petermueller.petrinetz.models.filesystem;
+
+import java.io.IOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Replaces files atomically: a file is written into a temporary file in the
+ * same directory, which is then moved over the file in a single step. A
+ * reader never sees a partly written file, and if writing fails, the file is
+ * left as it was.
+ * 
+ * <p><strong>Implementation details:</strong><br>
+ * {@link Files#createTempFile} creates files which only their owner may
+ * read, and the move would carry these permissions over to the file. The
+ * temporary file is therefore created like any other file, with the default
+ * permissions of the user, and takes over the permissions of the file it
+ * replaces, so saving a file in a shared folder doesn't lock others out.
+ * 
+ * @author Hans Peter Müller (3274969)
+ * @see    BinaryNetWriter
+ * @see    PNMLWriter
+ */
+final class AtomicFile {
+	private AtomicFile() {
+	}
+
+	/**
+	 * Creates an empty temporary file next to a file, with the permissions of
+	 * the file if it exists.
+	 * 
+	 * @param target the file to replace
+	 * @return       the temporary file
+	 * @throws IOException if the temporary file can't be created
+	 */
+	static Path createTemporary(Path target) throws IOException {
+		Path temporary;
+		while (true) {
+			temporary = target.resolveSibling(target.getFileName()
+					+ Long.toUnsignedString(
+							ThreadLocalRandom.current().nextLong())
+					+ ".tmp");
+			try {
+				Files.createFile(temporary);
+				break;
+			} catch (FileAlreadyExistsException e) {
+				continue;
+			}
+		}
+		try {
+			PosixFileAttributeView view = Files.getFileAttributeView(target,
+					PosixFileAttributeView.class);
+			if (view != null && Files.exists(target)) {
+				Files.setPosixFilePermissions(temporary,
+						view.readAttributes().permissions());
+			}
+		} catch (IOException e) {
+			Files.deleteIfExists(temporary);
+			throw e;
+		}
+		return temporary;
+	}
+
+	/**
+	 * Moves a temporary file over a file atomically.
+	 * 
+	 * @param temporary the temporary file, completely written
+	 * @param target    the file to replace
+	 * @throws IOException if the file can't be replaced
+	 */
+	static void replace(Path temporary, Path target) throws IOException {
+		Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE,
+				StandardCopyOption.REPLACE_EXISTING);
+	}
+}
@@ -0,0 +1,333 @@
+package io.petermueller.petrinetz.models.filesystem;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import io.petermueller.petrinetz.models.petrinet.Arc;
+import io.petermueller.petrinetz.models.petrinet.Location;
+import io.petermueller.petrinetz.models.petrinet.NetStructure;
+import io.petermueller.petrinetz.models.petrinet.PetriNetModel;
+import io.petermueller.petrinetz.models.petrinet.Place;
+import io.petermueller.petrinetz.models.petrinet.Transition;
+
+/**
+ * Loads Petri nets written by the {@link BinaryNetWriter}.
+ * 
+ * <p><strong>Implementation details:</strong><br>
+ * The file is mapped into memory with {@link FileChannel#map}, so it is read
+ * by the operating system's page cache instead of being copied through a
+ * stream. All numbers are stored in blocks and copied into arrays with a
+ * single bulk read each. The compiled structure is taken over from the file
+ * as it is, so neither the XML has to be parsed nor the arcs have to be
+ * compiled again. Only the strings are decoded one by one.
+ * 
+ * <p>Every count and index in the file is checked before it is used, so a
+ * damaged file results in an {@link IOException} instead of a wrong Petri
+ * net. The ids of the places and transitions have to be unique, each arc
+ * has to connect a place with a transition with a positive weight, and the
+ * arcs have to add up to the compiled structure exactly, so the editor shows
+ * the same Petri net which is fired and fingerprinted.
+ * 
+ * @author Hans Peter Müller (3274969)
+ * @see    BinaryNetWriter
+ */
+public class BinaryNetLoader {
+	/**
+	 * The number of header values after the magic number and the version.
+	 */
+	private static final int COUNTS = 5;
+
+	/**
+	 * Checks if a file has the extension of binary Petri nets.
+	 * 
+	 * @param file a file
+	 * @return     {@code true} if the file is a binary Petri net,
+	 *             {@code false} otherwise
+	 */
+	public static boolean isBinaryNet(File file) {
+		return file.getName().toLowerCase().endsWith(
+				BinaryNetWriter.EXTENSION);
+	}
+
+	/**
+	 * Loads a Petri net from a file. The start marking is set as the current
+	 * marking.
+	 * 
+	 * @param file the file to load
+	 * @return     the Petri net, named after the file
+	 * @throws IOException if the file can't be read or isn't a binary Petri
+	 *                     net of the supported version
+	 */
+	public static PetriNetModel load(File file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file.toPath(),
+				StandardOpenOption.READ)) {
+			if (channel.size() > Integer.MAX_VALUE) {
+				throw new IOException("Net file too large.");
+			}
+			ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+					channel.size());
+			PetriNetModel petriNet = read(buffer);
+			petriNet.fileName = file.getName();
+			return petriNet;
+		} catch (BufferUnderflowException | IllegalArgumentException e) {
+			throw new IOException("Damaged net file.", e);
+		}
+	}
+
+	/**
+	 * Reads a Petri net from a buffer.
+	 * 
+	 * @param buffer the content of a file
+	 * @return       the Petri net
+	 * @throws IOException if the buffer doesn't hold a Petri net
+	 */
+	private static PetriNetModel read(ByteBuffer buffer) throws IOException {
+		if (buffer.remaining() < 2 * Integer.BYTES ||
+				buffer.getInt() != BinaryNetWriter.MAGIC) {
+			throw new IOException("Unknown net format.");
+		}
+		int version = buffer.getInt();
+		if (version != BinaryNetWriter.VERSION) {
+			throw new IOException("Unsupported net format version " + version
+					+ ".");
+		}
+		int[] counts = readInts(buffer, COUNTS);
+		int placeCount = checkCount(buffer, counts[0]);
+		int transitionCount = checkCount(buffer, counts[1]);
+		int arcCount = checkCount(buffer, counts[2]);
+		int preCount = checkCount(buffer, counts[3]);
+		int postCount = checkCount(buffer, counts[4]);
+		int[] placeX = readInts(buffer, placeCount);
+		int[] placeY = readInts(buffer, placeCount);
+		int[] startTokens = readInts(buffer, placeCount);
+		int[] transitionX = readInts(buffer, transitionCount);
+		int[] transitionY = readInts(buffer, transitionCount);
+		int[] preStart = readInts(buffer, transitionCount + 1);
+		int[] prePlaces = readInts(buffer, preCount);
+		int[] preWeights = readInts(buffer, preCount);
+		int[] postStart = readInts(buffer, transitionCount + 1);
+		int[] postPlaces = readInts(buffer, postCount);
+		int[] postWeights = readInts(buffer, postCount);
+		int[] arcSources = readInts(buffer, arcCount);
+		int[] arcTargets = readInts(buffer, arcCount);
+		int[] arcWeights = readInts(buffer, arcCount);
+		Set<String> ids = new HashSet<String>();
+		List<Place> places = new ArrayList<Place>(placeCount);
+		for (int i = 0; i < placeCount; i++) {
+			Place place = new Place(readId(buffer, ids));
+			place.x = placeX[i];
+			place.y = placeY[i];
+			if (startTokens[i] < 0) {
+				throw new IOException("Negative start marking.");
+			}
+			place.startTokens = startTokens[i];
+			place.currentTokens = startTokens[i];
+			places.add(place);
+		}
+		for (Place place : places) {
+			place.name = readString(buffer);
+		}
+		List<Transition> transitions =
+				new ArrayList<Transition>(transitionCount);
+		for (int i = 0; i < transitionCount; i++) {
+			Transition transition = new Transition(readId(buffer, ids));
+			transition.x = transitionX[i];
+			transition.y = transitionY[i];
+			transitions.add(transition);
+		}
+		for (Transition transition : transitions) {
+			transition.name = readString(buffer);
+		}
+		NetStructure structure = new NetStructure(places, transitions,
+				preStart, prePlaces, preWeights,
+				postStart, postPlaces, postWeights);
+		int[] preRemaining = preWeights.clone();
+		int[] postRemaining = postWeights.clone();
+		List<Arc> arcs = new ArrayList<Arc>(arcCount);
+		for (int i = 0; i < arcCount; i++) {
+			Location source = getNode(places, transitions, arcSources[i]);
+			Location target = getNode(places, transitions, arcTargets[i]);
+			if (arcWeights[i] < 1) {
+				throw new IOException("Invalid arc weight in net file.");
+			}
+			if (arcSources[i] >= 0 && arcTargets[i] < 0) {
+				takeWeight(preStart, prePlaces, preRemaining,
+						-(arcTargets[i] + 1), arcSources[i], arcWeights[i]);
+			} else if (arcSources[i] < 0 && arcTargets[i] >= 0) {
+				takeWeight(postStart, postPlaces, postRemaining,
+						-(arcSources[i] + 1), arcTargets[i], arcWeights[i]);
+			} else {
+				throw new IOException("Invalid arc in net file.");
+			}
+			arcs.add(new Arc(readId(buffer), source, target, arcWeights[i]));
+		}
+		for (int weight : preRemaining) {
+			checkTaken(weight);
+		}
+		for (int weight : postRemaining) {
+			checkTaken(weight);
+		}
+		return new PetriNetModel(places, transitions, arcs, structure);
+	}
+
+	/**
+	 * Checks that a count from the header is possible in a file of this
+	 * size, so a damaged header can't make the loader allocate huge arrays.
+	 * 
+	 * @param buffer the content of the file
+	 * @param count  a count from the header
+	 * @return       the count
+	 * @throws IOException if the count is negative or too large
+	 */
+	private static int checkCount(ByteBuffer buffer, int count)
+			throws IOException {
+		if (count < 0 || count > buffer.remaining() / Integer.BYTES) {
+			throw new IOException("Invalid count in net file.");
+		}
+		return count;
+	}
+
+	/**
+	 * Reads a block of numbers with a single bulk read.
+	 * 
+	 * @param buffer the content of the file, positioned at the block
+	 * @param length the number of values
+	 * @return       the values
+	 */
+	private static int[] readInts(ByteBuffer buffer, int length) {
+		int[] values = new int[length];
+		buffer.asIntBuffer().get(values);
+		buffer.position(buffer.position() + length * Integer.BYTES);
+		return values;
+	}
+
+	/**
+	 * Reads a string which must not be missing.
+	 * 
+	 * @param buffer the content of the file, positioned at the string
+	 * @return       the string
+	 * @throws IOException if the string is missing
+	 */
+	private static String readId(ByteBuffer buffer) throws IOException {
+		String id = readString(buffer);
+		if (id == null) {
+			throw new IOException("Missing id in net file.");
+		}
+		return id;
+	}
+
+	/**
+	 * Reads the id of a place or transition, which must not be missing and
+	 * must not be used by another place or transition.
+	 * 
+	 * @param buffer the content of the file, positioned at the string
+	 * @param ids    the ids read so far, the new id is added
+	 * @return       the id
+	 * @throws IOException if the id is missing or used twice
+	 */
+	private static String readId(ByteBuffer buffer, Set<String> ids)
+			throws IOException {
+		String id = readId(buffer);
+		if (!ids.add(id)) {
+			throw new IOException("Duplicate id in net file.");
+		}
+		return id;
+	}
+
+	/**
+	 * Takes the weight of an arc from the entry of its place in a row of the
+	 * compiled structure. The arcs between a place and a transition have to
+	 * add up to the weight of the entry.
+	 * 
+	 * @param start      the row start array
+	 * @param places     the place array
+	 * @param remaining  the weights of the entries not yet covered by arcs
+	 * @param transition the transition of the arc, i.e. the row
+	 * @param place      the place of the arc
+	 * @param weight     the weight of the arc
+	 * @throws IOException if the row has no entry for the place or the arcs
+	 *                     weigh more than the entry
+	 */
+	private static void takeWeight(
+			int[] start,
+			int[] places,
+			int[] remaining,
+			int transition,
+			int place,
+			int weight) throws IOException {
+		for (int i = start[transition]; i < start[transition + 1]; i++) {
+			if (places[i] == place) {
+				if (weight > remaining[i]) {
+					break;
+				}
+				remaining[i] -= weight;
+				return;
+			}
+		}
+		throw new IOException("Arcs don't match the net structure.");
+	}
+
+	/**
+	 * Checks that the arcs have covered the whole weight of an entry of the
+	 * compiled structure.
+	 * 
+	 * @param remaining the weight not covered by arcs
+	 * @throws IOException if a part of the weight isn't covered
+	 */
+	private static void checkTaken(int remaining) throws IOException {
+		if (remaining != 0) {
+			throw new IOException("Arcs don't match the net structure.");
+		}
+	}
+
+	/**
+	 * Reads a string stored as its length in UTF-8 bytes and the bytes.
+	 * 
+	 * @param buffer the content of the file, positioned at the string
+	 * @return       the string, or {@code null} if it is missing
+	 * @throws IOException if the length is invalid
+	 */
+	private static String readString(ByteBuffer buffer) throws IOException {
+		int length = buffer.getInt();
+		if (length == -1) {
+			return null;
+		}
+		if (length < 0 || length > buffer.remaining()) {
+			throw new IOException("Invalid string in net file.");
+		}
+		byte[] bytes = new byte[length];
+		buffer.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Decodes an end of an arc.
+	 * 
+	 * @param places      the places of the Petri net
+	 * @param transitions the transitions of the Petri net
+	 * @param node        a place index, or a transition index plus one,
+	 *                    negated
+	 * @return            the place or transition
+	 * @throws IOException if there is no such node
+	 */
+	private static Location getNode(
+			List<Place> places,
+			List<Transition> transitions,
+			int node) throws IOException {
+		if (node >= 0 && node < places.size()) {
+			return places.get(node);
+		}
+		if (node < 0 && -(node + 1) < transitions.size()) {
+			return transitions.get(-(node + 1));
+		}
+		throw new IOException("Invalid arc in net file.");
+	}
+}
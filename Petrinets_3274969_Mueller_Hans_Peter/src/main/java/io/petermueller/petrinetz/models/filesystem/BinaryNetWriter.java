@@ -0,0 +1,253 @@
+package io.petermueller.petrinetz.models.filesystem;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import io.petermueller.petrinetz.models.petrinet.Arc;
+import io.petermueller.petrinetz.models.petrinet.Location;
+import io.petermueller.petrinetz.models.petrinet.NetStructure;
+import io.petermueller.petrinetz.models.petrinet.PetriNetModel;
+import io.petermueller.petrinetz.models.petrinet.Place;
+import io.petermueller.petrinetz.models.petrinet.Transition;
+
+/**
+ * Writes Petri nets in a compact binary format, which the
+ * {@link BinaryNetLoader} reads without parsing XML. Converting PNML files
+ * which are opened or analyzed again and again saves parsing them every
+ * time.
+ * 
+ * <p><strong>Format:</strong><br>
+ * All numbers are big-endian {@code int} values. The file starts with the
+ * header {@link #MAGIC}, {@link #VERSION} and the number of places,
+ * transitions, arcs, pre-set entries and post-set entries. It is followed by
+ * these arrays, each one as a single block:
+ * <ol>
+ * <li>x, y and start markers of the places,</li>
+ * <li>x and y of the transitions,</li>
+ * <li>the compiled {@link NetStructure}: row starts, places and weights of
+ * the pre-sets, then of the post-sets,</li>
+ * <li>source, target and weight of the arcs, where a place is given by its
+ * index and a transition by its index plus one, negated,</li>
+ * <li>the ids and names of the places, the ids and names of the transitions
+ * and the ids of the arcs, each as its length in UTF-8 bytes followed by the
+ * bytes, or -1 for a missing name.</li>
+ * </ol>
+ * Arcs which don't connect a place with a transition of the Petri net are
+ * left out, like the compiled structure leaves them out. Files are replaced
+ * atomically with an {@link AtomicFile}, so a reader never sees a partly
+ * written file.
+ * 
+ * @author Hans Peter Müller (3274969)
+ * @see    BinaryNetLoader
+ */
+public class BinaryNetWriter {
+	/**
+	 * The first four bytes of every file, {@code "PNB1"} in ASCII.
+	 */
+	public static final int MAGIC = 0x504E4231;
+	/**
+	 * The version of the format. A loader rejects other versions.
+	 */
+	public static final int VERSION = 1;
+	/**
+	 * The file extension of binary Petri nets.
+	 */
+	public static final String EXTENSION = ".pnb";
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	/**
+	 * Converts PNML files into binary Petri nets next to them. The paths of
+	 * the PNML files are given as parameters.
+	 * 
+	 * @param args the paths of the PNML files
+	 */
+	public static void main(String[] args) {
+		if (args.length == 0) {
+			System.out.println("Bitte PNML Dateien als Parameter angeben!");
+			return;
+		}
+		for (String arg : args) {
+			File file = new File(arg);
+			File binaryFile = getBinaryFile(file);
+			try {
+				write(FileSystemModel.parseFile(file), binaryFile);
+				System.out.println("Schreibe in Datei: " + binaryFile);
+			} catch (IOException | RuntimeException e) {
+				System.err.println(file + ": " + e);
+			}
+		}
+	}
+
+	/**
+	 * Returns the file a PNML file is converted into: the same name with the
+	 * extension {@value #EXTENSION}.
+	 * 
+	 * @param file a PNML file
+	 * @return     the binary file next to it
+	 */
+	public static File getBinaryFile(File file) {
+		String name = file.getName();
+		int dot = name.lastIndexOf('.');
+		if (dot > 0) {
+			name = name.substring(0, dot);
+		}
+		return new File(file.getAbsoluteFile().getParentFile(),
+				name + EXTENSION);
+	}
+
+	/**
+	 * Writes a Petri net with its start marking into a file, replacing the
+	 * file atomically.
+	 * 
+	 * @param petriNet the Petri net to write
+	 * @param file     the file to write
+	 * @throws IOException if the file can't be written
+	 */
+	public static void write(PetriNetModel petriNet, File file)
+			throws IOException {
+		Path target = file.getAbsoluteFile().toPath();
+		Path temporary = AtomicFile.createTemporary(target);
+		try {
+			try (DataOutputStream output = new DataOutputStream(
+					new BufferedOutputStream(Files.newOutputStream(temporary),
+							BUFFER_SIZE))) {
+				write(output, petriNet);
+			}
+			AtomicFile.replace(temporary, target);
+		} finally {
+			Files.deleteIfExists(temporary);
+		}
+	}
+
+	/**
+	 * Writes a Petri net into a stream.
+	 * 
+	 * @param output   the stream to write
+	 * @param petriNet the Petri net to write
+	 * @throws IOException if the stream can't be written
+	 */
+	private static void write(DataOutputStream output, PetriNetModel petriNet)
+			throws IOException {
+		NetStructure net = petriNet.getStructure();
+		List<Arc> arcs = new ArrayList<Arc>();
+		for (Arc arc : petriNet.arcs) {
+			Integer source = getNode(net, arc.source);
+			Integer target = getNode(net, arc.target);
+			if (source != null && target != null &&
+					(source < 0) != (target < 0)) {
+				arcs.add(arc);
+			}
+		}
+		output.writeInt(MAGIC);
+		output.writeInt(VERSION);
+		output.writeInt(petriNet.places.size());
+		output.writeInt(petriNet.transitions.size());
+		output.writeInt(arcs.size());
+		output.writeInt(net.getPrePlaces().length);
+		output.writeInt(net.getPostPlaces().length);
+		for (Place place : petriNet.places) {
+			output.writeInt(place.x);
+		}
+		for (Place place : petriNet.places) {
+			output.writeInt(place.y);
+		}
+		for (Place place : petriNet.places) {
+			output.writeInt(place.startTokens);
+		}
+		for (Transition transition : petriNet.transitions) {
+			output.writeInt(transition.x);
+		}
+		for (Transition transition : petriNet.transitions) {
+			output.writeInt(transition.y);
+		}
+		writeInts(output, net.getPreStart());
+		writeInts(output, net.getPrePlaces());
+		writeInts(output, net.getPreWeights());
+		writeInts(output, net.getPostStart());
+		writeInts(output, net.getPostPlaces());
+		writeInts(output, net.getPostWeights());
+		for (Arc arc : arcs) {
+			output.writeInt(getNode(net, arc.source));
+		}
+		for (Arc arc : arcs) {
+			output.writeInt(getNode(net, arc.target));
+		}
+		for (Arc arc : arcs) {
+			output.writeInt(arc.weight);
+		}
+		for (Place place : petriNet.places) {
+			writeString(output, place.id);
+		}
+		for (Place place : petriNet.places) {
+			writeString(output, place.name);
+		}
+		for (Transition transition : petriNet.transitions) {
+			writeString(output, transition.id);
+		}
+		for (Transition transition : petriNet.transitions) {
+			writeString(output, transition.name);
+		}
+		for (Arc arc : arcs) {
+			writeString(output, arc.id);
+		}
+	}
+
+	/**
+	 * Encodes an end of an arc as a number: a place as its index, a
+	 * transition as its index plus one, negated.
+	 * 
+	 * @param net      the structure of the Petri net
+	 * @param location an end of an arc
+	 * @return         the encoded node, or {@code null} if the location isn't
+	 *                 a node of the Petri net
+	 */
+	private static Integer getNode(NetStructure net, Location location) {
+		if (location instanceof Place) {
+			int index = net.getPlaceIndex(location.id);
+			return (index < 0) ? null : index;
+		}
+		if (location instanceof Transition) {
+			int index = net.getTransitionIndex(location.id);
+			return (index < 0) ? null : -(index + 1);
+		}
+		return null;
+	}
+
+	/**
+	 * Writes an array without its length.
+	 * 
+	 * @param output the stream to write
+	 * @param values the array
+	 * @throws IOException if the stream can't be written
+	 */
+	private static void writeInts(DataOutputStream output, int[] values)
+			throws IOException {
+		for (int value : values) {
+			output.writeInt(value);
+		}
+	}
+
+	/**
+	 * Writes a string as its length in UTF-8 bytes and the bytes.
+	 * 
+	 * @param output the stream to write
+	 * @param string the string, may be {@code null}
+	 * @throws IOException if the stream can't be written
+	 */
+	private static void writeString(DataOutputStream output, String string)
+			throws IOException {
+		if (string == null) {
+			output.writeInt(-1);
+			return;
+		}
+		byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+		output.writeInt(bytes.length);
+		output.write(bytes);
+	}
+}
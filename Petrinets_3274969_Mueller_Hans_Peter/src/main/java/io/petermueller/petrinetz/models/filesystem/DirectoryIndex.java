@@ -0,0 +1,345 @@
+package io.petermueller.petrinetz.models.filesystem;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A sorted index of the PNML files in the directories the user works in,
+ * together with the binary Petri nets converted from them. A
+ * directory is listed once, and afterwards the index answers whether a file
+ * is a PNML file of its directory and which files come before and after it
+ * with a binary search, instead of listing the directory again.
+ * 
+ * <p><strong>Implementation details:</strong><br>
+ * Every indexed directory is registered with a {@link WatchService}, and the
+ * pending events are applied whenever the index is used: created files are
+ * inserted into the sorted list and deleted files are removed from it, so a
+ * change never costs a new listing. The watch service delivers the events
+ * asynchronously, so a change shows up in the index shortly after it was
+ * made. If events were lost, the directory is listed again the next time it
+ * is used.
+ * 
+ * <p>A directory which can't be watched falls back to its modification
+ * time: whenever the index is used, it is compared to the one of the
+ * listing, which costs a single file attribute lookup instead of a listing,
+ * and the directory is listed again if it was changed. This misses changes
+ * on file systems with a coarse timestamp resolution, e.g. a file created
+ * within the same second as the listing.
+ * 
+ * <p>Only the {@value #MAX_DIRECTORIES} most recently used directories are
+ * kept, the watch registrations of older ones are cancelled. The index can
+ * be used from several threads.
+ * 
+ * @author Hans Peter Müller (3274969)
+ * @see    FileSystemModel
+ */
+public class DirectoryIndex {
+	/**
+	 * The number of directories which are kept in the index.
+	 */
+	public static final int MAX_DIRECTORIES = 16;
+	private static final FilenameFilter PNML_FILTER = new FilenameFilter() {
+		@Override
+		public boolean accept(File dir, String name) {
+			return isPnmlName(name);
+		}
+	};
+	private final LinkedHashMap<File, Listing> listings;
+	private final Map<WatchKey, Listing> watchedListings;
+	private WatchService watchService;
+	private boolean isWatchServiceAvailable;
+
+	/**
+	 * The sorted PNML files of a single directory.
+	 */
+	private static class Listing {
+		private final File directory;
+		private List<File> files;
+		private long lastModified;
+		private boolean isStale;
+		private WatchKey watchKey;
+
+		/**
+		 * Initializes a listing which is read on first use.
+		 * 
+		 * @param directory the listed directory
+		 */
+		private Listing(File directory) {
+			this.directory = directory;
+			this.files = new ArrayList<File>();
+			this.isStale = true;
+		}
+	}
+
+	/**
+	 * Initializes an empty index. The watch service is created when the
+	 * first directory is indexed.
+	 */
+	public DirectoryIndex() {
+		listings = new LinkedHashMap<File, Listing>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(
+					Map.Entry<File, Listing> eldest) {
+				if (size() > MAX_DIRECTORIES) {
+					unwatch(eldest.getValue());
+					return true;
+				}
+				return false;
+			}
+		};
+		watchedListings = new HashMap<WatchKey, Listing>();
+		isWatchServiceAvailable = true;
+	}
+
+	/**
+	 * Returns the PNML files of a directory in alphabetical order.
+	 * 
+	 * @param directory a directory
+	 * @return          an unmodifiable list of the files, empty if the
+	 *                  directory can't be read
+	 */
+	public synchronized List<File> getFiles(File directory) {
+		return Collections.unmodifiableList(getListing(directory).files);
+	}
+
+	/**
+	 * Checks if a file is one of the PNML files of its directory.
+	 * 
+	 * @param file a file
+	 * @return     {@code true} if the file is listed, {@code false} otherwise
+	 */
+	public synchronized boolean contains(File file) {
+		return indexOf(file) >= 0;
+	}
+
+	/**
+	 * Returns the PNML file in front of a file in its directory.
+	 * 
+	 * @param file a PNML file
+	 * @return     the previous file, or {@code null} if the file is the first
+	 *             one or isn't listed
+	 */
+	public synchronized File getPrevious(File file) {
+		List<File> files = getSiblings(file);
+		int index = Collections.binarySearch(files, file);
+		if (index <= 0) {
+			return null;
+		}
+		return files.get(index - 1);
+	}
+
+	/**
+	 * Returns the PNML file after a file in its directory.
+	 * 
+	 * @param file a PNML file
+	 * @return     the next file, or {@code null} if the file is the last one
+	 *             or isn't listed
+	 */
+	public synchronized File getNext(File file) {
+		List<File> files = getSiblings(file);
+		int index = Collections.binarySearch(files, file);
+		if (index < 0 || index == files.size() - 1) {
+			return null;
+		}
+		return files.get(index + 1);
+	}
+
+	/**
+	 * Looks up a file in the listing of its directory.
+	 * 
+	 * @param file a file
+	 * @return     the index of the file, or a negative number if it isn't
+	 *             listed
+	 */
+	private int indexOf(File file) {
+		return Collections.binarySearch(getSiblings(file), file);
+	}
+
+	/**
+	 * Returns the listed files of the directory of a file. The listing is
+	 * brought up to date once, so a file can be looked up and its neighbours
+	 * be taken from the same list.
+	 * 
+	 * @param file a file
+	 * @return     the PNML files of its directory, empty if the file has no
+	 *             directory
+	 */
+	private List<File> getSiblings(File file) {
+		File directory = file.getParentFile();
+		if (directory == null) {
+			return Collections.emptyList();
+		}
+		return getListing(directory).files;
+	}
+
+	/**
+	 * Returns the up-to-date listing of a directory. Pending watch events are
+	 * applied first, and the directory is listed again if the listing is
+	 * stale or, for a directory which isn't watched, if it was modified.
+	 * 
+	 * @param directory a directory
+	 * @return          the listing of the directory
+	 */
+	private Listing getListing(File directory) {
+		Listing listing = listings.get(directory);
+		if (listing == null) {
+			listing = new Listing(directory);
+			listings.put(directory, listing);
+			watch(listing);
+		}
+		applyWatchEvents();
+		if (listing.watchKey != null) {
+			if (listing.isStale) {
+				list(listing);
+			}
+			return listing;
+		}
+		long lastModified = directory.lastModified();
+		if (listing.isStale || lastModified != listing.lastModified) {
+			list(listing);
+		}
+		listing.lastModified = lastModified;
+		return listing;
+	}
+
+	/**
+	 * Lists the PNML files of a directory and sorts them.
+	 * 
+	 * @param listing the listing to fill
+	 */
+	private static void list(Listing listing) {
+		File[] files = listing.directory.listFiles(PNML_FILTER);
+		if (files == null) {
+			files = new File[0];
+		}
+		Arrays.sort(files);
+		listing.files = new ArrayList<File>(Arrays.asList(files));
+		listing.isStale = false;
+	}
+
+	/**
+	 * Registers a directory with the watch service. If there is no watch
+	 * service or the directory can't be watched, only the modification time
+	 * of the directory is checked.
+	 * 
+	 * @param listing the listing of the directory
+	 */
+	private void watch(Listing listing) {
+		if (watchService == null && isWatchServiceAvailable) {
+			try {
+				watchService = listing.directory.toPath().getFileSystem()
+						.newWatchService();
+			} catch (IOException | UnsupportedOperationException e) {
+				System.err.println(e);
+				isWatchServiceAvailable = false;
+			}
+		}
+		if (watchService == null) {
+			return;
+		}
+		try {
+			listing.watchKey = listing.directory.toPath().register(
+					watchService,
+					StandardWatchEventKinds.ENTRY_CREATE,
+					StandardWatchEventKinds.ENTRY_DELETE);
+			watchedListings.put(listing.watchKey, listing);
+		} catch (IOException | RuntimeException e) {
+			listing.watchKey = null;
+		}
+	}
+
+	/**
+	 * Cancels the watch registration of a directory which is removed from the
+	 * index.
+	 * 
+	 * @param listing the listing of the directory
+	 */
+	private void unwatch(Listing listing) {
+		if (listing.watchKey != null) {
+			listing.watchKey.cancel();
+			watchedListings.remove(listing.watchKey);
+			listing.watchKey = null;
+		}
+	}
+
+	/**
+	 * Applies all pending watch events to the listings of their directories.
+	 */
+	private void applyWatchEvents() {
+		if (watchService == null) {
+			return;
+		}
+		WatchKey key;
+		while ((key = watchService.poll()) != null) {
+			Listing listing = watchedListings.get(key);
+			for (WatchEvent<?> event : key.pollEvents()) {
+				if (listing != null) {
+					apply(listing, event);
+				}
+			}
+			if (!key.reset() && listing != null) {
+				/*
+				 * The directory was deleted or can't be watched any more.
+				 */
+				watchedListings.remove(key);
+				listing.watchKey = null;
+				listing.isStale = true;
+			}
+		}
+	}
+
+	/**
+	 * Applies a single watch event to a listing.
+	 * 
+	 * @param listing the listing of the watched directory
+	 * @param event   the event
+	 */
+	private static void apply(Listing listing, WatchEvent<?> event) {
+		if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+			listing.isStale = true;
+			return;
+		}
+		String name = ((Path) event.context()).toString();
+		if (listing.isStale || !isPnmlName(name)) {
+			return;
+		}
+		File file = new File(listing.directory, name);
+		int index = Collections.binarySearch(listing.files, file);
+		if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE &&
+				index < 0) {
+			listing.files.add(-index - 1, file);
+		} else if (event.kind() == StandardWatchEventKinds.ENTRY_DELETE &&
+				index >= 0) {
+			listing.files.remove(index);
+		}
+	}
+
+	/**
+	 * Checks if a file name has the extension of PNML files or binary Petri
+	 * nets.
+	 * 
+	 * @param name a file name
+	 * @return     {@code true} for PNML files and binary Petri nets,
+	 *             {@code false} otherwise
+	 */
+	private static boolean isPnmlName(String name) {
+		String lowerCaseName = name.toLowerCase();
+		return lowerCaseName.endsWith(".pnml") ||
+				lowerCaseName.endsWith(BinaryNetWriter.EXTENSION);
+	}
+}
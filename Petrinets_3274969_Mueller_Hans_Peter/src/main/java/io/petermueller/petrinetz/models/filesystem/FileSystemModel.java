@@ -1,9 +1,9 @@
 package io.petermueller.petrinetz.models.filesystem;
 
 import java.io.File;
-import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
@@ -21,6 +21,19 @@ import io.petermueller.petrinetz.util.EventEmitter;
  * information about the previous and next file in the current directory so
  * other components like the toolbar can access them.
  * 
+ * <p>The PNML files of a directory are looked up in a {@link DirectoryIndex}
+ * shared by all instances, so opening a file or checking the files of a
+ * multiple selection doesn't list the directory again.
+ * 
+ * <p>Opened files are kept parsed in a {@link PetriNetCache}, and the
+ * previous and next file are parsed in the background as soon as a file has
+ * been opened, so opening them doesn't have to wait for the parser.
+ * 
+ * <p>A Petri net whose start marking has been edited can be saved into the
+ * file it was read from with {@link #saveFile(PetriNetModel)}. The file is
+ * only recorded once its Petri net has been read, so a rejected file or the
+ * files of a batch never become the target of a save.
+ * 
  * @author Hans Peter Müller (3274969)
  * @see javax.swing.JFileChooser
  */
@@ -33,7 +46,14 @@ public class FileSystemModel extends EventEmitter{
 	 * The next PNML file in the directory, null if no next file exists.
 	 */
 	public File nextFile;
+	/**
+	 * The recently opened and prefetched Petri nets, together with their
+	 * reachability graphs.
+	 */
+	public final PetriNetCache petriNetCache;
+	private static final DirectoryIndex DIRECTORY_INDEX = new DirectoryIndex();
 	private JFileChooser fc;
+	private File currentFile;
 
 	/**
 	 * The public constructor creates a
@@ -46,7 +66,9 @@ public class FileSystemModel extends EventEmitter{
 				"/../ProPra-WS21-Basis/Beispiele");
 		fc.setFileFilter(
 				new FileNameExtensionFilter(
-						"Petri Net Markup Language", "pnml"));
+						"Petri Net Markup Language, binäre Petrinetze",
+						"pnml", "pnb"));
+		petriNetCache = new PetriNetCache(PetriNetCache.DEFAULT_CAPACITY);
 	}
 
 	/**
@@ -55,16 +77,17 @@ public class FileSystemModel extends EventEmitter{
 	 * @return the file name
 	 */
 	public String getCurrentFileName() {
-		return fc.getSelectedFile().getName();
+		return currentFile.getName();
 	}
 
 	/**
-	 * Returns a reference to the last read file.
+	 * Returns a reference to the last file whose Petri net has been read
+	 * successfully.
 	 * 
-	 * @return a reference to the file
+	 * @return a reference to the file, or null if no file has been read yet
 	 */
 	public File getCurrentFile() {
-		return fc.getSelectedFile();
+		return currentFile;
 	}
 
 	/**
@@ -78,7 +101,7 @@ public class FileSystemModel extends EventEmitter{
 	 * @return a {@link PetriNetModel} or null if the file can't be read
 	 */
 	public PetriNetModel readNewFile(JFrame frame) {
-		fc.setMultiSelectionEnabled(false);
+		prepareFileChooser(false);
 		int returnVal = fc.showOpenDialog(frame);
 		if (returnVal == JFileChooser.APPROVE_OPTION) {
 			File file = fc.getSelectedFile();
@@ -86,8 +109,7 @@ public class FileSystemModel extends EventEmitter{
 				fireEvent(Event.FILESYSTEM_INVALID_FILE);
 				return null;
 			} else {
-				checkPrevAndNextFiles();
-				return processFile(file);
+				return readCachedFile(file);
 			}
 		}
 		return null;
@@ -101,144 +123,208 @@ public class FileSystemModel extends EventEmitter{
 	 * @return a {@link PetriNetModel} or null if the file can't be read
 	 */
 	public PetriNetModel readNewFile(File file) {
-		fc.setSelectedFile(file);
 		if (!fileIsReadable(file)) {
 			fireEvent(Event.FILESYSTEM_INVALID_FILE);
 			return null;
 		} else {
-			checkPrevAndNextFiles();
-			return processFile(file);
+			return readCachedFile(file);
 		}
 	}
 
 	/**
-	 * Opens a file chooser to select multiple PNML files, reads all files and
-	 * returns a list of {@link PetriNetModel PetrinetModels}. If some files
-	 * can't be read, it fires a {@code FILESYSTEM_INVALID_FILE} event.
+	 * Opens a file chooser to select multiple PNML files and returns the
+	 * readable ones. The files aren't parsed yet, so the caller can parse them
+	 * in the background with {@link #parseFile}. If some files can't be read,
+	 * it fires a {@code FILESYSTEM_INVALID_FILE} event.
 	 * 
 	 * @param frame the {@link JFrame} from which the file chooser should be
 	 * started
-	 * @return a list of {@link PetriNetModel PetriNetModels}, the list is empty
-	 * if no file could be read
+	 * @return a list of {@link File Files}, sorted by name, or null if no file
+	 * could be read
 	 */
-	public List<PetriNetModel> readNewFiles(JFrame frame) {
-		fc.setMultiSelectionEnabled(true);
+	public List<File> selectFiles(JFrame frame) {
+		prepareFileChooser(true);
 		int returnVal = fc.showOpenDialog(frame);
 		if (returnVal == JFileChooser.APPROVE_OPTION) {
 			File[] files = fc.getSelectedFiles();
-			List<PetriNetModel> petriNets = new ArrayList<PetriNetModel>();
+			List<File> readableFiles = new ArrayList<File>();
 			Boolean containsUnreadableFile = false;
 			for (File file : files) {
 				if (!fileIsReadable(file)) {
 					containsUnreadableFile = true;
 				} else {
-					petriNets.add(processFile(file));
+					readableFiles.add(file);
 				}
 			}
 			if (containsUnreadableFile) {
 				fireEvent(Event.FILESYSTEM_INVALID_FILE);
 			}
 			/**
-			 * Sorts the read Petri net files alphabetically.
+			 * Sorts the Petri net files alphabetically.
 			 */
-			Collections.sort(petriNets, new Comparator<PetriNetModel>() {
+			Collections.sort(readableFiles, new Comparator<File>() {
 				@Override
-				public int compare(PetriNetModel o1, PetriNetModel o2) {
-					return o1.fileName.compareTo(o2.fileName);
+				public int compare(File o1, File o2) {
+					return o1.getName().compareTo(o2.getName());
 				}
 			});
-			if (petriNets.size() != 0) {
-				return petriNets;
+			if (readableFiles.size() != 0) {
+				return readableFiles;
 			}
 		}
 		return null;
 	}
 
 	/**
-	 * Fires an event to notify all listening views.
+	 * Passes a file to the PNML parser. The method doesn't touch the file
+	 * chooser, so it can be called from any thread.
 	 * 
-	 * @see Event
+	 * @param file the file to parse
+	 * @return the {@link PetriNetModel} from the file
+	 * @throws RuntimeException if the file can't be opened or contains
+	 * values which aren't valid PNML, e.g. a marking which isn't a number
 	 */
-	public void notifyGui() {
-		fireEvent(Event.FILESYSTEM_NEW_FILE_OPENED);
+	public static PetriNetModel parseFile(File file) {
+		return parseFile(file, false);
 	}
 
 	/**
-	 * Reads all readable PNML files in a directory.
+	 * Passes a file to the {@link PNMLStreamParser}, optionally skipping the
+	 * graphics of the places and transitions. Callers which only analyze the
+	 * Petri net, like the batch analysis, don't need the positions. Binary
+	 * Petri nets written by the {@link BinaryNetWriter} are loaded with the
+	 * {@link BinaryNetLoader} instead, always with their positions.
 	 * 
-	 * @return a list of {@link File Files}
+	 * @param file         the file to parse
+	 * @param skipGraphics {@code true} if the positions should be skipped
+	 * @return the {@link PetriNetModel} from the file
+	 * @throws RuntimeException if the file can't be opened or contains
+	 * values which aren't valid PNML, e.g. a marking which isn't a number
 	 */
-	private List<File> getAllFilesInDir() {
-		File dir = fc.getSelectedFile().getParentFile();
-		File[] files = dir.listFiles(new FilenameFilter() {
-			public boolean accept(File dir, String name) {
-				return name.toLowerCase().endsWith(".pnml");
+	public static PetriNetModel parseFile(File file, boolean skipGraphics) {
+		if (BinaryNetLoader.isBinaryNet(file)) {
+			try {
+				return BinaryNetLoader.load(file);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
 			}
-		});
-		if (files != null) {
-			Arrays.sort(files);
-			List<File> fileList = Arrays.asList(files);
-			return fileList;
-		} else {
-			return null;
 		}
+		PetriNetModel petriNet =
+				new PNMLStreamParser(file, skipGraphics).parse();
+		petriNet.fileName = file.getName();
+		return petriNet;
 	}
 
 	/**
-	 * Checks if the currrently selected PNML file has a previous or next file
-	 * and assigns references to the class attributes {@code nextFile} and
-	 * {@code prevFile}.
+	 * Saves a Petri net with its start marking into the last read file. The
+	 * file is written in its own format: binary Petri nets with the
+	 * {@link BinaryNetWriter}, all others as PNML with the {@link PNMLWriter}.
+	 * If the file has been written, the Petri net is marked as unchanged and
+	 * a {@code FILESYSTEM_FILE_SAVED} event is fired. Otherwise, or if no file
+	 * has been read yet, a {@code FILESYSTEM_SAVE_FAILED} event is fired and
+	 * the file is left as it was.
+	 * 
+	 * @param petriNet the Petri net to save
+	 * @return true if the file has been written, false otherwise
 	 */
-	private void checkPrevAndNextFiles() {
-		List<File> files = getAllFilesInDir();
-		int index = files.indexOf(fc.getSelectedFile());
-		/**
-		 * Case if the read file is the first in the directory and no
-		 * previous file is present.
-		 */
-		if (index == 0) {
-			prevFile = null;
-		} else {
-			prevFile = files.get(index - 1);
+	public boolean saveFile(PetriNetModel petriNet) {
+		File file = currentFile;
+		if (file == null) {
+			fireEvent(Event.FILESYSTEM_SAVE_FAILED);
+			return false;
 		}
-		/**
-		 * Case if the read file is the last in the directory and no next file
-		 * is present.
-		 */
-		if (index == files.size() - 1) {
-			nextFile = null;
-		} else {
-			nextFile = files.get(index + 1);
+		try {
+			if (BinaryNetLoader.isBinaryNet(file)) {
+				BinaryNetWriter.write(petriNet, file);
+			} else {
+				PNMLWriter.write(petriNet, file);
+			}
+		} catch (IOException e) {
+			System.err.println(e);
+			fireEvent(Event.FILESYSTEM_SAVE_FAILED);
+			return false;
+		} finally {
+			petriNetCache.invalidate(file);
 		}
+		petriNet.fileChanged = false;
+		fireEvent(Event.FILESYSTEM_FILE_SAVED);
+		return true;
 	}
 
 	/**
-	 * Passes the read file to the PNML parser.
+	 * Takes a Petri net from the {@link PetriNetCache}, parsing the file if
+	 * necessary. Once the Petri net has been read, the file becomes the
+	 * current file, and the previous and next file are looked up and
+	 * prefetched. If the file can't be parsed, e.g. because it isn't
+	 * well-formed XML or holds another type of Petri net, a
+	 * {@code FILESYSTEM_INVALID_FILE} event is fired, null is returned and
+	 * the current file stays as it was.
 	 * 
-	 * @param file the file to parse
-	 * @return the {@link PetriNetModel} from the file
+	 * @param file the file to read
+	 * @return the {@link PetriNetModel} from the file or null if the file
+	 * can't be parsed
 	 */
-	private PetriNetModel processFile(File file) {
-		PetriNetModel petriNet = new PetriNetModel();
-		PNMLParser pnmlParser = new PNMLParser(file, petriNet);
-		pnmlParser.initParser();
-		pnmlParser.parse();
-		petriNet.fileName = file.getName();
+	private PetriNetModel readCachedFile(File file) {
+		PetriNetModel petriNet;
+		try {
+			petriNet = petriNetCache.get(file);
+		} catch (RuntimeException e) {
+			System.err.println(e);
+			fireEvent(Event.FILESYSTEM_INVALID_FILE);
+			return null;
+		}
+		currentFile = file;
+		checkPrevAndNextFiles();
+		petriNetCache.prefetch(nextFile);
+		petriNetCache.prefetch(prevFile);
 		return petriNet;
 	}
 
 	/**
-	 * Checks if a file is readable and a PNML file. To do so, it compares
-	 * the file name with a list of all PNML files in the current directory.
+	 * Prepares the file chooser right before it is shown, so it starts at the
+	 * current file. A file chooser loads its directory in the background
+	 * whenever its selection changes, so reading a file doesn't select it
+	 * in the chooser, and files can be read from any thread.
+	 * 
+	 * @param multiSelection true if several files can be selected
+	 */
+	private void prepareFileChooser(boolean multiSelection) {
+		fc.setMultiSelectionEnabled(multiSelection);
+		if (currentFile != null) {
+			fc.setSelectedFile(currentFile);
+		}
+	}
+
+	/**
+	 * Fires an event to notify all listening views.
+	 * 
+	 * @see Event
+	 */
+	public void notifyGui() {
+		fireEvent(Event.FILESYSTEM_NEW_FILE_OPENED);
+	}
+
+	/**
+	 * Checks if the current PNML file has a previous or next file and assigns
+	 * references to the class attributes {@code nextFile} and
+	 * {@code prevFile}.
+	 */
+	private void checkPrevAndNextFiles() {
+		prevFile = DIRECTORY_INDEX.getPrevious(currentFile);
+		nextFile = DIRECTORY_INDEX.getNext(currentFile);
+	}
+
+	/**
+	 * Checks if a file is readable and a PNML file. To do so, it looks the
+	 * file up in the index of the PNML files in its directory.
 	 * 
 	 * @param file the file to check
 	 * @return true if the file is readable, false if it's not readable or not
 	 * a PNML file
 	 */
 	private boolean fileIsReadable(File file) {
-		List<File> pnmlFiles = getAllFilesInDir();
 		if (!file.canRead() ||
-				pnmlFiles.indexOf(file) == -1) {
+				!DIRECTORY_INDEX.contains(file)) {
 			return false;
 		} else {
 			return true;
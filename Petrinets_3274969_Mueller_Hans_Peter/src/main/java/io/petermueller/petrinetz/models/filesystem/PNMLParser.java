@@ -5,25 +5,34 @@ import propra.pnml.PNMLWopedParser;
 import io.petermueller.petrinetz.models.petrinet.*;
 
 /**
- * Parses PNML files and sends parsed information to the {@link PetriNetModel}.
- * This class is an extension of the Woped PNML Parser which was provided in
- * the demo project of the Praktikum.
+ * Parses PNML files and sends parsed information to a
+ * {@link PetriNetModel.Builder}. After {@link #parse()} the Petri net can be
+ * retrieved with {@link #getPetriNet()}. This class is an extension of the
+ * Woped PNML Parser which was provided in the demo project of the Praktikum.
  * 
  * @author Hans Peter Müller (3274969) and Praktikumsbetreuung FernUni Hagen
  */
 public class PNMLParser extends PNMLWopedParser {
-	private PetriNetModel model;
+	private PetriNetModel.Builder model;
 
 	/**
 	 * Initializes the parser.
 	 * 
 	 * @param file the file to parse
-	 * @param model the {@link PetriNetModel} in which the parsed information
-	 * should be saved
 	 */
-	public PNMLParser(File file, PetriNetModel model) {
+	public PNMLParser(File file) {
 		super(file);
-		this.model = model;
+		this.model = new PetriNetModel.Builder();
+	}
+
+	/**
+	 * Builds the {@link PetriNetModel} from the parsed information. Should be
+	 * called once after {@link #parse()}.
+	 * 
+	 * @return the parsed Petri net
+	 */
+	public PetriNetModel getPetriNet() {
+		return model.build();
 	}
 
 	/**
@@ -0,0 +1,481 @@
+package io.petermueller.petrinetz.models.filesystem;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import io.petermueller.petrinetz.models.petrinet.PetriNetModel;
+
+/**
+ * Parses PNML files with the cursor API of StAX and sends the parsed
+ * information straight to a {@link PetriNetModel.Builder}. It reads the same
+ * elements as the {@link PNMLParser}: places and transitions with their ids,
+ * names, positions and initial markings, and arcs with their source and
+ * target.
+ * 
+ * <p>Besides the WoPeD dialect, the parser reads P/T nets in the standard
+ * PNML format of ISO/IEC 15909-2, as used by the benchmark models of the
+ * Model Checking Contest: nets spread over nested {@code page} elements,
+ * arcs with weights in their {@code inscription}, and reference places and
+ * transitions, which stand for a node on another page. Since arcs may come
+ * before the nodes they connect, they are collected and added to the net at
+ * the end of the document. Nets of other types, e.g. colored nets, are
+ * rejected. Tool specific elements are skipped.
+ * 
+ * <p><strong>Implementation details:</strong><br>
+ * The {@link PNMLParser} reads the file with an {@code XMLEventReader}, which
+ * creates an event object for every tag and every piece of text, including
+ * the whitespace between tags, and hands positions and markings over as
+ * strings. This parser moves an {@link XMLStreamReader} over the file
+ * instead, which doesn't create any objects for the elements it passes.
+ * Attributes are looked up by index, and markings are parsed from the text
+ * buffer of the reader without creating a string.
+ * 
+ * <p>Only the {@code graphics} elements hold positions, and they make up
+ * most of a PNML file. If the positions aren't needed, e.g. when files are
+ * analyzed in headless mode, the parser can skip these elements entirely.
+ * 
+ * <p>Unlike the {@link PNMLParser}, the parser stops at the first error in
+ * the document and throws an exception.
+ * 
+ * @author Hans Peter Müller (3274969)
+ * @see    FileSystemModel#parseFile(File, boolean)
+ */
+public class PNMLStreamParser {
+	/**
+	 * The factories are configured once per thread, since looking up the
+	 * implementation is expensive and a factory isn't guaranteed to be thread
+	 * safe.
+	 */
+	private static final ThreadLocal<XMLInputFactory> FACTORY =
+			new ThreadLocal<XMLInputFactory>() {
+				@Override
+				protected XMLInputFactory initialValue() {
+					XMLInputFactory factory = XMLInputFactory.newInstance();
+					factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+					factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+					factory.setProperty(
+							XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES,
+							false);
+					return factory;
+				}
+			};
+	private static final int BUFFER_SIZE = 1 << 16;
+	private final File file;
+	private final boolean skipGraphics;
+	private final PetriNetModel.Builder model;
+	private final StringBuilder text;
+	private final List<PendingArc> arcs;
+	private final Map<String, String> references;
+	private String lastId;
+	private PendingArc currentArc;
+
+	/**
+	 * An arc which is added to the net at the end of the document.
+	 */
+	private static class PendingArc {
+		private final String id;
+		private final String source;
+		private final String target;
+		private int weight;
+
+		/**
+		 * Initializes an arc of weight 1.
+		 * 
+		 * @param id     the id of the arc
+		 * @param source the id of its source node
+		 * @param target the id of its target node
+		 */
+		private PendingArc(String id, String source, String target) {
+			this.id = id;
+			this.source = source;
+			this.target = target;
+			this.weight = 1;
+		}
+	}
+
+	/**
+	 * Initializes the parser.
+	 * 
+	 * @param file         the file to parse
+	 * @param skipGraphics {@code true} if the {@code graphics} elements
+	 *                     should be skipped, leaving all positions at 0
+	 */
+	public PNMLStreamParser(File file, boolean skipGraphics) {
+		this.file = file;
+		this.skipGraphics = skipGraphics;
+		this.model = new PetriNetModel.Builder();
+		this.text = new StringBuilder();
+		this.arcs = new ArrayList<PendingArc>();
+		this.references = new HashMap<String, String>();
+	}
+
+	/**
+	 * Parses the file and builds the {@link PetriNetModel}. Should be called
+	 * once.
+	 * 
+	 * @return the parsed Petri net
+	 * @throws UncheckedIOException     if the file can't be read
+	 * @throws IllegalArgumentException if the file isn't well-formed XML,
+	 *                                  contains a position, marking or
+	 *                                  weight which isn't a number, or isn't
+	 *                                  a P/T net
+	 */
+	public PetriNetModel parse() {
+		try (InputStream input = new BufferedInputStream(
+				new FileInputStream(file), BUFFER_SIZE)) {
+			XMLStreamReader reader =
+					FACTORY.get().createXMLStreamReader(input);
+			try {
+				readDocument(reader);
+			} finally {
+				reader.close();
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		} catch (XMLStreamException e) {
+			throw new IllegalArgumentException(
+					"Fehler beim Parsen des PNML Dokuments. " + e.getMessage(),
+					e);
+		}
+		return model.build();
+	}
+
+	/**
+	 * Reads the document up to its end and hands the elements of the net to
+	 * the builder, the arcs last.
+	 * 
+	 * @param reader the reader at the start of the document
+	 * @throws XMLStreamException if the document isn't well-formed
+	 */
+	private void readDocument(XMLStreamReader reader)
+			throws XMLStreamException {
+		while (reader.hasNext()) {
+			int event = reader.next();
+			if (event == XMLStreamConstants.START_ELEMENT) {
+				readStartElement(reader);
+			} else if (event == XMLStreamConstants.END_ELEMENT) {
+				if (isElement(reader, "place") ||
+						isElement(reader, "transition")) {
+					lastId = null;
+				} else if (isElement(reader, "arc")) {
+					currentArc = null;
+				}
+			}
+		}
+		for (PendingArc arc : arcs) {
+			model.addArc(arc.id, resolve(arc.source), resolve(arc.target),
+					arc.weight);
+		}
+	}
+
+	/**
+	 * Handles the start of an element. Elements which are read completely,
+	 * like names and markings, leave the reader at their end tag.
+	 * 
+	 * @param reader the reader at a start tag
+	 * @throws XMLStreamException if the document isn't well-formed
+	 */
+	private void readStartElement(XMLStreamReader reader)
+			throws XMLStreamException {
+		if (isElement(reader, "net")) {
+			checkNetType(reader);
+		} else if (isElement(reader, "place")) {
+			lastId = reader.getAttributeValue(null, "id");
+			if (lastId != null) {
+				model.addPlace(lastId);
+			} else {
+				System.err.println("Stelle ohne id wurde verworfen!");
+			}
+		} else if (isElement(reader, "transition")) {
+			lastId = reader.getAttributeValue(null, "id");
+			if (lastId != null) {
+				model.addTransition(lastId);
+			} else {
+				System.err.println("Transition ohne id wurde verworfen!");
+			}
+		} else if (isElement(reader, "arc")) {
+			readArc(reader);
+		} else if (isElement(reader, "referencePlace") ||
+				isElement(reader, "referenceTransition")) {
+			readReference(reader);
+		} else if (isElement(reader, "toolspecific") ||
+				(isElement(reader, "graphics") && skipGraphics)) {
+			skipElement(reader);
+		} else if (currentArc != null &&
+				isElement(reader, "inscription")) {
+			if (readText(reader) && !isWhitespace(text)) {
+				currentArc.weight = parseInt(text);
+				if (currentArc.weight < 1) {
+					throw new IllegalArgumentException("Kante " + currentArc.id
+							+ " hat kein positives Gewicht.");
+				}
+			}
+		} else if (lastId == null) {
+			return;
+		} else if (isElement(reader, "position")) {
+			readPosition(reader);
+		} else if (isElement(reader, "name")) {
+			if (readText(reader) && !isWhitespace(text)) {
+				model.setName(lastId, text.toString());
+			}
+		} else if (isElement(reader, "initialMarking")) {
+			if (readText(reader) && !isWhitespace(text)) {
+				model.setTokens(lastId, parseInt(text));
+			}
+		}
+	}
+
+	/**
+	 * Checks that a net is a P/T net. The WoPeD dialect and standard PNML
+	 * both name their type {@code ptNet}, with different prefixes.
+	 * 
+	 * @param reader the reader at the start tag of a net
+	 * @throws IllegalArgumentException if the net has another type
+	 */
+	private static void checkNetType(XMLStreamReader reader) {
+		String type = reader.getAttributeValue(null, "type");
+		if (type != null && !type.toLowerCase().contains("ptnet")) {
+			throw new IllegalArgumentException(
+					"Nur P/T-Netze werden unterstützt, nicht " + type + ".");
+		}
+	}
+
+	/**
+	 * Reads an arc from the attributes of its start tag. The arc is added
+	 * to the net at the end of the document.
+	 * 
+	 * @param reader the reader at the start tag of an arc
+	 */
+	private void readArc(XMLStreamReader reader) {
+		String id = null;
+		String source = null;
+		String target = null;
+		for (int i = 0; i < reader.getAttributeCount(); i++) {
+			String name = reader.getAttributeLocalName(i);
+			if (name.equalsIgnoreCase("id")) {
+				id = reader.getAttributeValue(i);
+			} else if (name.equalsIgnoreCase("source")) {
+				source = reader.getAttributeValue(i);
+			} else if (name.equalsIgnoreCase("target")) {
+				target = reader.getAttributeValue(i);
+			}
+		}
+		if (id != null && source != null && target != null) {
+			currentArc = new PendingArc(id, source, target);
+			arcs.add(currentArc);
+		} else {
+			System.err.println("Unvollständige Kante wurde verworfen!");
+		}
+	}
+
+	/**
+	 * Reads a reference place or transition, which stands for the node with
+	 * the id in its {@code ref} attribute.
+	 * 
+	 * @param reader the reader at the start tag of a reference node
+	 */
+	private void readReference(XMLStreamReader reader) {
+		String id = reader.getAttributeValue(null, "id");
+		String ref = reader.getAttributeValue(null, "ref");
+		if (id != null && ref != null) {
+			references.put(id, ref);
+		} else {
+			System.err.println("Unvollständige Referenz wurde verworfen!");
+		}
+	}
+
+	/**
+	 * Follows reference nodes to the node they stand for. A reference may
+	 * point to another reference, but not in a cycle.
+	 * 
+	 * @param id the id of a node or a reference node
+	 * @return   the id of the node
+	 * @throws IllegalArgumentException if the references form a cycle
+	 */
+	private String resolve(String id) {
+		String node = id;
+		for (int i = 0; i <= references.size(); i++) {
+			String ref = references.get(node);
+			if (ref == null) {
+				return node;
+			}
+			node = ref;
+		}
+		throw new IllegalArgumentException(
+				"Zyklische Referenz auf den Knoten " + id + ".");
+	}
+
+	/**
+	 * Reads the position of the current place or transition from the
+	 * attributes of a {@code position} tag.
+	 * 
+	 * @param reader the reader at the start tag of a position
+	 */
+	private void readPosition(XMLStreamReader reader) {
+		String x = null;
+		String y = null;
+		for (int i = 0; i < reader.getAttributeCount(); i++) {
+			String name = reader.getAttributeLocalName(i);
+			if (name.equalsIgnoreCase("x")) {
+				x = reader.getAttributeValue(i);
+			} else if (name.equalsIgnoreCase("y")) {
+				y = reader.getAttributeValue(i);
+			}
+		}
+		if (x != null && y != null) {
+			model.setPosition(lastId, parseCoordinate(x),
+					parseCoordinate(y));
+		} else {
+			System.err.println("Unvollständige Position wurde verworfen!");
+		}
+	}
+
+	/**
+	 * Reads the content of the {@code text} child of the current element into
+	 * {@link #text} and moves the reader to the end tag of the current
+	 * element.
+	 * 
+	 * @param reader the reader at the start tag of an element
+	 * @return       {@code true} if the element has a {@code text} child,
+	 *               {@code false} otherwise
+	 * @throws XMLStreamException if the document isn't well-formed
+	 */
+	private boolean readText(XMLStreamReader reader)
+			throws XMLStreamException {
+		text.setLength(0);
+		boolean isFound = false;
+		int depth = 1;
+		while (depth > 0) {
+			int event = reader.next();
+			if (event == XMLStreamConstants.START_ELEMENT) {
+				if (depth == 1 && !isFound && isElement(reader, "text")) {
+					isFound = true;
+					readCharacters(reader);
+				} else if (isElement(reader, "graphics") && skipGraphics) {
+					skipElement(reader);
+				} else {
+					depth++;
+				}
+			} else if (event == XMLStreamConstants.END_ELEMENT) {
+				depth--;
+			}
+		}
+		return isFound;
+	}
+
+	/**
+	 * Appends the characters of a text-only element to {@link #text} and
+	 * moves the reader to its end tag.
+	 * 
+	 * @param reader the reader at the start tag of the element
+	 * @throws XMLStreamException if the element contains other elements
+	 */
+	private void readCharacters(XMLStreamReader reader)
+			throws XMLStreamException {
+		int event;
+		while ((event = reader.next()) != XMLStreamConstants.END_ELEMENT) {
+			if (event == XMLStreamConstants.CHARACTERS ||
+					event == XMLStreamConstants.CDATA ||
+					event == XMLStreamConstants.SPACE) {
+				text.append(reader.getTextCharacters(), reader.getTextStart(),
+						reader.getTextLength());
+			} else if (event == XMLStreamConstants.START_ELEMENT) {
+				throw new XMLStreamException(
+						"Unerwartetes Element in einem Text.",
+						reader.getLocation());
+			}
+		}
+	}
+
+	/**
+	 * Moves the reader to the end tag of the current element, passing all of
+	 * its content.
+	 * 
+	 * @param reader the reader at the start tag of an element
+	 * @throws XMLStreamException if the document isn't well-formed
+	 */
+	private static void skipElement(XMLStreamReader reader)
+			throws XMLStreamException {
+		int depth = 1;
+		while (depth > 0) {
+			int event = reader.next();
+			if (event == XMLStreamConstants.START_ELEMENT) {
+				depth++;
+			} else if (event == XMLStreamConstants.END_ELEMENT) {
+				depth--;
+			}
+		}
+	}
+
+	/**
+	 * Checks the local name of the current tag, ignoring case and namespace.
+	 * 
+	 * @param reader the reader at a start or end tag
+	 * @param name   the name to compare to
+	 * @return       {@code true} if the tag has this name, {@code false}
+	 *               otherwise
+	 */
+	private static boolean isElement(XMLStreamReader reader, String name) {
+		return reader.getLocalName().equalsIgnoreCase(name);
+	}
+
+	/**
+	 * Checks if a text consists of whitespace only.
+	 * 
+	 * @param chars a text
+	 * @return      {@code true} if the text is blank, {@code false} otherwise
+	 */
+	private static boolean isWhitespace(CharSequence chars) {
+		for (int i = 0; i < chars.length(); i++) {
+			if (!Character.isWhitespace(chars.charAt(i))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Parses a coordinate. Standard PNML allows decimal coordinates, which
+	 * are rounded to whole pixels.
+	 * 
+	 * @param value the value of a coordinate attribute
+	 * @return      the coordinate
+	 * @throws NumberFormatException if the value isn't a number
+	 */
+	private static int parseCoordinate(String value) {
+		if (value.indexOf('.') >= 0) {
+			return (int) Math.round(Double.parseDouble(value));
+		}
+		return parseInt(value);
+	}
+
+	/**
+	 * Parses a decimal integer, ignoring surrounding whitespace.
+	 * 
+	 * @param chars a text holding a number
+	 * @return      the number
+	 * @throws NumberFormatException if the text isn't a number
+	 */
+	private static int parseInt(CharSequence chars) {
+		int begin = 0;
+		int end = chars.length();
+		while (begin < end && Character.isWhitespace(chars.charAt(begin))) {
+			begin++;
+		}
+		while (end > begin && Character.isWhitespace(chars.charAt(end - 1))) {
+			end--;
+		}
+		return Integer.parseInt(chars, begin, end, 10);
+	}
+}
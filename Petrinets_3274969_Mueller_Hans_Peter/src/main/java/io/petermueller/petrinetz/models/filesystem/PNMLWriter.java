@@ -0,0 +1,221 @@
+package io.petermueller.petrinetz.models.filesystem;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import io.petermueller.petrinetz.models.petrinet.Arc;
+import io.petermueller.petrinetz.models.petrinet.Location;
+import io.petermueller.petrinetz.models.petrinet.PetriNetModel;
+import io.petermueller.petrinetz.models.petrinet.Place;
+import io.petermueller.petrinetz.models.petrinet.Transition;
+
+/**
+ * Writes Petri nets as PNML files in the WoPeD dialect, which the
+ * {@link PNMLStreamParser} and the {@link PNMLParser} read. It writes the
+ * same elements as the {@code PNMLWopedWriter} of the base project: places
+ * and transitions with their ids, names, positions and start markings, and
+ * arcs with their source, target and weight.
+ * 
+ * <p><strong>Implementation details:</strong><br>
+ * The Petri net is streamed into the file with an {@link XMLStreamWriter},
+ * so no document is built in memory, no matter how large the Petri net is.
+ * The writer writes into a character buffer, which is encoded and handed to
+ * the file in large blocks.
+ * 
+ * <p>Files are written into a temporary file in the same directory, which
+ * is flushed to the disk and then moved over the file atomically with an
+ * {@link AtomicFile}. If writing fails, the original file is left untouched,
+ * and a reader never sees a partly written file. The file keeps its
+ * permissions.
+ * 
+ * @author Hans Peter Müller (3274969)
+ * @see    FileSystemModel#saveFile(PetriNetModel)
+ */
+public class PNMLWriter {
+	/**
+	 * The factory is looked up once per thread, since looking up the
+	 * implementation is expensive and a factory isn't guaranteed to be thread
+	 * safe.
+	 */
+	private static final ThreadLocal<XMLOutputFactory> FACTORY =
+			new ThreadLocal<XMLOutputFactory>() {
+				@Override
+				protected XMLOutputFactory initialValue() {
+					return XMLOutputFactory.newInstance();
+				}
+			};
+	/**
+	 * The type of the nets written by WoPeD.
+	 */
+	private static final String NET_TYPE =
+			"http://www.informatik.hu-berlin.de/top/pntd/ptNetb";
+	private static final char[] INDENT = "\n            ".toCharArray();
+	private static final int BUFFER_SIZE = 1 << 16;
+	private final XMLStreamWriter writer;
+
+	/**
+	 * Initializes a writer for a stream.
+	 * 
+	 * @param writer the stream to write
+	 */
+	private PNMLWriter(XMLStreamWriter writer) {
+		this.writer = writer;
+	}
+
+	/**
+	 * Writes a Petri net with its start marking into a PNML file, replacing
+	 * the file atomically.
+	 * 
+	 * @param petriNet the Petri net to write
+	 * @param file     the file to write
+	 * @throws IOException if the file can't be written
+	 */
+	public static void write(PetriNetModel petriNet, File file)
+			throws IOException {
+		Path target = file.getAbsoluteFile().toPath();
+		Path temporary = AtomicFile.createTemporary(target);
+		try {
+			try (FileOutputStream output =
+							new FileOutputStream(temporary.toFile());
+					BufferedWriter buffer = new BufferedWriter(
+							new OutputStreamWriter(output,
+									StandardCharsets.UTF_8),
+							BUFFER_SIZE)) {
+				XMLStreamWriter writer =
+						FACTORY.get().createXMLStreamWriter(buffer);
+				new PNMLWriter(writer).writeDocument(petriNet);
+				writer.close();
+				buffer.flush();
+				output.getFD().sync();
+			} catch (XMLStreamException e) {
+				throw new IOException("Can't write PNML file.", e);
+			}
+			AtomicFile.replace(temporary, target);
+		} finally {
+			Files.deleteIfExists(temporary);
+		}
+	}
+
+	/**
+	 * Writes the document: first the places, then the transitions, then the
+	 * arcs, each in the order of the Petri net, so the Petri net is read in
+	 * the same order again. Arcs which don't connect two locations are left
+	 * out.
+	 * 
+	 * @param petriNet the Petri net to write
+	 * @throws XMLStreamException if the stream can't be written
+	 */
+	private void writeDocument(PetriNetModel petriNet)
+			throws XMLStreamException {
+		writer.writeStartDocument("UTF-8", "1.0");
+		newLine(0);
+		writer.writeStartElement("pnml");
+		newLine(1);
+		writer.writeStartElement("net");
+		writer.writeAttribute("type", NET_TYPE);
+		writer.writeAttribute("id", "noID");
+		for (Place place : petriNet.places) {
+			writeLocation("place", place);
+			if (place.startTokens > 0) {
+				writeText(3, "initialMarking",
+						Integer.toString(place.startTokens));
+			}
+			newLine(2);
+			writer.writeEndElement();
+		}
+		for (Transition transition : petriNet.transitions) {
+			writeLocation("transition", transition);
+			newLine(2);
+			writer.writeEndElement();
+		}
+		for (Arc arc : petriNet.arcs) {
+			if (arc.source == null || arc.target == null) {
+				continue;
+			}
+			newLine(2);
+			writer.writeStartElement("arc");
+			if (arc.id != null) {
+				writer.writeAttribute("id", arc.id);
+			}
+			writer.writeAttribute("source", arc.source.id);
+			writer.writeAttribute("target", arc.target.id);
+			writeText(3, "inscription", Integer.toString(arc.weight));
+			newLine(2);
+			writer.writeEndElement();
+		}
+		newLine(1);
+		writer.writeEndElement();
+		newLine(0);
+		writer.writeEndElement();
+		newLine(0);
+		writer.writeEndDocument();
+	}
+
+	/**
+	 * Starts the element of a location and writes its id, name and position.
+	 * The element is left open for further children.
+	 * 
+	 * @param element  the name of the element
+	 * @param location the place or transition
+	 * @throws XMLStreamException if the stream can't be written
+	 */
+	private void writeLocation(String element, Location location)
+			throws XMLStreamException {
+		newLine(2);
+		writer.writeStartElement(element);
+		writer.writeAttribute("id", location.id);
+		if (location.name != null) {
+			writeText(3, "name", location.name);
+		}
+		newLine(3);
+		writer.writeStartElement("graphics");
+		newLine(4);
+		writer.writeEmptyElement("position");
+		writer.writeAttribute("x", Integer.toString(location.x));
+		/*
+		 * The y-axis was flipped when the file was read.
+		 */
+		writer.writeAttribute("y", Integer.toString(location.y * (-1)));
+		newLine(3);
+		writer.writeEndElement();
+	}
+
+	/**
+	 * Writes an element which holds a text, like a name or a marking.
+	 * 
+	 * @param depth   the depth of the element
+	 * @param element the name of the element
+	 * @param text    the text
+	 * @throws XMLStreamException if the stream can't be written
+	 */
+	private void writeText(int depth, String element, String text)
+			throws XMLStreamException {
+		newLine(depth);
+		writer.writeStartElement(element);
+		newLine(depth + 1);
+		writer.writeStartElement("text");
+		writer.writeCharacters(text);
+		writer.writeEndElement();
+		newLine(depth);
+		writer.writeEndElement();
+	}
+
+	/**
+	 * Starts a new line indented by two spaces per level, like the files
+	 * written by WoPeD.
+	 * 
+	 * @param depth the depth of the next element
+	 * @throws XMLStreamException if the stream can't be written
+	 */
+	private void newLine(int depth) throws XMLStreamException {
+		writer.writeCharacters(INDENT, 0, 1 + 2 * depth);
+	}
+}
@@ -0,0 +1,251 @@
+package io.petermueller.petrinetz.models.filesystem;
+
+import java.io.File;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import io.petermueller.petrinetz.models.petrinet.PetriNetModel;
+import io.petermueller.petrinetz.models.rgraph.RGraphModel;
+
+/**
+ * Keeps recently used Petri nets parsed and compiled, so flipping through
+ * the files of a directory doesn't parse a file again. Files can be
+ * prefetched, i.e. parsed on a background thread before they are opened.
+ * Together with a Petri net, the reachability graph computed for it by an
+ * analysis can be kept, so it is shown again when the file is opened again.
+ * 
+ * <p><strong>Implementation details:</strong><br>
+ * The cache holds one entry per file in access order and drops the least
+ * recently used entry when it holds more than its capacity. Each entry holds
+ * the task parsing the file, which runs either on the background thread or,
+ * if the file is needed before the background thread got to it, on the
+ * thread asking for it. Prefetch tasks of dropped entries are cancelled.
+ * 
+ * <p>The Petri nets in the cache are never handed out, only independent
+ * copies of them, since the token game changes the Petri net it is played
+ * on. The same holds for the reachability graphs. An entry is parsed again
+ * if the modification time or the size of its file changed.
+ * 
+ * @author Hans Peter Müller (3274969)
+ * @see    FileSystemModel
+ */
+public class PetriNetCache {
+	/**
+	 * The number of Petri nets kept by default: the open one, its neighbours
+	 * and a few recently opened ones.
+	 */
+	public static final int DEFAULT_CAPACITY = 8;
+	private final LinkedHashMap<File, Entry> entries;
+	private final ThreadPoolExecutor executor;
+
+	/**
+	 * A parsed file and the reachability graph computed for it.
+	 */
+	private static class Entry {
+		private final FutureTask<PetriNetModel> task;
+		private final long lastModified;
+		private final long length;
+		private RGraphModel rGraph;
+
+		/**
+		 * Initializes an entry for a file which isn't parsed yet.
+		 * 
+		 * @param file the file to parse
+		 */
+		private Entry(final File file) {
+			this.lastModified = file.lastModified();
+			this.length = file.length();
+			this.task = new FutureTask<PetriNetModel>(
+					new Callable<PetriNetModel>() {
+						@Override
+						public PetriNetModel call() {
+							PetriNetModel petriNet =
+									FileSystemModel.parseFile(file);
+							petriNet.getStructure();
+							return petriNet;
+						}
+					});
+		}
+
+		/**
+		 * Checks if the file was changed since the entry was created.
+		 * 
+		 * @param file the file of the entry
+		 * @return     {@code true} if the entry still matches the file,
+		 *             {@code false} otherwise
+		 */
+		private boolean isFresh(File file) {
+			return file.lastModified() == lastModified &&
+					file.length() == length;
+		}
+	}
+
+	/**
+	 * Initializes an empty cache with one background thread. The thread is
+	 * started on the first prefetch and ends when there is nothing to do.
+	 * 
+	 * @param capacity the number of Petri nets to keep
+	 */
+	public PetriNetCache(final int capacity) {
+		entries = new LinkedHashMap<File, Entry>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<File, Entry> eldest) {
+				if (size() > capacity) {
+					eldest.getValue().task.cancel(false);
+					return true;
+				}
+				return false;
+			}
+		};
+		executor = new ThreadPoolExecutor(1, 1, 10, TimeUnit.SECONDS,
+				new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+					@Override
+					public Thread newThread(Runnable runnable) {
+						Thread thread = new Thread(runnable, "PNML prefetch");
+						thread.setDaemon(true);
+						thread.setPriority(Thread.MIN_PRIORITY);
+						return thread;
+					}
+				});
+		executor.allowCoreThreadTimeOut(true);
+	}
+
+	/**
+	 * Parses a file on the background thread unless it is in the cache
+	 * already.
+	 * 
+	 * @param file the file to parse, may be {@code null}
+	 */
+	public synchronized void prefetch(File file) {
+		if (file == null) {
+			return;
+		}
+		Entry entry = entries.get(file);
+		if (entry == null || !entry.isFresh(file)) {
+			entry = new Entry(file);
+			entries.put(file, entry);
+			executor.execute(entry.task);
+		}
+	}
+
+	/**
+	 * Returns a Petri net from the cache. If the file isn't in the cache or
+	 * was changed, it is parsed on the calling thread. If it is being parsed
+	 * on the background thread, the method waits for the result.
+	 * 
+	 * @param file the file to read
+	 * @return     an independent copy of the parsed Petri net
+	 * @throws RuntimeException if the file can't be parsed
+	 * @see        FileSystemModel#parseFile(File)
+	 */
+	public PetriNetModel get(File file) {
+		Entry entry;
+		synchronized (this) {
+			entry = entries.get(file);
+			if (entry == null || !entry.isFresh(file)) {
+				entry = new Entry(file);
+				entries.put(file, entry);
+			}
+		}
+		/*
+		 * Runs the task here if the background thread hasn't started it yet.
+		 * A task runs only once, so this does nothing otherwise.
+		 */
+		entry.task.run();
+		try {
+			return new PetriNetModel(entry.task.get());
+		} catch (ExecutionException e) {
+			remove(file, entry);
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new IllegalStateException(e.getCause());
+		} catch (CancellationException e) {
+			/*
+			 * The entry was dropped by another thread before the task ran.
+			 */
+			return FileSystemModel.parseFile(file);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return FileSystemModel.parseFile(file);
+		}
+	}
+
+	/**
+	 * Keeps the reachability graph computed for the Petri net of a file. The
+	 * graph is only kept if the Petri net is the one in the file, i.e. if its
+	 * start marking wasn't changed before the graph was computed.
+	 * 
+	 * @param file     the file of the Petri net
+	 * @param petriNet the Petri net the graph was computed for
+	 * @param rGraph   the reachability graph
+	 */
+	public synchronized void putGraph(
+			File file,
+			PetriNetModel petriNet,
+			RGraphModel rGraph) {
+		Entry entry = entries.get(file);
+		if (entry == null || !entry.task.isDone() || !entry.isFresh(file)) {
+			return;
+		}
+		try {
+			if (entry.task.get().getFingerprint().equals(
+					petriNet.getFingerprint())) {
+				entry.rGraph = new RGraphModel(rGraph);
+			}
+		} catch (InterruptedException | ExecutionException e) {
+			System.err.println(e);
+		}
+	}
+
+	/**
+	 * Returns the reachability graph kept for the Petri net of a file.
+	 * 
+	 * @param file the file of the Petri net
+	 * @return     an independent copy of the graph, or {@code null} if no
+	 *             graph was kept or the file was changed
+	 */
+	public synchronized RGraphModel getGraph(File file) {
+		Entry entry = entries.get(file);
+		if (entry == null || entry.rGraph == null || !entry.isFresh(file)) {
+			return null;
+		}
+		return new RGraphModel(entry.rGraph);
+	}
+
+	/**
+	 * Drops the entry of a file, e.g. after the file has been written. A file
+	 * may be changed within the resolution of its modification time without
+	 * changing its size, so the cache can't always tell by itself.
+	 * 
+	 * @param file the file whose entry should be dropped
+	 */
+	public synchronized void invalidate(File file) {
+		Entry entry = entries.remove(file);
+		if (entry != null) {
+			entry.task.cancel(false);
+		}
+	}
+
+	/**
+	 * Removes an entry whose file couldn't be parsed, unless it was replaced
+	 * in the meantime.
+	 * 
+	 * @param file  the file of the entry
+	 * @param entry the entry
+	 */
+	private synchronized void remove(File file, Entry entry) {
+		if (entries.get(file) == entry) {
+			entries.remove(file);
+		}
+	}
+}
@@ -1,5 +1,10 @@
 /**
- * Offers methods for interacting with the file system.
+ * Offers methods for interacting with the file system. The
+ * {@link io.petermueller.petrinetz.models.filesystem.DirectoryIndex} keeps
+ * the PNML files of the used directories sorted, so they don't have to be
+ * listed again for every file that is opened, and the
+ * {@link io.petermueller.petrinetz.models.filesystem.PetriNetCache} keeps the
+ * recently opened and neighbouring Petri nets parsed.
  * 
  * @author Hans Peter Müller (3274969)
  */
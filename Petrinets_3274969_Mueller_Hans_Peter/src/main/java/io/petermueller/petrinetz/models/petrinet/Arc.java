@@ -2,7 +2,8 @@ package io.petermueller.petrinetz.models.petrinet;
 
 /**
  * A directed arc pointing from one location to another. An {@code Arc} holds
- * references to a source and target {@link Location}.
+ * references to a source and target {@link Location} and the number of
+ * markers it moves when its transition fires.
  * 
  * @author Hans Peter Müller (3274969)
  */
@@ -19,17 +20,35 @@ public class Arc {
 	 * Reference to the target {@link Location}.
 	 */
 	public Location target;
+	/**
+	 * The number of markers the arc moves, 1 unless the arc has an
+	 * inscription.
+	 */
+	public int weight;
 
 	/**
-	 * Initializes an arc.
+	 * Initializes an arc of weight 1.
 	 * 
 	 * @param id a unique id
 	 * @param source a reference to the source {@link Location}
 	 * @param target a reference to the target {@link Location}
 	 */
 	public Arc(String id, Location source, Location target) {
+		this(id, source, target, 1);
+	}
+
+	/**
+	 * Initializes an arc.
+	 * 
+	 * @param id a unique id
+	 * @param source a reference to the source {@link Location}
+	 * @param target a reference to the target {@link Location}
+	 * @param weight the number of markers the arc moves
+	 */
+	public Arc(String id, Location source, Location target, int weight) {
 		this.id = id;
 		this.source = source;
 		this.target = target;
+		this.weight = weight;
 	}
 }
@@ -0,0 +1,172 @@
+package io.petermueller.petrinetz.models.petrinet;
+
+import java.util.BitSet;
+
+/**
+ * The marking of a Petri net together with the set of enabled transitions.
+ * A {@code NetState} works on a compiled {@link NetStructure} and keeps the
+ * set of enabled transitions up to date incrementally.
+ * 
+ * <p><strong>Implementation details:</strong><br>
+ * For each transition, the state counts the input places that hold fewer
+ * markers than the transition needs (the <em>deficit</em>). A transition is
+ * enabled if its deficit is zero. When the markers on a place change, only
+ * the transitions consuming from that place are looked at, so firing a
+ * transition costs time proportional to the number of arcs around the places
+ * it touches instead of the size of the whole net.
+ * 
+ * <p>Any number of states can share one {@link NetStructure}. Since the
+ * structure is never changed, states of the same net can be used by different
+ * analyses or threads at the same time, as long as each state itself is only
+ * used by one thread.
+ * 
+ * @author Hans Peter Müller (3274969)
+ * @see    NetStructure
+ */
+public class NetState {
+	private final NetStructure structure;
+	private final int[] tokens;
+	private final int[] deficit;
+	private final BitSet enabled;
+
+	/**
+	 * Initializes a state with the given marking.
+	 * 
+	 * @param structure the compiled structure of the Petri net
+	 * @param marking   the markers of each place, indexed by place. The array
+	 *                  is copied.
+	 */
+	public NetState(NetStructure structure, int[] marking) {
+		this.structure = structure;
+		this.tokens = new int[structure.placeCount];
+		this.deficit = new int[structure.transitionCount];
+		this.enabled = new BitSet(structure.transitionCount);
+		setMarking(marking);
+	}
+
+	/**
+	 * Initializes an independent copy of another state. Both states share the
+	 * same immutable {@link NetStructure}, so copying only costs the size of
+	 * the marking.
+	 * 
+	 * @param source the state to copy
+	 */
+	public NetState(NetState source) {
+		this.structure = source.structure;
+		this.tokens = source.tokens.clone();
+		this.deficit = source.deficit.clone();
+		this.enabled = (BitSet) source.enabled.clone();
+	}
+
+	/**
+	 * Returns the compiled structure this state works on.
+	 * 
+	 * @return the structure of the Petri net
+	 */
+	public NetStructure getStructure() {
+		return structure;
+	}
+
+	/**
+	 * Returns the amount of markers on a place.
+	 * 
+	 * @param place the index of the place
+	 * @return      the amount of markers
+	 */
+	public int getTokens(int place) {
+		return tokens[place];
+	}
+
+	/**
+	 * Sets the amount of markers on a single place and updates the transitions
+	 * consuming from it.
+	 * 
+	 * @param place  the index of the place
+	 * @param amount the new amount of markers
+	 */
+	public void setTokens(int place, int amount) {
+		int old = tokens[place];
+		tokens[place] = amount;
+		NetStructure net = structure;
+		for (int i = net.consumerStart[place]; i < net.consumerStart[place + 1];
+				i++) {
+			int weight = net.consumerWeights[i];
+			boolean wasMissing = old < weight;
+			boolean isMissing = amount < weight;
+			if (wasMissing != isMissing) {
+				int transition = net.consumerTransitions[i];
+				deficit[transition] += isMissing ? 1 : -1;
+				enabled.set(transition, deficit[transition] == 0);
+			}
+		}
+	}
+
+	/**
+	 * Replaces the whole marking and evaluates all transitions again.
+	 * 
+	 * @param marking the markers of each place, indexed by place
+	 */
+	public void setMarking(int[] marking) {
+		NetStructure net = structure;
+		System.arraycopy(marking, 0, tokens, 0, net.placeCount);
+		enabled.clear();
+		for (int t = 0; t < net.transitionCount; t++) {
+			int missing = 0;
+			for (int i = net.preStart[t]; i < net.preStart[t + 1]; i++) {
+				if (tokens[net.prePlaces[i]] < net.preWeights[i]) {
+					missing++;
+				}
+			}
+			deficit[t] = missing;
+			if (missing == 0) {
+				enabled.set(t);
+			}
+		}
+	}
+
+	/**
+	 * Checks if a transition is enabled.
+	 * 
+	 * @param transition the index of the transition
+	 * @return           {@code true} if the transition can be fired,
+	 *                   {@code false} otherwise
+	 */
+	public boolean isEnabled(int transition) {
+		return deficit[transition] == 0;
+	}
+
+	/**
+	 * Returns the set of enabled transitions.
+	 * 
+	 * @return a copy of the set of enabled transition indices
+	 */
+	public BitSet getEnabledTransitions() {
+		return (BitSet) enabled.clone();
+	}
+
+	/**
+	 * Fires a transition if it is enabled. Only the places of the transition
+	 * and the transitions consuming from them are updated.
+	 * 
+	 * @param transition the index of the transition
+	 * @return           {@code true} if the transition was fired,
+	 *                   {@code false} if it isn't enabled
+	 */
+	public boolean fire(int transition) {
+		if (deficit[transition] != 0) {
+			return false;
+		}
+		NetStructure net = structure;
+		for (int i = net.preStart[transition]; i < net.preStart[transition + 1];
+				i++) {
+			int place = net.prePlaces[i];
+			setTokens(place, tokens[place] - net.preWeights[i]);
+		}
+		for (int i = net.postStart[transition];
+				i < net.postStart[transition + 1]; i++) {
+			int place = net.postPlaces[i];
+			setTokens(place, tokens[place] + net.postWeights[i]);
+		}
+		return true;
+	}
+}
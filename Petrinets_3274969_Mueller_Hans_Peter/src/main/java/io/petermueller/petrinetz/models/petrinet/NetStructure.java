@@ -0,0 +1,692 @@
+package io.petermueller.petrinetz.models.petrinet;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The compiled structure of a {@link PetriNetModel Petri net}. Places and
+ * transitions are numbered by their position in the Petri net's lists, and
+ * the pre- and post-sets of every transition are stored as index arrays in a
+ * compressed sparse row (CSR) layout. Firing a transition or checking whether
+ * it is enabled only touches the places connected to it, instead of scanning
+ * all {@link Arc Arcs} of the Petri net.
+ * 
+ * <p>The pre-set of transition {@code t} are the entries
+ * {@code preStart[t]} to {@code preStart[t + 1] - 1} of {@code prePlaces}.
+ * {@code preWeights} holds the amount of markers each of these places has to
+ * deliver, which is the sum of the weights of the arcs between the place and
+ * the transition.
+ * The post-set is stored the same way.
+ * 
+ * <p>For every place, the transitions that have it in their pre-set are
+ * stored in the same way in {@code consumerTransitions} and
+ * {@code consumerWeights}. This index tells which transitions have to be
+ * checked again after the markers on a place have changed.
+ * 
+ * <p>Markings are shown with the places in alphabetical order of their ids.
+ * This canonical order is computed once as a permutation of the place
+ * indices, so markings don't have to sort the places again.
+ * 
+ * <p>A {@code NetStructure} is created once after a Petri net has been loaded
+ * and is never changed afterwards, so it can be shared between any number of
+ * {@link NetState NetStates} and {@link PetriNetModel PetriNetModels}, also
+ * across threads. Markings are passed in as {@code int} arrays indexed by
+ * place.
+ * 
+ * @author Hans Peter Müller (3274969)
+ * @see    PetriNetModel
+ */
+public final class NetStructure {
+	final int placeCount;
+	final int transitionCount;
+	final int[] preStart;
+	final int[] prePlaces;
+	final int[] preWeights;
+	final int[] postStart;
+	final int[] postPlaces;
+	final int[] postWeights;
+	final int[] consumerStart;
+	final int[] consumerTransitions;
+	final int[] consumerWeights;
+	private final Map<String, Integer> placeIndex;
+	private final Map<String, Integer> transitionIndex;
+	private final String[] transitionIds;
+	private final String[] canonicalPlaceIds;
+	private final int[] canonicalPosition;
+
+	/**
+	 * Receives the successor markings computed by
+	 * {@link NetStructure#forEachSuccessor}.
+	 */
+	public interface SuccessorConsumer {
+		/**
+		 * Is called for every enabled transition with the marking reached by
+		 * firing it.
+		 * 
+		 * @param transition the index of the fired transition
+		 * @param successor  the successor marking, indexed by place. The
+		 *                   array is reused for the next transition and has
+		 *                   to be copied if it is kept.
+		 */
+		public void accept(int transition, int[] successor);
+	}
+
+	/**
+	 * Compiles the structure of a Petri net. Arcs which don't connect a place
+	 * with a transition are ignored.
+	 * 
+	 * @param places      the {@link Place Places} of the Petri net
+	 * @param transitions the {@link Transition Transitions} of the Petri net
+	 * @param arcs        the {@link Arc Arcs} of the Petri net
+	 */
+	public NetStructure(
+			List<Place> places,
+			List<Transition> transitions,
+			List<Arc> arcs) {
+		placeCount = places.size();
+		transitionCount = transitions.size();
+		placeIndex = new HashMap<String, Integer>(placeCount * 2);
+		transitionIndex = new HashMap<String, Integer>(transitionCount * 2);
+		transitionIds = new String[transitionCount];
+		indexLocations(places, transitions);
+		/*
+		 * Arcs are first collected as (transition, place) pairs and then
+		 * sorted into the CSR arrays by counting the pairs per transition.
+		 */
+		int[] preTransitions = new int[arcs.size()];
+		int[] prePlacesUnsorted = new int[arcs.size()];
+		int[] preWeightsUnsorted = new int[arcs.size()];
+		int[] postTransitions = new int[arcs.size()];
+		int[] postPlacesUnsorted = new int[arcs.size()];
+		int[] postWeightsUnsorted = new int[arcs.size()];
+		int preCount = 0;
+		int postCount = 0;
+		for (Arc arc : arcs) {
+			if (arc.source instanceof Place &&
+					arc.target instanceof Transition) {
+				Integer place = placeIndex.get(arc.source.id);
+				Integer transition = transitionIndex.get(arc.target.id);
+				if (place != null && transition != null) {
+					preTransitions[preCount] = transition;
+					prePlacesUnsorted[preCount] = place;
+					preWeightsUnsorted[preCount] = arc.weight;
+					preCount++;
+				}
+			} else if (arc.source instanceof Transition &&
+					arc.target instanceof Place) {
+				Integer transition = transitionIndex.get(arc.source.id);
+				Integer place = placeIndex.get(arc.target.id);
+				if (place != null && transition != null) {
+					postTransitions[postCount] = transition;
+					postPlacesUnsorted[postCount] = place;
+					postWeightsUnsorted[postCount] = arc.weight;
+					postCount++;
+				}
+			}
+		}
+		preStart = new int[transitionCount + 1];
+		postStart = new int[transitionCount + 1];
+		int[][] pre = compile(preTransitions, prePlacesUnsorted,
+				preWeightsUnsorted, preCount, preStart);
+		int[][] post = compile(postTransitions, postPlacesUnsorted,
+				postWeightsUnsorted, postCount, postStart);
+		prePlaces = pre[0];
+		preWeights = pre[1];
+		postPlaces = post[0];
+		postWeights = post[1];
+		consumerStart = new int[placeCount + 1];
+		consumerTransitions = new int[prePlaces.length];
+		consumerWeights = new int[prePlaces.length];
+		compileConsumers();
+		canonicalPlaceIds = new String[placeCount];
+		canonicalPosition = new int[placeCount];
+		compileCanonicalOrder(places);
+	}
+
+	/**
+	 * Creates the structure of a Petri net from CSR arrays which were
+	 * compiled before, e.g. by a {@code NetStructure} whose arrays were
+	 * stored in a file. The arrays are checked and taken over without
+	 * copying them.
+	 * 
+	 * @param places      the {@link Place Places} of the Petri net
+	 * @param transitions the {@link Transition Transitions} of the Petri net
+	 * @param preStart    the start of the pre-set of each transition, plus
+	 *                    the end of the last one
+	 * @param prePlaces   the places of the pre-sets
+	 * @param preWeights  the weights of the pre-sets
+	 * @param postStart   the start of the post-set of each transition, plus
+	 *                    the end of the last one
+	 * @param postPlaces  the places of the post-sets
+	 * @param postWeights the weights of the post-sets
+	 * @throws IllegalArgumentException if the arrays don't describe a Petri
+	 *                                  net with these places and
+	 *                                  transitions
+	 */
+	public NetStructure(
+			List<Place> places,
+			List<Transition> transitions,
+			int[] preStart,
+			int[] prePlaces,
+			int[] preWeights,
+			int[] postStart,
+			int[] postPlaces,
+			int[] postWeights) {
+		placeCount = places.size();
+		transitionCount = transitions.size();
+		checkRows(preStart, prePlaces, preWeights);
+		checkRows(postStart, postPlaces, postWeights);
+		placeIndex = new HashMap<String, Integer>(placeCount * 2);
+		transitionIndex = new HashMap<String, Integer>(transitionCount * 2);
+		transitionIds = new String[transitionCount];
+		indexLocations(places, transitions);
+		this.preStart = preStart;
+		this.prePlaces = prePlaces;
+		this.preWeights = preWeights;
+		this.postStart = postStart;
+		this.postPlaces = postPlaces;
+		this.postWeights = postWeights;
+		consumerStart = new int[placeCount + 1];
+		consumerTransitions = new int[prePlaces.length];
+		consumerWeights = new int[prePlaces.length];
+		compileConsumers();
+		canonicalPlaceIds = new String[placeCount];
+		canonicalPosition = new int[placeCount];
+		compileCanonicalOrder(places);
+	}
+
+	/**
+	 * Returns the number of places.
+	 * 
+	 * @return the number of places
+	 */
+	public int getPlaceCount() {
+		return placeCount;
+	}
+
+	/**
+	 * Returns the number of transitions.
+	 * 
+	 * @return the number of transitions
+	 */
+	public int getTransitionCount() {
+		return transitionCount;
+	}
+
+	/**
+	 * Returns the index of the place with the given id.
+	 * 
+	 * @param id the id of the {@link Place}
+	 * @return   the index of the place or -1 if no such place exists
+	 */
+	public int getPlaceIndex(String id) {
+		Integer index = placeIndex.get(id);
+		return (index == null) ? -1 : index;
+	}
+
+	/**
+	 * Returns the index of the transition with the given id.
+	 * 
+	 * @param id the id of the {@link Transition}
+	 * @return   the index of the transition or -1 if no such transition exists
+	 */
+	public int getTransitionIndex(String id) {
+		Integer index = transitionIndex.get(id);
+		return (index == null) ? -1 : index;
+	}
+
+	/**
+	 * Returns the start of the pre-set of each transition in
+	 * {@link #getPrePlaces()}, plus the end of the last one. The array is
+	 * shared and must not be changed.
+	 * 
+	 * @return the row starts of the pre-sets
+	 */
+	public int[] getPreStart() {
+		return preStart;
+	}
+
+	/**
+	 * Returns the places of the pre-sets of all transitions. The array is
+	 * shared and must not be changed.
+	 * 
+	 * @return the place indices of the pre-sets
+	 */
+	public int[] getPrePlaces() {
+		return prePlaces;
+	}
+
+	/**
+	 * Returns the weights of the pre-sets of all transitions. The array is
+	 * shared and must not be changed.
+	 * 
+	 * @return the weights of the pre-sets
+	 */
+	public int[] getPreWeights() {
+		return preWeights;
+	}
+
+	/**
+	 * Returns the start of the post-set of each transition in
+	 * {@link #getPostPlaces()}, plus the end of the last one. The array is
+	 * shared and must not be changed.
+	 * 
+	 * @return the row starts of the post-sets
+	 */
+	public int[] getPostStart() {
+		return postStart;
+	}
+
+	/**
+	 * Returns the places of the post-sets of all transitions. The array is
+	 * shared and must not be changed.
+	 * 
+	 * @return the place indices of the post-sets
+	 */
+	public int[] getPostPlaces() {
+		return postPlaces;
+	}
+
+	/**
+	 * Returns the weights of the post-sets of all transitions. The array is
+	 * shared and must not be changed.
+	 * 
+	 * @return the weights of the post-sets
+	 */
+	public int[] getPostWeights() {
+		return postWeights;
+	}
+
+	/**
+	 * Returns the place ids in alphabetical order. The array is shared and
+	 * must not be changed.
+	 * 
+	 * @return the place ids in canonical order
+	 */
+	public String[] getCanonicalPlaceIds() {
+		return canonicalPlaceIds;
+	}
+
+	/**
+	 * Returns the position of a place in the alphabetical order of the place
+	 * ids.
+	 * 
+	 * @param place the index of the place
+	 * @return      the canonical position of the place
+	 */
+	public int getCanonicalPosition(int place) {
+		return canonicalPosition[place];
+	}
+
+	/**
+	 * Reorders a marking from place indices into canonical order.
+	 * 
+	 * @param marking the markers of each place, indexed by place
+	 * @return        a new array with the markers in canonical order
+	 */
+	public int[] toCanonical(int[] marking) {
+		int[] canonical = new int[placeCount];
+		for (int p = 0; p < placeCount; p++) {
+			canonical[canonicalPosition[p]] = marking[p];
+		}
+		return canonical;
+	}
+
+	/**
+	 * Reorders a marking from canonical order into place indices.
+	 * 
+	 * @param canonical the markers of each place in canonical order
+	 * @return          a new array with the markers indexed by place
+	 */
+	public int[] fromCanonical(int[] canonical) {
+		int[] marking = new int[placeCount];
+		for (int p = 0; p < placeCount; p++) {
+			marking[p] = canonical[canonicalPosition[p]];
+		}
+		return marking;
+	}
+
+	/**
+	 * Computes a fingerprint of the structure together with a marking. Two
+	 * Petri nets get the same fingerprint if they have places and transitions
+	 * with the same ids, connected by arcs of the same weights, and the same
+	 * markers on each place. The order in which the elements are listed, as
+	 * well as their names and positions, doesn't change the fingerprint.
+	 * 
+	 * <p>The places are described in canonical order and the transitions in
+	 * the alphabetical order of their ids, each with its pre- and post-set
+	 * sorted by canonical position. The fingerprint is the SHA-256 hash of
+	 * this description.
+	 * 
+	 * @param marking the markers of each place, indexed by place
+	 * @return        the fingerprint as 64 hexadecimal digits
+	 */
+	public String getFingerprint(int[] marking) {
+		StringBuilder description = new StringBuilder("petrinetz/1\n");
+		int[] canonical = toCanonical(marking);
+		for (int position = 0; position < placeCount; position++) {
+			appendId(description, canonicalPlaceIds[position]);
+			description.append(canonical[position]).append('\n');
+		}
+		String[] sortedIds = transitionIds.clone();
+		Arrays.sort(sortedIds);
+		for (String id : sortedIds) {
+			int transition = transitionIndex.get(id);
+			appendId(description, id);
+			appendArcs(description, preStart, prePlaces, preWeights,
+					transition);
+			description.append('|');
+			appendArcs(description, postStart, postPlaces, postWeights,
+					transition);
+			description.append('\n');
+		}
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			return HexFormat.of().formatHex(digest.digest(
+					description.toString().getBytes(StandardCharsets.UTF_8)));
+		} catch (NoSuchAlgorithmException e) {
+			/*
+			 * Every Java platform has to support SHA-256.
+			 */
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Checks if a transition is enabled in the given marking, i.e. if every
+	 * place in its pre-set holds enough markers.
+	 * 
+	 * @param transition the index of the transition
+	 * @param marking    the markers of each place, indexed by place
+	 * @return           {@code true} if the transition can be fired,
+	 *                   {@code false} otherwise
+	 */
+	public boolean isEnabled(int transition, int[] marking) {
+		for (int i = preStart[transition]; i < preStart[transition + 1]; i++) {
+			if (marking[prePlaces[i]] < preWeights[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Fires a transition by moving markers from its pre-set to its post-set.
+	 * The transition has to be enabled in the given marking.
+	 * 
+	 * @param transition the index of the transition
+	 * @param marking    the markers of each place, indexed by place. The array
+	 *                   is changed in place.
+	 */
+	public void fire(int transition, int[] marking) {
+		for (int i = preStart[transition]; i < preStart[transition + 1]; i++) {
+			marking[prePlaces[i]] -= preWeights[i];
+		}
+		for (int i = postStart[transition]; i < postStart[transition + 1];
+				i++) {
+			marking[postPlaces[i]] += postWeights[i];
+		}
+	}
+
+	/**
+	 * Fires a transition without changing the given marking. The successor
+	 * marking is written into {@code target}.
+	 * 
+	 * @param transition the index of the transition
+	 * @param marking    the markers of each place, indexed by place
+	 * @param target     the array to write the successor marking into. It
+	 *                   must have one entry per place and may not be
+	 *                   {@code marking} itself.
+	 * @return           {@code true} if the transition was enabled and
+	 *                   {@code target} holds the successor marking,
+	 *                   {@code false} otherwise
+	 */
+	public boolean fire(int transition, int[] marking, int[] target) {
+		if (!isEnabled(transition, marking)) {
+			return false;
+		}
+		System.arraycopy(marking, 0, target, 0, placeCount);
+		fire(transition, target);
+		return true;
+	}
+
+	/**
+	 * Computes the successors of a marking without changing it. Every enabled
+	 * transition is fired on a copy of the marking, in the order of the
+	 * transition indices, and the result is passed on to the consumer. No
+	 * {@link PetriNetModel} is involved, so no events are fired, and the
+	 * method can be called from several threads at the same time.
+	 * 
+	 * @param marking  the markers of each place, indexed by place
+	 * @param consumer receives each enabled transition and its successor
+	 * @return         the number of enabled transitions
+	 */
+	public int forEachSuccessor(int[] marking, SuccessorConsumer consumer) {
+		int[] successor = new int[placeCount];
+		int count = 0;
+		for (int t = 0; t < transitionCount; t++) {
+			if (fire(t, marking, successor)) {
+				consumer.accept(t, successor);
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Appends an id to a fingerprint description. The id is prefixed with its
+	 * length, so ids containing separators can't be confused with each other.
+	 * 
+	 * @param description the description to append to
+	 * @param id          the id of a place or transition
+	 */
+	private static void appendId(StringBuilder description, String id) {
+		description.append(id.length()).append(':').append(id).append(' ');
+	}
+
+	/**
+	 * Appends one row of a CSR array to a fingerprint description as
+	 * (canonical position, weight) pairs, sorted by position.
+	 * 
+	 * @param description the description to append to
+	 * @param start       the row start array
+	 * @param places      the place array
+	 * @param weights     the weight array
+	 * @param transition  the index of the transition, i.e. the row
+	 */
+	private void appendArcs(
+			StringBuilder description,
+			int[] start,
+			int[] places,
+			int[] weights,
+			int transition) {
+		long[] pairs = new long[start[transition + 1] - start[transition]];
+		for (int i = 0; i < pairs.length; i++) {
+			int entry = start[transition] + i;
+			pairs[i] = ((long) canonicalPosition[places[entry]] << 32) |
+					weights[entry];
+		}
+		Arrays.sort(pairs);
+		for (long pair : pairs) {
+			description.append(pair >>> 32).append('*')
+					.append((int) pair).append(',');
+		}
+	}
+
+	/**
+	 * Indexes the places and transitions by id.
+	 * 
+	 * @param places      the {@link Place Places} of the Petri net
+	 * @param transitions the {@link Transition Transitions} of the Petri net
+	 */
+	private void indexLocations(
+			List<Place> places,
+			List<Transition> transitions) {
+		for (int i = 0; i < placeCount; i++) {
+			placeIndex.put(places.get(i).id, i);
+		}
+		for (int i = 0; i < transitionCount; i++) {
+			transitionIndex.put(transitions.get(i).id, i);
+			transitionIds[i] = transitions.get(i).id;
+		}
+	}
+
+	/**
+	 * Checks that CSR arrays hold one row per transition, refer to existing
+	 * places only, name each place at most once per row and have positive
+	 * weights. A place which appeared twice in a row would be checked on its
+	 * own by {@link NetState}, so a transition could fire into negative
+	 * markers.
+	 * 
+	 * @param start   the row start array
+	 * @param places  the place array
+	 * @param weights the weight array
+	 * @throws IllegalArgumentException if the arrays are inconsistent
+	 */
+	private void checkRows(int[] start, int[] places, int[] weights) {
+		if (start.length != transitionCount + 1 || start[0] != 0 ||
+				start[transitionCount] != places.length ||
+				weights.length != places.length) {
+			throw new IllegalArgumentException("Wrong size of CSR arrays.");
+		}
+		for (int t = 0; t < transitionCount; t++) {
+			if (start[t] > start[t + 1]) {
+				throw new IllegalArgumentException("Unsorted CSR rows.");
+			}
+		}
+		for (int i = 0; i < places.length; i++) {
+			if (places[i] < 0 || places[i] >= placeCount || weights[i] < 1) {
+				throw new IllegalArgumentException("Invalid CSR entry.");
+			}
+		}
+		int[] lastRow = new int[placeCount];
+		for (int t = 0; t < transitionCount; t++) {
+			for (int i = start[t]; i < start[t + 1]; i++) {
+				if (lastRow[places[i]] == t + 1) {
+					throw new IllegalArgumentException(
+							"Duplicate place in CSR row.");
+				}
+				lastRow[places[i]] = t + 1;
+			}
+		}
+	}
+
+	/**
+	 * Sorts the place indices by place id and stores the resulting
+	 * permutation.
+	 * 
+	 * @param places the {@link Place Places} of the Petri net
+	 */
+	private void compileCanonicalOrder(final List<Place> places) {
+		Integer[] order = new Integer[placeCount];
+		for (int p = 0; p < placeCount; p++) {
+			order[p] = p;
+		}
+		Arrays.sort(order, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer o1, Integer o2) {
+				return places.get(o1).id.compareTo(places.get(o2).id);
+			}
+		});
+		for (int position = 0; position < placeCount; position++) {
+			canonicalPosition[order[position]] = position;
+			canonicalPlaceIds[position] = places.get(order[position]).id;
+		}
+	}
+
+	/**
+	 * Inverts the pre-sets of all transitions into the place to consuming
+	 * transitions index.
+	 */
+	private void compileConsumers() {
+		for (int i = 0; i < prePlaces.length; i++) {
+			consumerStart[prePlaces[i] + 1]++;
+		}
+		for (int p = 0; p < placeCount; p++) {
+			consumerStart[p + 1] += consumerStart[p];
+		}
+		int[] next = new int[placeCount];
+		System.arraycopy(consumerStart, 0, next, 0, placeCount);
+		for (int t = 0; t < transitionCount; t++) {
+			for (int i = preStart[t]; i < preStart[t + 1]; i++) {
+				int position = next[prePlaces[i]]++;
+				consumerTransitions[position] = t;
+				consumerWeights[position] = preWeights[i];
+			}
+		}
+	}
+
+	/**
+	 * Sorts (transition, place) pairs into CSR arrays. Multiple arcs between
+	 * the same place and transition are merged into one entry whose weight is
+	 * the sum of their weights.
+	 * 
+	 * @param transitions the transition of each pair
+	 * @param places      the place of each pair
+	 * @param weights     the weight of each pair
+	 * @param count       the number of pairs
+	 * @param start       the row start array to fill, one entry per
+	 *                    transition plus one
+	 * @return            the place array and the weight array
+	 */
+	private int[][] compile(
+			int[] transitions,
+			int[] places,
+			int[] weights,
+			int count,
+			int[] start) {
+		for (int i = 0; i < count; i++) {
+			start[transitions[i] + 1]++;
+		}
+		for (int t = 0; t < transitionCount; t++) {
+			start[t + 1] += start[t];
+		}
+		int[] next = new int[transitionCount];
+		int[] sortedPlaces = new int[count];
+		int[] sortedWeights = new int[count];
+		for (int t = 0; t < transitionCount; t++) {
+			next[t] = start[t];
+		}
+		for (int i = 0; i < count; i++) {
+			int position = next[transitions[i]]++;
+			sortedPlaces[position] = places[i];
+			sortedWeights[position] = weights[i];
+		}
+		/*
+		 * Merges duplicate places within each row and compacts the arrays.
+		 */
+		int[] mergedPlaces = new int[count];
+		int[] mergedWeights = new int[count];
+		int size = 0;
+		int rowStart = 0;
+		for (int t = 0; t < transitionCount; t++) {
+			int newRowStart = size;
+			for (int i = rowStart; i < start[t + 1]; i++) {
+				int j = newRowStart;
+				while (j < size && mergedPlaces[j] != sortedPlaces[i]) {
+					j++;
+				}
+				if (j == size) {
+					mergedPlaces[size] = sortedPlaces[i];
+					size++;
+				}
+				mergedWeights[j] += sortedWeights[i];
+			}
+			rowStart = start[t + 1];
+			start[t] = newRowStart;
+		}
+		start[transitionCount] = size;
+		int[] resultPlaces = new int[size];
+		int[] resultWeights = new int[size];
+		System.arraycopy(mergedPlaces, 0, resultPlaces, 0, size);
+		System.arraycopy(mergedWeights, 0, resultWeights, 0, size);
+		return new int[][] {resultPlaces, resultWeights};
+	}
+}
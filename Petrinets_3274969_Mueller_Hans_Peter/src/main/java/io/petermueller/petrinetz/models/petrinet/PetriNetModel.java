@@ -1,7 +1,11 @@
 package io.petermueller.petrinetz.models.petrinet;
 
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import io.petermueller.petrinetz.util.Event;
 import io.petermueller.petrinetz.util.EventEmitter;
 
@@ -12,6 +16,10 @@ import io.petermueller.petrinetz.util.EventEmitter;
  * transitions. Places remember how many Markers are present on them.
  * Essentially, the sum of all places is a marking.
  * 
+ * <p>Petri nets read from a file should be assembled with a
+ * {@link PetriNetModel.Builder}, which looks up locations by id in a hash
+ * index and computes the enabled transitions only once at the end.
+ * 
  * @author Hans Peter Müller (3274969)
  */
 public class PetriNetModel extends EventEmitter {
@@ -49,6 +57,10 @@ public class PetriNetModel extends EventEmitter {
 	 * The file name of the Petri net.
 	 */
 	public String fileName;
+	private NetStructure structure;
+	private Place[] indexedPlaces;
+	private Transition[] indexedTransitions;
+	private NetState state;
 
 	/**
 	 * Initiates an empty Petri net.
@@ -57,6 +69,92 @@ public class PetriNetModel extends EventEmitter {
 		init();
 	}
 
+	/**
+	 * Initiates a Petri net from places, transitions and arcs whose structure
+	 * has been compiled before, e.g. when a compiled Petri net is loaded from
+	 * a file. The structure isn't compiled again.
+	 * 
+	 * @param places      the {@link Place Places}, in the order of the
+	 *                    structure
+	 * @param transitions the {@link Transition Transitions}, in the order of
+	 *                    the structure
+	 * @param arcs        the {@link Arc Arcs}
+	 * @param structure   the structure compiled for these places and
+	 *                    transitions
+	 */
+	public PetriNetModel(
+			List<Place> places,
+			List<Transition> transitions,
+			List<Arc> arcs,
+			NetStructure structure) {
+		init();
+		this.places.addAll(places);
+		this.transitions.addAll(transitions);
+		this.arcs.addAll(arcs);
+		this.structure = structure;
+		indexedPlaces = this.places.toArray(new Place[0]);
+		indexedTransitions = this.transitions.toArray(new Transition[0]);
+		state = new NetState(structure, readMarking());
+		updateTransitions();
+	}
+
+	/**
+	 * Initiates an independent copy of a Petri net. The copy shares the
+	 * immutable {@link NetStructure} of the source but has its own
+	 * {@link Place Places}, {@link Transition Transitions}, {@link Arc Arcs}
+	 * and marking, so firing transitions in the copy never changes the source.
+	 * This allows analyses to run on a Petri net while the user keeps working
+	 * with it.
+	 * 
+	 * @param source the Petri net to copy
+	 */
+	public PetriNetModel(PetriNetModel source) {
+		init();
+		NetStructure net = source.getStructure();
+		Map<Location, Location> copies =
+				new IdentityHashMap<Location, Location>();
+		for (Transition transition : source.transitions) {
+			Transition copy = new Transition(transition.id);
+			copy.isEnabled = transition.isEnabled;
+			copyLocation(transition, copy, copies);
+			transitions.add(copy);
+		}
+		for (Place place : source.places) {
+			Place copy = new Place(place.id);
+			copy.currentTokens = place.currentTokens;
+			copy.startTokens = place.startTokens;
+			copyLocation(place, copy, copies);
+			places.add(copy);
+		}
+		for (Arc arc : source.arcs) {
+			arcs.add(new Arc(
+					arc.id,
+					copies.get(arc.source),
+					copies.get(arc.target),
+					arc.weight));
+		}
+		selectedPlace = (Place) copies.get(source.selectedPlace);
+		isAtCustomMarking = source.isAtCustomMarking;
+		fileChanged = source.fileChanged;
+		lastTransition = (Transition) copies.get(source.lastTransition);
+		fileName = source.fileName;
+		/*
+		 * The lists of the source may have been reordered since its structure
+		 * was compiled, so the indices are taken from the source's arrays.
+		 */
+		structure = net;
+		indexedPlaces = new Place[net.placeCount];
+		for (int i = 0; i < net.placeCount; i++) {
+			indexedPlaces[i] = (Place) copies.get(source.indexedPlaces[i]);
+		}
+		indexedTransitions = new Transition[net.transitionCount];
+		for (int i = 0; i < net.transitionCount; i++) {
+			indexedTransitions[i] =
+					(Transition) copies.get(source.indexedTransitions[i]);
+		}
+		state = new NetState(source.state);
+	}
+
 	/**
 	 * Adds a {@link Transition} to the Petri net.
 	 * 
@@ -64,6 +162,7 @@ public class PetriNetModel extends EventEmitter {
 	 */
 	public void addTransition(String id) {
 		transitions.add(new Transition(id));
+		structure = null;
 		updateTransitions();
 	}
 
@@ -74,6 +173,7 @@ public class PetriNetModel extends EventEmitter {
 	 */
 	public void addPlace(String id) {
 		places.add(new Place(id));
+		structure = null;
 		updateTransitions();
 	}
 
@@ -89,6 +189,7 @@ public class PetriNetModel extends EventEmitter {
 		Location sourceObj = getLocation(source);
 		Location targetObj = getLocation(target);
 		arcs.add(new Arc(id, sourceObj, targetObj));
+		structure = null;
 		updateTransitions();
 	}
 
@@ -170,16 +271,17 @@ public class PetriNetModel extends EventEmitter {
 	 * @param transition the id of the {@link Transition} to fire
 	 */
 	public void fire(Transition transition) {
-		if (hasTruePreconditions(transition)) {
-			List<Place> inputs = getInputs(transition);
-			List<Place> outputs = getOutputs(transition);
-			for (Place place : inputs) {
-				place.currentTokens --;
+		NetStructure net = getStructure();
+		int index = net.getTransitionIndex(transition.id);
+		if (index != -1 && state.fire(index)) {
+			for (int i = net.preStart[index]; i < net.preStart[index + 1];
+					i++) {
+				syncPlace(net.prePlaces[i]);
 			}
-			for (Place place : outputs) {
-				place.currentTokens ++;
+			for (int i = net.postStart[index]; i < net.postStart[index + 1];
+					i++) {
+				syncPlace(net.postPlaces[i]);
 			}
-			updateTransitions();
 			isAtCustomMarking = true;
 			lastTransition = transition;
 			fireEvent(Event.PETRINET_TRANSITION_FIRED);
@@ -253,17 +355,65 @@ public class PetriNetModel extends EventEmitter {
 	 * @param newPlaces a list of places with markers
 	 */
 	public void setToMarking(List<Place> newPlaces) {
+		NetStructure net = getStructure();
+		int[] marking = readMarking();
 		for (Place newPlace : newPlaces) {
-			for (Place place : this.places) {
-				if (newPlace.id.equals(place.id)) {
-					place.currentTokens = newPlace.currentTokens;
-				}
+			int index = net.getPlaceIndex(newPlace.id);
+			if (index != -1) {
+				marking[index] = newPlace.currentTokens;
 			}
 		}
-		updateTransitions();
+		setMarkingVector(marking);
+	}
+
+	/**
+	 * Returns the current marking as an array. The entries are indexed like
+	 * the places of the {@link NetStructure}, see
+	 * {@link NetStructure#getPlaceIndex(String)}.
+	 * 
+	 * @return a new array holding the markers of each place
+	 */
+	public int[] getMarkingVector() {
+		getStructure();
+		return readMarking();
+	}
+
+	/**
+	 * Sets the Petri net to a marking given as an array. The entries have to
+	 * be indexed like the places of the {@link NetStructure}. The currently
+	 * saved marking will be overridden with the newly specified one.
+	 * 
+	 * @param marking the markers of each place, indexed by place
+	 */
+	public void setMarkingVector(int[] marking) {
+		NetStructure net = getStructure();
+		for (int i = 0; i < net.placeCount; i++) {
+			indexedPlaces[i].currentTokens = marking[i];
+		}
+		state.setMarking(marking);
+		for (int i = 0; i < net.transitionCount; i++) {
+			indexedTransitions[i].isEnabled = state.isEnabled(i);
+		}
 		fireEvent(Event.PETRINET_MARKING_RESET);
 	}
 
+	/**
+	 * Computes the marking reached by firing a {@link Transition} in a given
+	 * marking. Neither the marking of this Petri net nor the given array are
+	 * changed and no events are fired.
+	 * 
+	 * @param transition the index of the transition, as in
+	 *                   {@link PetriNetModel#transitions}
+	 * @param marking    the markers of each place, indexed by place
+	 * @param target     the array the successor marking is written into
+	 * @return           {@code true} if the transition is enabled in
+	 *                   {@code marking}, {@code false} otherwise
+	 * @see              NetStructure#fire(int, int[], int[])
+	 */
+	public boolean fire(int transition, int[] marking, int[] target) {
+		return getStructure().fire(transition, marking, target);
+	}
+
 	/**
 	 * Clears the Petri net models and loads new Petri data into the model.
 	 * 
@@ -285,9 +435,68 @@ public class PetriNetModel extends EventEmitter {
 		this.fileChanged = petriNet.fileChanged;
 		this.lastTransition = petriNet.lastTransition;
 		this.fileName = petriNet.fileName;
+		if (petriNet.structure != null) {
+			/*
+			 * The places and transitions are the same, so the compiled
+			 * structure can be shared as well.
+			 */
+			structure = petriNet.structure;
+			indexedPlaces = petriNet.indexedPlaces;
+			indexedTransitions = petriNet.indexedTransitions;
+			state = new NetState(petriNet.state);
+		}
+		getStructure();
 		fireEvent(Event.PETRINET_NEW_NET_LOADED);
 	}
 
+	/**
+	 * Returns the compiled {@link NetStructure} of this Petri net. The
+	 * structure is compiled on first use and compiled again after places,
+	 * transitions or arcs have been added.
+	 * 
+	 * @return the compiled structure of the Petri net
+	 */
+	public NetStructure getStructure() {
+		if (structure == null) {
+			structure = new NetStructure(places, transitions, arcs);
+			indexedPlaces = places.toArray(new Place[0]);
+			indexedTransitions = transitions.toArray(new Transition[0]);
+			state = new NetState(structure, readMarking());
+		}
+		return structure;
+	}
+
+	/**
+	 * Returns the fingerprint of the structure and the start marking of this
+	 * Petri net. Petri nets with the same fingerprint have the same
+	 * reachability graph, so it can be used as the key of stored analysis
+	 * results.
+	 * 
+	 * @return the fingerprint as 64 hexadecimal digits
+	 * @see    NetStructure#getFingerprint(int[])
+	 */
+	public String getFingerprint() {
+		NetStructure net = getStructure();
+		int[] marking = new int[net.placeCount];
+		for (int i = 0; i < net.placeCount; i++) {
+			marking[i] = indexedPlaces[i].startTokens;
+		}
+		return net.getFingerprint(marking);
+	}
+
+	/**
+	 * Returns the {@link Transition Transitions} that are enabled in the
+	 * current marking. The set is maintained incrementally while transitions
+	 * are fired, so this doesn't check the pre-sets of all transitions again.
+	 * 
+	 * @return the indices of the enabled transitions, in the order of
+	 *         {@link PetriNetModel#transitions}
+	 */
+	public BitSet getEnabledTransitions() {
+		getStructure();
+		return state.getEnabledTransitions();
+	}
+
 	/**
 	 * Initializes an empty Petri net model.
 	 */
@@ -300,6 +509,7 @@ public class PetriNetModel extends EventEmitter {
 		fileChanged = false;
 		lastTransition = null;
 		fileName = "";
+		structure = null;
 	}
 
 	/**
@@ -308,13 +518,59 @@ public class PetriNetModel extends EventEmitter {
 	 * are met.
 	 */
 	private void updateTransitions() {
-		for (Transition transition : transitions) {
-			if (hasTruePreconditions(transition)) {
-				transition.isEnabled = true;
-			} else {
-				transition.isEnabled = false;
-			}
+		NetStructure net = getStructure();
+		state.setMarking(readMarking());
+		for (int i = 0; i < net.transitionCount; i++) {
+			indexedTransitions[i].isEnabled = state.isEnabled(i);
+		}
+	}
+
+	/**
+	 * Copies the markers of a place from the {@link NetState} back to the
+	 * {@link Place} and updates the {@link Transition#isEnabled} flag of the
+	 * transitions consuming from it.
+	 * 
+	 * @param place the index of the place
+	 */
+	private void syncPlace(int place) {
+		NetStructure net = structure;
+		indexedPlaces[place].currentTokens = state.getTokens(place);
+		for (int i = net.consumerStart[place]; i < net.consumerStart[place + 1];
+				i++) {
+			int transition = net.consumerTransitions[i];
+			indexedTransitions[transition].isEnabled =
+					state.isEnabled(transition);
+		}
+	}
+
+	/**
+	 * Reads the current markers of all places into an array.
+	 * 
+	 * @return the markers of each place, indexed by place
+	 */
+	private int[] readMarking() {
+		int[] marking = new int[indexedPlaces.length];
+		for (int i = 0; i < marking.length; i++) {
+			marking[i] = indexedPlaces[i].currentTokens;
 		}
+		return marking;
+	}
+
+	/**
+	 * Copies the attributes every {@link Location} has and remembers the copy.
+	 * 
+	 * @param location the original location
+	 * @param copy     the copy of the location
+	 * @param copies   the copies made so far, keyed by original
+	 */
+	private static void copyLocation(
+			Location location,
+			Location copy,
+			Map<Location, Location> copies) {
+		copy.name = location.name;
+		copy.x = location.x;
+		copy.y = location.y;
+		copies.put(location, copy);
 	}
 
 	/**
@@ -332,55 +588,188 @@ public class PetriNetModel extends EventEmitter {
 	}
 
 	/**
-	 * Returns all input places of a {@link Transition}.
+	 * Assembles a {@link PetriNetModel} from a sequence of places, transitions,
+	 * arcs and their attributes, e.g. while a file is parsed.
+	 * 
+	 * <p><strong>Implementation details:</strong><br>
+	 * The methods of {@link PetriNetModel} update all transitions after every
+	 * change and look up locations by a linear search, which makes loading a
+	 * net quadratic in its size. The builder keeps an index from ids to
+	 * {@link Location Locations} instead and compiles the structure and the
+	 * enabled transitions only once in {@link Builder#build()}, so a net is
+	 * assembled in linear time.
 	 * 
-	 * @param transition the id of the {@link Transition} to get the input
-	 *                   {@link Place Places} from
-	 * @return a list of {@link Place Places}
-	 */
-	private List<Place> getInputs(Transition transition) {
-		List<Place> inputs = new ArrayList<Place>();
-		for (Arc arc : arcs) {
-			if (arc.target == transition) {
-				inputs.add((Place) arc.source);
+	 * @author Hans Peter Müller (3274969)
+	 */
+	public static class Builder {
+		private final List<Transition> transitions;
+		private final List<Place> places;
+		private final List<Arc> arcs;
+		private final Map<String, Location> locations;
+
+		/**
+		 * Initializes a builder for an empty Petri net.
+		 */
+		public Builder() {
+			transitions = new ArrayList<Transition>();
+			places = new ArrayList<Place>();
+			arcs = new ArrayList<Arc>();
+			locations = new HashMap<String, Location>();
+		}
+
+		/**
+		 * Adds a {@link Transition} to the Petri net.
+		 * 
+		 * @param id the unique id of the {@link Transition}
+		 * @return   this builder
+		 */
+		public Builder addTransition(String id) {
+			Transition transition = new Transition(id);
+			transitions.add(transition);
+			locations.put(id, transition);
+			return this;
+		}
+
+		/**
+		 * Adds a {@link Place} to the Petri net.
+		 * 
+		 * @param id the unique id of the {@link Place}
+		 * @return   this builder
+		 */
+		public Builder addPlace(String id) {
+			Place place = new Place(id);
+			places.add(place);
+			locations.put(id, place);
+			return this;
+		}
+
+		/**
+		 * Adds an {@link Arc} to the Petri net, connecting two {@link Location
+		 * locations}.
+		 * 
+		 * @param id     the unique id of the {@link Arc}
+		 * @param source the id of the source {@link Location}
+		 * @param target the id of the target {@link Location}
+		 * @return       this builder
+		 */
+		public Builder addArc(String id, String source, String target) {
+			return addArc(id, source, target, 1);
+		}
+
+		/**
+		 * Adds an {@link Arc} with a weight to the Petri net, connecting two
+		 * {@link Location locations}.
+		 * 
+		 * @param id     the unique id of the {@link Arc}
+		 * @param source the id of the source {@link Location}
+		 * @param target the id of the target {@link Location}
+		 * @param weight the number of markers the {@link Arc} moves
+		 * @return       this builder
+		 */
+		public Builder addArc(
+				String id,
+				String source,
+				String target,
+				int weight) {
+			arcs.add(new Arc(id, locations.get(source), locations.get(target),
+					weight));
+			return this;
+		}
+
+		/**
+		 * Sets a name for a {@link Location}.
+		 * 
+		 * @param id   the id of the {@link Location} to name
+		 * @param name a name
+		 * @return     this builder
+		 */
+		public Builder setName(String id, String name) {
+			try {
+				getLocation(id).name = name;
+			} catch (PetriNetException e) {
+				System.err.println(e);
 			}
+			return this;
 		}
-		return inputs;
-	}
 
-	/**
-	 * Returns all output places of a {@link Transition}.
-	 * 
-	 * @param transition the id of the {@link Transition} to get the output
-	 *                   {@link Place Places} from
-	 * @return a list of {@link Place Places}
-	 */
-	private List<Place> getOutputs(Transition transition) {
-		List<Place> outputs = new ArrayList<Place>();
-		for (Arc arc : arcs) {
-			if (arc.source == transition) {
-				outputs.add((Place) arc.target);
+		/**
+		 * Sets the position of a given {@link Location}.
+		 * 
+		 * @param id the id of the {@link Location}
+		 * @param x  the x-coodinate of the {@link Location}
+		 * @param y  the y-coordinate of the {@link Location}
+		 * @return   this builder
+		 */
+		public Builder setPosition(String id, int x, int y) {
+			try {
+				Location location = getLocation(id);
+				location.x = x;
+				location.y = y * (-1);
+			} catch (PetriNetException e) {
+				System.err.println(e);
 			}
+			return this;
 		}
-		return outputs;
-	}
 
-	/**
-	 * Checks if a {@link Transition} has all preconditions fullfilled and can
-	 * be fired. Essentially this method checks if there are any input places
-	 * which have zero markers in them.
-	 * 
-	 * @param transition the id of the transiton to check
-	 * @return true, if all preconditions are met, else false
-	 */
-	private boolean hasTruePreconditions(Transition transition) {
-		List<Place> preconditions = getInputs(transition);
-		boolean result = true;
-		for (Place place : preconditions) {
-			if (place.currentTokens < 1) {
-				result = false;
+		/**
+		 * Sets the amount of markers on a given {@link Place} as its start
+		 * marking.
+		 * 
+		 * @param id     the id of the {@link Place}
+		 * @param tokens the amount of markers on this {@link Place}
+		 * @return       this builder
+		 */
+		public Builder setTokens(String id, int tokens) {
+			try {
+				Location location = getLocation(id);
+				if (!(location instanceof Place)) {
+					throw new PetriNetException("Location " + id
+							+ " is not a place.");
+				}
+				Place place = (Place) location;
+				if (tokens < 0) {
+					place.currentTokens = 0;
+					place.startTokens = 0;
+					throw new PetriNetException("The lowest amount of tokens "
+							+ "you can set on place " + id + " is 0.");
+				}
+				place.currentTokens = tokens;
+				place.startTokens = tokens;
+			} catch (PetriNetException e) {
+				System.err.println(e);
+			}
+			return this;
+		}
+
+		/**
+		 * Creates the {@link PetriNetModel}. Its structure is compiled and its
+		 * enabled transitions are computed once.
+		 * 
+		 * @return the assembled Petri net
+		 */
+		public PetriNetModel build() {
+			PetriNetModel petriNet = new PetriNetModel();
+			petriNet.transitions.addAll(transitions);
+			petriNet.places.addAll(places);
+			petriNet.arcs.addAll(arcs);
+			petriNet.updateTransitions();
+			return petriNet;
+		}
+
+		/**
+		 * Returns the {@link Location} with the given id.
+		 * 
+		 * @param id the id of the {@link Location}
+		 * @return   the {@link Location}
+		 * @throws   PetriNetException if no location with this id exists
+		 */
+		private Location getLocation(String id) throws PetriNetException {
+			Location location = locations.get(id);
+			if (location == null) {
+				throw new PetriNetException("There is no place or transition "
+						+ "with id " + id + ".");
 			}
+			return location;
 		}
-		return result;
 	}
-}
\ No newline at end of file
+}
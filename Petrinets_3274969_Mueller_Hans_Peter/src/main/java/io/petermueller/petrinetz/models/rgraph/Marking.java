@@ -1,6 +1,7 @@
 package io.petermueller.petrinetz.models.rgraph;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
@@ -10,13 +11,22 @@ import io.petermueller.petrinetz.models.petrinet.Place;
  * A marking represents the position and count of all markers currently
  * present in a Petri net.
  * 
+ * <p><strong>Implementation details:</strong><br>
+ * The marker counts are stored in the alphabetical order of the place ids and
+ * packed into a {@code long} array. Every place gets the same number of bits,
+ * which is the smallest power of two that can hold the largest count of the
+ * marking. Because the width only depends on the counts, two markings with
+ * the same counts always have the same packed array, so {@link #equals} and
+ * {@link #hashCode} are plain array operations. The hash code is computed
+ * once when the marking is created.
+ * 
+ * <p>The human readable id in the form "(0|3|0)" and the list of
+ * {@link Place Places} are only created when they are asked for, which
+ * usually only happens for the markings that are displayed.
+ * 
  * @author Hans Peter Müller (3274969)
  */
 public class Marking {
-	/**
-	 * Unique id of the marking.
-	 */
-	public String id;
 	/**
 	 * True, if this marking is the one currently active in the Petri net.
 	 */
@@ -25,13 +35,9 @@ public class Marking {
 	 * True, if this marking is the root note of a reachability graph.
 	 */
 	public boolean isRoot;
-	/**
-	 * List of {@link Place Places} and their corresponding marker count.
-	 */
-	public List<Place> places;
 	/**
 	 * True, if this marking is the start of the detection path of a
-	 * boundedness analysis. 
+	 * boundedness analysis.
 	 */
 	public boolean isPathStart;
 	/**
@@ -39,15 +45,27 @@ public class Marking {
 	 * analysis.
 	 */
 	public boolean isPathEnd;
-	
+	private String[] placeIds;
+	private long[] packed;
+	private int bitsPerPlace;
+	private int hash;
+	private String id;
+	private List<Place> places;
+	int stateId;
+
 	/**
-	 * Initializes a marking object from a list of {@link Place Places}.
+	 * Initializes a marking object from a list of {@link Place Places}. The
+	 * list isn't changed. If the places belong to a compiled Petri net, the
+	 * constructor taking the canonical order of the
+	 * {@link io.petermueller.petrinetz.models.petrinet.NetStructure} avoids
+	 * sorting the places.
 	 * 
 	 * @param inputPlaces list of {@link Place Places} which holds the current
 	 *                    position and amount of markers
 	 */
 	public Marking(List<Place> inputPlaces) {
 		this.isActive = false;
+		this.stateId = -1;
 		init(inputPlaces);
 	}
 
@@ -63,9 +81,187 @@ public class Marking {
 	 */
 	public Marking(boolean isActive, List<Place> inputPlaces) {
 		this.isActive = isActive;
+		this.stateId = -1;
 		init(inputPlaces);
 	}
 
+	/**
+	 * Initializes a marking object from marker counts. The counts have to be
+	 * in the alphabetical order of the place ids.
+	 * 
+	 * @param placeIds the ids of the places in alphabetical order. The array
+	 *                 is not copied and may be shared between markings.
+	 * @param tokens   the amount of markers of each place, in the same order
+	 */
+	public Marking(String[] placeIds, int[] tokens) {
+		this.isActive = false;
+		this.stateId = -1;
+		this.placeIds = placeIds;
+		pack(tokens);
+	}
+
+	/**
+	 * Initializes a marking object from already packed marker counts.
+	 * 
+	 * @param placeIds     the ids of the places in alphabetical order
+	 * @param packed       the packed marker counts, which are copied
+	 * @param length       the number of used entries of {@code packed}
+	 * @param bitsPerPlace the number of bits per place
+	 * @param hash         the hash code of the packed counts
+	 */
+	Marking(
+			String[] placeIds,
+			long[] packed,
+			int length,
+			int bitsPerPlace,
+			int hash) {
+		this.isActive = false;
+		this.stateId = -1;
+		this.placeIds = placeIds;
+		this.packed = Arrays.copyOf(packed, length);
+		this.bitsPerPlace = bitsPerPlace;
+		this.hash = hash;
+	}
+
+	/**
+	 * Initializes a copy of a marking with the same markers and tags. The
+	 * copy isn't part of any {@link MarkingStore} yet.
+	 * 
+	 * @param source the marking to copy
+	 */
+	Marking(Marking source) {
+		this(source.placeIds, source.packed, source.packed.length,
+				source.bitsPerPlace, source.hash);
+		this.isActive = source.isActive;
+		this.isRoot = source.isRoot;
+		this.isPathStart = source.isPathStart;
+		this.isPathEnd = source.isPathEnd;
+		this.id = source.id;
+	}
+
+	/**
+	 * Returns the id of this marking in its {@link MarkingStore}. State ids
+	 * are numbered from 0 in the order in which the markings were added to
+	 * the store and never change.
+	 * 
+	 * @return the state id, or -1 if the marking isn't part of a store
+	 */
+	public int getStateId() {
+		return stateId;
+	}
+
+	/**
+	 * Returns the id of the marking in the form "(0|3|0)". The id is created
+	 * on first use.
+	 * 
+	 * @return the id of the marking
+	 */
+	public String getId() {
+		if (id == null) {
+			StringBuilder builder = new StringBuilder(placeIds.length * 2 + 2);
+			builder.append('(');
+			for (int i = 0; i < placeIds.length; i++) {
+				if (i > 0) {
+					builder.append('|');
+				}
+				builder.append(getTokens(i));
+			}
+			builder.append(')');
+			id = builder.toString();
+		}
+		return id;
+	}
+
+	/**
+	 * Returns the number of places of this marking.
+	 * 
+	 * @return the number of places
+	 */
+	public int getPlaceCount() {
+		return placeIds.length;
+	}
+
+	/**
+	 * Returns the amount of markers on a place.
+	 * 
+	 * @param index the index of the place in the alphabetical order of the
+	 *              place ids
+	 * @return      the amount of markers on the place
+	 */
+	public int getTokens(int index) {
+		int perLong = 64 / bitsPerPlace;
+		long word = packed[index / perLong];
+		int shift = (index % perLong) * bitsPerPlace;
+		return (int) ((word >>> shift) & ((1L << bitsPerPlace) - 1));
+	}
+
+	/**
+	 * Returns the amount of markers of all places.
+	 * 
+	 * @return a new array with the markers of each place, in the alphabetical
+	 *         order of the place ids
+	 */
+	public int[] getTokens() {
+		int[] tokens = new int[placeIds.length];
+		for (int i = 0; i < tokens.length; i++) {
+			tokens[i] = getTokens(i);
+		}
+		return tokens;
+	}
+
+	/**
+	 * Returns the marking as a list of {@link Place Places} in alphabetical
+	 * order. The list is created on first use.
+	 * 
+	 * @return the places and their amount of markers
+	 */
+	public List<Place> getPlaces() {
+		if (places == null) {
+			List<Place> list = new ArrayList<Place>(placeIds.length);
+			for (int i = 0; i < placeIds.length; i++) {
+				Place copy = new Place(placeIds[i]);
+				copy.currentTokens = getTokens(i);
+				list.add(copy);
+			}
+			places = list;
+		}
+		return places;
+	}
+
+	/**
+	 * Two markings are equal if they have the same amount of markers on each
+	 * place.
+	 */
+	@Override
+	public boolean equals(Object object) {
+		if (this == object) {
+			return true;
+		}
+		if (!(object instanceof Marking)) {
+			return false;
+		}
+		Marking other = (Marking) object;
+		return hash == other.hash &&
+				bitsPerPlace == other.bitsPerPlace &&
+				placeIds.length == other.placeIds.length &&
+				Arrays.equals(packed, other.packed);
+	}
+
+	@Override
+	public int hashCode() {
+		return hash;
+	}
+
+	/**
+	 * Returns the id of the marking.
+	 * 
+	 * @see #getId()
+	 */
+	@Override
+	public String toString() {
+		return getId();
+	}
+
 	/**
 	 * Helper method to reduce code repetition in the constructor.
 	 * 
@@ -74,43 +270,126 @@ public class Marking {
 	 */
 	private void init(List<Place> inputPlaces) {
 		this.isRoot = false;
-		this.places = new ArrayList<Place>(inputPlaces.size());
 		this.isPathStart = false;
 		this.isPathEnd = false;
-		this.id = generateMarkingId(inputPlaces);
-		loadPlaces(inputPlaces);
+		List<Place> sortedPlaces = new ArrayList<Place>(inputPlaces);
+		sortPlaces(sortedPlaces);
+		this.placeIds = new String[sortedPlaces.size()];
+		int[] tokens = new int[sortedPlaces.size()];
+		for (int i = 0; i < tokens.length; i++) {
+			Place place = sortedPlaces.get(i);
+			placeIds[i] = place.id;
+			tokens[i] = place.currentTokens;
+		}
+		pack(tokens);
+	}
+
+	/**
+	 * Packs the marker counts into {@link Marking#packed} and computes the
+	 * hash code.
+	 * 
+	 * @param tokens the amount of markers of each place
+	 */
+	private void pack(int[] tokens) {
+		this.bitsPerPlace = bitsPerPlace(tokens);
+		this.packed = new long[packedLength(tokens.length, bitsPerPlace)];
+		pack(tokens, bitsPerPlace, packed);
+		this.hash = hash(packed, packed.length, tokens.length);
 	}
-	
+
 	/**
-	 * Inserts a new marking into the datastructure.
+	 * Checks if this marking has the given packed marker counts.
 	 * 
-	 * @param inputPlaces a list of {@link Place Places}
+	 * @param otherPacked the packed marker counts
+	 * @param length      the number of used entries of {@code otherPacked}
+	 * @param bits        the number of bits per place
+	 * @param placeCount  the number of places
+	 * @return            {@code true} if the counts are the same
 	 */
-	private void loadPlaces(List<Place> inputPlaces) {
-		for (Place inputPlace : inputPlaces) {
-			Place copy = new Place(inputPlace.id);
-			copy.currentTokens = inputPlace.currentTokens;
-			this.places.add(copy);
+	boolean hasPacked(
+			long[] otherPacked,
+			int length,
+			int bits,
+			int placeCount) {
+		if (bitsPerPlace != bits ||
+				placeIds.length != placeCount ||
+				packed.length != length) {
+			return false;
+		}
+		for (int i = 0; i < length; i++) {
+			if (packed[i] != otherPacked[i]) {
+				return false;
+			}
 		}
+		return true;
 	}
 
 	/**
-	 * Generates a marking id from all {@link Place Places} and marker counts
-	 * of a {@link PetriNetModel Petri net}.
+	 * Returns the number of bits per place needed to pack the given marker
+	 * counts.
 	 * 
-	 * @param places a list of {@link Place Places}
-	 * @return the generated id
+	 * @param tokens the amount of markers of each place
+	 * @return       the smallest power of two that holds the largest count
 	 */
-	private String generateMarkingId(List<Place> places) {
-		sortPlaces(places);
-		String id = "(";
-		for (Place place : places) {
-			id = id + place.currentTokens + "|";
+	static int bitsPerPlace(int[] tokens) {
+		int max = 0;
+		for (int count : tokens) {
+			max |= count;
 		}
-		id = id.substring(0, id.length() - 1);
-		id = id + ")";
-		return id;
-	};
+		int bits = 1;
+		while (bits < 32 && (max >>> bits) != 0) {
+			bits <<= 1;
+		}
+		return bits;
+	}
+
+	/**
+	 * Returns the number of {@code long} values needed for packed counts.
+	 * 
+	 * @param placeCount the number of places
+	 * @param bits       the number of bits per place
+	 * @return           the length of the packed array
+	 */
+	static int packedLength(int placeCount, int bits) {
+		int perLong = 64 / bits;
+		return (placeCount + perLong - 1) / perLong;
+	}
+
+	/**
+	 * Packs marker counts into an array.
+	 * 
+	 * @param tokens the amount of markers of each place
+	 * @param bits   the number of bits per place
+	 * @param target the array to pack the counts into. At least
+	 *               {@link #packedLength} entries are overwritten.
+	 */
+	static void pack(int[] tokens, int bits, long[] target) {
+		int perLong = 64 / bits;
+		int length = packedLength(tokens.length, bits);
+		for (int i = 0; i < length; i++) {
+			target[i] = 0;
+		}
+		for (int i = 0; i < tokens.length; i++) {
+			target[i / perLong] |= ((long) tokens[i]) << ((i % perLong) * bits);
+		}
+	}
+
+	/**
+	 * Computes the hash code of packed marker counts.
+	 * 
+	 * @param packed     the packed marker counts
+	 * @param length     the number of used entries of {@code packed}
+	 * @param placeCount the number of places
+	 * @return           the hash code
+	 */
+	static int hash(long[] packed, int length, int placeCount) {
+		int result = 1;
+		for (int i = 0; i < length; i++) {
+			long word = packed[i];
+			result = 31 * result + (int) (word ^ (word >>> 32));
+		}
+		return result * 31 + placeCount;
+	}
 
 	/**
 	 * Sorts a list of {@link Place Places} alphabetically.
@@ -125,4 +404,4 @@ public class Marking {
 			}
 		});
 	}
-}
\ No newline at end of file
+}
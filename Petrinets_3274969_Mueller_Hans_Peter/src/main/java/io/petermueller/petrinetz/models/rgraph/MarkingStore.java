@@ -0,0 +1,194 @@
+package io.petermueller.petrinetz.models.rgraph;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Stores each distinct {@link Marking} exactly once. Every marking added to
+ * the store is replaced by its canonical instance, so markings from the same
+ * store can be compared by reference or by their
+ * {@link Marking#getStateId() state id}.
+ * 
+ * <p><strong>Implementation details:</strong><br>
+ * The store is a hash table with open addressing and linear probing over the
+ * packed marker counts of the markings. The table holds state ids, which are
+ * indices into a list of the canonical markings. When a marking is looked up
+ * from an {@code int} array, the counts are packed into a reused buffer, so a
+ * new {@link Marking} is only allocated if the marking hasn't been seen
+ * before.
+ * 
+ * @author Hans Peter Müller (3274969)
+ * @see    Marking
+ */
+public class MarkingStore {
+	private static final int EMPTY = -1;
+	private final List<Marking> markings;
+	private int[] table;
+	private int[] hashes;
+	private long[] buffer;
+
+	/**
+	 * Initializes an empty store.
+	 */
+	public MarkingStore() {
+		markings = new ArrayList<Marking>();
+		table = new int[16];
+		hashes = new int[16];
+		buffer = new long[1];
+		clearTable();
+	}
+
+	/**
+	 * Returns the canonical instance of a marking. If no equal marking is in
+	 * the store yet, the given marking is added and becomes the canonical
+	 * instance.
+	 * 
+	 * @param marking a marking
+	 * @return        the canonical marking which is equal to {@code marking}
+	 */
+	public Marking intern(Marking marking) {
+		Marking existing = find(marking);
+		if (existing != null) {
+			return existing;
+		}
+		add(marking, marking.hashCode());
+		return marking;
+	}
+
+	/**
+	 * Returns the canonical instance of the marking with the given marker
+	 * counts. A new {@link Marking} is only created if there is none yet.
+	 * 
+	 * @param placeIds the ids of the places in alphabetical order
+	 * @param tokens   the amount of markers of each place, in the same order
+	 * @return         the canonical marking
+	 */
+	public Marking intern(String[] placeIds, int[] tokens) {
+		int bits = Marking.bitsPerPlace(tokens);
+		int length = Marking.packedLength(tokens.length, bits);
+		if (buffer.length < length) {
+			buffer = new long[length];
+		}
+		Marking.pack(tokens, bits, buffer);
+		int hash = Marking.hash(buffer, length, tokens.length);
+		int mask = table.length - 1;
+		for (int slot = spread(hash) & mask; table[slot] != EMPTY;
+				slot = (slot + 1) & mask) {
+			Marking candidate = markings.get(table[slot]);
+			if (hashes[slot] == hash &&
+					candidate.hasPacked(buffer, length, bits, tokens.length)) {
+				return candidate;
+			}
+		}
+		Marking marking = new Marking(placeIds, buffer, length, bits, hash);
+		add(marking, hash);
+		return marking;
+	}
+
+	/**
+	 * Returns the marking in the store which is equal to the given one.
+	 * 
+	 * @param marking a marking to look for
+	 * @return        the canonical marking, or {@code null} if there is no
+	 *                equal marking in the store
+	 */
+	public Marking find(Marking marking) {
+		int hash = marking.hashCode();
+		int mask = table.length - 1;
+		for (int slot = spread(hash) & mask; table[slot] != EMPTY;
+				slot = (slot + 1) & mask) {
+			Marking candidate = markings.get(table[slot]);
+			if (hashes[slot] == hash && candidate.equals(marking)) {
+				return candidate;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Returns the marking with the given state id.
+	 * 
+	 * @param stateId the state id of the marking
+	 * @return        the canonical marking
+	 */
+	public Marking get(int stateId) {
+		return markings.get(stateId);
+	}
+
+	/**
+	 * Returns the number of markings in the store.
+	 * 
+	 * @return the number of markings
+	 */
+	public int size() {
+		return markings.size();
+	}
+
+	/**
+	 * Adds a marking which isn't in the store yet and assigns the next state
+	 * id to it.
+	 * 
+	 * @param marking the new marking
+	 * @param hash    the hash code of the marking
+	 */
+	private void add(Marking marking, int hash) {
+		if ((markings.size() + 1) * 2 > table.length) {
+			grow();
+		}
+		marking.stateId = markings.size();
+		markings.add(marking);
+		insert(marking.stateId, hash);
+	}
+
+	/**
+	 * Puts a state id into the first free slot of its probe sequence.
+	 * 
+	 * @param stateId the state id
+	 * @param hash    the hash code of the marking
+	 */
+	private void insert(int stateId, int hash) {
+		int mask = table.length - 1;
+		int slot = spread(hash) & mask;
+		while (table[slot] != EMPTY) {
+			slot = (slot + 1) & mask;
+		}
+		table[slot] = stateId;
+		hashes[slot] = hash;
+	}
+
+	/**
+	 * Doubles the size of the hash table and inserts all markings again.
+	 */
+	private void grow() {
+		int[] oldTable = table;
+		int[] oldHashes = hashes;
+		table = new int[oldTable.length * 2];
+		hashes = new int[oldTable.length * 2];
+		clearTable();
+		for (int i = 0; i < oldTable.length; i++) {
+			if (oldTable[i] != EMPTY) {
+				insert(oldTable[i], oldHashes[i]);
+			}
+		}
+	}
+
+	/**
+	 * Mixes the high bits of a hash code into the low bits, which select the
+	 * slot.
+	 * 
+	 * @param hash a hash code
+	 * @return     the mixed hash code
+	 */
+	private static int spread(int hash) {
+		return hash ^ (hash >>> 16);
+	}
+
+	/**
+	 * Marks all slots of the hash table as empty.
+	 */
+	private void clearTable() {
+		for (int i = 0; i < table.length; i++) {
+			table[i] = EMPTY;
+		}
+	}
+}
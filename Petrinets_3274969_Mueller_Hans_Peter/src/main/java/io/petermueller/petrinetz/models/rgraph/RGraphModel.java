@@ -1,10 +1,11 @@
 package io.petermueller.petrinetz.models.rgraph;
 
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import io.petermueller.petrinetz.models.filesystem.FileSystemModel;
+import io.petermueller.petrinetz.models.petrinet.NetStructure;
 import io.petermueller.petrinetz.models.petrinet.PetriNetModel;
 import io.petermueller.petrinetz.models.petrinet.Place;
 import io.petermueller.petrinetz.models.petrinet.Transition;
@@ -19,6 +20,15 @@ import io.petermueller.petrinetz.util.EventListener;
  * between one marking into another by firing a transition in a Petri net. Each
  * reachability graph is always connected to a {@link PetriNetModel}.
  * 
+ * <p><strong>Implementation details:</strong><br>
+ * Besides the lists of markings and arcs, the model keeps indices so that
+ * firing a transition in the token game doesn't scan the whole graph: the
+ * {@link MarkingStore} finds equal markings, a map finds markings by their
+ * id string, every marking has lists of its outgoing and incoming arcs
+ * (indexed by {@link Marking#getStateId() state id}), arcs are found by
+ * their label, source and target in a hash map, and the active marking and
+ * the latest arc are remembered directly.
+ * 
  * @author Hans Peter Müller (3274969)
  */
 public class RGraphModel extends EventEmitter {
@@ -32,6 +42,14 @@ public class RGraphModel extends EventEmitter {
 	public List<TransitionArc> arcs;
 	private PetriNetModel petriNetModel;
 	private FileSystemModel fileSystemModel;
+	private MarkingStore store;
+	private Map<String, Marking> markingsById;
+	private int markingsByIdCount;
+	private List<List<TransitionArc>> outgoingArcs;
+	private List<List<TransitionArc>> incomingArcs;
+	private Map<ArcKey, TransitionArc> arcIndex;
+	private Marking activeMarking;
+	private TransitionArc latestArc;
 
 	/**
 	 * Initializes a reachability graph from a {@link PetriNetModel Petri net}.
@@ -39,8 +57,7 @@ public class RGraphModel extends EventEmitter {
 	 * @param petriNet a {@link PetriNetModel Petri net}
 	 */
 	public RGraphModel(PetriNetModel petriNet) {
-		this.markings = new ArrayList<Marking>();
-		this.arcs = new ArrayList<TransitionArc>();
+		init();
 		this.petriNetModel = petriNet;
 		this.addMarking(petriNetModel.places);
 		addPetriNetEventListener();
@@ -57,8 +74,7 @@ public class RGraphModel extends EventEmitter {
 	public RGraphModel(
 			PetriNetModel petriNet,
 			FileSystemModel fileSystemModel) {
-		this.markings = new ArrayList<Marking>();
-		this.arcs = new ArrayList<TransitionArc>();
+		init();
 		this.petriNetModel = petriNet;
 		this.fileSystemModel = fileSystemModel;
 		this.addMarking(petriNetModel.places);
@@ -66,6 +82,36 @@ public class RGraphModel extends EventEmitter {
 		addFileSystemEventListener();
 	}
 
+	/**
+	 * Initializes an independent copy of a reachability graph. The copy has
+	 * its own {@link Marking Markings}, {@link TransitionArc Arcs} and
+	 * indices, so changing one graph never changes the other. The copy isn't
+	 * connected to a Petri net and doesn't follow the token game, but it can
+	 * be shown with {@link #load(RGraphModel)}.
+	 * 
+	 * @param source the reachability graph to copy
+	 */
+	public RGraphModel(RGraphModel source) {
+		init();
+		for (Marking marking : source.markings) {
+			Marking copy = new Marking(marking);
+			insertMarking(copy);
+			if (marking == source.activeMarking) {
+				activeMarking = copy;
+			}
+		}
+		for (TransitionArc arc : source.arcs) {
+			TransitionArc copy = new TransitionArc(arc.id, arc.shortId,
+					getMarking(arc.source), getMarking(arc.target));
+			copy.isLatest = arc.isLatest;
+			copy.isOnDetectionPath = arc.isOnDetectionPath;
+			insertArc(copy);
+			if (arc == source.latestArc) {
+				latestArc = copy;
+			}
+		}
+	}
+
 	/**
 	 * Adds a new transition and a new {@link Marking} to the reachability 
 	 * graph. In other words, this is what happens if a user fires a transition
@@ -89,14 +135,84 @@ public class RGraphModel extends EventEmitter {
 	 * @param places a list of places representing the new {@link Marking}
 	 */
 	public void addMarking(List<Place> places) {
-		String id = generateMarkingIdString(places);
-		if (!markingExists(id)) {
-			Marking marking = new Marking(true, places);
-			markings.add(marking);
+		Marking marking = createMarking(places);
+		Marking existing = getMarking(marking);
+		if (existing == null) {
+			insertMarking(marking);
 			setAsActiveMarking(marking);
 		} else {
-			setAsActiveMarking(getMarkingById(id));
+			setAsActiveMarking(existing);
+		}
+	}
+
+	/**
+	 * Adds an arc between two markings to the reachability graph without
+	 * changing the active marking or the latest arc. Markings which aren't
+	 * part of the graph yet are added. No events are fired, so this method
+	 * can be used to fill the graph with markings that were computed
+	 * elsewhere, e.g. by a parallel analysis.
+	 * 
+	 * @param source     the marking from which the transition was fired
+	 * @param transition the fired transition
+	 * @param target     the marking reached by firing the transition
+	 * @return           the arc of the graph, which is a new one only if
+	 *                   there was no such arc before
+	 */
+	public TransitionArc addArc(
+			Marking source,
+			Transition transition,
+			Marking target) {
+		source = addMarking(source);
+		target = addMarking(target);
+		String id = generateTransitionIdString(transition);
+		TransitionArc arc = getArcById(id, source, target);
+		if (arc == null) {
+			arc = new TransitionArc(id, transition.id, source, target);
+			insertArc(arc);
+		}
+		return arc;
+	}
+
+	/**
+	 * Adds all arcs leaving a marking to the reachability graph at once, in
+	 * the same way as {@link #addArc(Marking, Transition, Marking)}. No events
+	 * are fired and neither the active marking nor the latest arc are
+	 * changed.
+	 * 
+	 * @param source      the marking from which the transitions were fired
+	 * @param transitions the fired transitions
+	 * @param targets     the marking reached by each transition, in the same
+	 *                    order
+	 * @return            the arcs of the graph, in the same order
+	 */
+	public List<TransitionArc> addArcs(
+			Marking source,
+			List<Transition> transitions,
+			List<Marking> targets) {
+		source = addMarking(source);
+		List<TransitionArc> result =
+				new ArrayList<TransitionArc>(targets.size());
+		for (int i = 0; i < targets.size(); i++) {
+			result.add(addArc(source, transitions.get(i), targets.get(i)));
+		}
+		return result;
+	}
+
+	/**
+	 * Adds a marking to the reachability graph without changing the active
+	 * marking. No events are fired.
+	 * 
+	 * @param marking a marking
+	 * @return        the marking of the graph which is equal to
+	 *                {@code marking}
+	 */
+	public Marking addMarking(Marking marking) {
+		Marking existing = getMarking(marking);
+		if (existing != null) {
+			return existing;
 		}
+		insertMarking(marking);
+		return marking;
 	}
 
 	/**
@@ -106,8 +222,7 @@ public class RGraphModel extends EventEmitter {
 	 * @param places the root of the new reachability graph
 	 */
 	public void reset(List<Place> places) {
-		markings = new ArrayList<Marking>();
-		arcs = new ArrayList<TransitionArc>();
+		init();
 		addMarking(places);
 		setAsRoot(places);
 		fireEvent(Event.RGRAPH_RESET);
@@ -120,14 +235,14 @@ public class RGraphModel extends EventEmitter {
 	 * @param places the marking that should be set as active
 	 */
 	public void setToMarking(List<Place> places) {
-		String id = generateMarkingIdString(places);
-		if (markingExists(id)) {
-			setAsActiveMarking(getMarkingById(id));
+		Marking marking = createMarking(places);
+		Marking existing = getMarking(marking);
+		if (existing != null) {
+			setAsActiveMarking(existing);
 			removeLatestTransition();
 		} 
 		else {
-			Marking marking = new Marking(true, places);
-			markings.add(marking);
+			insertMarking(marking);
 			setAsActiveMarking(marking);
 			removeLatestTransition();
 		}
@@ -142,12 +257,62 @@ public class RGraphModel extends EventEmitter {
 	 *         no marking with this id was found
 	 */
 	public Marking getMarkingById(String id) {
-		for (Marking marking : markings) {
-			if (marking.id.equals(id)) {
-				return marking;
-			}
+		/*
+		 * Ids are only generated for markings which have been looked up this
+		 * way, so the map is filled lazily with the markings added since the
+		 * last call.
+		 */
+		while (markingsByIdCount < markings.size()) {
+			Marking marking = markings.get(markingsByIdCount);
+			markingsById.put(marking.getId(), marking);
+			markingsByIdCount++;
 		}
-		return null;
+		return markingsById.get(id);
+	}
+
+	/**
+	 * Returns the marking of this model which is equal to the given one, i.e.
+	 * which has the same amount of markers on each place.
+	 * 
+	 * @param query a marking to look for
+	 * @return      a reference to the equal marking in this model,
+	 *              {@code null} if there is none
+	 */
+	public Marking getMarking(Marking query) {
+		return store.find(query);
+	}
+
+	/**
+	 * Returns the marking with the given state id.
+	 * 
+	 * @param stateId the {@link Marking#getStateId() state id} of a marking
+	 *                in this model
+	 * @return        a reference to the marking
+	 */
+	public Marking getMarking(int stateId) {
+		return store.get(stateId);
+	}
+
+	/**
+	 * Returns the arcs starting at a marking.
+	 * 
+	 * @param marking a marking of this model
+	 * @return        the outgoing arcs of the marking, in the order in which
+	 *                they were added
+	 */
+	public List<TransitionArc> getOutgoingArcs(Marking marking) {
+		return outgoingArcs.get(marking.getStateId());
+	}
+
+	/**
+	 * Returns the arcs ending at a marking.
+	 * 
+	 * @param marking a marking of this model
+	 * @return        the incoming arcs of the marking, in the order in which
+	 *                they were added
+	 */
+	public List<TransitionArc> getIncomingArcs(Marking marking) {
+		return incomingArcs.get(marking.getStateId());
 	}
 
 	/**
@@ -164,6 +329,18 @@ public class RGraphModel extends EventEmitter {
 		for (TransitionArc arc : inputRGraph.arcs) {
 			this.arcs.add(arc);
 		}
+		/*
+		 * The markings and arcs are shared with the input graph, so are the
+		 * indices over them.
+		 */
+		store = inputRGraph.store;
+		markingsById = inputRGraph.markingsById;
+		markingsByIdCount = inputRGraph.markingsByIdCount;
+		outgoingArcs = inputRGraph.outgoingArcs;
+		incomingArcs = inputRGraph.incomingArcs;
+		arcIndex = inputRGraph.arcIndex;
+		activeMarking = inputRGraph.activeMarking;
+		latestArc = inputRGraph.latestArc;
 		fireEvent(Event.RGRAPH_NEW_GRAPH_LOADED);
 	}
 	
@@ -171,8 +348,9 @@ public class RGraphModel extends EventEmitter {
 	 * Removes the active marking tag.
 	 */
 	public void removeActiveMarking() {
-		for (Marking marking : markings) {
-			marking.isActive = false;
+		if (activeMarking != null) {
+			activeMarking.isActive = false;
+			activeMarking = null;
 		}
 	}
 
@@ -181,13 +359,58 @@ public class RGraphModel extends EventEmitter {
 	 * 
 	 * @return a reference to the currently active marking
 	 */
-	private Marking getActiveMarking() {
-		for (Marking marking : markings) {
-			if (marking.isActive) {
-				return marking;
-			}
-		}
-		return null;
+	public Marking getActiveMarking() {
+		return activeMarking;
+	}
+
+	/**
+	 * Returns the arc of the last fired transition.
+	 * 
+	 * @return a reference to the latest arc, {@code null} if the marking was
+	 *         set without firing a transition
+	 */
+	public TransitionArc getLatestArc() {
+		return latestArc;
+	}
+
+	/**
+	 * Clears all markings, arcs and indices of the model.
+	 */
+	private void init() {
+		markings = new ArrayList<Marking>();
+		arcs = new ArrayList<TransitionArc>();
+		store = new MarkingStore();
+		markingsById = new HashMap<String, Marking>();
+		markingsByIdCount = 0;
+		outgoingArcs = new ArrayList<List<TransitionArc>>();
+		incomingArcs = new ArrayList<List<TransitionArc>>();
+		arcIndex = new HashMap<ArcKey, TransitionArc>();
+		activeMarking = null;
+		latestArc = null;
+	}
+
+	/**
+	 * Adds a marking which isn't part of the model yet.
+	 * 
+	 * @param marking the new marking
+	 */
+	private void insertMarking(Marking marking) {
+		store.intern(marking);
+		markings.add(marking);
+		outgoingArcs.add(new ArrayList<TransitionArc>(2));
+		incomingArcs.add(new ArrayList<TransitionArc>(2));
+	}
+
+	/**
+	 * Adds an arc which isn't part of the model yet.
+	 * 
+	 * @param arc the new arc
+	 */
+	private void insertArc(TransitionArc arc) {
+		arcs.add(arc);
+		outgoingArcs.get(arc.source.getStateId()).add(arc);
+		incomingArcs.get(arc.target.getStateId()).add(arc);
+		arcIndex.put(new ArcKey(arc.id, arc.source, arc.target), arc);
 	}
 
 	/**
@@ -197,7 +420,7 @@ public class RGraphModel extends EventEmitter {
 	 *               that should be set as the root marking
 	 */
 	private void setAsRoot(List<Place> places) {
-		Marking root = getMarkingById(generateMarkingIdString(places));
+		Marking root = getMarking(createMarking(places));
 		root.isRoot = true;
 	}
 
@@ -216,7 +439,7 @@ public class RGraphModel extends EventEmitter {
 		Marking target = getActiveMarking();
 		if (!transitionExists(id, source, target)) {
 			TransitionArc arc = new TransitionArc(id, shortId, source, target);
-			arcs.add(arc);
+			insertArc(arc);
 			setAsLastTransition(arc);
 		} else {
 			setAsLastTransition(getArcById(id, source, target));
@@ -225,22 +448,28 @@ public class RGraphModel extends EventEmitter {
 	}
 
 	/**
-	 * Generates the marking name as specified in the requirements document. For
-	 * example: "(0|3|0|0|2)"
+	 * Creates a marking from a list of places. If the places belong to the
+	 * {@link PetriNetModel} of this graph, the canonical place order of its
+	 * {@link NetStructure} is used instead of sorting the places.
 	 * 
 	 * @param places a list of places representing the marking
-	 * @return       a string in the form (0|3|0|0|2)
+	 * @return       a new marking
 	 */
-	private String generateMarkingIdString(List<Place> places) {
-		sortPlaces(places);
-		String id = "(";
+	private Marking createMarking(List<Place> places) {
+		NetStructure net = petriNetModel.getStructure();
+		if (places.size() != net.getPlaceCount()) {
+			return new Marking(places);
+		}
+		int[] tokens = new int[places.size()];
 		for (Place place : places) {
-			id = id + place.currentTokens + "|";
+			int index = net.getPlaceIndex(place.id);
+			if (index == -1) {
+				return new Marking(places);
+			}
+			tokens[net.getCanonicalPosition(index)] = place.currentTokens;
 		}
-		id = id.substring(0, id.length() - 1);
-		id = id + ")";
-		return id;
-	};
+		return new Marking(net.getCanonicalPlaceIds(), tokens);
+	}
 
 	/**
 	 * Generates the name of a transition as specified in the requirements
@@ -253,33 +482,6 @@ public class RGraphModel extends EventEmitter {
 		return "[" + transition.id + "] " + transition.name;
 	}
 
-	/**
-	 * Sorts a list of {@link Place places} alphabetically.
-	 * 
-	 * @param places a list of {@link Place places}
-	 */
-	private void sortPlaces(List<Place> places) {
-		Collections.sort(places, new Comparator<Place>() {
-			@Override
-			public int compare(Place o1, Place o2) {
-				return o1.id.compareTo(o2.id);
-			}
-		});
-	}
-
-	/**
-	 * Checks if a marking with the specified id exists in this model.
-	 * 
-	 * @param id the id of the marking
-	 * @return   true, if such a marking exists, else false
-	 */
-	private boolean markingExists(String id) {
-		if (getMarkingById(id) != null) {
-			return true;
-		}
-		return false;
-	}
-
 	/**
 	 * Checks if a {@link Transition} with the specified id, source
 	 * {@link Marking} and target Marking already exists in this model.
@@ -313,44 +515,29 @@ public class RGraphModel extends EventEmitter {
 			String id,
 			Marking source,
 			Marking target) {
-		for (TransitionArc arc : arcs) {
-			if (arc.id.equals(id) &&
-					arc.source == source &&
-					arc.target == target) {
-				return arc;
-			}
-		}
-		return null;
+		return arcIndex.get(new ArcKey(id, source, target));
 	}
 
 	/**
 	 * Sets a {@link Marking} as the currently active one.
 	 * 
-	 * @param activeMarking the {@link Marking} to set as currently active
-	 */
-	private void setAsActiveMarking(Marking activeMarking) {
-		for (Marking marking : markings) {
-			if (marking.id.equals(activeMarking.id)) {
-				marking.isActive = true;
-			} else {
-				marking.isActive = false;
-			}
-		}
+	 * @param marking the {@link Marking} to set as currently active
+	 */
+	private void setAsActiveMarking(Marking marking) {
+		removeActiveMarking();
+		marking.isActive = true;
+		activeMarking = marking;
 	}
 
 	/**
 	 * Sets a {@link TransitionArc transition} as the last fired transition.
 	 * 
-	 * @param latestArc a reference to the {@link TransitionArc}
-	 */
-	private void setAsLastTransition(TransitionArc latestArc) {
-		for (TransitionArc arc : arcs) {
-			if (arc == latestArc) {
-				arc.isLatest = true;
-			} else {
-				arc.isLatest = false;
-			}
-		}
+	 * @param arc a reference to the {@link TransitionArc}
+	 */
+	private void setAsLastTransition(TransitionArc arc) {
+		removeLatestTransition();
+		arc.isLatest = true;
+		latestArc = arc;
 	}
 
 	/**
@@ -358,9 +545,10 @@ public class RGraphModel extends EventEmitter {
 	 * the model.
 	 */
 	private void removeLatestTransition() {
-		for (TransitionArc arc : arcs) {
-			arc.isLatest = false;
-		} 
+		if (latestArc != null) {
+			latestArc.isLatest = false;
+			latestArc = null;
+		}
 	}
 
 	/**
@@ -400,4 +588,42 @@ public class RGraphModel extends EventEmitter {
 		});
 	}
 
-}
\ No newline at end of file
+	/**
+	 * The key of an arc in the arc index: its label together with the state
+	 * ids of its source and target marking.
+	 */
+	private static final class ArcKey {
+		private final String id;
+		private final int source;
+		private final int target;
+
+		/**
+		 * Initializes a key.
+		 * 
+		 * @param id     the label of the arc
+		 * @param source the source {@link Marking}
+		 * @param target the target {@link Marking}
+		 */
+		ArcKey(String id, Marking source, Marking target) {
+			this.id = id;
+			this.source = source.getStateId();
+			this.target = target.getStateId();
+		}
+
+		@Override
+		public boolean equals(Object object) {
+			if (!(object instanceof ArcKey)) {
+				return false;
+			}
+			ArcKey other = (ArcKey) object;
+			return source == other.source &&
+					target == other.target &&
+					id.equals(other.id);
+		}
+
+		@Override
+		public int hashCode() {
+			return (id.hashCode() * 31 + source) * 31 + target;
+		}
+	}
+}
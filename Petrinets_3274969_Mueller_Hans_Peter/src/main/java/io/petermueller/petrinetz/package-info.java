@@ -12,11 +12,14 @@
  * <li>Interactions like firing transitions and adjusting the marking</li>
  * <li>Construction of an interactive reachability graph</li>
  * <li>Boundedness-analysis of single or multiple Petri net files</li>
+ * <li>Headless batch analysis with JSON lines or CSV output</li>
  * </ul>
  * 
  * The main entry point of the app is
  * {@link io.petermueller.petrinetz.Petrinets_3274969_Mueller_Hans_Peter
- * Petrinets_3274969_Mueller_Hans_Peter}
+ * Petrinets_3274969_Mueller_Hans_Peter}. Multiple files can also be analyzed
+ * without the GUI with {@link io.petermueller.petrinetz.BatchAnalyzer
+ * BatchAnalyzer}.
  * 
  * @author Hans Peter Müller (3274969)
  */
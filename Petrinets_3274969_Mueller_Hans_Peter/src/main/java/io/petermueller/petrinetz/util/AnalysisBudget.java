@@ -0,0 +1,85 @@
+package io.petermueller.petrinetz.util;
+
+/**
+ * Limits the resources a single {@link BoundednessAnalysis} may use. An
+ * analysis which runs longer than the time limit or discovers more markings
+ * than the marking limit stops and reports how far it got instead of a
+ * result. The number of discovered markings is what fills the memory, so the
+ * marking limit also bounds the memory of the analysis.
+ * 
+ * @author Hans Peter Müller (3274969)
+ * @see    BoundednessAnalysis.Outcome
+ */
+public class AnalysisBudget {
+	/**
+	 * A budget without any limits.
+	 */
+	public static final AnalysisBudget UNLIMITED = new AnalysisBudget(0, 0);
+	/**
+	 * The budget for the analyses of a batch: one minute and one million
+	 * markings per Petri net.
+	 */
+	public static final AnalysisBudget BATCH_DEFAULT =
+			new AnalysisBudget(60000, 1000000);
+	/**
+	 * The wall-clock time in milliseconds an analysis may take, 0 for no
+	 * limit.
+	 */
+	public final long maxMillis;
+	/**
+	 * The number of markings an analysis may discover, 0 for no limit.
+	 */
+	public final int maxMarkings;
+
+	/**
+	 * Initializes a budget.
+	 * 
+	 * @param maxMillis   the wall-clock time in milliseconds an analysis may
+	 *                    take, 0 for no limit
+	 * @param maxMarkings the number of markings an analysis may discover, 0
+	 *                    for no limit
+	 * @throws IllegalArgumentException if a limit is negative
+	 */
+	public AnalysisBudget(long maxMillis, int maxMarkings) {
+		if (maxMillis < 0 || maxMarkings < 0) {
+			throw new IllegalArgumentException(
+					"The limits of a budget can't be negative.");
+		}
+		this.maxMillis = maxMillis;
+		this.maxMarkings = maxMarkings;
+	}
+
+	/**
+	 * Checks if the budget has no limits at all.
+	 * 
+	 * @return {@code true} if neither the time nor the markings are limited,
+	 *         {@code false} otherwise
+	 */
+	public boolean isUnlimited() {
+		return maxMillis == 0 && maxMarkings == 0;
+	}
+
+	/**
+	 * Checks if an analysis has used up its time.
+	 * 
+	 * @param startNanos the {@link System#nanoTime} at which the analysis
+	 *                   started
+	 * @return           {@code true} if the time limit was reached,
+	 *                   {@code false} otherwise
+	 */
+	public boolean isTimeExceeded(long startNanos) {
+		return maxMillis > 0 &&
+				System.nanoTime() - startNanos >= maxMillis * 1000000L;
+	}
+
+	/**
+	 * Checks if an analysis has discovered too many markings.
+	 * 
+	 * @param discoveredMarkings the number of markings discovered so far
+	 * @return                   {@code true} if the marking limit was
+	 *                           exceeded, {@code false} otherwise
+	 */
+	public boolean isMarkingsExceeded(int discoveredMarkings) {
+		return maxMarkings > 0 && discoveredMarkings > maxMarkings;
+	}
+}
@@ -0,0 +1,576 @@
+package io.petermueller.petrinetz.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import io.petermueller.petrinetz.models.petrinet.NetStructure;
+import io.petermueller.petrinetz.models.petrinet.PetriNetModel;
+import io.petermueller.petrinetz.models.petrinet.Transition;
+import io.petermueller.petrinetz.models.rgraph.Marking;
+import io.petermueller.petrinetz.models.rgraph.TransitionArc;
+import io.petermueller.petrinetz.util.BoundednessAnalysis.Monitor;
+import io.petermueller.petrinetz.util.BoundednessAnalysis.Outcome;
+import io.petermueller.petrinetz.util.BoundednessAnalysis.Strategy;
+
+/**
+ * Stores the results of boundedness analyses on disk, so a Petri net which
+ * has been analyzed before doesn't have to be analyzed again. The results are
+ * kept across runs of the application.
+ * 
+ * <p>Each result is stored under the {@link PetriNetModel#getFingerprint()
+ * fingerprint} of its Petri net, which covers the structure and the start
+ * marking but not the names, positions or the file name. The verdict, the
+ * counts of the analysis and the termination path are always stored. The
+ * complete reachability graph is only stored if the cache was created with
+ * {@code storeGraphs}, otherwise a restored result holds only the markings
+ * and arcs of the termination path.
+ * 
+ * <p>Only results are stored. Analyses which stopped because of their
+ * {@link AnalysisBudget} are analyzed again the next time, since a larger
+ * budget might reach a result.
+ * 
+ * <p><strong>Implementation details:</strong><br>
+ * Every result is a file named after the fingerprint in the cache directory.
+ * The file starts with a magic number and a format version, followed by the
+ * outcome, the counts, a table of the transition ids, the markings, the arcs
+ * as (source, transition, target) indices and the termination path as arc
+ * indices. All numbers except the magic number and the duration are written
+ * as variable-length integers, so a marking with few markers takes one byte
+ * per place. Files are written to a temporary file first and then moved into
+ * place, so a crash can't leave a half-written result behind. A result which
+ * is larger than the size limit of the whole cache isn't stored; writing it
+ * stops as soon as the limit is exceeded.
+ * 
+ * <p>The total size of the files is limited. An index in access order is kept
+ * in memory, and the least recently used results are deleted when the limit
+ * is exceeded. The index is rebuilt from the modification times of the files
+ * when the cache is opened, and the modification time of a file is updated
+ * whenever it is read. Files which can't be read are deleted and count as
+ * misses. A cache can be used from several threads.
+ * 
+ * @author Hans Peter Müller (3274969)
+ * @see    BoundednessAnalysis
+ */
+public class AnalysisCache {
+	/**
+	 * The size limit of the default cache: 64 MiB.
+	 */
+	public static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+	private static final int MAGIC = 0x504e4143;
+	private static final int VERSION = 1;
+	private static final String SUFFIX = ".bin";
+	private final Path directory;
+	private final long maxBytes;
+	private final boolean storeGraphs;
+	private final LinkedHashMap<String, Long> entries;
+	private long totalBytes;
+
+	/**
+	 * Opens a cache in a directory. The directory is created if it doesn't
+	 * exist, and results stored there before are kept as long as they fit
+	 * into the size limit.
+	 * 
+	 * @param directory   the directory holding the stored results
+	 * @param maxBytes    the total size the stored results may take up
+	 * @param storeGraphs {@code true} to store the complete reachability
+	 *                    graph of each result, {@code false} to store only
+	 *                    the termination path
+	 * @throws IOException if the directory can't be created or read
+	 */
+	public AnalysisCache(Path directory, long maxBytes, boolean storeGraphs)
+			throws IOException {
+		this.directory = directory;
+		this.maxBytes = maxBytes;
+		this.storeGraphs = storeGraphs;
+		this.entries = new LinkedHashMap<String, Long>(16, 0.75f, true);
+		this.totalBytes = 0;
+		Files.createDirectories(directory);
+		loadIndex();
+	}
+
+	/**
+	 * Opens the cache of the application in the {@code .petrinetz/cache}
+	 * directory of the user's home directory, storing complete reachability
+	 * graphs up to {@link #DEFAULT_MAX_BYTES}.
+	 * 
+	 * @return the cache, or {@code null} if it can't be opened
+	 */
+	public static AnalysisCache openDefault() {
+		Path directory = Paths.get(
+				System.getProperty("user.home"), ".petrinetz", "cache");
+		try {
+			return new AnalysisCache(directory, DEFAULT_MAX_BYTES, true);
+		} catch (IOException e) {
+			System.err.println(e);
+			return null;
+		}
+	}
+
+	/**
+	 * Returns the stored result for a Petri net if there is one, and analyzes
+	 * the Petri net otherwise. A new result is stored, unless the analysis
+	 * stopped before reaching one.
+	 * 
+	 * @param petriNet the Petri net to analyze
+	 * @param strategy the way the markings are explored
+	 * @param monitor  is told about the progress and can cancel the analysis,
+	 *                 may be {@code null}
+	 * @param budget   the limits of the analysis
+	 * @return         the stored or the new result
+	 * @see            BoundednessAnalysis#BoundednessAnalysis(PetriNetModel,
+	 *                 Strategy, Monitor, AnalysisBudget)
+	 */
+	public BoundednessAnalysis analyze(
+			PetriNetModel petriNet,
+			Strategy strategy,
+			Monitor monitor,
+			AnalysisBudget budget) {
+		BoundednessAnalysis analysis = get(petriNet);
+		if (analysis == null) {
+			analysis = new BoundednessAnalysis(
+					petriNet, strategy, monitor, budget);
+			put(analysis);
+		}
+		return analysis;
+	}
+
+	/**
+	 * Returns the stored result for a Petri net.
+	 * 
+	 * @param petriNet a Petri net
+	 * @return         the restored result, or {@code null} if there is no
+	 *                 result for the Petri net
+	 */
+	public BoundednessAnalysis get(PetriNetModel petriNet) {
+		String key = petriNet.getFingerprint();
+		synchronized (this) {
+			if (entries.get(key) == null) {
+				return null;
+			}
+		}
+		Path file = getFile(key);
+		try (InputStream input = new BufferedInputStream(
+				Files.newInputStream(file))) {
+			BoundednessAnalysis analysis = read(
+					new DataInputStream(input), petriNet);
+			Files.setLastModifiedTime(
+					file, FileTime.fromMillis(System.currentTimeMillis()));
+			return analysis;
+		} catch (IOException | RuntimeException e) {
+			System.err.println(file + ": " + e);
+			remove(key);
+			return null;
+		}
+	}
+
+	/**
+	 * Stores the result of an analysis. Results of analyses which stopped
+	 * before reaching a result and restored results are ignored.
+	 * 
+	 * @param analysis a finished analysis
+	 */
+	public void put(BoundednessAnalysis analysis) {
+		if (analysis.isCached || (analysis.outcome != Outcome.BOUNDED &&
+				analysis.outcome != Outcome.UNBOUNDED)) {
+			return;
+		}
+		String key = analysis.petriNet.getFingerprint();
+		Path temporary = null;
+		try {
+			temporary = Files.createTempFile(directory, key, ".tmp");
+			long size;
+			try (LimitedOutputStream output = new LimitedOutputStream(
+					new BufferedOutputStream(
+							Files.newOutputStream(temporary)),
+					maxBytes)) {
+				write(new DataOutputStream(output), analysis);
+				size = output.count;
+			}
+			Files.move(temporary, getFile(key),
+					StandardCopyOption.ATOMIC_MOVE,
+					StandardCopyOption.REPLACE_EXISTING);
+			synchronized (this) {
+				Long previous = entries.put(key, size);
+				totalBytes += size - (previous == null ? 0 : previous);
+				evict();
+			}
+		} catch (LimitExceededException e) {
+			deleteQuietly(temporary);
+		} catch (IOException e) {
+			System.err.println(e);
+			deleteQuietly(temporary);
+		}
+	}
+
+	/**
+	 * Returns the total size of the stored results.
+	 * 
+	 * @return the size in bytes
+	 */
+	public synchronized long getSize() {
+		return totalBytes;
+	}
+
+	/**
+	 * Returns the number of stored results.
+	 * 
+	 * @return the number of results
+	 */
+	public synchronized int getEntryCount() {
+		return entries.size();
+	}
+
+	/**
+	 * Builds the index from the files in the cache directory, the least
+	 * recently used first, and deletes temporary files left behind by a
+	 * crash.
+	 * 
+	 * @throws IOException if the directory can't be read
+	 */
+	private void loadIndex() throws IOException {
+		List<File> files = new ArrayList<File>();
+		try (DirectoryStream<Path> stream =
+				Files.newDirectoryStream(directory)) {
+			for (Path path : stream) {
+				String name = path.getFileName().toString();
+				if (name.endsWith(SUFFIX)) {
+					files.add(path.toFile());
+				} else if (name.endsWith(".tmp")) {
+					deleteQuietly(path);
+				}
+			}
+		}
+		Collections.sort(files, new Comparator<File>() {
+			@Override
+			public int compare(File o1, File o2) {
+				return Long.compare(o1.lastModified(), o2.lastModified());
+			}
+		});
+		synchronized (this) {
+			for (File file : files) {
+				String name = file.getName();
+				entries.put(name.substring(0, name.length() - SUFFIX.length()),
+						file.length());
+				totalBytes += file.length();
+			}
+			evict();
+		}
+	}
+
+	/**
+	 * Deletes the least recently used results until the stored results fit
+	 * into the size limit. Has to be called while holding the lock of the
+	 * cache.
+	 */
+	private void evict() {
+		Iterator<Map.Entry<String, Long>> iterator =
+				entries.entrySet().iterator();
+		while (totalBytes > maxBytes && iterator.hasNext()) {
+			Map.Entry<String, Long> eldest = iterator.next();
+			iterator.remove();
+			totalBytes -= eldest.getValue();
+			deleteQuietly(getFile(eldest.getKey()));
+		}
+	}
+
+	/**
+	 * Removes a result which can't be read from the index and deletes its
+	 * file.
+	 * 
+	 * @param key the fingerprint of the result
+	 */
+	private synchronized void remove(String key) {
+		Long size = entries.remove(key);
+		if (size != null) {
+			totalBytes -= size;
+		}
+		deleteQuietly(getFile(key));
+	}
+
+	/**
+	 * Returns the file of a result.
+	 * 
+	 * @param key the fingerprint of the result
+	 * @return    the path of the file in the cache directory
+	 */
+	private Path getFile(String key) {
+		return directory.resolve(key + SUFFIX);
+	}
+
+	/**
+	 * Deletes a file, reporting but otherwise ignoring failures.
+	 * 
+	 * @param file the file to delete, may be {@code null}
+	 */
+	private static void deleteQuietly(Path file) {
+		if (file == null) {
+			return;
+		}
+		try {
+			Files.deleteIfExists(file);
+		} catch (IOException e) {
+			System.err.println(e);
+		}
+	}
+
+	/**
+	 * Writes a result in the binary format of the cache.
+	 * 
+	 * @param output   the output to write to
+	 * @param analysis the result of a bounded or unbounded Petri net
+	 * @throws IOException if the result can't be written
+	 */
+	private void write(DataOutput output, BoundednessAnalysis analysis)
+			throws IOException {
+		List<Marking> markings;
+		List<TransitionArc> arcs;
+		if (storeGraphs) {
+			markings = analysis.rGraph.markings;
+			arcs = analysis.rGraph.arcs;
+		} else {
+			markings = new ArrayList<Marking>();
+			for (TransitionArc arc : analysis.terminationPath) {
+				if (markings.isEmpty()) {
+					markings.add(arc.source);
+				}
+				markings.add(arc.target);
+			}
+			arcs = analysis.terminationPath;
+		}
+		/*
+		 * The path of the compact form visits markings more than once if it
+		 * is a cycle, so the markings are numbered by identity.
+		 */
+		List<Marking> uniqueMarkings = new ArrayList<Marking>();
+		Map<Marking, Integer> markingIndex =
+				new IdentityHashMap<Marking, Integer>();
+		for (Marking marking : markings) {
+			if (!markingIndex.containsKey(marking)) {
+				markingIndex.put(marking, uniqueMarkings.size());
+				uniqueMarkings.add(marking);
+			}
+		}
+		Map<TransitionArc, Integer> arcIndex =
+				new IdentityHashMap<TransitionArc, Integer>();
+		Map<String, Integer> transitionIndex =
+				new LinkedHashMap<String, Integer>();
+		for (TransitionArc arc : arcs) {
+			arcIndex.put(arc, arcIndex.size());
+			if (!transitionIndex.containsKey(arc.shortId)) {
+				transitionIndex.put(arc.shortId, transitionIndex.size());
+			}
+		}
+		output.writeInt(MAGIC);
+		output.writeByte(VERSION);
+		output.writeBoolean(analysis.outcome == Outcome.BOUNDED);
+		writeVarInt(output, analysis.discoveredMarkings);
+		writeVarInt(output, analysis.discoveredArcs);
+		writeVarInt(output, analysis.depth);
+		output.writeLong(analysis.durationMillis);
+		writeVarInt(output, transitionIndex.size());
+		for (String id : transitionIndex.keySet()) {
+			output.writeUTF(id);
+		}
+		int placeCount = analysis.petriNet.getStructure().getPlaceCount();
+		writeVarInt(output, placeCount);
+		writeVarInt(output, uniqueMarkings.size());
+		for (Marking marking : uniqueMarkings) {
+			int[] tokens = marking.getTokens();
+			for (int i = 0; i < placeCount; i++) {
+				writeVarInt(output, tokens[i]);
+			}
+		}
+		writeVarInt(output, arcs.size());
+		for (TransitionArc arc : arcs) {
+			writeVarInt(output, markingIndex.get(arc.source));
+			writeVarInt(output, transitionIndex.get(arc.shortId));
+			writeVarInt(output, markingIndex.get(arc.target));
+		}
+		writeVarInt(output, analysis.terminationPath.size());
+		for (TransitionArc arc : analysis.terminationPath) {
+			writeVarInt(output, arcIndex.get(arc));
+		}
+	}
+
+	/**
+	 * Reads a result in the binary format of the cache and restores it for
+	 * a Petri net.
+	 * 
+	 * @param input    the input to read from
+	 * @param petriNet the Petri net the result belongs to
+	 * @return         the restored result
+	 * @throws IOException if the result can't be read or doesn't fit the
+	 *                     Petri net
+	 */
+	private static BoundednessAnalysis read(
+			DataInput input,
+			PetriNetModel petriNet) throws IOException {
+		if (input.readInt() != MAGIC || input.readByte() != VERSION) {
+			throw new IOException("Unknown cache format.");
+		}
+		Outcome outcome = input.readBoolean()
+				? Outcome.BOUNDED : Outcome.UNBOUNDED;
+		BoundednessAnalysis analysis =
+				BoundednessAnalysis.forRestore(petriNet, outcome);
+		analysis.discoveredMarkings = readVarInt(input);
+		analysis.discoveredArcs = readVarInt(input);
+		analysis.depth = readVarInt(input);
+		analysis.durationMillis = input.readLong();
+		NetStructure net = analysis.petriNet.getStructure();
+		Transition[] transitions = new Transition[readVarInt(input)];
+		for (int i = 0; i < transitions.length; i++) {
+			int index = net.getTransitionIndex(input.readUTF());
+			if (index == -1) {
+				throw new IOException("Unknown transition.");
+			}
+			transitions[i] = analysis.petriNet.transitions.get(index);
+		}
+		int placeCount = readVarInt(input);
+		if (placeCount != net.getPlaceCount()) {
+			throw new IOException("Wrong number of places.");
+		}
+		Marking[] markings = new Marking[readVarInt(input)];
+		for (int i = 0; i < markings.length; i++) {
+			int[] tokens = new int[placeCount];
+			for (int p = 0; p < placeCount; p++) {
+				tokens[p] = readVarInt(input);
+			}
+			markings[i] = analysis.rGraph.addMarking(
+					new Marking(net.getCanonicalPlaceIds(), tokens));
+		}
+		TransitionArc[] arcs = new TransitionArc[readVarInt(input)];
+		for (int i = 0; i < arcs.length; i++) {
+			Marking source = markings[readVarInt(input)];
+			Transition transition = transitions[readVarInt(input)];
+			arcs[i] = analysis.rGraph.addArc(
+					source, transition, markings[readVarInt(input)]);
+		}
+		int pathLength = readVarInt(input);
+		for (int i = 0; i < pathLength; i++) {
+			analysis.terminationPath.add(arcs[readVarInt(input)]);
+		}
+		if (outcome == Outcome.UNBOUNDED) {
+			if (pathLength == 0) {
+				throw new IOException("Missing termination path.");
+			}
+			analysis.m1 = analysis.terminationPath.get(0).source;
+			analysis.m2 = analysis.terminationPath.get(pathLength - 1).target;
+		}
+		analysis.finishRestore();
+		return analysis;
+	}
+
+	/**
+	 * Writes a non-negative integer with seven bits per byte, the lowest bits
+	 * first. The highest bit of a byte is set if more bytes follow.
+	 * 
+	 * @param output the output to write to
+	 * @param value  a non-negative integer
+	 * @throws IOException if the value can't be written
+	 */
+	private static void writeVarInt(DataOutput output, int value)
+			throws IOException {
+		while ((value & ~0x7f) != 0) {
+			output.writeByte((value & 0x7f) | 0x80);
+			value >>>= 7;
+		}
+		output.writeByte(value);
+	}
+
+	/**
+	 * Reads an integer written by {@link #writeVarInt}.
+	 * 
+	 * @param input the input to read from
+	 * @return      the integer
+	 * @throws IOException if the value can't be read or is too long
+	 */
+	private static int readVarInt(DataInput input) throws IOException {
+		int value = 0;
+		for (int shift = 0; shift < 35; shift += 7) {
+			int b = input.readUnsignedByte();
+			value |= (b & 0x7f) << shift;
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+		}
+		throw new IOException("Malformed number.");
+	}
+
+	/**
+	 * Thrown by a {@link LimitedOutputStream} when more bytes are written
+	 * than allowed.
+	 */
+	private static class LimitExceededException extends IOException {
+		private static final long serialVersionUID = 1L;
+	}
+
+	/**
+	 * Counts the bytes written through it and stops with a
+	 * {@link LimitExceededException} as soon as they exceed a limit. A result
+	 * which is larger than the whole cache would evict every other result
+	 * before being evicted itself, so it is given up while it is being
+	 * written, before it takes up memory or disk space.
+	 */
+	private static class LimitedOutputStream extends FilterOutputStream {
+		private final long limit;
+		private long count;
+
+		/**
+		 * Initializes the stream.
+		 * 
+		 * @param output the stream to write to
+		 * @param limit  the number of bytes which may be written
+		 */
+		private LimitedOutputStream(OutputStream output, long limit) {
+			super(output);
+			this.limit = limit;
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			count(1);
+			out.write(b);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			count(len);
+			out.write(b, off, len);
+		}
+
+		/**
+		 * Counts bytes which are about to be written.
+		 * 
+		 * @param length the number of bytes
+		 * @throws LimitExceededException if the limit is exceeded
+		 */
+		private void count(int length) throws LimitExceededException {
+			count += length;
+			if (count > limit) {
+				throw new LimitExceededException();
+			}
+		}
+	}
+}
@@ -0,0 +1,306 @@
+package io.petermueller.petrinetz.util;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import io.petermueller.petrinetz.models.rgraph.TransitionArc;
+import io.petermueller.petrinetz.util.BoundednessAnalysis.Outcome;
+
+/**
+ * Writes the results of boundedness analyses as machine-readable records,
+ * one line per Petri net. The records are written and flushed one at a time,
+ * so they can be read while a batch is still running.
+ * 
+ * <p>Each record holds the path of the file, the {@link Outcome}, the
+ * boundedness, the number of discovered markings and arcs, the depth of the
+ * analysis, its duration in milliseconds, the termination path, the markings
+ * m and m' and whether the result was restored from an {@link AnalysisCache}.
+ * Values which are unknown for an outcome, e.g. the path of a bounded Petri
+ * net, are written as {@code null} in JSON and as empty fields in CSV.
+ * 
+ * @author Hans Peter Müller (3274969)
+ * @see    BatchProcessing
+ */
+public class AnalysisRecordWriter {
+	private final Writer writer;
+	private final Format format;
+
+	/**
+	 * The format of the records.
+	 */
+	public enum Format {
+		/**
+		 * One JSON object per line.
+		 */
+		JSON_LINES,
+		/**
+		 * Comma-separated values with a header line, as described in RFC 4180.
+		 */
+		CSV
+	}
+
+	/**
+	 * Initializes a record writer. For CSV, the header line is written right
+	 * away.
+	 * 
+	 * @param writer the writer the records are written to. It isn't closed by
+	 *               this class.
+	 * @param format the format of the records
+	 * @throws IOException if the header can't be written
+	 */
+	public AnalysisRecordWriter(Writer writer, Format format)
+			throws IOException {
+		this.writer = writer;
+		this.format = format;
+		if (format == Format.CSV) {
+			writer.write("file,outcome,bounded,markings,arcs,depth,millis,"
+					+ "path,m1,m2,cached\n");
+			writer.flush();
+		}
+	}
+
+	/**
+	 * Writes the record of an analysis and flushes the writer.
+	 * 
+	 * @param analysis a finished analysis
+	 * @throws IOException if the record can't be written
+	 */
+	public void write(BoundednessAnalysis analysis) throws IOException {
+		if (format == Format.CSV) {
+			writer.write(toCsv(analysis));
+		} else {
+			writer.write(toJson(analysis));
+		}
+		writer.write('\n');
+		writer.flush();
+	}
+
+	/**
+	 * Formats an analysis as a JSON object.
+	 * 
+	 * @param analysis a finished analysis
+	 * @return         the JSON object, without a line break
+	 */
+	private String toJson(BoundednessAnalysis analysis) {
+		List<String> path = getPath(analysis);
+		String pathArray = null;
+		if (path != null) {
+			List<String> quoted = new ArrayList<String>();
+			for (String transition : path) {
+				quoted.add(quoteJson(transition));
+			}
+			pathArray = "[" + String.join(",", quoted) + "]";
+		}
+		return "{\"file\":" + quoteJson(getFile(analysis))
+				+ ",\"outcome\":" + quoteJson(analysis.outcome.name())
+				+ ",\"bounded\":" + getBounded(analysis)
+				+ ",\"markings\":" + getMarkings(analysis)
+				+ ",\"arcs\":" + getArcs(analysis)
+				+ ",\"depth\":" + getDepth(analysis)
+				+ ",\"millis\":" + getMillis(analysis)
+				+ ",\"path\":" + pathArray
+				+ ",\"m1\":" + quoteJson(getMarkingId(analysis, true))
+				+ ",\"m2\":" + quoteJson(getMarkingId(analysis, false))
+				+ ",\"cached\":" + analysis.isCached
+				+ "}";
+	}
+
+	/**
+	 * Formats an analysis as a line of comma-separated values. The
+	 * transitions of the path are separated by spaces.
+	 * 
+	 * @param analysis a finished analysis
+	 * @return         the values, without a line break
+	 */
+	private String toCsv(BoundednessAnalysis analysis) {
+		List<String> path = getPath(analysis);
+		String[] fields = {
+				getFile(analysis),
+				analysis.outcome.name(),
+				getBounded(analysis),
+				getMarkings(analysis),
+				getArcs(analysis),
+				getDepth(analysis),
+				getMillis(analysis),
+				path == null ? null : String.join(" ", path),
+				getMarkingId(analysis, true),
+				getMarkingId(analysis, false),
+				Boolean.toString(analysis.isCached)};
+		List<String> quoted = new ArrayList<String>();
+		for (String field : fields) {
+			quoted.add(quoteCsv(field));
+		}
+		return String.join(",", quoted);
+	}
+
+	/**
+	 * Returns the file an analysis belongs to.
+	 * 
+	 * @param analysis a finished analysis
+	 * @return         the path the file was read from, or the file name of
+	 *                 the Petri net if it wasn't read by a batch
+	 */
+	private static String getFile(BoundednessAnalysis analysis) {
+		if (analysis.filePath != null) {
+			return analysis.filePath;
+		}
+		return analysis.petriNet.fileName;
+	}
+
+	/**
+	 * Returns the boundedness of an analysis as a string.
+	 * 
+	 * @param analysis a finished analysis
+	 * @return         {@code "true"} or {@code "false"}, or {@code null} if
+	 *                 the analysis has no result
+	 */
+	private static String getBounded(BoundednessAnalysis analysis) {
+		if (analysis.outcome == Outcome.BOUNDED) {
+			return "true";
+		} else if (analysis.outcome == Outcome.UNBOUNDED) {
+			return "false";
+		}
+		return null;
+	}
+
+	/**
+	 * Returns the number of markings an analysis discovered.
+	 * 
+	 * @param analysis a finished analysis
+	 * @return         the number of markings, or {@code null} if the Petri
+	 *                 net wasn't analyzed
+	 */
+	private static String getMarkings(BoundednessAnalysis analysis) {
+		if (!analysis.wasAnalyzed()) {
+			return null;
+		}
+		return Integer.toString(analysis.discoveredMarkings);
+	}
+
+	/**
+	 * Returns the number of arcs of the reachability graph of an analysis.
+	 * 
+	 * @param analysis a finished analysis
+	 * @return         the number of arcs, or {@code null} if the analysis has
+	 *                 no result and therefore no graph
+	 */
+	private static String getArcs(BoundednessAnalysis analysis) {
+		if (getBounded(analysis) == null) {
+			return null;
+		}
+		return Integer.toString(analysis.discoveredArcs);
+	}
+
+	/**
+	 * Returns the depth an analysis reached.
+	 * 
+	 * @param analysis a finished analysis
+	 * @return         the depth, or {@code null} if the Petri net wasn't
+	 *                 analyzed
+	 */
+	private static String getDepth(BoundednessAnalysis analysis) {
+		if (!analysis.wasAnalyzed()) {
+			return null;
+		}
+		return Integer.toString(analysis.depth);
+	}
+
+	/**
+	 * Returns the duration of an analysis.
+	 * 
+	 * @param analysis a finished analysis
+	 * @return         the duration in milliseconds, or {@code null} if the
+	 *                 Petri net wasn't analyzed
+	 */
+	private static String getMillis(BoundednessAnalysis analysis) {
+		if (!analysis.wasAnalyzed()) {
+			return null;
+		}
+		return Long.toString(analysis.durationMillis);
+	}
+
+	/**
+	 * Returns the ids of the transitions on the termination path.
+	 * 
+	 * @param analysis a finished analysis
+	 * @return         the transition ids, or {@code null} if the Petri net
+	 *                 isn't known to be unbounded
+	 */
+	private static List<String> getPath(BoundednessAnalysis analysis) {
+		if (analysis.outcome != Outcome.UNBOUNDED) {
+			return null;
+		}
+		List<String> path = new ArrayList<String>();
+		for (TransitionArc arc : analysis.terminationPath) {
+			path.add(arc.shortId);
+		}
+		return path;
+	}
+
+	/**
+	 * Returns the id of the marking m or m' of an unbounded Petri net.
+	 * 
+	 * @param analysis a finished analysis
+	 * @param first    {@code true} for m, {@code false} for m'
+	 * @return         the id of the marking, or {@code null} if the Petri net
+	 *                 isn't known to be unbounded
+	 */
+	private static String getMarkingId(
+			BoundednessAnalysis analysis,
+			boolean first) {
+		if (analysis.outcome != Outcome.UNBOUNDED) {
+			return null;
+		}
+		return first ? analysis.m1.getId() : analysis.m2.getId();
+	}
+
+	/**
+	 * Quotes a string for JSON.
+	 * 
+	 * @param value a string, may be {@code null}
+	 * @return      the quoted and escaped string, or {@code null} as a JSON
+	 *              literal
+	 */
+	private static String quoteJson(String value) {
+		if (value == null) {
+			return "null";
+		}
+		StringBuilder quoted = new StringBuilder("\"");
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c == '"' || c == '\\') {
+				quoted.append('\\').append(c);
+			} else if (c == '\n') {
+				quoted.append("\\n");
+			} else if (c == '\r') {
+				quoted.append("\\r");
+			} else if (c == '\t') {
+				quoted.append("\\t");
+			} else if (c < 0x20) {
+				quoted.append(String.format("\\u%04x", (int) c));
+			} else {
+				quoted.append(c);
+			}
+		}
+		return quoted.append('"').toString();
+	}
+
+	/**
+	 * Quotes a field for CSV if it contains a comma, a quote or a line break.
+	 * 
+	 * @param value a field, may be {@code null}
+	 * @return      the field, quoted if necessary, or an empty string for
+	 *              {@code null}
+	 */
+	private static String quoteCsv(String value) {
+		if (value == null) {
+			return "";
+		}
+		if (value.contains(",") || value.contains("\"") ||
+				value.contains("\n") || value.contains("\r")) {
+			return "\"" + value.replace("\"", "\"\"") + "\"";
+		}
+		return value;
+	}
+}
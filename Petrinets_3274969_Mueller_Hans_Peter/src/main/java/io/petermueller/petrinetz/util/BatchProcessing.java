@@ -1,33 +1,367 @@
 package io.petermueller.petrinetz.util;
 
+import java.io.File;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import io.petermueller.petrinetz.models.filesystem.FileSystemModel;
 import io.petermueller.petrinetz.models.petrinet.PetriNetModel;
+import io.petermueller.petrinetz.util.BoundednessAnalysis.Strategy;
 
 /**
  * Performs a boundedness analysis for multiple Petri nets and saves the
  * results.
  * 
+ * <p><strong>Implementation details:</strong><br>
+ * The Petri nets are analyzed in parallel on a thread pool, one analysis per
+ * task. The results are collected with a {@link CompletionService} in the
+ * order in which the analyses finish and passed on to a
+ * {@link ResultListener} right away. Once all analyses have finished, they
+ * are stored in {@link #analysisList} in the order of the given Petri nets,
+ * so the output doesn't depend on which analysis finished first.
+ * 
+ * <p>Each Petri net can be analyzed under its own {@link AnalysisBudget}, so
+ * a single Petri net which is too large can't hold up the batch or use up
+ * the memory of the other analyses. Its result then only tells how far the
+ * analysis got. Files which can't be parsed are listed with the outcome
+ * {@link BoundednessAnalysis.Outcome#PARSE_ERROR}, and analyses which fail
+ * with an error with the outcome {@link BoundednessAnalysis.Outcome#FAILED},
+ * so every Petri net gets a result.
+ * 
+ * <p>When files are analyzed, the results can be looked up in and stored in
+ * an {@link AnalysisCache}, so Petri nets analyzed by an earlier batch don't
+ * have to be analyzed again.
+ * 
  * @author Hans Peter Müller (3274969)
  * @see    BoundednessAnalysis
  * @see    PetriNetModel
  */
 public class BatchProcessing {
 	/**
-	 * List of {@link BoundednessAnalysis boundedness analysis} results.
+	 * List of {@link BoundednessAnalysis boundedness analysis} results, in the
+	 * order of the analyzed Petri nets.
 	 */
 	public List<BoundednessAnalysis> analysisList;
 
 	/**
-	 * Performs boundedness analyses with a given list of Petri nets.
+	 * Receives the result of each analysis as soon as it has finished.
+	 */
+	public interface ResultListener {
+		/**
+		 * Is called when the analysis of a Petri net has finished. The method
+		 * is always called on the thread which created the
+		 * {@link BatchProcessing}, one result at a time.
+		 * 
+		 * @param analysis      the finished analysis
+		 * @param finishedCount the number of finished analyses, including this
+		 *                      one
+		 * @param totalCount    the number of Petri nets to analyze
+		 */
+		public void analysisFinished(
+				BoundednessAnalysis analysis,
+				int finishedCount,
+				int totalCount);
+	}
+
+	/**
+	 * Performs boundedness analyses with a given list of Petri nets, using one
+	 * thread per processor.
 	 * 
 	 * @param petriNets a list of {@link PetriNetModel Petri nets}
 	 */
 	public BatchProcessing(List<PetriNetModel> petriNets) {
-		analysisList = new ArrayList<BoundednessAnalysis>();
+		this(petriNets, Runtime.getRuntime().availableProcessors(), null);
+	}
+
+	/**
+	 * Performs boundedness analyses with a given list of Petri nets on a new
+	 * pool with a fixed number of threads. The pool is shut down when all
+	 * analyses have finished.
+	 * 
+	 * @param petriNets a list of {@link PetriNetModel Petri nets}
+	 * @param threads   the number of threads of the pool
+	 * @param listener  receives each result as soon as it is available, may
+	 *                  be {@code null}
+	 */
+	public BatchProcessing(
+			List<PetriNetModel> petriNets,
+			int threads,
+			ResultListener listener) {
+		this(petriNets, threads, AnalysisBudget.UNLIMITED, listener);
+	}
+
+	/**
+	 * Performs boundedness analyses with a given list of Petri nets on a new
+	 * pool with a fixed number of threads, each analysis limited by the given
+	 * budget. The pool is shut down when all analyses have finished.
+	 * 
+	 * @param petriNets a list of {@link PetriNetModel Petri nets}
+	 * @param threads   the number of threads of the pool
+	 * @param budget    the limits of each analysis
+	 * @param listener  receives each result as soon as it is available, may
+	 *                  be {@code null}
+	 */
+	public BatchProcessing(
+			List<PetriNetModel> petriNets,
+			int threads,
+			AnalysisBudget budget,
+			ResultListener listener) {
+		analyzeOnPool(createTasks(petriNets, budget), getNames(petriNets), null,
+				threads, listener);
+	}
+
+	/**
+	 * Performs boundedness analyses with a given list of Petri nets on the
+	 * given executor. The executor isn't shut down, so it can be used for
+	 * several batches.
+	 * 
+	 * @param petriNets a list of {@link PetriNetModel Petri nets}
+	 * @param executor  the executor running the analyses
+	 * @param listener  receives each result as soon as it is available, may
+	 *                  be {@code null}
+	 */
+	public BatchProcessing(
+			List<PetriNetModel> petriNets,
+			ExecutorService executor,
+			ResultListener listener) {
+		analyze(createTasks(petriNets, AnalysisBudget.UNLIMITED),
+				getNames(petriNets), null, executor, listener);
+	}
+
+	/**
+	 * Helper constructor for {@link #analyzeFiles}.
+	 */
+	private BatchProcessing() {
+	}
+
+	/**
+	 * Parses PNML files and performs boundedness analyses of the Petri nets
+	 * on a new pool with a fixed number of threads. Each file is parsed by
+	 * the task which analyzes it, so the files are parsed in parallel as
+	 * well. The pool is shut down when all analyses have finished.
+	 * 
+	 * @param files    the PNML files to analyze
+	 * @param threads  the number of threads of the pool
+	 * @param budget   the limits of each analysis
+	 * @param listener receives each result as soon as it is available, may be
+	 *                 {@code null}
+	 * @return         the finished batch
+	 */
+	public static BatchProcessing analyzeFiles(
+			List<File> files,
+			int threads,
+			AnalysisBudget budget,
+			ResultListener listener) {
+		return analyzeFiles(files, threads, budget, null, listener);
+	}
+
+	/**
+	 * Parses PNML files and performs boundedness analyses of the Petri nets
+	 * in the same way as {@link #analyzeFiles(List, int, AnalysisBudget,
+	 * ResultListener)}, but looks up the result of each Petri net in a cache
+	 * first. Only Petri nets without a stored result are analyzed, and their
+	 * results are stored.
+	 * 
+	 * @param files    the PNML files to analyze
+	 * @param threads  the number of threads of the pool
+	 * @param budget   the limits of each analysis
+	 * @param cache    the cache holding the stored results, may be
+	 *                 {@code null}
+	 * @param listener receives each result as soon as it is available, may be
+	 *                 {@code null}
+	 * @return         the finished batch
+	 */
+	public static BatchProcessing analyzeFiles(
+			List<File> files,
+			int threads,
+			AnalysisBudget budget,
+			AnalysisCache cache,
+			ResultListener listener) {
+		BatchProcessing batch = new BatchProcessing();
+		List<String> names = new ArrayList<String>();
+		List<String> paths = new ArrayList<String>();
+		for (File file : files) {
+			names.add(file.getName());
+			paths.add(file.getPath());
+		}
+		batch.analyzeOnPool(createFileTasks(files, budget, cache), names, paths,
+				threads, listener);
+		return batch;
+	}
+
+	/**
+	 * Returns the file names of Petri nets, which name their results if
+	 * their analyses fail.
+	 * 
+	 * @param petriNets the Petri nets to analyze
+	 * @return          the file names, in the order of the Petri nets
+	 */
+	private static List<String> getNames(List<PetriNetModel> petriNets) {
+		List<String> names = new ArrayList<String>();
 		for (PetriNetModel petriNet : petriNets) {
-			BoundednessAnalysis analysis = new BoundednessAnalysis(petriNet);
-			analysisList.add(analysis);
+			names.add(petriNet.fileName);
+		}
+		return names;
+	}
+
+	/**
+	 * Creates one analysis task per Petri net.
+	 * 
+	 * @param petriNets the Petri nets to analyze
+	 * @param budget    the limits of each analysis
+	 * @return          the tasks, in the order of the Petri nets
+	 */
+	private static List<Callable<BoundednessAnalysis>> createTasks(
+			List<PetriNetModel> petriNets,
+			final AnalysisBudget budget) {
+		List<Callable<BoundednessAnalysis>> tasks =
+				new ArrayList<Callable<BoundednessAnalysis>>();
+		for (final PetriNetModel petriNet : petriNets) {
+			tasks.add(new Callable<BoundednessAnalysis>() {
+				@Override
+				public BoundednessAnalysis call() {
+					return new BoundednessAnalysis(
+							petriNet, Strategy.SEQUENTIAL, null, budget);
+				}
+			});
+		}
+		return tasks;
+	}
+
+	/**
+	 * Creates one task per file which parses the file and analyzes the Petri
+	 * net. A file which can't be parsed is reported and results in a
+	 * {@link BoundednessAnalysis.Outcome#PARSE_ERROR}.
+	 * 
+	 * @param files  the PNML files to analyze
+	 * @param budget the limits of each analysis
+	 * @param cache  the cache holding the stored results, may be
+	 *               {@code null}
+	 * @return       the tasks, in the order of the files
+	 */
+	private static List<Callable<BoundednessAnalysis>> createFileTasks(
+			List<File> files,
+			final AnalysisBudget budget,
+			final AnalysisCache cache) {
+		List<Callable<BoundednessAnalysis>> tasks =
+				new ArrayList<Callable<BoundednessAnalysis>>();
+		for (final File file : files) {
+			tasks.add(new Callable<BoundednessAnalysis>() {
+				@Override
+				public BoundednessAnalysis call() {
+					PetriNetModel petriNet;
+					try {
+						petriNet = FileSystemModel.parseFile(file, true);
+					} catch (RuntimeException e) {
+						System.err.println(file.getName() + ": " + e);
+						return BoundednessAnalysis.forParseError(
+								file.getName());
+					}
+					if (cache != null) {
+						return cache.analyze(
+								petriNet, Strategy.SEQUENTIAL, null, budget);
+					}
+					return new BoundednessAnalysis(
+							petriNet, Strategy.SEQUENTIAL, null, budget);
+				}
+			});
+		}
+		return tasks;
+	}
+
+	/**
+	 * Runs the analysis tasks on a new pool with a fixed number of threads and
+	 * shuts the pool down when all tasks have finished.
+	 * 
+	 * @param tasks    the analysis tasks
+	 * @param names    the file names of the Petri nets of the tasks
+	 * @param paths    the paths of the files of the tasks, or {@code null} if
+	 *                 the Petri nets weren't read from files
+	 * @param threads  the number of threads of the pool
+	 * @param listener receives each result, may be {@code null}
+	 */
+	private void analyzeOnPool(
+			List<Callable<BoundednessAnalysis>> tasks,
+			List<String> names,
+			List<String> paths,
+			int threads,
+			ResultListener listener) {
+		ExecutorService executor = Executors.newFixedThreadPool(
+				Math.max(1, Math.min(threads, tasks.size())));
+		try {
+			analyze(tasks, names, paths, executor, listener);
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Submits the analysis tasks to the executor and collects the results as
+	 * they finish. Analyses which fail are reported and listed with the
+	 * outcome {@link BoundednessAnalysis.Outcome#FAILED}.
+	 * 
+	 * @param tasks    the analysis tasks
+	 * @param names    the file names of the Petri nets of the tasks
+	 * @param paths    the paths of the files of the tasks, or {@code null} if
+	 *                 the Petri nets weren't read from files
+	 * @param executor the executor running the analyses
+	 * @param listener receives each result, may be {@code null}
+	 */
+	private void analyze(
+			List<Callable<BoundednessAnalysis>> tasks,
+			List<String> names,
+			List<String> paths,
+			ExecutorService executor,
+			ResultListener listener) {
+		CompletionService<BoundednessAnalysis> completionService =
+				new ExecutorCompletionService<BoundednessAnalysis>(executor);
+		Map<Future<BoundednessAnalysis>, Integer> indices =
+				new HashMap<Future<BoundednessAnalysis>, Integer>();
+		for (int i = 0; i < tasks.size(); i++) {
+			indices.put(completionService.submit(tasks.get(i)), i);
+		}
+		BoundednessAnalysis[] results =
+				new BoundednessAnalysis[tasks.size()];
+		try {
+			for (int finished = 1; finished <= results.length; finished++) {
+				Future<BoundednessAnalysis> future = completionService.take();
+				int index = indices.get(future);
+				BoundednessAnalysis analysis;
+				try {
+					analysis = future.get();
+				} catch (ExecutionException e) {
+					System.err.println(names.get(index) + ": " + e.getCause());
+					analysis = BoundednessAnalysis.forFailure(names.get(index));
+				}
+				if (paths != null) {
+					analysis.filePath = paths.get(index);
+				}
+				results[index] = analysis;
+				if (listener != null) {
+					listener.analysisFinished(
+							analysis, finished, results.length);
+				}
+			}
+		} catch (InterruptedException e) {
+			for (Future<BoundednessAnalysis> future : indices.keySet()) {
+				future.cancel(true);
+			}
+			Thread.currentThread().interrupt();
+			System.err.println(e);
+		}
+		analysisList = new ArrayList<BoundednessAnalysis>();
+		for (BoundednessAnalysis analysis : results) {
+			if (analysis != null) {
+				analysisList.add(analysis);
+			}
 		}
 	}
 }
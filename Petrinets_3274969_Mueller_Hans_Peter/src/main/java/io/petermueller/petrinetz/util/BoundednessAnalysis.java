@@ -1,28 +1,75 @@
 package io.petermueller.petrinetz.util;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicInteger;
+import io.petermueller.petrinetz.models.petrinet.NetStructure;
+import io.petermueller.petrinetz.models.petrinet.NetStructure.SuccessorConsumer;
 import io.petermueller.petrinetz.models.petrinet.PetriNetModel;
 import io.petermueller.petrinetz.models.petrinet.Transition;
 import io.petermueller.petrinetz.models.rgraph.Marking;
 import io.petermueller.petrinetz.models.rgraph.RGraphModel;
 import io.petermueller.petrinetz.models.rgraph.TransitionArc;
+import io.petermueller.petrinetz.util.StateSpaceExplorer.Frontier;
+import io.petermueller.petrinetz.util.StateSpaceExplorer.Sink;
+import io.petermueller.petrinetz.util.StateSpaceExplorer.Successors;
+import io.petermueller.petrinetz.util.StateSpaceExplorer.Visitor;
 
 /**
  * Runs a boundedness analysis of a Petri net. The
  * result is stored as {@link #isBounded}. Should a Petri net
  * be unbounded, the abort criteria can be retrieved from this object as well.
  * 
+ * <p>An analysis can be limited by an {@link AnalysisBudget}. If it runs out
+ * of time or markings before reaching a result, it stops and its
+ * {@link #outcome} tells why. {@link #discoveredMarkings} and {@link #depth}
+ * then tell how far it got.
+ * 
  * @author Hans Peter Müller (3274969)
  * @see    PetriNetModel
  */
 public class BoundednessAnalysis {
 	/**
-	 * {@code true} if the Petri net is bounded, {@code false} otherwise.
+	 * {@code true} if the Petri net is bounded, {@code false} otherwise. Also
+	 * {@code false} if the analysis stopped before reaching a result.
 	 * 
 	 * @see PetriNetModel
+	 * @see #outcome
 	 */
 	public boolean isBounded;
+	/**
+	 * The result of the analysis, or the reason why there is none.
+	 */
+	public Outcome outcome;
+	/**
+	 * The number of markings discovered by the analysis.
+	 */
+	public int discoveredMarkings;
+	/**
+	 * The number of arcs of the reachability graph. 0 if the analysis stopped
+	 * before reaching a result.
+	 */
+	public int discoveredArcs;
+	/**
+	 * The length of the longest path from the start marking to a checked
+	 * marking. For a breadth-first analysis this is the number of completed
+	 * levels.
+	 */
+	public int depth;
+	/**
+	 * The wall-clock time the analysis took, in milliseconds.
+	 */
+	public long durationMillis;
+	/**
+	 * {@code true} if the result was restored from an {@link AnalysisCache}
+	 * instead of being computed. {@link #durationMillis} then is the duration
+	 * of the original analysis.
+	 */
+	public boolean isCached;
 	/**
 	 * The start marking {@code m} of the termination path of the boundedness
 	 * algorithm. Null, if the Petri net is bounded.
@@ -49,142 +96,763 @@ public class BoundednessAnalysis {
 	 */
 	public List<TransitionArc> terminationPath;
 	/**
-	 * Reference to the Petri net which is analyzed.
+	 * The Petri net which is analyzed. This is an independent copy of the
+	 * Petri net passed to the constructor, so the analysis never changes the
+	 * marking of the original net.
 	 * 
 	 * @see PetriNetModel
 	 */
 	public PetriNetModel petriNet;
+	/**
+	 * The path of the file the Petri net was read from by a
+	 * {@link BatchProcessing}, or {@code null} if the Petri net wasn't read
+	 * from a file. Unlike the file name of the Petri net, it tells apart files
+	 * with the same name in different directories.
+	 */
+	public String filePath;
 	/**
 	 * The constructed reachability graph of the analysis.
 	 * 
 	 * @see RGraphModel
 	 */
 	public RGraphModel rGraph;
+	/**
+	 * The number of explored markings between two calls of
+	 * {@link Monitor#progress}.
+	 */
+	public static final int PROGRESS_INTERVAL = 256;
+	private Strategy strategy;
+	private Frontier frontier;
+	private Monitor monitor;
+	private AnalysisBudget budget;
+	private long startNanos;
+	private AtomicInteger exploredMarkings;
+	private AtomicInteger maxDiscoveredMarkings;
+	private AtomicInteger maxDepth;
+	private volatile boolean isCancelled;
+	private volatile Outcome stopReason;
+
+	/**
+	 * The result of an analysis.
+	 */
+	public enum Outcome {
+		/**
+		 * The Petri net is bounded.
+		 */
+		BOUNDED,
+		/**
+		 * The Petri net is unbounded.
+		 */
+		UNBOUNDED,
+		/**
+		 * The analysis ran out of time before reaching a result.
+		 */
+		TIMEOUT,
+		/**
+		 * The analysis discovered more markings than its budget allows or ran
+		 * out of memory before reaching a result.
+		 */
+		BUDGET_EXCEEDED,
+		/**
+		 * The file of the Petri net couldn't be parsed, so there was nothing
+		 * to analyze.
+		 */
+		PARSE_ERROR,
+		/**
+		 * The analysis failed with an error, e.g. an exception thrown by the
+		 * task which analyzed the Petri net.
+		 */
+		FAILED
+	}
+
+	/**
+	 * The way the markings of the Petri net are explored.
+	 */
+	public enum Strategy {
+		/**
+		 * Explores the markings on the calling thread with a
+		 * {@link StateSpaceExplorer}, firing the transitions of the Petri net.
+		 */
+		SEQUENTIAL,
+		/**
+		 * Explores the markings on all threads of the common fork-join pool
+		 * with a {@link ParallelStateSpaceExplorer}. The verdict is the same as
+		 * for {@link #SEQUENTIAL}, but the termination path can differ between
+		 * runs.
+		 */
+		WORK_STEALING,
+		/**
+		 * Explores the markings breadth-first on all threads of the common
+		 * fork-join pool with a {@link LevelSynchronousExplorer}, one level at
+		 * a time. The result is the same as for {@link #SEQUENTIAL}.
+		 */
+		LEVEL_SYNCHRONOUS
+	}
+
+	/**
+	 * Watches a running analysis. The monitor is asked regularly whether the
+	 * analysis should stop and is told how far the analysis has come. Both
+	 * methods are called from the threads running the analysis, which are
+	 * never the event dispatch thread unless the analysis was started there.
+	 */
+	public interface Monitor {
+		/**
+		 * Is called about every {@value BoundednessAnalysis#PROGRESS_INTERVAL}
+		 * explored markings.
+		 * 
+		 * @param exploredMarkings the number of markings checked so far
+		 * @param frontierSize     the number of markings which were discovered
+		 *                         but not checked yet
+		 */
+		public void progress(int exploredMarkings, int frontierSize);
+
+		/**
+		 * Checks if the analysis should stop.
+		 * 
+		 * @return {@code true} to cancel the analysis, {@code false} otherwise
+		 */
+		public boolean isCancelled();
+	}
 
 	/**
 	 * Initializes a boundedness analysis of a Petri net. The result (and
 	 * additional information if the Petri net is unbounded) is stored as object
-	 * attributes.
+	 * attributes. The markings are explored breadth-first.
 	 * 
 	 * @param inputPetriNet the Petri net to analyze
 	 * @see PetriNetModel
 	 */
 	public BoundednessAnalysis(PetriNetModel inputPetriNet) {
+		this(inputPetriNet, Frontier.BREADTH_FIRST);
+	}
+
+	/**
+	 * Initializes a boundedness analysis of a Petri net which explores the
+	 * markings in the given order. A best-first search expands the markings
+	 * with the most markers first.
+	 * 
+	 * @param inputPetriNet the Petri net to analyze
+	 * @param frontier      the order in which the markings are explored
+	 * @see PetriNetModel
+	 * @see StateSpaceExplorer
+	 */
+	public BoundednessAnalysis(
+			PetriNetModel inputPetriNet,
+			Frontier frontier) {
+		this(inputPetriNet, Strategy.SEQUENTIAL, frontier, null,
+				AnalysisBudget.UNLIMITED);
+	}
+
+	/**
+	 * Initializes a boundedness analysis of a Petri net which explores the
+	 * markings with the given strategy. A sequential analysis explores the
+	 * markings breadth-first.
+	 * 
+	 * @param inputPetriNet the Petri net to analyze
+	 * @param strategy      the way the markings are explored
+	 * @see PetriNetModel
+	 */
+	public BoundednessAnalysis(
+			PetriNetModel inputPetriNet,
+			Strategy strategy) {
+		this(inputPetriNet, strategy, Frontier.BREADTH_FIRST, null,
+				AnalysisBudget.UNLIMITED);
+	}
+
+	/**
+	 * Initializes a boundedness analysis of a Petri net which explores the
+	 * markings with the given strategy and reports its progress to a
+	 * monitor. A sequential analysis explores the markings breadth-first.
+	 * 
+	 * @param inputPetriNet the Petri net to analyze
+	 * @param strategy      the way the markings are explored
+	 * @param monitor       is told about the progress and can cancel the
+	 *                      analysis
+	 * @throws CancellationException if the monitor cancelled the analysis
+	 * @see PetriNetModel
+	 */
+	public BoundednessAnalysis(
+			PetriNetModel inputPetriNet,
+			Strategy strategy,
+			Monitor monitor) {
+		this(inputPetriNet, strategy, monitor, AnalysisBudget.UNLIMITED);
+	}
+
+	/**
+	 * Initializes a boundedness analysis of a Petri net which explores the
+	 * markings with the given strategy and stops when it uses up its budget.
+	 * Running out of memory also counts as exceeding a limited budget, so one
+	 * Petri net can't take down the analyses running next to it. A sequential
+	 * analysis explores the markings breadth-first.
+	 * 
+	 * @param inputPetriNet the Petri net to analyze
+	 * @param strategy      the way the markings are explored
+	 * @param monitor       is told about the progress and can cancel the
+	 *                      analysis, may be {@code null}
+	 * @param budget        the limits of the analysis
+	 * @throws CancellationException if the monitor cancelled the analysis
+	 * @see #outcome
+	 */
+	public BoundednessAnalysis(
+			PetriNetModel inputPetriNet,
+			Strategy strategy,
+			Monitor monitor,
+			AnalysisBudget budget) {
+		this(inputPetriNet, strategy, Frontier.BREADTH_FIRST, monitor, budget);
+	}
+
+	/**
+	 * Helper constructor which all other constructors delegate to.
+	 * 
+	 * @param inputPetriNet the Petri net to analyze
+	 * @param strategy      the way the markings are explored
+	 * @param frontier      the order in which a sequential analysis explores
+	 *                      the markings
+	 * @param monitor       is told about the progress and can cancel the
+	 *                      analysis, may be {@code null}
+	 * @param budget        the limits of the analysis
+	 */
+	private BoundednessAnalysis(
+			PetriNetModel inputPetriNet,
+			Strategy strategy,
+			Frontier frontier,
+			Monitor monitor,
+			AnalysisBudget budget) {
 		this.m1 = null;
 		this.m2 = null;
 		this.terminationPath = new ArrayList<TransitionArc>();
-		this.petriNet = new PetriNetModel();
+		this.strategy = strategy;
+		this.frontier = frontier;
+		this.monitor = monitor;
+		this.budget = budget;
+		this.exploredMarkings = new AtomicInteger();
+		this.maxDiscoveredMarkings = new AtomicInteger();
+		this.maxDepth = new AtomicInteger();
+		this.isCancelled = false;
+		this.stopReason = null;
+		this.petriNet = new PetriNetModel(inputPetriNet);
 		this.rGraph = new RGraphModel(this.petriNet);
-		petriNet.load(inputPetriNet);
 		this.isBounded = isBounded();
 	}
 
+	/**
+	 * Helper constructor for results without an analysis.
+	 * 
+	 * @param petriNet the Petri net the result belongs to
+	 * @param outcome  the reason why the Petri net wasn't analyzed
+	 */
+	private BoundednessAnalysis(PetriNetModel petriNet, Outcome outcome) {
+		this.isBounded = false;
+		this.outcome = outcome;
+		this.terminationPath = new ArrayList<TransitionArc>();
+		this.petriNet = petriNet;
+		this.rGraph = new RGraphModel(petriNet);
+	}
+
+	/**
+	 * Creates the result for a file which couldn't be parsed. The result
+	 * holds an empty Petri net with the name of the file, so it can be listed
+	 * together with the results of analyzed Petri nets.
+	 * 
+	 * @param fileName the name of the file
+	 * @return         a result with the outcome {@link Outcome#PARSE_ERROR}
+	 */
+	public static BoundednessAnalysis forParseError(String fileName) {
+		PetriNetModel petriNet = new PetriNetModel();
+		petriNet.fileName = fileName;
+		return new BoundednessAnalysis(petriNet, Outcome.PARSE_ERROR);
+	}
+
+	/**
+	 * Creates the result for a Petri net whose analysis failed with an error.
+	 * Like the result of a file which couldn't be parsed, it holds an empty
+	 * Petri net with the name of the file.
+	 * 
+	 * @param fileName the name of the file
+	 * @return         a result with the outcome {@link Outcome#FAILED}
+	 */
+	public static BoundednessAnalysis forFailure(String fileName) {
+		PetriNetModel petriNet = new PetriNetModel();
+		petriNet.fileName = fileName;
+		return new BoundednessAnalysis(petriNet, Outcome.FAILED);
+	}
+
+	/**
+	 * Checks if the Petri net has been analyzed at all, so the counts of the
+	 * result are meaningful.
+	 * 
+	 * @return {@code false} if the file couldn't be parsed or the analysis
+	 *         failed, {@code true} otherwise
+	 */
+	public boolean wasAnalyzed() {
+		return outcome != Outcome.PARSE_ERROR && outcome != Outcome.FAILED;
+	}
+
+	/**
+	 * Creates an empty result for a Petri net, which an {@link AnalysisCache}
+	 * fills with a stored result. The Petri net is copied and reset, and the
+	 * reachability graph holds only the start marking.
+	 * 
+	 * @param inputPetriNet the Petri net the result belongs to
+	 * @param outcome       the stored outcome, {@link Outcome#BOUNDED} or
+	 *                      {@link Outcome#UNBOUNDED}
+	 * @return              the result to fill
+	 * @see                 #finishRestore
+	 */
+	static BoundednessAnalysis forRestore(
+			PetriNetModel inputPetriNet,
+			Outcome outcome) {
+		BoundednessAnalysis analysis = new BoundednessAnalysis(
+				new PetriNetModel(inputPetriNet), outcome);
+		analysis.isBounded = outcome == Outcome.BOUNDED;
+		analysis.isCached = true;
+		analysis.petriNet.reset();
+		analysis.rGraph.reset(analysis.petriNet.places);
+		return analysis;
+	}
+
+	/**
+	 * Completes a restored result of an unbounded Petri net once the
+	 * reachability graph, the termination path and the markings m and m' have
+	 * been restored. The graph and the Petri net are left in the same state
+	 * as after an analysis.
+	 */
+	void finishRestore() {
+		if (outcome == Outcome.UNBOUNDED) {
+			setRGraphToAnalysisGraph();
+			setPetriNetToAbortMarking();
+		}
+	}
+
 	/**
 	 * Starts the boundedness algorithm for the Petri net stored in
 	 * {@link BoundednessAnalysis#petriNet}.
 	 * 
 	 * <p><strong>Implementation details:</strong><br>
-	 * This method starts a breadth-first search through all possible markings
-	 * of the Petri net {@code BoundednessAnalysis.petriNet}. To make the
-	 * algorithm easier to read, the actual breadth-first search code sits in
-	 * the {@code traversePetriNetBreadthFirst} method.
+	 * This method starts a search through all possible markings of the Petri
+	 * net {@code BoundednessAnalysis.petriNet}. To make the algorithm easier
+	 * to read, the actual search code sits in the {@code traversePetriNet}
+	 * method.
+	 * 
+	 * <p>If the analysis stops because it used up its budget, the partly
+	 * built reachability graph is dropped to free its memory, and only the
+	 * number of discovered markings and the depth are kept.
 	 *  
 	 * @return {@code true} if the Petri net is bounded, {@code false} otherwise     
 	 * @see    PetriNetModel
-	 * @see    BoundednessAnalysis#traversePetriNetBreadthFirst
+	 * @see    BoundednessAnalysis#traversePetriNet
 	 */
 	private boolean isBounded() {
 		this.petriNet.reset();
 		this.rGraph.reset(petriNet.places);
-		List<Marking> visitedQueue = new ArrayList<Marking>();
-		List<Marking> searchQueue = new ArrayList<Marking>();
-		Marking currentMarking = new Marking(petriNet.places);
-		searchQueue.add(currentMarking);
-		boolean isBounded = traversePetriNetBreadthFirst(
-				visitedQueue,
-				searchQueue);
+		this.startNanos = System.nanoTime();
+		boolean isBounded;
+		try {
+			if (strategy != Strategy.SEQUENTIAL) {
+				isBounded = traversePetriNetInParallel(
+						rGraph.getActiveMarking());
+			} else {
+				isBounded = traversePetriNet(rGraph.getActiveMarking());
+			}
+		} catch (OutOfMemoryError e) {
+			if (budget.isUnlimited()) {
+				throw e;
+			}
+			stop(Outcome.BUDGET_EXCEEDED);
+			this.discoveredMarkings = maxDiscoveredMarkings.get();
+			isBounded = false;
+		}
+		this.depth = maxDepth.get();
+		this.durationMillis = (System.nanoTime() - startNanos) / 1000000L;
+		if (stopReason != null) {
+			this.outcome = stopReason;
+			this.terminationPath = new ArrayList<TransitionArc>();
+			this.rGraph.reset(petriNet.places);
+			return false;
+		}
 		if (!isBounded) {
+			this.outcome = Outcome.UNBOUNDED;
 			setRGraphToAnalysisGraph();
 			setPetriNetToAbortMarking();
+		} else {
+			this.outcome = Outcome.BOUNDED;
 		}
+		this.discoveredArcs = rGraph.arcs.size();
 		return isBounded;
 	}
 
 	/**
-	 * Builds up all possible markings of a Petri net by a breadth-first search
-	 * and performs a boundedness analysis for each marking.
+	 * Builds up all possible markings of a Petri net with a
+	 * {@link StateSpaceExplorer} and performs a boundedness analysis for each
+	 * marking.
 	 * 
 	 * <p><strong>Implementation details:</strong><br>
-	 * The algorithm selects the first marking from the {@code searchQueue}
-	 * (at the beginning of the analysis this is the start marking of the Petri
-	 * net) and checks whether the unboundedness conditions for this marking is
-	 * satisfied and whether this marking has already been visited.
-	 * 
-	 * <p>If both are not true, all possible transitions in the Petri net are
-	 * fired and newly reached markings are added to the {@code searchQueue}.
-	 * All previously visited markings are added to the {@code visitedQueue} so
-	 * that the algorithm can check whether a marking has already been visited.
-	 * This process is now repeated for all new markings in the
-	 * {@code searchQueue}.
-	 * 
-	 * <p>By this procedure, the reachability graph builds up successively in a
-	 * breadth-first search. The search terminates with {@code true} as soon as
-	 * the unboundedness conditions are met by a marking, or with {@code false}
-	 * if all possible markings have been visited and the conditions have not
-	 * been met for any of them.
-	 * 
-	 * @param visitedQueue the markings which have been already
-	 *                     visited by the algorithm
-	 * @param searchQueue  the markings which the algorithm
-	 *                     still needs to analyze
-	 * @return             {@code true} if the {@link PetriNetModel} is bounded,
-	 *                     {@code false} otherwise
-	 */
-	private boolean traversePetriNetBreadthFirst(
-			List<Marking> visitedQueue,
-			List<Marking> searchQueue) {
+	 * The explorer takes the markings from its frontier in the order of
+	 * {@link BoundednessAnalysis#frontier} (at the beginning of the analysis
+	 * this is the start marking of the Petri net) and the analysis checks
+	 * whether the unboundedness conditions are satisfied for this marking and
+	 * one of its ancestors.
+	 * 
+	 * <p>If not, the successors of the marking are computed on the compiled
+	 * structure of the Petri net and added to the reachability graph in one
+	 * go, and the explorer adds the markings which haven't been discovered
+	 * before to its frontier. For each of them, the arc over which it was
+	 * discovered is remembered as its parent arc. The parent arcs form a tree
+	 * rooted in the start marking, and the ancestors of a marking are the
+	 * markings on its path in this tree.
+	 * 
+	 * <p>It is enough to compare a marking with its ancestors: if the Petri
+	 * net is unbounded, the tree is infinite and therefore contains an
+	 * infinite path, on which some marking is covered by a later one. Since
+	 * all ancestors are reachable from each other along the tree, the
+	 * reachability condition doesn't need a separate search, and the path
+	 * between m and m' is read off the parent arcs. This holds for every
+	 * frontier; with a breadth-first frontier the path is a shortest one.
+	 * 
+	 * @param start the start marking of the Petri net
+	 * @return      {@code true} if the {@link PetriNetModel} is bounded,
+	 *              {@code false} otherwise
+	 */
+	private boolean traversePetriNet(Marking start) {
+		final NetStructure net = petriNet.getStructure();
+		final StateSpaceExplorer<Marking, TransitionArc> explorer =
+				new StateSpaceExplorer<Marking, TransitionArc>(
+						frontier,
+						new Successors<Marking, TransitionArc>() {
+							@Override
+							public void expand(
+									Marking state,
+									Sink<Marking, TransitionArc> sink) {
+								for (TransitionArc arc :
+										insertSuccessors(net, state)) {
+									sink.accept(arc, arc.target);
+								}
+							}
+						},
+						new Comparator<Marking>() {
+							@Override
+							public int compare(Marking o1, Marking o2) {
+								return Integer.compare(
+										getTokenCount(o2), getTokenCount(o1));
+							}
+						});
+		Marking stop = explorer.explore(start, new Visitor<Marking>() {
+			@Override
+			public boolean visit(Marking state) {
+				List<TransitionArc> path = explorer.getPath(state);
+				if (checkLimits(explorer.getStateCount(), path.size())) {
+					return true;
+				}
+				return hasUnboundednessCondition(state, path);
+			}
+		});
+		this.discoveredMarkings = explorer.getStateCount();
+		throwIfCancelled();
+		return stop == null;
+	}
+
+	/**
+	 * Builds up all possible markings of a Petri net with a
+	 * {@link ParallelExplorer} and performs a boundedness analysis for each
+	 * marking.
+	 * 
+	 * <p><strong>Implementation details:</strong><br>
+	 * The markings are checked against their ancestors in the same way as by
+	 * {@link BoundednessAnalysis#traversePetriNet}, but on several threads. The
+	 * successors are computed on the compiled
+	 * {@link io.petermueller.petrinetz.models.petrinet.NetStructure} of the
+	 * Petri net, which can be shared between threads, instead of firing the
+	 * transitions of {@code BoundednessAnalysis.petriNet}.
+	 * 
+	 * <p>When the exploration has finished, the explored markings are added to
+	 * the reachability graph in breadth-first order, and the termination path
+	 * is looked up in the graph.
+	 * 
+	 * @param start the start marking of the Petri net
+	 * @return      {@code true} if the {@link PetriNetModel} is bounded,
+	 *              {@code false} otherwise
+	 */
+	private boolean traversePetriNetInParallel(Marking start) {
+		final NetStructure net = petriNet.getStructure();
+		Successors<Marking, Integer> successors =
+				new Successors<Marking, Integer>() {
+					@Override
+					public void expand(
+							Marking state,
+							Sink<Marking, Integer> sink) {
+						generateSuccessors(net, state, sink);
+					}
+				};
+		final ParallelExplorer<Marking, Integer> explorer;
+		if (strategy == Strategy.LEVEL_SYNCHRONOUS) {
+			explorer = new LevelSynchronousExplorer<Marking, Integer>(
+					successors);
+		} else {
+			explorer = new ParallelStateSpaceExplorer<Marking, Integer>(
+					successors);
+		}
+		Marking stop = explorer.explore(start, new Visitor<Marking>() {
+			@Override
+			public boolean visit(Marking state) {
+				List<Marking> ancestors = explorer.getAncestors(state);
+				if (checkLimits(
+						explorer.getStateCount(), ancestors.size() - 1)) {
+					return true;
+				}
+				return indexOfCoveredAncestor(state, ancestors) != -1;
+			}
+		});
+		this.discoveredMarkings = explorer.getStateCount();
+		throwIfCancelled();
+		if (stopReason != null) {
+			return false;
+		}
+		insertExploredMarkings(explorer, start);
+		if (stop == null) {
+			return true;
+		}
+		List<Marking> ancestors = explorer.getAncestors(stop);
+		List<Integer> path = explorer.getPath(stop);
+		int first = indexOfCoveredAncestor(stop, ancestors);
+		for (int i = first; i < path.size(); i++) {
+			terminationPath.add(rGraph.addArc(
+					ancestors.get(i),
+					petriNet.transitions.get(path.get(i)),
+					ancestors.get(i + 1)));
+		}
+		this.m1 = terminationPath.get(0).source;
+		this.m2 = terminationPath.get(terminationPath.size() - 1).target;
+		return false;
+	}
+
+	/**
+	 * Computes the successors of a marking on the compiled structure of the
+	 * Petri net. The method doesn't change any shared state, so it can be
+	 * called from several threads.
+	 * 
+	 * @param net   the compiled structure of the Petri net
+	 * @param state a marking
+	 * @param sink  receives the index of each enabled transition together
+	 *              with the marking reached by firing it
+	 */
+	private static void generateSuccessors(
+			final NetStructure net,
+			Marking state,
+			final Sink<Marking, Integer> sink) {
+		int[] marking = net.fromCanonical(state.getTokens());
+		net.forEachSuccessor(marking, new SuccessorConsumer() {
+			@Override
+			public void accept(int transition, int[] successor) {
+				sink.accept(transition, new Marking(
+						net.getCanonicalPlaceIds(),
+						net.toCanonical(successor)));
+			}
+		});
+	}
+
+	/**
+	 * Computes the successors of a marking and adds them with the arcs
+	 * leading to them to the reachability graph. The markings are added
+	 * without firing the transitions of
+	 * {@code BoundednessAnalysis.petriNet}, so no events are fired and the
+	 * active marking and latest arc of the graph aren't touched.
+	 * 
+	 * @param net   the compiled structure of the Petri net
+	 * @param state a marking of the reachability graph
+	 * @return      the arcs from {@code state} to its successors, in the
+	 *              order of the transitions
+	 */
+	private List<TransitionArc> insertSuccessors(
+			NetStructure net,
+			Marking state) {
+		final List<Transition> transitions = new ArrayList<Transition>();
+		final List<Marking> targets = new ArrayList<Marking>();
+		generateSuccessors(net, state, new Sink<Marking, Integer>() {
+			@Override
+			public void accept(Integer transition, Marking successor) {
+				transitions.add(petriNet.transitions.get(transition));
+				targets.add(successor);
+			}
+		});
+		return rGraph.addArcs(state, transitions, targets);
+	}
+
+	/**
+	 * Adds the markings explored by a parallel exploration and the arcs
+	 * between them to the reachability graph, in breadth-first order from
+	 * the start marking.
+	 * 
+	 * @param explorer the explorer which explored the markings
+	 * @param start    the start marking, which is already part of the graph
+	 */
+	private void insertExploredMarkings(
+			ParallelExplorer<Marking, Integer> explorer,
+			Marking start) {
+		final ArrayDeque<Marking> searchQueue = new ArrayDeque<Marking>();
+		final BitSet discovered = new BitSet();
+		searchQueue.add(start);
+		discovered.set(start.getStateId());
 		while (!searchQueue.isEmpty()) {
-			Marking currentMarking = searchQueue.remove(0);
-			if (hasUnboundednessCondition(currentMarking, visitedQueue)) {
-				return false;
-			} else if (!graphIsCircular(currentMarking, visitedQueue)) {
-				visitedQueue.add(currentMarking);
-				petriNet.setToMarking(currentMarking.places);
-				List<Marking> reachableMarkings = getReachableMarkings();
-				for (Marking marking : reachableMarkings) {
-					searchQueue.add(searchQueue.size(), marking);
+			final Marking source = searchQueue.poll();
+			explorer.replay(source, new Sink<Marking, Integer>() {
+				@Override
+				public void accept(Integer transition, Marking successor) {
+					TransitionArc arc = rGraph.addArc(source,
+							petriNet.transitions.get(transition), successor);
+					if (!discovered.get(arc.target.getStateId())) {
+						discovered.set(arc.target.getStateId());
+						searchQueue.add(arc.target);
+					}
 				}
+			});
+		}
+	}
+
+	/**
+	 * Looks for an ancestor m of a marking m' such that m' has at least as
+	 * many markers as m on each place and more markers on at least one place.
+	 * The method doesn't change any state, so it can be called from several
+	 * threads.
+	 * 
+	 * @param current   the marking m'
+	 * @param ancestors the markings from the start marking to m'
+	 * @return          the index of the first such ancestor, or -1 if there is
+	 *                  none
+	 */
+	private int indexOfCoveredAncestor(
+			Marking current,
+			List<Marking> ancestors) {
+		for (int i = 0; i < ancestors.size() - 1; i++) {
+			Marking ancestor = ancestors.get(i);
+			if (hasAtLeastAsMuchTokens(current, ancestor) &&
+					hasOneTokenMore(current, ancestor)) {
+				return i;
 			}
-		}	
-		return true;
+		}
+		return -1;
+	}
+
+	/**
+	 * Counts an explored marking and checks whether the analysis should stop,
+	 * either because it used up its {@link AnalysisBudget} or because the
+	 * {@link Monitor} cancelled it. The progress is reported to the monitor
+	 * every {@value #PROGRESS_INTERVAL} markings. Can be called from several
+	 * threads.
+	 * 
+	 * @param discoveredMarkings the number of markings discovered so far
+	 * @param depth              the length of the path to the explored
+	 *                           marking
+	 * @return                   {@code true} if the analysis should stop,
+	 *                           {@code false} otherwise
+	 */
+	private boolean checkLimits(int discoveredMarkings, int depth) {
+		int explored = exploredMarkings.incrementAndGet();
+		updateMaximum(maxDiscoveredMarkings, discoveredMarkings);
+		updateMaximum(maxDepth, depth);
+		if (budget.isMarkingsExceeded(discoveredMarkings)) {
+			stop(Outcome.BUDGET_EXCEEDED);
+		} else if (budget.isTimeExceeded(startNanos)) {
+			stop(Outcome.TIMEOUT);
+		}
+		if (monitor != null) {
+			if (explored % PROGRESS_INTERVAL == 0) {
+				monitor.progress(explored,
+						Math.max(0, discoveredMarkings - explored));
+			}
+			if (monitor.isCancelled()) {
+				isCancelled = true;
+			}
+		}
+		return isCancelled || stopReason != null;
+	}
+
+	/**
+	 * Stops the analysis before it reaches a result. Only the first reason is
+	 * kept if several threads stop the analysis.
+	 * 
+	 * @param reason the outcome to report instead of a result
+	 */
+	private synchronized void stop(Outcome reason) {
+		if (stopReason == null) {
+			stopReason = reason;
+		}
+	}
+
+	/**
+	 * Raises a counter shared between threads to a value, if the value is
+	 * larger.
+	 * 
+	 * @param maximum the counter
+	 * @param value   the new value
+	 */
+	private static void updateMaximum(AtomicInteger maximum, int value) {
+		int current = maximum.get();
+		while (value > current && !maximum.compareAndSet(current, value)) {
+			current = maximum.get();
+		}
+	}
+
+	/**
+	 * Ends the analysis if the {@link Monitor} cancelled it.
+	 * 
+	 * @throws CancellationException if the analysis was cancelled
+	 */
+	private void throwIfCancelled() {
+		if (isCancelled) {
+			throw new CancellationException(
+					"The boundedness analysis was cancelled.");
+		}
 	}
 
 	/**
 	 * Checks, if a marking m and m' satisfy the unboundedness conditions. These
 	 * are: (1) m' has at least as many markers as m, (2) m' has at least one
-	 * more marker as m and (3) m' is reachable from m.
+	 * more marker as m and (3) m' is reachable from m. Only the ancestors of
+	 * m' are considered as m, which also satisfies condition (3).
+	 * 
+	 * <p>The ancestors are checked starting from the start marking, so m is the
+	 * ancestor closest to the start marking. The arcs between m and m' are
+	 * stored as the {@link BoundednessAnalysis#terminationPath}.
 	 * 
-	 * @param current      the marking m'
-	 * @param visitedQueue list of all already visited markings
-	 * @return             {@code true} if there is a marking m and m' that
-	 *                     fulfill all conditions of the unboundedness check,
-	 *                     {@code false} otherwise
+	 * @param current the marking m'
+	 * @param path    the arcs from the start marking to m'
+	 * @return        {@code true} if there is a marking m and m' that fulfill
+	 *                all conditions of the unboundedness check, {@code false}
+	 *                otherwise
 	 */
 	private boolean hasUnboundednessCondition(
 			Marking current,
-			List<Marking> visitedQueue) {
-		for (Marking visited : visitedQueue) {
-			if (hasAtLeastAsMuchTokens(current, visited) &&
-					hasOneTokenMore(current, visited) &&
-					isReachable(visited, current, rGraph)) {
-				this.m1 = visited;
+			List<TransitionArc> path) {
+		for (int i = 0; i < path.size(); i++) {
+			Marking ancestor = path.get(i).source;
+			if (hasAtLeastAsMuchTokens(current, ancestor) &&
+					hasOneTokenMore(current, ancestor)) {
+				this.m1 = ancestor;
 				this.m2 = current;
+				this.terminationPath = new ArrayList<TransitionArc>(
+						path.subList(i, path.size()));
 				return true;
 			}
 		}
 		return false;
 	}
 
+	/**
+	 * Returns the total amount of markers of a marking. Markings with more
+	 * markers are expanded first by a best-first search, since they lead to
+	 * an unboundedness witness sooner.
+	 * 
+	 * @param marking a marking
+	 * @return        the sum of the markers on all places
+	 */
+	private static int getTokenCount(Marking marking) {
+		int count = 0;
+		for (int i = 0; i < marking.getPlaceCount(); i++) {
+			count += marking.getTokens(i);
+		}
+		return count;
+	}
+
 	/**
 	 * Checks if a marking m' has at least as many markers on each place as a
 	 * marking m.
@@ -198,9 +866,9 @@ public class BoundednessAnalysis {
 			Marking current,
 			Marking visited) {
 		boolean result = true;
-		for (int i = 0; i < visited.places.size(); i++) {
-			int currentPlaceTokens = current.places.get(i).currentTokens;
-			int visitedPlaceTokens = visited.places.get(i).currentTokens;
+		for (int i = 0; i < visited.getPlaceCount(); i++) {
+			int currentPlaceTokens = current.getTokens(i);
+			int visitedPlaceTokens = visited.getTokens(i);
 			if (currentPlaceTokens < visitedPlaceTokens) {
 				result = false;
 			}
@@ -221,9 +889,9 @@ public class BoundednessAnalysis {
 			Marking current,
 			Marking visited) {
 		boolean result = false;
-		for (int i = 0; i < visited.places.size(); i++) {
-			int currentPlaceTokens = current.places.get(i).currentTokens;
-			int visitedPlaceTokens = visited.places.get(i).currentTokens;
+		for (int i = 0; i < visited.getPlaceCount(); i++) {
+			int currentPlaceTokens = current.getTokens(i);
+			int visitedPlaceTokens = visited.getTokens(i);
 			if (currentPlaceTokens > visitedPlaceTokens) {
 				result = true;
 			}
@@ -231,127 +899,6 @@ public class BoundednessAnalysis {
 		return result;
 	}
 
-	/**
-	 * Checkfs if a Marking m' is reachable from another marking m in a
-	 * given reachability graph.
-	 * 
-	 * <p>This method is a wrapper for a recursive depth-first search.
-	 * 
-	 * @param sourceMarking a marking m'
-	 * @param targetMarking a marking m
-	 * @param rGraph        a reachability graph
-	 * @return              {@code true} if m' is reachable from m,
-	 *                      {@code false} otherwise
-	 */
-	private boolean isReachable(
-			Marking sourceMarking,
-			Marking targetMarking,
-			RGraphModel rGraph) {
-		List<Marking> visited = new ArrayList<Marking>();
-		return traverseRGraphDepthFirst(
-				sourceMarking,
-				targetMarking,
-				visited);
-	};
-
-	/**
-	 * Depth-first search inside a {@link RGraphModel reachability graph} to
-	 * check if a given {@link Marking} m is reachable from another given
-	 * marking m'.
-	 * 
-	 * <p><strong>Implementation details:</strong><br>
-	 * The algorithm tries to find a path between two markings m and m' in the
-	 * reachability graph. To do this, it starts from marking m
-	 * ({@code souceMarking}) and checks whether any outgoing edge (transition)
-	 * leads to marking m' ({@code targetMarking}).
-	 * 
-	 * <p>If this is not the case, this search is performed recursively for all
-	 * outgoing markings of m. The search terminates with {@code true} if m' is
-	 * found or {@code false} if all markings have been checked and m' could not
-	 * be reached. If m' is found, the termination path is saved as well for
-	 * later representation in the GUI.
-	 * 
-	 * @param sourceMarking m'
-	 * @param targetMarking m
-	 * @param visited       a list of already visited markings
-	 * @return              {@code true} if m' is reachable from m,
-	 *                      {@code false} otherwise
-	 * @see                 BoundednessAnalysis#terminationPath
-	 */
-	private boolean traverseRGraphDepthFirst(
-			Marking sourceMarking,
-			Marking targetMarking,
-			List<Marking> visited) {
-		boolean result = false;
-		if (!graphIsCircular(sourceMarking, visited)) {
-			/*
-			 * {@code visitedRecursive} is a helper variable to ensure that each
-			 * recursive function call stores its own path and the functions do
-			 * not share a common variable for the path.
-			 */
-			List<Marking> visitedRecursive = new ArrayList<Marking>(visited);
-			visitedRecursive.add(sourceMarking);
-			for (TransitionArc arc : rGraph.arcs) {
-				if (arc.source.id.equals(sourceMarking.id)) {
-					if (arc.target.id.equals(targetMarking.id)) {
-						visitedRecursive.add(targetMarking);
-						this.terminationPath = getTerminationPath(
-								visitedRecursive);
-						/*
-						 * Here the recursive search terminates with
-						 * {@code true}.
-						 */
-						return true;
-					} else {
-						result = traverseRGraphDepthFirst(
-								arc.target,	
-								targetMarking,
-								visitedRecursive);
-					}
-				}
-			}
-		}
-		/*
-		 * If the target marking is not found an no further recursive functions
-		 * are being created, the search returns {@code false}.
-		 */
-		return result;
-	}
-
-	/**
-	 * Creates a list of {@code TransitionArcs} that result in a path along a
-	 * given list of markings.
-	 * 
-	 * <p><strong>Implementation details:</strong><br>
-	 * {@code visitedMarkings} is the list of markings along which a path
-	 * should be created. The method checks each {@code TransitionArc} in the
-	 * {@code RGraphModel} to see if it represents a connection between two
-	 * adjacent markings in the list. If so, it is added to a list of
-	 * {@code TransitionArcs} and returned.
-	 * 
-	 * @param visitedMarkings a list of connected markings in
-	 *                        the {@link RGraphModel reachability graph}
-	 * @return                a list of arcs which form a path along markings
-	 */
-	private List<TransitionArc> getTerminationPath(
-			List<Marking> visitedMarkings) {
-		List<TransitionArc> path = new ArrayList<TransitionArc>();
-		int indexMax = visitedMarkings.size() - 1;
-		for (int i = 0; i < indexMax; i ++) {
-			for (TransitionArc arc : rGraph.arcs) {
-				/**
-				 * We check if a transition is a connection between a marking
-				 * with index i and a marking with index i + 1.
-				 */
-				if (arc.source.id.equals(visitedMarkings.get(i).id) &&
-						arc.target.id.equals(visitedMarkings.get(i + 1).id)) {
-					path.add(arc);
-				}
-			}
-		}
-		return path;
-	}
-
 	/**
 	 * Adds additional information to the {@link RGraphModel} after the
 	 * unboundedness criteria have been met.
@@ -381,14 +928,8 @@ public class BoundednessAnalysis {
 	 * @see BoundednessAnalysis#terminationPath
 	 */
 	private void insertStartAndEndMarking() {
-		for (Marking marking : rGraph.markings) {
-			if (marking.id.equals(m1.id)) {
-				marking.isPathStart = true;
-			}
-			if (marking.id.equals(m2.id)) {
-				marking.isPathEnd = true;
-			}
-		}
+		m1.isPathStart = true;
+		m2.isPathEnd = true;
 	}
 
 	/*
@@ -397,67 +938,7 @@ public class BoundednessAnalysis {
 	 * readable.
 	 */
 	private void setPetriNetToAbortMarking() {
-		petriNet.setToMarking(m2.places);
-	}
-
-	/**
-	 * Detects all active transitions in a Petri net and returns all reachable
-	 * markings.
-	 * 
-	 * <p><strong>Implementation details:</strong><br>
-	 * This method searches the Petri net {@code BoundednessAnalysis.petriNet}
-	 * and stores all active transitions in a list {@code enabledTransitions}.
-	 * Then each of these transitions is fired in turn and the new Petri net
-	 * markings are stored in a list {@code reachableMarkings} which is finally
-	 * returned.
-
-	 * @return a list of markings that can be reached from the
-	 *         {@link PetriNetModel} in this analysis
-	 */
-	private List<Marking> getReachableMarkings() {
-		Marking currentMarking = new Marking(petriNet.places);
-		List<Marking> reachableMarkings = new ArrayList<Marking>();
-		List<Transition> enabledTransitions = new ArrayList<Transition>();
-		for (Transition transition : petriNet.transitions) {
-			if (transition.isEnabled) {
-				enabledTransitions.add(transition);
-			}
-		}
-		for (Transition transition : enabledTransitions) {
-			/*
-			 * We need to reset the Petri net each time to the current marking
-			 * before firing it.
-			 */
-			petriNet.setToMarking(currentMarking.places);
-			petriNet.fire(transition);
-			Marking marking = new Marking(petriNet.places);
-			reachableMarkings.add(marking);
-		}
-		/**
-		 * Before terminating the method, we need to reset the Petri net once
-		 * more so we leave it in the same state as we found it.
-		 */
-		petriNet.setToMarking(currentMarking.places);
-		return reachableMarkings;
-	}
-
-	/**
-	 * Checks if a {@link Marking} is contained in a list of markings. This is
-	 * used to check if a marking has already been visited, to avoid
-	 * that the breadth-first search runs in circles.
-	 * 
-	 * @param currentMarking a marking
-	 * @param visitedQueue   a list of markings already visited
-	 * @return               {@code true} if the marking is contained in the
-	 *                       list, {@code false} otherwise
-	 */
-	private boolean graphIsCircular(
-			Marking currentMarking,
-			List<Marking> visitedQueue) {
-		boolean result = false;
-		for (Marking queueElement : visitedQueue) {
-			if (currentMarking.id.equals(queueElement.id)) return true;
-		}
-		return result;
+		petriNet.setMarkingVector(
+				petriNet.getStructure().fromCanonical(m2.getTokens()));
 	}
-}
\ No newline at end of file
+}
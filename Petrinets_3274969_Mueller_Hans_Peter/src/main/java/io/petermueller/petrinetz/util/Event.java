@@ -16,6 +16,14 @@ public enum Event {
 	 * The filesystem model has read an invalid file.
 	 */
 	FILESYSTEM_INVALID_FILE,
+	/**
+	 * The filesystem model has saved the Petri net into the current file.
+	 */
+	FILESYSTEM_FILE_SAVED,
+	/**
+	 * The filesystem model couldn't save the Petri net into the current file.
+	 */
+	FILESYSTEM_SAVE_FAILED,
 	/**
 	 * The Petri net model has fired a transition.
 	 */
@@ -0,0 +1,439 @@
+package io.petermueller.petrinetz.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import io.petermueller.petrinetz.util.StateSpaceExplorer.Sink;
+import io.petermueller.petrinetz.util.StateSpaceExplorer.Successors;
+import io.petermueller.petrinetz.util.StateSpaceExplorer.Visitor;
+
+/**
+ * Explores the state space reachable from a start state breadth-first, one
+ * level at a time, on all threads of a {@link ForkJoinPool}. The successors
+ * are generated by a thread-safe {@link Successors} callback.
+ * 
+ * <p><strong>Implementation details:</strong><br>
+ * The states of a level are kept in a list, the frontier. Every level is
+ * processed in three steps, each of which splits its work into chunks that
+ * run in parallel:
+ * <ol>
+ * <li>The visitor is called for every state of the frontier. If it stops
+ * the exploration at some state, only the states before it are expanded,
+ * and the exploration ends after this level.</li>
+ * <li>The states of the frontier are expanded. Each chunk sorts the
+ * successors it generates into one bucket per partition of the visited
+ * set, chosen by the hash code of the successor.</li>
+ * <li>Each partition of the visited set takes the buckets of all chunks in
+ * frontier order and adds the successors it hasn't seen before. No two
+ * partitions share a state, so they work without locks.</li>
+ * </ol>
+ * The new states are then collected in frontier order and form the next
+ * frontier.
+ * 
+ * <p>Because every step keeps the frontier order, the result doesn't depend
+ * on the timing of the threads: the states are discovered in exactly the
+ * order of a sequential breadth-first search, every state has the same
+ * parent, and the visitor stops at the same state. Paths returned by
+ * {@link #getPath} are shortest paths from the start state.
+ * 
+ * @author Hans Peter Müller (3274969)
+ * @param  <S> the type of the states. States have to implement
+ *             {@link Object#equals} and {@link Object#hashCode}.
+ * @param  <E> the type of the edges between states
+ * @see    StateSpaceExplorer
+ * @see    ParallelStateSpaceExplorer
+ */
+public class LevelSynchronousExplorer<S, E> implements ParallelExplorer<S, E> {
+	private static final int MIN_CHUNK_SIZE = 64;
+	private final Successors<S, E> successors;
+	private final ForkJoinPool pool;
+	private final List<Map<S, Node<S, E>>> partitions;
+
+	/**
+	 * Initializes an explorer which runs on the common fork-join pool.
+	 * 
+	 * @param successors generates the successors of a state. Is called from
+	 *                   several threads.
+	 */
+	public LevelSynchronousExplorer(Successors<S, E> successors) {
+		this(successors, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Initializes an explorer which runs on the given fork-join pool. The
+	 * visited set is split into one partition per thread of the pool.
+	 * 
+	 * @param successors generates the successors of a state. Is called from
+	 *                   several threads.
+	 * @param pool       the pool whose threads explore the states
+	 */
+	public LevelSynchronousExplorer(
+			Successors<S, E> successors,
+			ForkJoinPool pool) {
+		this.successors = successors;
+		this.pool = pool;
+		this.partitions = new ArrayList<Map<S, Node<S, E>>>();
+		for (int i = 0; i < pool.getParallelism(); i++) {
+			partitions.add(new HashMap<S, Node<S, E>>());
+		}
+	}
+
+	@Override
+	public S explore(S start, final Visitor<? super S> visitor) {
+		for (Map<S, Node<S, E>> partition : partitions) {
+			partition.clear();
+		}
+		Node<S, E> root = new Node<S, E>(start, null, null);
+		getPartition(start).put(start, root);
+		List<Node<S, E>> frontier = Collections.singletonList(root);
+		while (!frontier.isEmpty()) {
+			int stop = visitLevel(frontier, visitor);
+			List<Node<S, E>> expanded = frontier.subList(0, stop);
+			List<List<List<Candidate<S, E>>>> buckets = expandLevel(expanded);
+			mergeLevel(buckets);
+			if (stop < frontier.size()) {
+				return frontier.get(stop).state;
+			}
+			frontier = collectLevel(expanded);
+		}
+		return null;
+	}
+
+	@Override
+	public int getStateCount() {
+		int count = 0;
+		for (Map<S, Node<S, E>> partition : partitions) {
+			count += partition.size();
+		}
+		return count;
+	}
+
+	@Override
+	public List<E> getPath(S state) {
+		List<E> path = new ArrayList<E>();
+		for (Node<S, E> node = getNode(state); node.parent != null;
+				node = node.parent) {
+			path.add(node.edge);
+		}
+		Collections.reverse(path);
+		return path;
+	}
+
+	@Override
+	public List<S> getAncestors(S state) {
+		List<S> ancestors = new ArrayList<S>();
+		for (Node<S, E> node = getNode(state); node != null;
+				node = node.parent) {
+			ancestors.add(node.state);
+		}
+		Collections.reverse(ancestors);
+		return ancestors;
+	}
+
+	@Override
+	public boolean replay(S state, Sink<S, E> sink) {
+		Node<S, E> node = getPartition(state).get(state);
+		if (node == null || node.successors == null) {
+			return false;
+		}
+		for (int i = 0; i < node.successors.size(); i++) {
+			sink.accept(node.edges.get(i), node.successors.get(i));
+		}
+		return true;
+	}
+
+	/**
+	 * Calls the visitor for every state of a level.
+	 * 
+	 * @param frontier the nodes of the level
+	 * @param visitor  is called for every state
+	 * @return         the index of the first state at which the visitor
+	 *                 stopped the exploration, or the size of the frontier
+	 */
+	private int visitLevel(
+			final List<Node<S, E>> frontier,
+			final Visitor<? super S> visitor) {
+		final boolean[] stops = new boolean[frontier.size()];
+		List<RecursiveAction> tasks = new ArrayList<RecursiveAction>();
+		for (final int[] chunk : getChunks(frontier.size())) {
+			tasks.add(new RecursiveAction() {
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected void compute() {
+					for (int i = chunk[0]; i < chunk[1]; i++) {
+						stops[i] = visitor.visit(frontier.get(i).state);
+					}
+				}
+			});
+		}
+		runInParallel(tasks);
+		for (int i = 0; i < stops.length; i++) {
+			if (stops[i]) {
+				return i;
+			}
+		}
+		return stops.length;
+	}
+
+	/**
+	 * Generates the successors of every state of a level and sorts them into
+	 * buckets by partition.
+	 * 
+	 * @param frontier the nodes to expand
+	 * @return         for each chunk of the frontier, one bucket of
+	 *                 successors per partition, in frontier order
+	 */
+	private List<List<List<Candidate<S, E>>>> expandLevel(
+			final List<Node<S, E>> frontier) {
+		List<int[]> chunks = getChunks(frontier.size());
+		final List<List<List<Candidate<S, E>>>> buckets =
+				new ArrayList<List<List<Candidate<S, E>>>>();
+		List<RecursiveAction> tasks = new ArrayList<RecursiveAction>();
+		for (final int[] chunk : chunks) {
+			final List<List<Candidate<S, E>>> chunkBuckets =
+					new ArrayList<List<Candidate<S, E>>>();
+			for (int p = 0; p < partitions.size(); p++) {
+				chunkBuckets.add(new ArrayList<Candidate<S, E>>());
+			}
+			buckets.add(chunkBuckets);
+			tasks.add(new RecursiveAction() {
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected void compute() {
+					for (int i = chunk[0]; i < chunk[1]; i++) {
+						expand(frontier.get(i), chunkBuckets);
+					}
+				}
+			});
+		}
+		runInParallel(tasks);
+		return buckets;
+	}
+
+	/**
+	 * Generates the successors of a node, records them in the node and sorts
+	 * them into buckets by partition.
+	 * 
+	 * @param node    the node to expand
+	 * @param buckets one bucket per partition
+	 */
+	private void expand(
+			final Node<S, E> node,
+			final List<List<Candidate<S, E>>> buckets) {
+		node.edges = new ArrayList<E>();
+		node.successors = new ArrayList<S>();
+		successors.expand(node.state, new Sink<S, E>() {
+			@Override
+			public void accept(E edge, S successor) {
+				int index = node.successors.size();
+				node.edges.add(edge);
+				node.successors.add(successor);
+				buckets.get(getPartitionIndex(successor)).add(
+						new Candidate<S, E>(node, index));
+			}
+		});
+		node.children = new Object[node.successors.size()];
+	}
+
+	/**
+	 * Adds the successors of a level to the visited set. Each partition is
+	 * handled by its own task, which goes through its buckets in frontier
+	 * order, so the first node generating a state becomes its parent.
+	 * 
+	 * @param buckets the buckets returned by {@link #expandLevel}
+	 */
+	private void mergeLevel(
+			final List<List<List<Candidate<S, E>>>> buckets) {
+		List<RecursiveAction> tasks = new ArrayList<RecursiveAction>();
+		for (int p = 0; p < partitions.size(); p++) {
+			final int partitionIndex = p;
+			tasks.add(new RecursiveAction() {
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected void compute() {
+					Map<S, Node<S, E>> partition =
+							partitions.get(partitionIndex);
+					for (List<List<Candidate<S, E>>> chunk : buckets) {
+						for (Candidate<S, E> candidate :
+								chunk.get(partitionIndex)) {
+							Node<S, E> parent = candidate.parent;
+							S state = parent.successors.get(candidate.index);
+							if (!partition.containsKey(state)) {
+								Node<S, E> child = new Node<S, E>(state, parent,
+										parent.edges.get(candidate.index));
+								partition.put(state, child);
+								parent.children[candidate.index] = child;
+							}
+						}
+					}
+				}
+			});
+		}
+		runInParallel(tasks);
+	}
+
+	/**
+	 * Collects the states discovered while expanding a level, in frontier
+	 * order.
+	 * 
+	 * @param frontier the expanded nodes
+	 * @return         the nodes of the next level
+	 */
+	@SuppressWarnings("unchecked")
+	private List<Node<S, E>> collectLevel(List<Node<S, E>> frontier) {
+		List<Node<S, E>> next = new ArrayList<Node<S, E>>();
+		for (Node<S, E> node : frontier) {
+			for (Object child : node.children) {
+				if (child != null) {
+					next.add((Node<S, E>) child);
+				}
+			}
+			node.children = null;
+		}
+		return next;
+	}
+
+	/**
+	 * Splits a range of indices into chunks, about four per thread of the
+	 * pool, but not smaller than {@link #MIN_CHUNK_SIZE}.
+	 * 
+	 * @param size the number of indices
+	 * @return     the chunks as pairs of start (inclusive) and end
+	 *             (exclusive) index
+	 */
+	private List<int[]> getChunks(int size) {
+		int chunkSize = Math.max(MIN_CHUNK_SIZE,
+				(size + pool.getParallelism() * 4 - 1) /
+				(pool.getParallelism() * 4));
+		List<int[]> chunks = new ArrayList<int[]>();
+		for (int start = 0; start < size; start += chunkSize) {
+			chunks.add(new int[] {start, Math.min(size, start + chunkSize)});
+		}
+		return chunks;
+	}
+
+	/**
+	 * Runs tasks on the pool and waits until all of them have finished. A
+	 * single task is run on the calling thread.
+	 * 
+	 * @param tasks the tasks to run
+	 */
+	private void runInParallel(final List<RecursiveAction> tasks) {
+		if (tasks.size() == 1) {
+			tasks.get(0).invoke();
+			return;
+		}
+		pool.invoke(new RecursiveAction() {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected void compute() {
+				invokeAll(tasks);
+			}
+		});
+	}
+
+	/**
+	 * Returns the node of a discovered state.
+	 * 
+	 * @param state a discovered state
+	 * @return      the node of the state
+	 * @throws IllegalArgumentException if the state wasn't discovered
+	 */
+	private Node<S, E> getNode(S state) {
+		Node<S, E> node = getPartition(state).get(state);
+		if (node == null) {
+			throw new IllegalArgumentException(
+					"State " + state + " wasn't discovered.");
+		}
+		return node;
+	}
+
+	/**
+	 * Returns the partition of the visited set which holds a state.
+	 * 
+	 * @param state a state
+	 * @return      the partition
+	 */
+	private Map<S, Node<S, E>> getPartition(S state) {
+		return partitions.get(getPartitionIndex(state));
+	}
+
+	/**
+	 * Returns the index of the partition of the visited set which holds a
+	 * state.
+	 * 
+	 * @param state a state
+	 * @return      the index of the partition
+	 */
+	private int getPartitionIndex(S state) {
+		int hash = state.hashCode();
+		hash ^= hash >>> 16;
+		return Math.floorMod(hash, partitions.size());
+	}
+
+	/**
+	 * A discovered state with its parent and the successors generated for
+	 * it.
+	 * 
+	 * @param <S> the type of the states
+	 * @param <E> the type of the edges between states
+	 */
+	private static final class Node<S, E> {
+		private final S state;
+		private final Node<S, E> parent;
+		private final E edge;
+		private List<E> edges;
+		private List<S> successors;
+		/**
+		 * The nodes created for the successors while merging a level, at the
+		 * index of the successor, or {@code null} for successors that had
+		 * been discovered before.
+		 */
+		private Object[] children;
+
+		/**
+		 * Initializes a node.
+		 * 
+		 * @param state  the state
+		 * @param parent the node the state was discovered from, {@code null}
+		 *               for the start state
+		 * @param edge   the edge over which the state was discovered
+		 */
+		private Node(S state, Node<S, E> parent, E edge) {
+			this.state = state;
+			this.parent = parent;
+			this.edge = edge;
+		}
+	}
+
+	/**
+	 * A successor generated while expanding a level, given by the node it
+	 * was generated from and its index among the successors of that node.
+	 * 
+	 * @param <S> the type of the states
+	 * @param <E> the type of the edges between states
+	 */
+	private static final class Candidate<S, E> {
+		private final Node<S, E> parent;
+		private final int index;
+
+		/**
+		 * Initializes a candidate.
+		 * 
+		 * @param parent the node the successor was generated from
+		 * @param index  the index of the successor
+		 */
+		private Candidate(Node<S, E> parent, int index) {
+			this.parent = parent;
+			this.index = index;
+		}
+	}
+}
@@ -0,0 +1,73 @@
+package io.petermueller.petrinetz.util;
+
+import java.util.List;
+import io.petermueller.petrinetz.util.StateSpaceExplorer.Sink;
+import io.petermueller.petrinetz.util.StateSpaceExplorer.Visitor;
+
+/**
+ * An explorer which explores a state space on several threads and records
+ * the successors of every expanded state, so the explored part of the state
+ * space can be read once the exploration has finished.
+ * 
+ * @author Hans Peter Müller (3274969)
+ * @param  <S> the type of the states
+ * @param  <E> the type of the edges between states
+ * @see    ParallelStateSpaceExplorer
+ * @see    LevelSynchronousExplorer
+ */
+public interface ParallelExplorer<S, E> {
+	/**
+	 * Explores all states reachable from a start state until the visitor
+	 * stops the exploration or there are no more states to expand. Any states
+	 * of a previous exploration are forgotten.
+	 * 
+	 * @param start   the start state
+	 * @param visitor is called for every discovered state before it is
+	 *                expanded. Is called from several threads.
+	 * @return        the state at which the visitor stopped the exploration,
+	 *                or {@code null} if all reachable states were explored
+	 */
+	public S explore(S start, Visitor<? super S> visitor);
+
+	/**
+	 * Returns the number of states discovered by the last exploration.
+	 * 
+	 * @return the number of discovered states
+	 */
+	public int getStateCount();
+
+	/**
+	 * Returns the path from the start state to a discovered state as the list
+	 * of edges on it. This method can be called by the visitor during the
+	 * exploration.
+	 * 
+	 * @param state a discovered state
+	 * @return      the edges from the start state to {@code state}
+	 * @throws IllegalArgumentException if the state wasn't discovered
+	 */
+	public List<E> getPath(S state);
+
+	/**
+	 * Returns the path from the start state to a discovered state as the list
+	 * of states on it. This method can be called by the visitor during the
+	 * exploration.
+	 * 
+	 * @param state a discovered state
+	 * @return      the states from the start state to {@code state}, both
+	 *              included
+	 * @throws IllegalArgumentException if the state wasn't discovered
+	 */
+	public List<S> getAncestors(S state);
+
+	/**
+	 * Passes the successors that were generated for a state during the last
+	 * exploration on to a sink, in the order they were generated. Must only
+	 * be called after the exploration has finished.
+	 * 
+	 * @param state a discovered state
+	 * @param sink  receives the successors of {@code state}
+	 * @return      {@code true} if the state was expanded, {@code false}
+	 *              otherwise
+	 */
+	public boolean replay(S state, Sink<S, E> sink);
+}
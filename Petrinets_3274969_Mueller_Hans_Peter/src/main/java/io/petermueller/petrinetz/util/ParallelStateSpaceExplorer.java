@@ -0,0 +1,294 @@
+package io.petermueller.petrinetz.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountedCompleter;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicReference;
+import io.petermueller.petrinetz.util.StateSpaceExplorer.Sink;
+import io.petermueller.petrinetz.util.StateSpaceExplorer.Successors;
+import io.petermueller.petrinetz.util.StateSpaceExplorer.Visitor;
+
+/**
+ * Explores the state space reachable from a start state on all threads of a
+ * {@link ForkJoinPool}. Like the {@link StateSpaceExplorer}, it uses a
+ * {@link Successors} callback to generate successors and a {@link Visitor}
+ * that can stop the exploration, but both callbacks are called from several
+ * threads at the same time and have to be thread-safe.
+ * 
+ * <p><strong>Implementation details:</strong><br>
+ * Every discovered state is expanded by its own fork-join task. The pool lets
+ * idle threads steal tasks from busy ones, so the work spreads over all
+ * threads no matter how the state space is shaped. The tasks are
+ * {@link CountedCompleter CountedCompleters}, which don't wait for the tasks
+ * they fork, so deep state spaces don't fill up the stack.
+ * 
+ * <p>Discovered states are kept in a {@link ConcurrentHashMap}. The first
+ * task that adds a state becomes its parent, so the parent pointers form a
+ * tree rooted in the start state, just as in the sequential explorer. Which
+ * task wins depends on the timing of the threads, so the paths returned by
+ * {@link #getPath} may differ between runs, but each of them is a valid path
+ * from the start state.
+ * 
+ * <p>The successors generated for a state are recorded, so the explored
+ * part of the state space can be read with {@link #replay} once the
+ * exploration has finished, without generating the successors again.
+ * 
+ * @author Hans Peter Müller (3274969)
+ * @param  <S> the type of the states. States have to implement
+ *             {@link Object#equals} and {@link Object#hashCode}.
+ * @param  <E> the type of the edges between states
+ * @see    StateSpaceExplorer
+ * @see    LevelSynchronousExplorer
+ */
+public class ParallelStateSpaceExplorer<S, E>
+		implements ParallelExplorer<S, E> {
+	private final Successors<S, E> successors;
+	private final ForkJoinPool pool;
+	private final ConcurrentHashMap<S, Node<S, E>> nodes;
+	private final AtomicReference<S> stop;
+
+	/**
+	 * Initializes an explorer which runs on the common fork-join pool.
+	 * 
+	 * @param successors generates the successors of a state. Is called from
+	 *                   several threads.
+	 */
+	public ParallelStateSpaceExplorer(Successors<S, E> successors) {
+		this(successors, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Initializes an explorer which runs on the given fork-join pool.
+	 * 
+	 * @param successors generates the successors of a state. Is called from
+	 *                   several threads.
+	 * @param pool       the pool whose threads explore the states
+	 */
+	public ParallelStateSpaceExplorer(
+			Successors<S, E> successors,
+			ForkJoinPool pool) {
+		this.successors = successors;
+		this.pool = pool;
+		this.nodes = new ConcurrentHashMap<S, Node<S, E>>();
+		this.stop = new AtomicReference<S>();
+	}
+
+	/**
+	 * Explores all states reachable from a start state until the visitor
+	 * stops the exploration or there are no more states to expand. Any states
+	 * of a previous exploration are forgotten. The method returns when all
+	 * tasks of the exploration have finished.
+	 * 
+	 * @param start   the start state
+	 * @param visitor is called for every discovered state before it is
+	 *                expanded. Is called from several threads.
+	 * @return        the state at which the visitor stopped the exploration,
+	 *                or {@code null} if all reachable states were explored
+	 */
+	@Override
+	public S explore(S start, Visitor<? super S> visitor) {
+		nodes.clear();
+		stop.set(null);
+		Node<S, E> root = new Node<S, E>(start, null, null);
+		nodes.put(start, root);
+		pool.invoke(new ExpandTask(null, root, visitor));
+		return stop.get();
+	}
+
+	/**
+	 * Returns the number of states discovered by the last exploration.
+	 * 
+	 * @return the number of discovered states
+	 */
+	@Override
+	public int getStateCount() {
+		return nodes.size();
+	}
+
+	/**
+	 * Checks if a state was discovered by the last exploration.
+	 * 
+	 * @param state a state
+	 * @return      {@code true} if the state was discovered, {@code false}
+	 *              otherwise
+	 */
+	public boolean isDiscovered(S state) {
+		return nodes.containsKey(state);
+	}
+
+	/**
+	 * Returns the path from the start state to a discovered state, following
+	 * the edges over which the states were discovered. This method can be
+	 * called by the visitor during the exploration.
+	 * 
+	 * @param state a discovered state
+	 * @return      the edges from the start state to {@code state}. The list
+	 *              is empty for the start state.
+	 * @throws IllegalArgumentException if the state wasn't discovered
+	 */
+	@Override
+	public List<E> getPath(S state) {
+		List<E> path = new ArrayList<E>();
+		for (Node<S, E> node = getNode(state); node.parent != null;
+				node = node.parent) {
+			path.add(node.edge);
+		}
+		Collections.reverse(path);
+		return path;
+	}
+
+	/**
+	 * Returns the path from the start state to a discovered state as the list
+	 * of states on it. This method can be called by the visitor during the
+	 * exploration.
+	 * 
+	 * @param state a discovered state
+	 * @return      the states from the start state to {@code state}, both
+	 *              included
+	 * @throws IllegalArgumentException if the state wasn't discovered
+	 */
+	@Override
+	public List<S> getAncestors(S state) {
+		List<S> ancestors = new ArrayList<S>();
+		for (Node<S, E> node = getNode(state); node != null;
+				node = node.parent) {
+			ancestors.add(node.state);
+		}
+		Collections.reverse(ancestors);
+		return ancestors;
+	}
+
+	/**
+	 * Passes the successors that were generated for a state during the last
+	 * exploration on to a sink, in the order they were generated. Must only
+	 * be called after the exploration has finished.
+	 * 
+	 * @param state a discovered state
+	 * @param sink  receives the successors of {@code state}
+	 * @return      {@code true} if the state was expanded, {@code false} if
+	 *              it wasn't discovered or the exploration stopped before
+	 *              expanding it
+	 */
+	@Override
+	public boolean replay(S state, Sink<S, E> sink) {
+		Node<S, E> node = nodes.get(state);
+		if (node == null || node.successors == null) {
+			return false;
+		}
+		for (int i = 0; i < node.successors.size(); i++) {
+			sink.accept(node.edges.get(i), node.successors.get(i));
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the node of a discovered state.
+	 * 
+	 * @param state a discovered state
+	 * @return      the node of the state
+	 * @throws IllegalArgumentException if the state wasn't discovered
+	 */
+	private Node<S, E> getNode(S state) {
+		Node<S, E> node = nodes.get(state);
+		if (node == null) {
+			throw new IllegalArgumentException(
+					"State " + state + " wasn't discovered.");
+		}
+		return node;
+	}
+
+	/**
+	 * A discovered state with its parent and the successors generated for it.
+	 * The successors are only written by the task expanding the state and
+	 * read after the exploration has finished.
+	 * 
+	 * @param <S> the type of the states
+	 * @param <E> the type of the edges between states
+	 */
+	private static final class Node<S, E> {
+		private final S state;
+		private final Node<S, E> parent;
+		private final E edge;
+		private List<E> edges;
+		private List<S> successors;
+
+		/**
+		 * Initializes a node.
+		 * 
+		 * @param state  the state
+		 * @param parent the node the state was discovered from, {@code null}
+		 *               for the start state
+		 * @param edge   the edge over which the state was discovered
+		 */
+		private Node(S state, Node<S, E> parent, E edge) {
+			this.state = state;
+			this.parent = parent;
+			this.edge = edge;
+		}
+	}
+
+	/**
+	 * Visits and expands one state and forks a task for each newly
+	 * discovered successor. The task completes once all tasks it forked have
+	 * completed.
+	 */
+	private final class ExpandTask extends CountedCompleter<Void> {
+		private static final long serialVersionUID = 1L;
+		private final Node<S, E> node;
+		private final Visitor<? super S> visitor;
+
+		/**
+		 * Initializes a task.
+		 * 
+		 * @param parent  the task which forked this task
+		 * @param node    the node to expand
+		 * @param visitor is called for the state before it is expanded
+		 */
+		private ExpandTask(
+				CountedCompleter<?> parent,
+				Node<S, E> node,
+				Visitor<? super S> visitor) {
+			super(parent);
+			this.node = node;
+			this.visitor = visitor;
+		}
+
+		@Override
+		public void compute() {
+			if (stop.get() == null) {
+				if (visitor.visit(node.state)) {
+					stop.compareAndSet(null, node.state);
+				} else {
+					expand();
+				}
+			}
+			tryComplete();
+		}
+
+		/**
+		 * Generates the successors of the node and forks a task for each
+		 * successor that this task discovered first.
+		 */
+		private void expand() {
+			final List<E> edges = new ArrayList<E>();
+			final List<S> children = new ArrayList<S>();
+			successors.expand(node.state, new Sink<S, E>() {
+				@Override
+				public void accept(E edge, S successor) {
+					edges.add(edge);
+					children.add(successor);
+					Node<S, E> child = new Node<S, E>(successor, node, edge);
+					if (nodes.putIfAbsent(successor, child) == null) {
+						addToPendingCount(1);
+						new ExpandTask(ExpandTask.this, child, visitor).fork();
+					}
+				}
+			});
+			node.edges = edges;
+			node.successors = children;
+		}
+	}
+}
@@ -0,0 +1,304 @@
+package io.petermueller.petrinetz.util;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Queue;
+
+/**
+ * Explores the state space reachable from a start state. The explorer doesn't
+ * know anything about Petri nets: the successors of a state are generated by
+ * a {@link Successors} callback, and a {@link Visitor} is called for every
+ * state taken from the frontier and can stop the exploration. This way the
+ * same engine can be used by different analyses.
+ * 
+ * <p><strong>Implementation details:</strong><br>
+ * Discovered states are kept in a hash map from the state to its index, so
+ * checking whether a state was seen before takes constant time. For every
+ * state, the index of the state it was discovered from and the edge over
+ * which it was discovered are stored. These parent pointers form a tree
+ * rooted in the start state, from which {@link #getPath} reads the path to
+ * any discovered state.
+ * 
+ * <p>The order in which states are expanded is chosen by the
+ * {@link Frontier}. Breadth-first uses an {@link ArrayDeque} as a queue,
+ * depth-first uses it as a stack and best-first uses a {@link PriorityQueue}
+ * ordered by a {@link Comparator} on the states. States with the same
+ * priority are expanded in the order they were discovered.
+ * 
+ * @author Hans Peter Müller (3274969)
+ * @param  <S> the type of the states. States have to implement
+ *             {@link Object#equals} and {@link Object#hashCode}.
+ * @param  <E> the type of the edges between states
+ */
+public class StateSpaceExplorer<S, E> {
+	private static final int NO_PARENT = -1;
+	private final Frontier frontier;
+	private final Successors<S, E> successors;
+	private final Comparator<? super S> priority;
+	private final Map<S, Integer> indices;
+	private final List<S> states;
+	private final List<E> parentEdges;
+	private int[] parents;
+
+	/**
+	 * The order in which the states of the frontier are expanded.
+	 */
+	public enum Frontier {
+		/**
+		 * Expands the states in the order they were discovered. The path to a
+		 * state is a shortest path from the start state.
+		 */
+		BREADTH_FIRST,
+		/**
+		 * Expands the most recently discovered state first.
+		 */
+		DEPTH_FIRST,
+		/**
+		 * Expands the smallest state according to a {@link Comparator} first.
+		 */
+		BEST_FIRST
+	}
+
+	/**
+	 * Callback which generates the successors of a state.
+	 * 
+	 * @param <S> the type of the states
+	 * @param <E> the type of the edges between states
+	 */
+	public interface Successors<S, E> {
+		/**
+		 * Generates all successors of a state and passes each of them with the
+		 * edge leading to it on to the {@code sink}.
+		 * 
+		 * @param state a state
+		 * @param sink  receives the successors of {@code state}
+		 */
+		public void expand(S state, Sink<S, E> sink);
+	}
+
+	/**
+	 * Receives the successors generated by {@link Successors#expand}.
+	 * 
+	 * @param <S> the type of the states
+	 * @param <E> the type of the edges between states
+	 */
+	public interface Sink<S, E> {
+		/**
+		 * Adds a successor of the state being expanded.
+		 * 
+		 * @param edge      the edge from the expanded state to the successor
+		 * @param successor the successor
+		 */
+		public void accept(E edge, S successor);
+	}
+
+	/**
+	 * Callback which is called for every state taken from the frontier, before
+	 * the state is expanded.
+	 * 
+	 * @param <S> the type of the states
+	 */
+	public interface Visitor<S> {
+		/**
+		 * Is called when a state is taken from the frontier.
+		 * 
+		 * @param state the state
+		 * @return      {@code true} to stop the exploration, {@code false} to
+		 *              go on
+		 */
+		public boolean visit(S state);
+	}
+
+	/**
+	 * Initializes an explorer with a breadth-first or depth-first frontier.
+	 * 
+	 * @param frontier   the order in which states are expanded
+	 * @param successors generates the successors of a state
+	 * @throws IllegalArgumentException if {@code frontier} is
+	 *                                  {@link Frontier#BEST_FIRST}, which
+	 *                                  needs a {@link Comparator}
+	 */
+	public StateSpaceExplorer(Frontier frontier, Successors<S, E> successors) {
+		this(frontier, successors, null);
+	}
+
+	/**
+	 * Initializes an explorer.
+	 * 
+	 * @param frontier   the order in which states are expanded
+	 * @param successors generates the successors of a state
+	 * @param priority   orders the states for {@link Frontier#BEST_FIRST}.
+	 *                   Smaller states are expanded first. Ignored for the
+	 *                   other frontiers.
+	 * @throws IllegalArgumentException if {@code frontier} is
+	 *                                  {@link Frontier#BEST_FIRST} and
+	 *                                  {@code priority} is {@code null}
+	 */
+	public StateSpaceExplorer(
+			Frontier frontier,
+			Successors<S, E> successors,
+			Comparator<? super S> priority) {
+		if (frontier == Frontier.BEST_FIRST && priority == null) {
+			throw new IllegalArgumentException(
+					"Best-first exploration needs a priority.");
+		}
+		this.frontier = frontier;
+		this.successors = successors;
+		this.priority = priority;
+		this.indices = new HashMap<S, Integer>();
+		this.states = new ArrayList<S>();
+		this.parentEdges = new ArrayList<E>();
+		this.parents = new int[16];
+	}
+
+	/**
+	 * Explores all states reachable from a start state until the visitor
+	 * stops the exploration or there are no more states to expand. Any states
+	 * of a previous exploration are forgotten.
+	 * 
+	 * @param start   the start state
+	 * @param visitor is called for every state taken from the frontier
+	 * @return        the state at which the visitor stopped the exploration,
+	 *                or {@code null} if all reachable states were explored
+	 */
+	public S explore(S start, Visitor<? super S> visitor) {
+		indices.clear();
+		states.clear();
+		parentEdges.clear();
+		final Queue<Integer> pending = createFrontier();
+		pending.add(discover(start, null, NO_PARENT));
+		while (!pending.isEmpty()) {
+			final int index = pending.poll();
+			S state = states.get(index);
+			if (visitor.visit(state)) {
+				return state;
+			}
+			successors.expand(state, new Sink<S, E>() {
+				@Override
+				public void accept(E edge, S successor) {
+					if (!indices.containsKey(successor)) {
+						pending.add(discover(successor, edge, index));
+					}
+				}
+			});
+		}
+		return null;
+	}
+
+	/**
+	 * Returns the number of states discovered by the last exploration.
+	 * 
+	 * @return the number of discovered states
+	 */
+	public int getStateCount() {
+		return states.size();
+	}
+
+	/**
+	 * Checks if a state was discovered by the last exploration.
+	 * 
+	 * @param state a state
+	 * @return      {@code true} if the state was discovered, {@code false}
+	 *              otherwise
+	 */
+	public boolean isDiscovered(S state) {
+		return indices.containsKey(state);
+	}
+
+	/**
+	 * Returns the path from the start state to a discovered state, following
+	 * the edges over which the states were discovered.
+	 * 
+	 * @param state a discovered state
+	 * @return      the edges from the start state to {@code state}. The list
+	 *              is empty for the start state.
+	 * @throws IllegalArgumentException if the state wasn't discovered
+	 */
+	public List<E> getPath(S state) {
+		Integer index = indices.get(state);
+		if (index == null) {
+			throw new IllegalArgumentException(
+					"State " + state + " wasn't discovered.");
+		}
+		List<E> path = new ArrayList<E>();
+		for (int i = index; parents[i] != NO_PARENT; i = parents[i]) {
+			path.add(parentEdges.get(i));
+		}
+		Collections.reverse(path);
+		return path;
+	}
+
+	/**
+	 * Returns the path from the start state to a discovered state as the list
+	 * of states on it.
+	 * 
+	 * @param state a discovered state
+	 * @return      the states from the start state to {@code state}, both
+	 *              included
+	 * @throws IllegalArgumentException if the state wasn't discovered
+	 */
+	public List<S> getAncestors(S state) {
+		Integer index = indices.get(state);
+		if (index == null) {
+			throw new IllegalArgumentException(
+					"State " + state + " wasn't discovered.");
+		}
+		List<S> ancestors = new ArrayList<S>();
+		for (int i = index; i != NO_PARENT; i = parents[i]) {
+			ancestors.add(states.get(i));
+		}
+		Collections.reverse(ancestors);
+		return ancestors;
+	}
+
+	/**
+	 * Stores a newly discovered state together with its parent.
+	 * 
+	 * @param state  the new state
+	 * @param edge   the edge over which the state was discovered
+	 * @param parent the index of the state it was discovered from
+	 * @return       the index of the new state
+	 */
+	private int discover(S state, E edge, int parent) {
+		int index = states.size();
+		if (index == parents.length) {
+			parents = Arrays.copyOf(parents, index * 2);
+		}
+		indices.put(state, index);
+		states.add(state);
+		parentEdges.add(edge);
+		parents[index] = parent;
+		return index;
+	}
+
+	/**
+	 * Creates an empty frontier of the selected type. The frontier holds the
+	 * indices of the discovered states which haven't been expanded yet.
+	 * 
+	 * @return the frontier
+	 */
+	private Queue<Integer> createFrontier() {
+		switch (frontier) {
+		case DEPTH_FIRST:
+			return Collections.asLifoQueue(new ArrayDeque<Integer>());
+		case BEST_FIRST:
+			return new PriorityQueue<Integer>(new Comparator<Integer>() {
+				@Override
+				public int compare(Integer o1, Integer o2) {
+					int result = priority.compare(
+							states.get(o1), states.get(o2));
+					return result != 0 ? result : Integer.compare(o1, o2);
+				}
+			});
+		default:
+			return new ArrayDeque<Integer>();
+		}
+	}
+}
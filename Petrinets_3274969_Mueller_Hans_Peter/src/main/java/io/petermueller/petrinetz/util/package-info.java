@@ -8,8 +8,15 @@
  * <li>{@link EventListener}</li></ul>
  * 
  * <p>Classes implementing the boundedness analysis:<ul>
+ * <li>{@link AnalysisBudget}</li>
+ * <li>{@link AnalysisCache}</li>
+ * <li>{@link AnalysisRecordWriter}</li>
  * <li>{@link BatchProcessing}</li>
- * <li>{@link BoundednessAnalysis}</li></ul>
+ * <li>{@link BoundednessAnalysis}</li>
+ * <li>{@link LevelSynchronousExplorer}</li>
+ * <li>{@link ParallelExplorer}</li>
+ * <li>{@link ParallelStateSpaceExplorer}</li>
+ * <li>{@link StateSpaceExplorer}</li></ul>
  * 
  * @author Hans Peter Müller (3274969)
  */
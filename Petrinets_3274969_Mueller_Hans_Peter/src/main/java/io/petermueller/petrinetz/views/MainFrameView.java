@@ -50,6 +50,10 @@ public class MainFrameView {
 	 * The menu option "Neu laden".
 	 */
 	public JMenuItem menuReload;
+	/**
+	 * The menu option "Speichern".
+	 */
+	public JMenuItem menuSave;
 	/**
 	 * The menu option "Analyse mehrerer Dateien…".
 	 */
@@ -94,17 +98,20 @@ public class MainFrameView {
 		JMenu help = new JMenu("Hilfe");
 		menuOpen = new JMenuItem("Öffnen…");	
 		menuReload = new JMenuItem("Neu laden");	
+		menuSave = new JMenuItem("Speichern");
 		menuBatchProcessing = new JMenuItem("Analyse mehrerer Dateien…");	
 		menuQuit = new JMenuItem("Beenden");	
 		menuInfo = new JMenuItem("Info…");
 
 		menuReload.setEnabled(false);
+		menuSave.setEnabled(false);
 
 		menuBar.add(file);
 		file.add(menuOpen);
 		file.add(menuBatchProcessing);
 		file.addSeparator();
 		file.add(menuReload);
+		file.add(menuSave);
 		file.addSeparator();
 		file.add(menuQuit);
 		menuBar.add(help);
@@ -173,12 +180,18 @@ public class MainFrameView {
 			public void event(Event eventType) {
 				switch (eventType) {
 				case FILESYSTEM_NEW_FILE_OPENED:
-					menuReload.setEnabled(true);
+					boolean hasFile = fileSystemModel.getCurrentFile() != null;
+					menuReload.setEnabled(hasFile);
+					menuSave.setEnabled(hasFile);
 					break;
 				case FILESYSTEM_INVALID_FILE:
 					new DialogWindowView(mainFrame,
 							"Es können nur PNML Dateien geöffnet werden.");
 					break;
+				case FILESYSTEM_SAVE_FAILED:
+					new DialogWindowView(mainFrame,
+							"Die Datei konnte nicht gespeichert werden.");
+					break;
 				}
 			}
 		});
@@ -214,6 +214,7 @@ public class PetriNetView {
 			graph.getEdge(element.id).setAttribute(
 					"ui.label",
 					"[" + element.id + "]"
+					+ (element.weight > 1 ? " " + element.weight : "")
 					);
 		}
 	}
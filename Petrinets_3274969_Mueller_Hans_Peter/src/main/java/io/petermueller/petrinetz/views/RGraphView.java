@@ -161,13 +161,13 @@ public class RGraphView {
 	 */
 	private void updateNodeStyles(Marking marking) {
 		if (marking.isPathEnd) {
-			graph.getNode(marking.id).setAttribute("ui.class", "pathEnd");
+			graph.getNode(marking.getId()).setAttribute("ui.class", "pathEnd");
 		} else if (marking.isActive || marking.isPathStart) {
-			graph.getNode(marking.id).setAttribute("ui.class", "active");
+			graph.getNode(marking.getId()).setAttribute("ui.class", "active");
 		} else if (marking.isRoot) {
-			graph.getNode(marking.id).setAttribute("ui.class", "root");
+			graph.getNode(marking.getId()).setAttribute("ui.class", "root");
 		} else {
-			graph.getNode(marking.id).removeAttribute("ui.class");
+			graph.getNode(marking.getId()).removeAttribute("ui.class");
 		}
 	}
 
@@ -192,7 +192,7 @@ public class RGraphView {
 	 * @param marking a marking to create a node from
 	 */
 	private void createNode(Marking marking) {
-		String id = marking.id;
+		String id = marking.getId();
 		graph.addNode(id);
 		graph.getNode(id).setAttribute("ui.label", id);
 	}
@@ -203,7 +203,7 @@ public class RGraphView {
 	 * @param arc the transition arc to create an edge from
 	 */
 	private void createEdge(TransitionArc arc) {
-		graph.addEdge(getId(arc), arc.source.id, arc.target.id, true);
+		graph.addEdge(getId(arc), arc.source.getId(), arc.target.getId(), true);
 		Sprite sprite = sman.addSprite(getId(arc));
 		sprite.attachToEdge(getId(arc));
 		sprite.setPosition(0.35);
@@ -217,7 +217,7 @@ public class RGraphView {
 	 * @return    the unique id
 	 */
 	private String getId(TransitionArc arc) {
-		return arc.id + arc.source.id + arc.target.id;
+		return arc.id + arc.source.getId() + arc.target.getId();
 	}
 
 	/**
@@ -227,7 +227,7 @@ public class RGraphView {
 	 * @return        {@code true} if a node exists, {@code false} otherwise
 	 */
 	private boolean markingExists(Marking marking) {
-		String id = marking.id;
+		String id = marking.getId();
 		if (graph.getNode(id) != null) {
 			return true;
 		}
@@ -242,8 +242,8 @@ public class RGraphView {
 	 */
 	private boolean arcExists(TransitionArc arc) {
 		String id = arc.id;
-		String source = arc.source.id;
-		String target = arc.target.id;
+		String source = arc.source.getId();
+		String target = arc.target.getId();
 		String edgeId = id + source + target;
 		if (graph.getEdge(edgeId) != null) {
 			return true;
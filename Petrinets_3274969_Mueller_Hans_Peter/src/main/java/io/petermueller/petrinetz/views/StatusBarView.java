@@ -26,6 +26,7 @@ public class StatusBarView {
 	public JPanel statusBar;
 	private JLabel labelCurrentDocument;
 	private JLabel labelEdited;
+	private JLabel labelProgress;
 
 	/**
 	 * Initializes the component, renders the UI and calls methods to attach
@@ -72,6 +73,30 @@ public class StatusBarView {
 		labelCurrentDocument.setFont(font);
 	}
 
+	/**
+	 * Shows the progress of a running boundedness analysis at the right end
+	 * of the status bar.
+	 * 
+	 * @param exploredMarkings  the number of markings checked so far
+	 * @param frontierSize      the number of markings waiting to be checked
+	 * @param markingsPerSecond the number of markings checked per second
+	 */
+	public void setAnalysisProgress(
+			int exploredMarkings,
+			int frontierSize,
+			long markingsPerSecond) {
+		labelProgress.setText(String.format(
+				"Analyse läuft: %,d Markierungen, %,d offen, %,d/s",
+				exploredMarkings, frontierSize, markingsPerSecond));
+	}
+
+	/**
+	 * Removes the progress of the boundedness analysis from the status bar.
+	 */
+	public void clearAnalysisProgress() {
+		labelProgress.setText("");
+	}
+
 	/**
 	 * Renders the UI.
 	 */
@@ -92,6 +117,7 @@ public class StatusBarView {
 		JLabel labelIcon = new JLabel(icon);
 		labelCurrentDocument = new JLabel("Keine Datei geöffnet");
 		labelEdited = new JLabel("");
+		labelProgress = new JLabel("");
 
 		statusBar.setLayout(new BoxLayout(statusBar, BoxLayout.LINE_AXIS));
 		statusBar.setPreferredSize(new Dimension(Integer.MAX_VALUE, 24));
@@ -104,6 +130,9 @@ public class StatusBarView {
 		statusBar.add(labelCurrentDocument);
 		statusBar.add(Box.createHorizontalStrut(4));
 		statusBar.add(labelEdited);
+		statusBar.add(Box.createHorizontalGlue());
+		statusBar.add(labelProgress);
+		statusBar.add(Box.createHorizontalStrut(8));
 	}
 
 	/**
@@ -119,6 +148,8 @@ public class StatusBarView {
 				if (eventType == Event.FILESYSTEM_NEW_FILE_OPENED) {
 					setText(fileSystemModel.getCurrentFileName());
 					setEdited(false);
+				} else if (eventType == Event.FILESYSTEM_FILE_SAVED) {
+					setEdited(false);
 				}
 			}
 		});
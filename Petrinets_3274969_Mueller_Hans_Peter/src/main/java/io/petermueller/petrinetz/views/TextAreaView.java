@@ -7,6 +7,7 @@ import javax.swing.border.EmptyBorder;
 import io.petermueller.petrinetz.models.rgraph.TransitionArc;
 import io.petermueller.petrinetz.util.BatchProcessing;
 import io.petermueller.petrinetz.util.BoundednessAnalysis;
+import io.petermueller.petrinetz.util.BoundednessAnalysis.Outcome;
 
 /**
  * Renders the text area of the app's main view, offers methods to print
@@ -66,15 +67,15 @@ public class TextAreaView {
 		output = output + "Beschränktheitsanalyse:\n" +
 				analysis.petriNet.fileName + " ";
 		if (analysis.isBounded) {
-			int possibleMarkings = analysis.rGraph.markings.size();
+			int possibleMarkings = analysis.discoveredMarkings;
 			output = output +
 					"ist beschränkt.\n" +
 					possibleMarkings + " mögliche Markierungen.";
 		} else {
 			output = output + 
 					"ist unbeschränkt. Abbruchkriterien:\n" +
-					"m    " + analysis.m1.id + "\n" +
-					"m'   " + analysis.m2.id + "\n";
+					"m    " + analysis.m1.getId() + "\n" +
+					"m'   " + analysis.m2.getId() + "\n";
 			boolean firstLine = true;
 			for (TransitionArc arc : analysis.terminationPath) {
 				if (firstLine) {
@@ -91,19 +92,41 @@ public class TextAreaView {
 		print(output + "\n");
 	}
 
+	/**
+	 * Prints a single line for an analysis of a batch which has just
+	 * finished, so the user can follow the batch while the other files are
+	 * still being analyzed.
+	 * 
+	 * @param analysis      the finished analysis
+	 * @param finishedCount the number of finished analyses, including this one
+	 * @param totalCount    the number of files in the batch
+	 */
+	public void printBatchProgress(
+			BoundednessAnalysis analysis,
+			int finishedCount,
+			int totalCount) {
+		print(String.format("%d/%d %s: %s\n", finishedCount, totalCount,
+				analysis.petriNet.fileName,
+				generateOutcomeString(analysis.outcome)));
+	}
+
 	/**
 	 * Prints the results of a boundedness analysis of multiple files in a
-	 * table.
+	 * table. Besides the boundedness, the table shows the outcome of each
+	 * analysis. For analyses which used up their budget, it shows how many
+	 * markings were discovered and how deep the analysis got.
 	 * 
 	 * @param batch the analyzed files
 	 */
 	public void printBatchResults(BatchProcessing batch) {
 		String headerName = "Dateiname";
 		String headerBounded = "beschränkt";
+		String headerOutcome = "Ergebnis";
 		String headerDetailsLine1 = "Knoten / Kanten bzw.";
 		String headerDetailsLine2 = "Pfadlänge:Pfad; m, m'";
 		int lengthName = getMaxFileNameLength(batch);
 		int lengthBounded = headerBounded.length();
+		int lengthOutcome = getMaxOutcomeLength(batch, headerOutcome);
 		int lengthDetailsNodes = getMaxDetailsNodesLength(
 				batch,
 				headerDetailsLine2);
@@ -115,21 +138,23 @@ public class TextAreaView {
 			output = output + "\n";
 		}
 		output = output + generateTableHeader(
-				lengthName, lengthBounded, lengthDetailsNodes,
+				lengthName, lengthBounded, lengthOutcome, lengthDetailsNodes,
 				lengthDetailsM1, lengthDetailsM2, headerName,
-				headerBounded, headerDetailsLine1, headerDetailsLine2);
+				headerBounded, headerOutcome, headerDetailsLine1,
+				headerDetailsLine2);
 
 		output = output + generateHorizontalLine(
 				lengthName,
 				lengthBounded,
+				lengthOutcome,
 				lengthDetailsNodes,
 				lengthDetailsM1,
 				lengthDetailsM2);
 
 		for (BoundednessAnalysis analysis : batch.analysisList) {
 			output = output + generateAnalysisLine(
-					analysis, lengthName, lengthBounded, lengthDetailsNodes,
-					lengthDetailsM1, lengthDetailsM2);
+					analysis, lengthName, lengthBounded, lengthOutcome,
+					lengthDetailsNodes, lengthDetailsM1, lengthDetailsM2);
 		}		
 		print(output + "\n");
 	}
@@ -183,6 +208,7 @@ public class TextAreaView {
 	 * @param analysis           the analysis
 	 * @param lengthName         the maximum length of the filename column
 	 * @param lengthBounded      the maximum length of the boundedness column
+	 * @param lengthOutcome      the maximum length of the outcome column
 	 * @param lengthDetailsNodes the maximum length of the details column
 	 * @param lengthDetailsM1    the maximum length of the m1 marking string
 	 * @param lengthDetailsM2    the maximum length of the m2 marking string
@@ -190,40 +216,92 @@ public class TextAreaView {
 	 */
 	private String generateAnalysisLine(
 			BoundednessAnalysis analysis,
-			int lengthName, int lengthBounded, int lengthDetailsNodes,
-			int lengthDetailsM1, int lengthDetailsM2) {
+			int lengthName, int lengthBounded, int lengthOutcome,
+			int lengthDetailsNodes, int lengthDetailsM1, int lengthDetailsM2) {
 		String filename = analysis.petriNet.fileName;
-		if (analysis.isBounded) {
+		String outcome = generateOutcomeString(analysis.outcome);
+		if (analysis.outcome == Outcome.BOUNDED) {
 			String bounded = "ja";
-			String nodes = Integer.toString(analysis.rGraph.markings.size());
-			String edges = Integer.toString(analysis.rGraph.arcs.size());
+			String nodes = Integer.toString(analysis.discoveredMarkings);
+			String edges = Integer.toString(analysis.discoveredArcs);
 			return String.format(
 					"%1$-" + lengthName +
 					"s | %2$-" + lengthBounded +
-					"s | %3$2s / %4$2s \n",
-					filename, bounded, nodes, edges);
-		} else {
+					"s | %3$-" + lengthOutcome +
+					"s | %4$2s / %5$2s \n",
+					filename, bounded, outcome, nodes, edges);
+		} else if (analysis.outcome == Outcome.UNBOUNDED) {
 			String bounded = "nein";
 			String path = generatePathString(analysis);
-			String m1 = analysis.m1.id;
-			String m2 = analysis.m2.id;
+			String m1 = analysis.m1.getId();
+			String m2 = analysis.m2.getId();
 			return String.format(
 					"%1$-" + lengthName +
 					"s | %2$-" + lengthBounded +
-					"s | %3$-" + lengthDetailsNodes +
-					"s %4$-" + lengthDetailsM1 +
-					"s %5$-" + lengthDetailsM2 +
+					"s | %3$-" + lengthOutcome +
+					"s | %4$-" + lengthDetailsNodes +
+					"s %5$-" + lengthDetailsM1 +
+					"s %6$-" + lengthDetailsM2 +
 					"s \n",
-					filename, bounded, path, m1, m2);
+					filename, bounded, outcome, path, m1, m2);
+		} else {
+			String bounded = "?";
+			return String.format(
+					"%1$-" + lengthName +
+					"s | %2$-" + lengthBounded +
+					"s | %3$-" + lengthOutcome +
+					"s | %4$s \n",
+					filename, bounded, outcome,
+					generateProgressString(analysis));
 		}
 	}
 
+	/**
+	 * Generates the text of the outcome column.
+	 * 
+	 * @param outcome the outcome of an analysis
+	 * @return        the outcome in words
+	 */
+	private String generateOutcomeString(Outcome outcome) {
+		switch (outcome) {
+		case BOUNDED:
+			return "beschränkt";
+		case UNBOUNDED:
+			return "unbeschränkt";
+		case TIMEOUT:
+			return "Zeitlimit überschritten";
+		case BUDGET_EXCEEDED:
+			return "Markierungslimit überschritten";
+		case FAILED:
+			return "Analyse fehlgeschlagen";
+		default:
+			return "Datei fehlerhaft";
+		}
+	}
+
+	/**
+	 * Generates the details of an analysis which stopped before reaching a
+	 * result, telling how far it got.
+	 * 
+	 * @param analysis the boundedness analysis
+	 * @return         the number of discovered markings and the depth, or an
+	 *                 empty string if the Petri net wasn't analyzed
+	 */
+	private String generateProgressString(BoundednessAnalysis analysis) {
+		if (!analysis.wasAnalyzed()) {
+			return "";
+		}
+		return "abgebrochen nach " + analysis.discoveredMarkings +
+				" Markierungen, Tiefe " + analysis.depth;
+	}
+
 	/**
 	 * Adds a horizontal line to the tabular output of the boundedness analysis
 	 * seperating the table header from the table body.
 	 * 
 	 * @param lengthName         the maximum length of the filename column
 	 * @param lengthBounded      the maximum length of the boundedness column
+	 * @param lengthOutcome      the maximum length of the outcome column
 	 * @param lengthDetailsNodes the maximum length of the details column
 	 * @param lengthDetailsM1    the maximum length of the m1 marking string
 	 * @param lengthDetailsM2    the maximum length of the m2 marking string
@@ -232,6 +310,7 @@ public class TextAreaView {
 	private String generateHorizontalLine(
 			int lengthName, 
 			int lengthBounded, 
+			int lengthOutcome, 
 			int lengthDetailsNodes, 
 			int lengthDetailsM1,
 			int lengthDetailsM2) {
@@ -241,6 +320,9 @@ public class TextAreaView {
 		line = line + 
 				new String(new char[lengthBounded + 2]).replace("\0", "-");
 		line = line + "|";
+		line = line + 
+				new String(new char[lengthOutcome + 2]).replace("\0", "-");
+		line = line + "|";
 		int detailsLenght = lengthDetailsNodes +
 				lengthDetailsM1 +
 				lengthDetailsM2;
@@ -267,14 +349,34 @@ public class TextAreaView {
 		return maxFileNameLength;
 	}
 
+	/**
+	 * Calculates the maximum length of the outcome column.
+	 * 
+	 * @param batch  the batch processed files
+	 * @param header the table header
+	 * @return       the maximum length of the outcome column
+	 */
+	private int getMaxOutcomeLength(BatchProcessing batch, String header) {
+		int maxLength = header.length();
+		for (BoundednessAnalysis analysis : batch.analysisList) {
+			int stringLength =
+					generateOutcomeString(analysis.outcome).length();
+			if (stringLength > maxLength) {
+				maxLength = stringLength;
+			}
+		}
+		return maxLength;
+	}
+
 	/**
 	 * Generates the detection path string.
 	 * 
 	 * @param analysis the boundedness analysis
-	 * @return         the detection path in string format
+	 * @return         the detection path in string format, or an empty string
+	 *                 if the Petri net isn't known to be unbounded
 	 */
 	private String generatePathString(BoundednessAnalysis analysis) {
-		if (analysis.isBounded) {
+		if (analysis.outcome != Outcome.UNBOUNDED) {
 			return "";
 		} else {
 			int length = analysis.terminationPath.size();
@@ -331,8 +433,8 @@ public class TextAreaView {
 	private int getLengthDetailM1Length(BatchProcessing batch) {
 		int maxLength = 0;
 		for (BoundednessAnalysis analysis : batch.analysisList) {
-			if(!analysis.isBounded) {
-				int stringLength = analysis.m1.id.length();
+			if (analysis.outcome == Outcome.UNBOUNDED) {
+				int stringLength = analysis.m1.getId().length();
 				if (stringLength > maxLength) {
 					maxLength = stringLength;
 				}
@@ -350,8 +452,8 @@ public class TextAreaView {
 	private int getLengthDetailM2Length(BatchProcessing batch) {
 		int maxLength = 0;
 		for (BoundednessAnalysis analysis : batch.analysisList) {
-			if(!analysis.isBounded) {
-				int stringLength = analysis.m2.id.length();
+			if (analysis.outcome == Outcome.UNBOUNDED) {
+				int stringLength = analysis.m2.getId().length();
 				if (stringLength > maxLength) {
 					maxLength = stringLength;
 				}
@@ -365,11 +467,13 @@ public class TextAreaView {
 	 * 
 	 * @param lengthName         the maximum length of the filename column
 	 * @param lengthBounded      the maximum length of the boundedness column
+	 * @param lengthOutcome      the maximum length of the outcome column
 	 * @param lengthDetailsNodes the maximum length of the details column
 	 * @param lengthDetailsM1    the maximum length of the m1 marking string
 	 * @param lengthDetailsM2    the maximum length of the m2 marking string
 	 * @param headerName         table header for the name column
 	 * @param headerBounded      table header for the boundedness column
+	 * @param headerOutcome      table header for the outcome column
 	 * @param headerDetailsLine1 first line of the table header for the details
 	 *                           column
 	 * @param headerDetailsLine2 second line of the table header for the details
@@ -379,11 +483,13 @@ public class TextAreaView {
 	private String generateTableHeader(
 			int lengthName,
 			int lengthBounded,
+			int lengthOutcome,
 			int lengthDetailsNodes,
 			int lengthDetailsM1,
 			int lengthDetailsM2,
 			String headerName,
 			String headerBounded,
+			String headerOutcome,
 			String headerDetailsLine1,
 			String headerDetailsLine2) {
 		int detailsLength;
@@ -396,15 +502,18 @@ public class TextAreaView {
 		return String.format(
 				"%5$" + lengthName +
 				"s | %5$" + lengthBounded +
+				"s | %5$" + lengthOutcome +
 				"s | %3$-" + detailsLength + "s \n" +
 				"%1$-" + lengthName +
 				"s | %2$-" + lengthBounded +
+				"s | %6$-" + lengthOutcome +
 				"s | %4$-" + detailsLength + "s \n",
 				headerName,
 				headerBounded,
 				headerDetailsLine1,
 				headerDetailsLine2,
-				"");
+				"",
+				headerOutcome);
 	}
 
 	/**
@@ -44,6 +44,10 @@ public class ToolbarView{
 	 * The "Beschränktheits-Analyse" button.
 	 */
 	buttonBoundednessAnalysis,
+	/**
+	 * The "Analyse abbrechen" button.
+	 */
+	buttonCancelAnalysis,
 	/**
 	 * The "Lösche Erreichbarkeitsgraph" button.
 	 */
@@ -54,6 +58,7 @@ public class ToolbarView{
 	buttonClearText;
 	private FileSystemModel fileSystemModel;
 	private PetriNetModel petriNetModel;
+	private boolean analysisRunning;
 
 	/**
 	 * Initializes the component, renders the UI and attaches event listeners.
@@ -66,6 +71,7 @@ public class ToolbarView{
 			PetriNetModel petriNetModel) {
 		this.fileSystemModel = fileSystemModel;
 		this.petriNetModel = petriNetModel;
+		this.analysisRunning = false;
 		renderToolbar();
 		addFileSystemListener();
 		addPetriNetListener();
@@ -101,6 +107,20 @@ public class ToolbarView{
 		return button;
 	}
 
+	/**
+	 * Shows whether a boundedness analysis is running. While it runs, the
+	 * "Beschränktheits-Analyse" button is disabled and the "Analyse
+	 * abbrechen" button is enabled.
+	 * 
+	 * @param running {@code true} if an analysis is running, {@code false}
+	 *                otherwise
+	 */
+	public void setAnalysisRunning(boolean running) {
+		analysisRunning = running;
+		buttonBoundednessAnalysis.setEnabled(!running);
+		buttonCancelAnalysis.setEnabled(running);
+	}
+
 	/**
 	 * Renders the UI.
 	 */
@@ -136,6 +156,10 @@ public class ToolbarView{
 				"ic_boundedness_36x36_default.png",
 				"ic_boundedness_36x36_default@2x.png"
 				);
+		buttonCancelAnalysis = new JButton("Abbrechen");
+		buttonCancelAnalysis.setToolTipText(
+				"Beschränktheits-Analyse abbrechen");
+		buttonCancelAnalysis.setEnabled(false);
 		buttonClearRG = createToolbarButton(
 				"Erreichbarkeitsgraph löschen",
 				"ic_clear_rg_36x36_default.png",
@@ -156,6 +180,7 @@ public class ToolbarView{
 		buttonAddToken.setActionCommand("Add Token");
 		buttonRemoveToken.setActionCommand("Remove Token");
 		buttonBoundednessAnalysis.setActionCommand("Boundedness Analysis");
+		buttonCancelAnalysis.setActionCommand("Cancel Boundedness Analysis");
 		buttonClearRG.setActionCommand("Reset Reachability Graph");
 		buttonClearText.setActionCommand("Clear Text Console");
 
@@ -168,6 +193,7 @@ public class ToolbarView{
 		toolbar.add(buttonRemoveToken);
 		toolbar.addSeparator();
 		toolbar.add(buttonBoundednessAnalysis);
+		toolbar.add(buttonCancelAnalysis);
 		toolbar.addSeparator();
 		toolbar.add(buttonClearRG);
 		toolbar.add(buttonClearText);
@@ -235,10 +261,11 @@ public class ToolbarView{
 	}
 
 	/**
-	 * Enables the "Beschränktheits-Analyse" button.
+	 * Enables the "Beschränktheits-Analyse" button, unless an analysis is
+	 * still running.
 	 */
 	private void toggleBoundednessAnalysisButton() {
-		buttonBoundednessAnalysis.setEnabled(true);
+		buttonBoundednessAnalysis.setEnabled(!analysisRunning);
 	}
 
 	/**
@@ -0,0 +1,163 @@
+package tests;
+
+import static org.junit.jupiter.api.Assertions.*;
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import io.petermueller.petrinetz.models.filesystem.FileSystemModel;
+import io.petermueller.petrinetz.models.petrinet.PetriNetModel;
+import io.petermueller.petrinetz.models.rgraph.TransitionArc;
+import io.petermueller.petrinetz.util.AnalysisBudget;
+import io.petermueller.petrinetz.util.AnalysisCache;
+import io.petermueller.petrinetz.util.BoundednessAnalysis;
+import io.petermueller.petrinetz.util.BoundednessAnalysis.Strategy;
+
+/**
+ * @author petermueller
+ *
+ */
+@DisplayName("Analysis result cache")
+class AnalysisCacheTest {
+	private static final String BOUNDED =
+			"175-B1-N12-A20-Mailbox-2-Bounded.pnml";
+	private static final String UNBOUNDED = "276-B0-P04-Q10-mehrere-Pfade.pnml";
+	private static final String SMALL = "171-B1-N05-A05-Kreis3.pnml";
+
+	@TempDir
+	Path directory;
+
+	private static PetriNetModel read(String name) {
+		return new FileSystemModel().readNewFile(new File(System.getProperty(
+				"user.dir") + "/../ProPra-WS21-Basis/Beispiele/" + name));
+	}
+
+	private static BoundednessAnalysis analyze(
+			AnalysisCache cache,
+			PetriNetModel petriNet) {
+		return cache.analyze(petriNet, Strategy.SEQUENTIAL, null,
+				AnalysisBudget.UNLIMITED);
+	}
+
+	private static List<String> getPath(BoundednessAnalysis analysis) {
+		List<String> path = new ArrayList<String>();
+		for (TransitionArc arc : analysis.terminationPath) {
+			path.add(arc.id);
+		}
+		return path;
+	}
+
+	@Test
+	@DisplayName("restores bounded nets with their reachability graph")
+	void restoresBounded() throws Exception {
+		AnalysisCache cache = new AnalysisCache(directory, 1 << 20, true);
+		PetriNetModel petriNet = read(BOUNDED);
+		BoundednessAnalysis original = analyze(cache, petriNet);
+		BoundednessAnalysis restored = analyze(cache, petriNet);
+		assertAll(
+				() -> assertFalse(original.isCached),
+				() -> assertTrue(restored.isCached),
+				() -> assertTrue(restored.isBounded),
+				() -> assertEquals(original.rGraph.markings.size(),
+						restored.rGraph.markings.size()),
+				() -> assertEquals(original.rGraph.arcs.size(),
+						restored.rGraph.arcs.size()),
+				() -> assertEquals(original.discoveredMarkings,
+						restored.discoveredMarkings),
+				() -> assertEquals(original.discoveredArcs,
+						restored.discoveredArcs),
+				() -> assertEquals(1, cache.getEntryCount()));
+	}
+
+	@Test
+	@DisplayName("restores the termination path after reopening")
+	void restoresUnbounded() throws Exception {
+		PetriNetModel petriNet = read(UNBOUNDED);
+		BoundednessAnalysis original = analyze(
+				new AnalysisCache(directory, 1 << 20, false), petriNet);
+		BoundednessAnalysis restored = new AnalysisCache(
+				directory, 1 << 20, false).get(read(UNBOUNDED));
+		assertAll(
+				() -> assertTrue(restored.isCached),
+				() -> assertFalse(restored.isBounded),
+				() -> assertEquals(getPath(original), getPath(restored)),
+				() -> assertEquals(original.m1.getId(), restored.m1.getId()),
+				() -> assertEquals(original.m2.getId(), restored.m2.getId()),
+				() -> assertTrue(restored.m1.isPathStart),
+				() -> assertTrue(restored.m2.isPathEnd),
+				() -> assertEquals(original.discoveredArcs,
+						restored.discoveredArcs),
+				() -> assertEquals(original.depth, restored.depth));
+	}
+
+	@Test
+	@DisplayName("keys results by structure and start marking")
+	void fingerprint() {
+		PetriNetModel petriNet = read(SMALL);
+		PetriNetModel copy = new PetriNetModel(petriNet);
+		assertEquals(petriNet.getFingerprint(), copy.getFingerprint());
+		copy.setTokens(copy.places.get(0).id,
+				copy.places.get(0).startTokens + 1);
+		assertNotEquals(petriNet.getFingerprint(), copy.getFingerprint());
+		assertNotEquals(petriNet.getFingerprint(),
+				read(BOUNDED).getFingerprint());
+	}
+
+	@Test
+	@DisplayName("evicts the least recently used results")
+	void evicts() throws Exception {
+		AnalysisCache sizes = new AnalysisCache(
+				directory.resolve("sizes"), 1 << 20, true);
+		for (String name : new String[] {BOUNDED, UNBOUNDED, SMALL}) {
+			analyze(sizes, read(name));
+		}
+		AnalysisCache cache = new AnalysisCache(
+				directory.resolve("cache"), sizes.getSize() - 1, true);
+		analyze(cache, read(BOUNDED));
+		analyze(cache, read(UNBOUNDED));
+		assertNotNull(cache.get(read(BOUNDED)));
+		analyze(cache, read(SMALL));
+		assertAll(
+				() -> assertEquals(2, cache.getEntryCount()),
+				() -> assertNull(cache.get(read(UNBOUNDED))),
+				() -> assertNotNull(cache.get(read(BOUNDED))),
+				() -> assertNotNull(cache.get(read(SMALL))));
+	}
+
+	@Test
+	@DisplayName("drops entries which can't be read")
+	void corruptEntry() throws Exception {
+		AnalysisCache cache = new AnalysisCache(directory, 1 << 20, true);
+		PetriNetModel petriNet = read(SMALL);
+		analyze(cache, petriNet);
+		Path file = directory.resolve(petriNet.getFingerprint() + ".bin");
+		Files.write(file, new byte[] {1, 2, 3});
+		assertNull(cache.get(petriNet));
+		assertFalse(Files.exists(file));
+		assertEquals(0, cache.getSize());
+	}
+
+	@Test
+	@DisplayName("rejects results larger than the whole cache")
+	void tooLarge() throws Exception {
+		AnalysisCache sizes = new AnalysisCache(
+				directory.resolve("sizes"), 1 << 20, true);
+		analyze(sizes, read(SMALL));
+		AnalysisCache cache = new AnalysisCache(
+				directory.resolve("cache"), sizes.getSize(), true);
+		analyze(cache, read(SMALL));
+		BoundednessAnalysis analysis = analyze(cache, read(BOUNDED));
+		assertAll(
+				() -> assertTrue(analysis.isBounded),
+				() -> assertEquals(1, cache.getEntryCount()),
+				() -> assertEquals(sizes.getSize(), cache.getSize()),
+				() -> assertNotNull(cache.get(read(SMALL))),
+				() -> assertNull(cache.get(read(BOUNDED))),
+				() -> assertEquals(1, directory.resolve("cache").toFile()
+						.list().length));
+	}
+}
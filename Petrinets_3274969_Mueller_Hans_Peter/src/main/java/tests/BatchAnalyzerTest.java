@@ -0,0 +1,133 @@
+package tests;
+
+import static org.junit.jupiter.api.Assertions.*;
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import io.petermueller.petrinetz.BatchAnalyzer;
+import io.petermueller.petrinetz.models.filesystem.BinaryNetWriter;
+import io.petermueller.petrinetz.models.filesystem.FileSystemModel;
+
+/**
+ * @author petermueller
+ *
+ */
+@DisplayName("Command line batch analyzer")
+class BatchAnalyzerTest {
+	private static final String EXAMPLES = System.getProperty(
+			"user.dir") + "/../ProPra-WS21-Basis/Beispiele/";
+
+	@TempDir
+	Path directory;
+
+	@Test
+	@DisplayName("writes one JSON record per Petri net")
+	void jsonLines() throws Exception {
+		Path output = directory.resolve("results.jsonl");
+		int status = BatchAnalyzer.run(new String[] {
+				"--output", output.toString(), EXAMPLES + "25*.pnml"});
+		List<String> lines = Files.readAllLines(output);
+		File[] expected = new File(EXAMPLES).listFiles(
+				(dir, name) -> name.startsWith("25") && name.endsWith(".pnml"));
+		assertEquals(BatchAnalyzer.EXIT_OK, status);
+		assertEquals(expected.length, lines.size());
+		for (String line : lines) {
+			assertTrue(line.startsWith("{\"file\":\""
+					+ new File(EXAMPLES, "25").getPath()));
+			assertTrue(line.contains("\"outcome\":\"UNBOUNDED\""));
+		}
+	}
+
+	@Test
+	@DisplayName("reports exceeded budgets in CSV and in the exit status")
+	void csvBudget() throws Exception {
+		Path output = directory.resolve("results.csv");
+		int status = BatchAnalyzer.run(new String[] {
+				"--format", "csv", "--max-markings", "2",
+				"--output", output.toString(),
+				EXAMPLES + "172-B1-N15-A16-Kreis-gross.pnml"});
+		List<String> lines = Files.readAllLines(output);
+		assertEquals(BatchAnalyzer.EXIT_INCOMPLETE, status);
+		assertEquals(2, lines.size());
+		assertTrue(lines.get(0).startsWith("file,outcome,"));
+		assertTrue(lines.get(1).startsWith(new File(EXAMPLES,
+				"172-B1-N15-A16-Kreis-gross.pnml") + ",BUDGET_EXCEEDED,,"));
+	}
+
+	@Test
+	@DisplayName("reuses the results stored in the cache")
+	void cache() throws Exception {
+		Path output = directory.resolve("results.jsonl");
+		String[] args = {"--cache", directory.resolve("cache").toString(),
+				"--output", output.toString(), EXAMPLES + "27*.pnml"};
+		BatchAnalyzer.run(args);
+		for (String line : Files.readAllLines(output)) {
+			assertTrue(line.endsWith("\"cached\":false}"));
+		}
+		assertEquals(BatchAnalyzer.EXIT_OK, BatchAnalyzer.run(args));
+		for (String line : Files.readAllLines(output)) {
+			assertTrue(line.endsWith("\"cached\":true}"));
+		}
+	}
+
+	@Test
+	@DisplayName("rejects unknown options and missing paths")
+	void usage() {
+		assertEquals(BatchAnalyzer.EXIT_USAGE,
+				BatchAnalyzer.run(new String[] {"--bogus", EXAMPLES}));
+		assertEquals(BatchAnalyzer.EXIT_USAGE,
+				BatchAnalyzer.run(new String[] {EXAMPLES + "missing.pnml"}));
+	}
+
+	@Test
+	@DisplayName("tells apart files with the same name in the records")
+	void samePath() throws Exception {
+		File first = Files.createDirectory(directory.resolve("a"))
+				.resolve("Kreis.pnml").toFile();
+		File second = Files.createDirectory(directory.resolve("b"))
+				.resolve("Kreis.pnml").toFile();
+		for (File file : new File[] {first, second}) {
+			Files.copy(new File(EXAMPLES, "171-B1-N05-A05-Kreis3.pnml")
+					.toPath(), file.toPath());
+		}
+		Path output = directory.resolve("results.csv");
+		BatchAnalyzer.run(new String[] {"--format", "csv",
+				"--output", output.toString(),
+				first.getPath(), second.getPath()});
+		List<String> lines = Files.readAllLines(output);
+		assertEquals(3, lines.size());
+		assertTrue(lines.get(1).startsWith(first.getPath() + ","));
+		assertTrue(lines.get(2).startsWith(second.getPath() + ","));
+	}
+
+	@Test
+	@DisplayName("prefers converted files only while they are up to date")
+	void binaryNets() throws Exception {
+		Path nets = Files.createDirectory(directory.resolve("nets"));
+		File pnml = nets.resolve("Kreis.pnml").toFile();
+		Files.copy(new File(EXAMPLES, "171-B1-N05-A05-Kreis3.pnml").toPath(),
+				pnml.toPath());
+		File binary = BinaryNetWriter.getBinaryFile(pnml);
+		BinaryNetWriter.write(FileSystemModel.parseFile(pnml), binary);
+		Path output = directory.resolve("results.jsonl");
+		for (String path : new String[] {nets.toString(),
+				nets + File.separator + "*.pnml"}) {
+			pnml.setLastModified(binary.lastModified() - 10000);
+			BatchAnalyzer.run(new String[] {"--output", output.toString(),
+					path});
+			List<String> lines = Files.readAllLines(output);
+			assertEquals(1, lines.size(), path);
+			assertTrue(lines.get(0).contains("Kreis.pnb"), path);
+			pnml.setLastModified(binary.lastModified() + 10000);
+			BatchAnalyzer.run(new String[] {"--output", output.toString(),
+					path});
+			lines = Files.readAllLines(output);
+			assertEquals(1, lines.size(), path);
+			assertTrue(lines.get(0).contains("Kreis.pnml"), path);
+		}
+	}
+}
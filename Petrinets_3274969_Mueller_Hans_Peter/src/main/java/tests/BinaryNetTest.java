@@ -0,0 +1,169 @@
+package tests;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+import static tests.TestNets.EXAMPLES;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import io.petermueller.petrinetz.models.filesystem.BinaryNetLoader;
+import io.petermueller.petrinetz.models.filesystem.BinaryNetWriter;
+import io.petermueller.petrinetz.models.filesystem.FileSystemModel;
+import io.petermueller.petrinetz.models.petrinet.PetriNetModel;
+import io.petermueller.petrinetz.util.BoundednessAnalysis;
+import tests.TestNets.Detail;
+
+/**
+ * @author petermueller
+ *
+ */
+@DisplayName("Binary net format")
+class BinaryNetTest {
+	@TempDir
+	Path directory;
+
+	private static List<String> describe(PetriNetModel petriNet) {
+		return TestNets.describe(petriNet, Detail.POSITIONS, Detail.WEIGHTS,
+				Detail.STATE);
+	}
+
+	private PetriNetModel roundTrip(PetriNetModel petriNet)
+			throws IOException {
+		File file = directory.resolve("net.pnb").toFile();
+		BinaryNetWriter.write(petriNet, file);
+		return BinaryNetLoader.load(file);
+	}
+
+	@Test
+	@DisplayName("stores the examples without losing anything")
+	void roundTrip() throws Exception {
+		File[] files = EXAMPLES.listFiles((dir, name) ->
+				name.endsWith(".pnml"));
+		for (File file : files) {
+			PetriNetModel petriNet = FileSystemModel.parseFile(file);
+			PetriNetModel loaded = roundTrip(petriNet);
+			assertEquals(describe(petriNet), describe(loaded), file.getName());
+			assertEquals(petriNet.getFingerprint(), loaded.getFingerprint(),
+					file.getName());
+		}
+	}
+
+	@Test
+	@DisplayName("loads nets which analyze like the original")
+	void analysis() throws Exception {
+		PetriNetModel petriNet = FileSystemModel.parseFile(new File(EXAMPLES,
+				"276-B0-P04-Q10-mehrere-Pfade.pnml"));
+		BoundednessAnalysis original = new BoundednessAnalysis(petriNet);
+		BoundednessAnalysis loaded =
+				new BoundednessAnalysis(roundTrip(petriNet));
+		assertAll(
+				() -> assertEquals(original.isBounded, loaded.isBounded),
+				() -> assertEquals(original.m1.getId(), loaded.m1.getId()),
+				() -> assertEquals(original.m2.getId(), loaded.m2.getId()),
+				() -> assertEquals(original.rGraph.markings.size(),
+						loaded.rGraph.markings.size()));
+	}
+
+	@Test
+	@DisplayName("stores the start marking, not the current one")
+	void startMarking() throws Exception {
+		PetriNetModel petriNet = FileSystemModel.parseFile(new File(EXAMPLES,
+				"171-B1-N05-A05-Kreis3.pnml"));
+		List<String> before = describe(petriNet);
+		int enabled = petriNet.getEnabledTransitions().nextSetBit(0);
+		petriNet.fire(petriNet.transitions.get(enabled));
+		assertEquals(before, describe(roundTrip(petriNet)));
+	}
+
+	@Test
+	@DisplayName("opens converted files like PNML files")
+	void parseFile() throws Exception {
+		File pnml = new File(EXAMPLES, "175-B1-N12-A20-Mailbox-2-Bounded.pnml");
+		File binary = directory.resolve("Mailbox.pnb").toFile();
+		BinaryNetWriter.write(FileSystemModel.parseFile(pnml), binary);
+		PetriNetModel loaded = FileSystemModel.parseFile(binary);
+		assertEquals("Mailbox.pnb", loaded.fileName);
+		assertEquals(describe(FileSystemModel.parseFile(pnml)),
+				describe(loaded));
+	}
+
+	@Test
+	@DisplayName("rejects damaged files")
+	void damaged() throws Exception {
+		File file = directory.resolve("net.pnb").toFile();
+		BinaryNetWriter.write(FileSystemModel.parseFile(new File(EXAMPLES,
+				"171-B1-N05-A05-Kreis3.pnml")), file);
+		byte[] bytes = Files.readAllBytes(file.toPath());
+		Files.write(file.toPath(), Arrays.copyOf(bytes,
+				bytes.length - 3));
+		assertThrows(IOException.class, () -> BinaryNetLoader.load(file));
+		bytes[3] = 'X';
+		Files.write(file.toPath(), bytes);
+		assertThrows(IOException.class, () -> BinaryNetLoader.load(file));
+		bytes[3] = '1';
+		bytes[11] = 127;
+		Files.write(file.toPath(), bytes);
+		assertThrows(IOException.class, () -> BinaryNetLoader.load(file));
+	}
+
+	@Test
+	@DisplayName("rejects files whose arcs don't match the structure")
+	void inconsistent() throws Exception {
+		File file = directory.resolve("net.pnb").toFile();
+		BinaryNetWriter.write(new PetriNetModel.Builder()
+				.addPlace("p1")
+				.setTokens("p1", 1)
+				.addPlace("p2")
+				.addTransition("t1")
+				.addArc("a1", "p1", "t1")
+				.addArc("a2", "p2", "t1")
+				.addArc("a3", "t1", "p2")
+				.build(), file);
+		byte[] bytes = Files.readAllBytes(file.toPath());
+		assertEquals(3, BinaryNetLoader.load(file).arcs.size());
+		/*
+		 * The places of the pre-set of t1, the target of a1, the weights of
+		 * a1 and a2, and the last character of the id of p2.
+		 */
+		int[][] damages = {{18 * 4, 0}, {28 * 4, 1}, {31 * 4, 0},
+				{32 * 4, 2}};
+		for (int[] damage : damages) {
+			byte[] damaged = bytes.clone();
+			ByteBuffer.wrap(damaged).putInt(damage[0], damage[1]);
+			Files.write(file.toPath(), damaged);
+			assertThrows(IOException.class, () -> BinaryNetLoader.load(file),
+					Arrays.toString(damage));
+		}
+		byte[] duplicate = bytes.clone();
+		duplicate[147] = '1';
+		Files.write(file.toPath(), duplicate);
+		assertThrows(IOException.class, () -> BinaryNetLoader.load(file));
+	}
+
+	@Test
+	@DisplayName("keeps the permissions of the replaced file")
+	void permissions() throws Exception {
+		File file = directory.resolve("net.pnb").toFile();
+		assumeTrue(file.toPath().getFileSystem().supportedFileAttributeViews()
+				.contains("posix"));
+		Files.createFile(file.toPath());
+		Set<PosixFilePermission> permissions =
+				PosixFilePermissions.fromString("rw-rw-r--");
+		Files.setPosixFilePermissions(file.toPath(), permissions);
+		BinaryNetWriter.write(FileSystemModel.parseFile(new File(EXAMPLES,
+				"171-B1-N05-A05-Kreis3.pnml")), file);
+		assertEquals(permissions, Files.getPosixFilePermissions(file.toPath()));
+		assertArrayEquals(new String[] {"net.pnb"},
+				directory.toFile().list());
+	}
+}
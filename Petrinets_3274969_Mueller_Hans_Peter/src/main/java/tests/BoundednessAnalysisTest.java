@@ -5,13 +5,26 @@ package tests;
 
 import static org.junit.jupiter.api.Assertions.*;
 import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CancellationException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 import io.petermueller.petrinetz.models.filesystem.FileSystemModel;
+import io.petermueller.petrinetz.models.petrinet.NetStructure;
 import io.petermueller.petrinetz.models.petrinet.PetriNetModel;
+import io.petermueller.petrinetz.models.rgraph.TransitionArc;
+import io.petermueller.petrinetz.util.AnalysisBudget;
+import io.petermueller.petrinetz.util.BatchProcessing;
+import io.petermueller.petrinetz.util.BatchProcessing.ResultListener;
 import io.petermueller.petrinetz.util.BoundednessAnalysis;
+import io.petermueller.petrinetz.util.BoundednessAnalysis.Monitor;
+import io.petermueller.petrinetz.util.BoundednessAnalysis.Outcome;
+import io.petermueller.petrinetz.util.BoundednessAnalysis.Strategy;
+import io.petermueller.petrinetz.util.StateSpaceExplorer.Frontier;
 
 /**
  * @author petermueller
@@ -52,6 +65,38 @@ class BoundednessAnalysisTest {
 		void correctEdges() {
 			assertEquals(0, analysis.rGraph.arcs.size());
 		}
+
+		@Test
+		@DisplayName("Can be cancelled")
+		void cancels() {
+			Monitor cancelled = new Monitor() {
+				@Override
+				public void progress(int exploredMarkings, int frontierSize) {
+				}
+
+				@Override
+				public boolean isCancelled() {
+					return true;
+				}
+			};
+			for (Strategy strategy : Strategy.values()) {
+				assertThrows(CancellationException.class,
+						() -> new BoundednessAnalysis(
+								petriNet, strategy, cancelled));
+			}
+		}
+
+		@Test
+		@DisplayName("Same graph on several threads")
+		void workStealing() {
+			BoundednessAnalysis parallel = new BoundednessAnalysis(
+					petriNet, Strategy.WORK_STEALING);
+			assertAll("work stealing",
+					() -> assertTrue(parallel.isBounded),
+					() -> assertEquals(1, parallel.rGraph.markings.size()),
+					() -> assertEquals(0, parallel.rGraph.arcs.size())
+					);
+		}
 	}
 
 
@@ -74,6 +119,49 @@ class BoundednessAnalysisTest {
 			assertTrue(!analysis.isBounded);
 		}
 
+		@Test
+		@DisplayName("detects unbounded petri nets with every frontier")
+		void everyFrontier() {
+			for (Frontier frontier : Frontier.values()) {
+				BoundednessAnalysis analysis =
+						new BoundednessAnalysis(petriNet, frontier);
+				assertFalse(analysis.isBounded, frontier.toString());
+			}
+		}
+
+		@Test
+		@DisplayName("detects unbounded petri nets on several threads")
+		void workStealing() {
+			BoundednessAnalysis analysis = new BoundednessAnalysis(
+					petriNet, Strategy.WORK_STEALING);
+			List<TransitionArc> path = analysis.terminationPath;
+			assertAll("work stealing",
+					() -> assertFalse(analysis.isBounded),
+					() -> assertSame(analysis.m1, path.get(0).source),
+					() -> assertSame(analysis.m2,
+							path.get(path.size() - 1).target)
+					);
+		}
+
+		@Test
+		@DisplayName("finds the sequential witness level by level")
+		void levelSynchronous() {
+			BoundednessAnalysis sequential = new BoundednessAnalysis(petriNet);
+			BoundednessAnalysis parallel = new BoundednessAnalysis(
+					petriNet, Strategy.LEVEL_SYNCHRONOUS);
+			assertAll("level synchronous",
+					() -> assertFalse(parallel.isBounded),
+					() -> assertEquals(sequential.m1.getId(),
+							parallel.m1.getId()),
+					() -> assertEquals(sequential.m2.getId(),
+							parallel.m2.getId()),
+					() -> assertEquals(sequential.terminationPath.size(),
+							parallel.terminationPath.size()),
+					() -> assertEquals(sequential.rGraph.markings.size(),
+							parallel.rGraph.markings.size())
+					);
+		}
+
 		@Test
 		@DisplayName("correct m1")
 		void m1() {
@@ -85,5 +173,149 @@ class BoundednessAnalysisTest {
 		void m2() {
 
 		}
+
+		@Test
+		@DisplayName("path leads from m1 to m2")
+		void pathFromM1ToM2() {
+			BoundednessAnalysis analysis = new BoundednessAnalysis(petriNet);
+			List<TransitionArc> path = analysis.terminationPath;
+			assertFalse(path.isEmpty());
+			assertSame(analysis.m1, path.get(0).source);
+			assertSame(analysis.m2, path.get(path.size() - 1).target);
+			for (int i = 1; i < path.size(); i++) {
+				assertSame(path.get(i - 1).target, path.get(i).source);
+			}
+		}
+
+		@Test
+		@DisplayName("leaves the analyzed petri net untouched")
+		void leavesInputUntouched() {
+			petriNet.fire(petriNet.transitions.get(0));
+			int tokens = petriNet.places.get(2).currentTokens;
+			BoundednessAnalysis analysis = new BoundednessAnalysis(petriNet);
+			assertAll("untouched",
+					() -> assertEquals(tokens,
+							petriNet.places.get(2).currentTokens),
+					() -> assertTrue(petriNet.isAtCustomMarking),
+					() -> assertNotSame(petriNet.places.get(0),
+							analysis.petriNet.places.get(0))
+					);
+		}
+	}
+
+	@Nested
+	@DisplayName("Batch processing")
+	class Batch {
+		private List<PetriNetModel> petriNets;
+
+		@BeforeEach
+		void beforeEach() {
+			FileSystemModel fs = new FileSystemModel();
+			File directory = new File(System.getProperty(
+					"user.dir") + "/../ProPra-WS21-Basis/Beispiele/");
+			File[] files = directory.listFiles();
+			Arrays.sort(files);
+			petriNets = new ArrayList<>();
+			for (File file : files) {
+				if (file.getName().endsWith(".pnml") && petriNets.size() < 12) {
+					petriNets.add(fs.readNewFile(file));
+				}
+			}
+		}
+
+		@Test
+		@DisplayName("keeps the order of the Petri nets")
+		void keepsOrder() {
+			List<BoundednessAnalysis> finished = new ArrayList<>();
+			BatchProcessing batch = new BatchProcessing(petriNets, 4,
+					new ResultListener() {
+						@Override
+						public void analysisFinished(
+								BoundednessAnalysis analysis,
+								int finishedCount,
+								int totalCount) {
+							finished.add(analysis);
+						}
+					});
+			assertEquals(petriNets.size(), finished.size());
+			assertEquals(petriNets.size(), batch.analysisList.size());
+			for (int i = 0; i < petriNets.size(); i++) {
+				assertEquals(petriNets.get(i).fileName,
+						batch.analysisList.get(i).petriNet.fileName);
+			}
+		}
+
+		@Test
+		@DisplayName("stops analyses which exceed the marking budget")
+		void markingBudget() {
+			BatchProcessing batch = new BatchProcessing(petriNets, 4,
+					new AnalysisBudget(0, 2), null);
+			int exceeded = 0;
+			for (BoundednessAnalysis analysis : batch.analysisList) {
+				if (analysis.outcome == Outcome.BUDGET_EXCEEDED) {
+					exceeded++;
+					assertFalse(analysis.isBounded);
+					assertNull(analysis.m1);
+					assertTrue(analysis.discoveredMarkings > 2);
+					assertTrue(analysis.depth > 0);
+				} else if (analysis.outcome == Outcome.BOUNDED) {
+					assertTrue(analysis.rGraph.markings.size() <= 2);
+				} else {
+					assertEquals(Outcome.UNBOUNDED, analysis.outcome);
+				}
+			}
+			assertTrue(exceeded > 0);
+		}
+
+		@Test
+		@DisplayName("reports files which can't be parsed")
+		void parseError() {
+			File directory = new File(System.getProperty(
+					"user.dir") + "/../ProPra-WS21-Basis/Beispiele/");
+			List<File> files = Arrays.asList(
+					new File(directory, "missing.pnml"),
+					new File(directory, petriNets.get(0).fileName));
+			BatchProcessing batch = BatchProcessing.analyzeFiles(
+					files, 2, AnalysisBudget.UNLIMITED, null);
+			assertEquals(2, batch.analysisList.size());
+			assertEquals(Outcome.PARSE_ERROR,
+					batch.analysisList.get(0).outcome);
+			assertEquals("missing.pnml",
+					batch.analysisList.get(0).petriNet.fileName);
+			assertNotEquals(Outcome.PARSE_ERROR,
+					batch.analysisList.get(1).outcome);
+		}
+
+		@Test
+		@DisplayName("lists analyses which fail")
+		void failure() {
+			PetriNetModel broken = new PetriNetModel() {
+				@Override
+				public NetStructure getStructure() {
+					throw new IllegalStateException();
+				}
+			};
+			broken.fileName = "broken.pnml";
+			List<BoundednessAnalysis> finished = new ArrayList<>();
+			BatchProcessing batch = new BatchProcessing(
+					Arrays.asList(broken, petriNets.get(0)), 2,
+					new ResultListener() {
+						@Override
+						public void analysisFinished(
+								BoundednessAnalysis analysis,
+								int finishedCount,
+								int totalCount) {
+							finished.add(analysis);
+						}
+					});
+			assertEquals(2, finished.size());
+			assertEquals(2, batch.analysisList.size());
+			BoundednessAnalysis failed = batch.analysisList.get(0);
+			assertAll(
+					() -> assertEquals(Outcome.FAILED, failed.outcome),
+					() -> assertFalse(failed.wasAnalyzed()),
+					() -> assertEquals("broken.pnml", failed.petriNet.fileName),
+					() -> assertTrue(batch.analysisList.get(1).wasAnalyzed()));
+		}
 	}
-}
\ No newline at end of file
+}
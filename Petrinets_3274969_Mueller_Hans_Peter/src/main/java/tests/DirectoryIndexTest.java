@@ -0,0 +1,81 @@
+package tests;
+
+import static org.junit.jupiter.api.Assertions.*;
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import io.petermueller.petrinetz.models.filesystem.DirectoryIndex;
+
+/**
+ * @author petermueller
+ *
+ */
+@DisplayName("Directory index")
+class DirectoryIndexTest {
+	@TempDir
+	Path directory;
+
+	private DirectoryIndex index;
+
+	@BeforeEach
+	void setUp() throws Exception {
+		index = new DirectoryIndex();
+		for (String name : new String[] {"b.pnml", "a.pnml", "c.PNML",
+				"notes.txt"}) {
+			Files.createFile(directory.resolve(name));
+		}
+	}
+
+	private File file(String name) {
+		return new File(directory.toFile(), name);
+	}
+
+	@Test
+	@DisplayName("lists the PNML files in alphabetical order")
+	void listsSorted() {
+		assertEquals(Arrays.asList(file("a.pnml"), file("b.pnml"),
+				file("c.PNML")), index.getFiles(directory.toFile()));
+		assertFalse(index.contains(file("notes.txt")));
+	}
+
+	@Test
+	@DisplayName("finds the previous and next file")
+	void findsNeighbours() {
+		assertAll(
+				() -> assertNull(index.getPrevious(file("a.pnml"))),
+				() -> assertEquals(file("a.pnml"),
+						index.getPrevious(file("b.pnml"))),
+				() -> assertEquals(file("c.PNML"),
+						index.getNext(file("b.pnml"))),
+				() -> assertNull(index.getNext(file("c.PNML"))),
+				() -> assertNull(index.getNext(file("missing.pnml"))));
+	}
+
+	@Test
+	@DisplayName("picks up created and deleted files")
+	void followsChanges() throws Exception {
+		assertTrue(index.contains(file("b.pnml")));
+		Files.createFile(directory.resolve("ab.pnml"));
+		Files.delete(directory.resolve("b.pnml"));
+		/*
+		 * The watch service delivers the events asynchronously.
+		 */
+		assertTimeoutPreemptively(Duration.ofSeconds(30), () -> {
+			while (!index.contains(file("ab.pnml"))
+					|| index.contains(file("b.pnml"))) {
+				Thread.sleep(10);
+			}
+		});
+		assertAll(
+				() -> assertTrue(index.contains(file("ab.pnml"))),
+				() -> assertFalse(index.contains(file("b.pnml"))),
+				() -> assertEquals(file("c.PNML"),
+						index.getNext(file("ab.pnml"))));
+	}
+}
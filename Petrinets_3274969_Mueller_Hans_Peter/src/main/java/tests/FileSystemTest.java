@@ -2,7 +2,10 @@ package tests;
 import static org.junit.jupiter.api.Assertions.*;
 
 import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
 import io.petermueller.petrinetz.models.filesystem.FileSystemModel;
 import io.petermueller.petrinetz.models.petrinet.PetriNetModel;
 import io.petermueller.petrinetz.models.petrinet.Place;
@@ -22,6 +25,9 @@ class FileSystemTest {
 
 	private FileSystemModel fs;
 
+	@TempDir
+	Path directory;
+
 	@BeforeEach
 	void setUp() throws Exception {
 		fs = new FileSystemModel();
@@ -220,4 +226,45 @@ class FileSystemTest {
 		});
 		fs.notifyGui();
 	}
+
+	@Test
+	@DisplayName("returns null and notifies if a file can't be parsed")
+	void malformedFile() throws Exception {
+		Path file = Files.writeString(directory.resolve("net.pnml"),
+				"<pnml><net><place id=\"p1\"></net>");
+		boolean[] invalid = {false};
+		fs.addEventListener(new EventListener() {
+			@Override
+			public void event(Event eventType) {
+				if (eventType == Event.FILESYSTEM_INVALID_FILE) {
+					invalid[0] = true;
+				}
+			}
+		});
+		assertNull(fs.readNewFile(file.toFile()));
+		assertTrue(invalid[0]);
+	}
+
+	@Test
+	@DisplayName("saves only into the last file which has been read")
+	void savesIntoReadFile() throws Exception {
+		assertNull(fs.getCurrentFile());
+		assertFalse(fs.saveFile(new PetriNetModel()));
+		Path net = Files.copy(new File(System.getProperty("user.dir")
+				+ "/../ProPra-WS21-Basis/Beispiele/"
+				+ "171-B1-N05-A05-Kreis3.pnml").toPath(),
+				directory.resolve("net.pnml"));
+		String malformed = "<pnml><net><place id=\"p1\"></net>";
+		Path broken = Files.writeString(directory.resolve("broken.pnml"),
+				malformed);
+		Path notes = Files.writeString(directory.resolve("notes.txt"),
+				"Notizen");
+		PetriNetModel petriNet = fs.readNewFile(net.toFile());
+		assertNull(fs.readNewFile(broken.toFile()));
+		assertNull(fs.readNewFile(notes.toFile()));
+		assertEquals(net.toFile(), fs.getCurrentFile());
+		assertTrue(fs.saveFile(petriNet));
+		assertEquals(malformed, Files.readString(broken));
+		assertEquals("Notizen", Files.readString(notes));
+	}
 }
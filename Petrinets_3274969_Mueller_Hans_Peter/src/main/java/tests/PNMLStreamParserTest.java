@@ -0,0 +1,152 @@
+package tests;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static tests.TestNets.EXAMPLES;
+import static tests.TestNets.describe;
+import static tests.TestNets.Detail.POSITIONS;
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import io.petermueller.petrinetz.models.filesystem.PNMLParser;
+import io.petermueller.petrinetz.models.filesystem.PNMLStreamParser;
+import io.petermueller.petrinetz.models.petrinet.PetriNetModel;
+import io.petermueller.petrinetz.models.petrinet.Place;
+import io.petermueller.petrinetz.util.BoundednessAnalysis;
+
+/**
+ * @author petermueller
+ *
+ */
+@DisplayName("StAX cursor parser")
+class PNMLStreamParserTest {
+	private static final String STANDARD = "<?xml version=\"1.0\"?>\n"
+			+ "<pnml xmlns=\"http://www.pnml.org/version-2009/grammar/pnml\">"
+			+ "<net id=\"n\" type=\"http://www.pnml.org/version-2009/"
+			+ "grammar/ptnet\"><name><text>Netz</text></name>"
+			+ "<page id=\"top\">"
+			+ "<arc id=\"a1\" source=\"p1\" target=\"t1\">"
+			+ "<inscription><text>2</text></inscription></arc>"
+			+ "<place id=\"p1\"><name><text>Start</text></name>"
+			+ "<graphics><position x=\"10.6\" y=\"20\"/></graphics>"
+			+ "<initialMarking><text>4</text></initialMarking></place>"
+			+ "<toolspecific tool=\"x\" version=\"1\"><position x=\"1\" "
+			+ "y=\"1\"/></toolspecific>"
+			+ "<page id=\"sub\"><transition id=\"t1\"/>"
+			+ "<referencePlace id=\"r2\" ref=\"r1\"/>"
+			+ "<referencePlace id=\"r1\" ref=\"p2\"/>"
+			+ "<arc id=\"a2\" source=\"t1\" target=\"r2\">"
+			+ "<graphics><position x=\"5\" y=\"5\"/></graphics></arc>"
+			+ "</page><place id=\"p2\"/></page></net></pnml>";
+
+	@TempDir
+	Path directory;
+
+	private static PetriNetModel parseWithWoped(File file) {
+		PNMLParser parser = new PNMLParser(file);
+		parser.initParser();
+		parser.parse();
+		return parser.getPetriNet();
+	}
+
+	private Path write(String content) throws Exception {
+		return Files.writeString(directory.resolve("net.pnml"), content);
+	}
+
+	@Test
+	@DisplayName("reads the examples like the Woped parser")
+	void matchesWoped() {
+		File[] files = EXAMPLES.listFiles((dir, name) ->
+				name.endsWith(".pnml"));
+		assertTrue(files.length > 0);
+		for (File file : files) {
+			assertEquals(describe(parseWithWoped(file), POSITIONS),
+					describe(new PNMLStreamParser(file, false).parse(),
+							POSITIONS),
+					file.getName());
+		}
+	}
+
+	@Test
+	@DisplayName("skips the graphics but keeps names and markings")
+	void skipsGraphics() {
+		File file = new File(EXAMPLES,
+				"175-B1-N12-A20-Mailbox-2-Bounded.pnml");
+		PetriNetModel petriNet = new PNMLStreamParser(file, true).parse();
+		assertEquals(describe(parseWithWoped(file)), describe(petriNet));
+		for (Place place : petriNet.places) {
+			assertEquals(0, place.x);
+			assertEquals(0, place.y);
+		}
+	}
+
+	@Test
+	@DisplayName("ignores namespaces and surrounding whitespace")
+	void namespaces() throws Exception {
+		Path file = write("<pnml xmlns=\"http://www.pnml.org/\"><net>"
+				+ "<place id=\"p1\"><name><text>Start</text></name>"
+				+ "<graphics><position x=\"10\" y=\"20\"/></graphics>"
+				+ "<initialMarking><text> 3\n</text></initialMarking>"
+				+ "</place><transition id=\"t1\"/>"
+				+ "<arc id=\"a1\" source=\"p1\" target=\"t1\"/></net></pnml>");
+		PetriNetModel petriNet =
+				new PNMLStreamParser(file.toFile(), false).parse();
+		assertEquals(List.of("P p1 Start 3 10 -20", "T t1 null 0 0",
+				"A a1 p1 t1"), describe(petriNet, POSITIONS));
+	}
+
+	@Test
+	@DisplayName("stops at malformed documents")
+	void malformed() throws Exception {
+		Path file = write("<pnml><net><place id=\"p1\"></net>");
+		assertTimeoutPreemptively(Duration.ofSeconds(5), () ->
+				assertThrows(IllegalArgumentException.class, () ->
+						new PNMLStreamParser(file.toFile(), false).parse()));
+	}
+
+	@Test
+	@DisplayName("rejects markings which aren't numbers")
+	void invalidMarking() throws Exception {
+		Path file = write("<pnml><net><place id=\"p1\"><initialMarking>"
+				+ "<text>viele</text></initialMarking></place></net></pnml>");
+		assertThrows(NumberFormatException.class, () ->
+				new PNMLStreamParser(file.toFile(), false).parse());
+	}
+
+	@Test
+	@DisplayName("reads standard PNML with pages, references and weights")
+	void standard() throws Exception {
+		Path file = write(STANDARD);
+		PetriNetModel petriNet =
+				new PNMLStreamParser(file.toFile(), false).parse();
+		assertAll(
+				() -> assertEquals(List.of("P p1 Start 4 11 -20",
+						"P p2 null 0 0 0", "T t1 null 0 0", "A a1 p1 t1",
+						"A a2 t1 p2"), describe(petriNet, POSITIONS)),
+				() -> assertEquals(2, petriNet.arcs.get(0).weight),
+				() -> assertEquals(1, petriNet.arcs.get(1).weight));
+	}
+
+	@Test
+	@DisplayName("fires weighted arcs")
+	void weights() throws Exception {
+		Path file = write(STANDARD);
+		BoundednessAnalysis analysis = new BoundednessAnalysis(
+				new PNMLStreamParser(file.toFile(), true).parse());
+		assertTrue(analysis.isBounded);
+		assertEquals(3, analysis.rGraph.markings.size());
+	}
+
+	@Test
+	@DisplayName("rejects colored nets")
+	void coloredNet() throws Exception {
+		Path file = write(STANDARD.replace("grammar/ptnet",
+				"grammar/symmetricnet"));
+		assertThrows(IllegalArgumentException.class, () ->
+				new PNMLStreamParser(file.toFile(), false).parse());
+	}
+}
@@ -0,0 +1,132 @@
+package tests;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+import static tests.TestNets.EXAMPLES;
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.List;
+import java.util.Set;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import io.petermueller.petrinetz.models.filesystem.FileSystemModel;
+import io.petermueller.petrinetz.models.filesystem.PNMLParser;
+import io.petermueller.petrinetz.models.filesystem.PNMLWriter;
+import io.petermueller.petrinetz.models.petrinet.PetriNetModel;
+import io.petermueller.petrinetz.models.petrinet.Place;
+import tests.TestNets.Detail;
+
+/**
+ * @author petermueller
+ *
+ */
+@DisplayName("PNML writer")
+class PNMLWriterTest {
+	@TempDir
+	Path directory;
+
+	private static List<String> describe(PetriNetModel petriNet) {
+		return TestNets.describe(petriNet, Detail.POSITIONS, Detail.WEIGHTS);
+	}
+
+	private PetriNetModel roundTrip(PetriNetModel petriNet) throws Exception {
+		File file = directory.resolve("net.pnml").toFile();
+		PNMLWriter.write(petriNet, file);
+		return FileSystemModel.parseFile(file);
+	}
+
+	@Test
+	@DisplayName("writes the examples without losing anything")
+	void roundTrip() throws Exception {
+		File[] files = EXAMPLES.listFiles((dir, name) ->
+				name.endsWith(".pnml"));
+		for (File file : files) {
+			PetriNetModel petriNet = FileSystemModel.parseFile(file);
+			PetriNetModel written = roundTrip(petriNet);
+			assertEquals(describe(petriNet), describe(written),
+					file.getName());
+			assertEquals(petriNet.getFingerprint(), written.getFingerprint(),
+					file.getName());
+		}
+	}
+
+	@Test
+	@DisplayName("writes files the Woped parser reads")
+	void woped() throws Exception {
+		File file = directory.resolve("net.pnml").toFile();
+		PetriNetModel petriNet = FileSystemModel.parseFile(new File(EXAMPLES,
+				"175-B1-N12-A20-Mailbox-2-Bounded.pnml"));
+		PNMLWriter.write(petriNet, file);
+		PNMLParser parser = new PNMLParser(file);
+		parser.initParser();
+		parser.parse();
+		assertEquals(describe(petriNet), describe(parser.getPetriNet()));
+	}
+
+	@Test
+	@DisplayName("escapes names and keeps weights")
+	void names() throws Exception {
+		PetriNetModel petriNet = new PetriNetModel.Builder()
+				.addPlace("p1")
+				.setName("p1", "<Lager & \"Küche\">")
+				.setPosition("p1", 12, 34)
+				.setTokens("p1", 3)
+				.addTransition("t1")
+				.addArc("a1", "p1", "t1", 2)
+				.addArc("a2", "t1", "p2")
+				.build();
+		assertEquals(List.of("P p1 <Lager & \"Küche\"> 3 12 -34",
+				"T t1 null 0 0", "A a1 p1 t1 2"),
+				describe(roundTrip(petriNet)));
+	}
+
+	@Test
+	@DisplayName("replaces the file and leaves no temporary file behind")
+	void replaces() throws Exception {
+		File file = directory.resolve("net.pnml").toFile();
+		Files.writeString(file.toPath(), "kein PNML");
+		PNMLWriter.write(FileSystemModel.parseFile(new File(EXAMPLES,
+				"171-B1-N05-A05-Kreis3.pnml")), file);
+		assertEquals(5, FileSystemModel.parseFile(file).places.size());
+		assertArrayEquals(new String[] {"net.pnml"},
+				directory.toFile().list());
+	}
+
+	@Test
+	@DisplayName("keeps the permissions of the replaced file")
+	void permissions() throws Exception {
+		File file = directory.resolve("net.pnml").toFile();
+		assumeTrue(file.toPath().getFileSystem().supportedFileAttributeViews()
+				.contains("posix"));
+		Files.createFile(file.toPath());
+		Set<PosixFilePermission> permissions =
+				PosixFilePermissions.fromString("rw-rw-r--");
+		Files.setPosixFilePermissions(file.toPath(), permissions);
+		PNMLWriter.write(FileSystemModel.parseFile(new File(EXAMPLES,
+				"171-B1-N05-A05-Kreis3.pnml")), file);
+		assertEquals(permissions, Files.getPosixFilePermissions(file.toPath()));
+	}
+
+	@Test
+	@DisplayName("saves the edited start marking into the opened file")
+	void saveFile() throws Exception {
+		File file = directory.resolve("Kreis.pnml").toFile();
+		Files.copy(new File(EXAMPLES, "171-B1-N05-A05-Kreis3.pnml").toPath(),
+				file.toPath());
+		FileSystemModel fs = new FileSystemModel();
+		PetriNetModel petriNet = fs.readNewFile(file);
+		Place place = petriNet.places.get(1);
+		petriNet.setActivePlace(place.id);
+		petriNet.addUserToken();
+		petriNet.addUserToken();
+		assertTrue(fs.saveFile(petriNet));
+		assertFalse(petriNet.fileChanged);
+		PetriNetModel saved = fs.readNewFile(file);
+		assertEquals(describe(petriNet), describe(saved));
+		assertEquals(place.startTokens, saved.places.get(1).startTokens);
+	}
+}
@@ -0,0 +1,105 @@
+package tests;
+
+import static org.junit.jupiter.api.Assertions.*;
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import io.petermueller.petrinetz.models.filesystem.PetriNetCache;
+import io.petermueller.petrinetz.models.petrinet.PetriNetModel;
+import io.petermueller.petrinetz.util.BoundednessAnalysis;
+
+/**
+ * @author petermueller
+ *
+ */
+@DisplayName("Petri net cache")
+class PetriNetCacheTest {
+	private static final Path EXAMPLES = Path.of(System.getProperty(
+			"user.dir"), "..", "ProPra-WS21-Basis", "Beispiele");
+
+	@TempDir
+	Path directory;
+
+	private PetriNetCache cache;
+	private File small;
+	private File bounded;
+
+	@BeforeEach
+	void setUp() throws Exception {
+		cache = new PetriNetCache(2);
+		small = copy("171-B1-N05-A05-Kreis3.pnml");
+		bounded = copy("175-B1-N12-A20-Mailbox-2-Bounded.pnml");
+	}
+
+	private File copy(String name) throws Exception {
+		return Files.copy(EXAMPLES.resolve(name), directory.resolve(name),
+				StandardCopyOption.REPLACE_EXISTING).toFile();
+	}
+
+	@Test
+	@DisplayName("hands out independent copies of prefetched nets")
+	void prefetch() {
+		cache.prefetch(small);
+		PetriNetModel first = cache.get(small);
+		PetriNetModel second = cache.get(small);
+		first.setTokens(first.places.get(0).id,
+				first.places.get(0).startTokens + 1);
+		assertAll(
+				() -> assertNotSame(first, second),
+				() -> assertSame(first.getStructure(), second.getStructure()),
+				() -> assertNotEquals(first.getFingerprint(),
+						second.getFingerprint()),
+				() -> assertEquals(small.getName(), second.fileName));
+	}
+
+	@Test
+	@DisplayName("parses changed files again")
+	void changedFile() throws Exception {
+		PetriNetModel before = cache.get(small);
+		Files.copy(bounded.toPath(), small.toPath(),
+				StandardCopyOption.REPLACE_EXISTING);
+		small.setLastModified(small.lastModified() + 2000);
+		PetriNetModel after = cache.get(small);
+		assertNotSame(before.getStructure(), after.getStructure());
+		assertEquals(cache.get(bounded).getFingerprint(),
+				after.getFingerprint());
+	}
+
+	@Test
+	@DisplayName("keeps reachability graphs of unchanged nets only")
+	void keepsGraphs() {
+		PetriNetModel petriNet = cache.get(bounded);
+		BoundednessAnalysis analysis = new BoundednessAnalysis(petriNet);
+		cache.putGraph(bounded, petriNet, analysis.rGraph);
+		PetriNetModel changed = cache.get(small);
+		changed.setTokens(changed.places.get(0).id,
+				changed.places.get(0).startTokens + 1);
+		cache.putGraph(small, changed,
+				new BoundednessAnalysis(changed).rGraph);
+		assertAll(
+				() -> assertNull(cache.getGraph(small)),
+				() -> assertNotSame(cache.getGraph(bounded),
+						cache.getGraph(bounded)),
+				() -> assertEquals(analysis.rGraph.markings.size(),
+						cache.getGraph(bounded).markings.size()),
+				() -> assertEquals(analysis.rGraph.arcs.size(),
+						cache.getGraph(bounded).arcs.size()));
+	}
+
+	@Test
+	@DisplayName("drops the least recently used nets")
+	void evicts() throws Exception {
+		File third = copy("276-B0-P04-Q10-mehrere-Pfade.pnml");
+		PetriNetModel petriNet = cache.get(small);
+		cache.putGraph(small, petriNet,
+				new BoundednessAnalysis(petriNet).rGraph);
+		cache.get(bounded);
+		cache.get(third);
+		assertNull(cache.getGraph(small));
+	}
+}
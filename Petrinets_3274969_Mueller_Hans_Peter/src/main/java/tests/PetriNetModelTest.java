@@ -11,6 +11,8 @@ import org.junit.jupiter.api.Test;
 
 import io.petermueller.petrinetz.models.filesystem.FileSystemModel;
 import io.petermueller.petrinetz.models.petrinet.*;
+import io.petermueller.petrinetz.util.Event;
+import io.petermueller.petrinetz.util.EventListener;
 
 /**
  * 
@@ -266,6 +268,81 @@ class PetriNetModelTest {
 			petriNet.fire(petriNet.transitions.get(0));
 			assertEquals("t1", petriNet.lastTransition.id);
 		}
+
+		@Test
+		@DisplayName("needs one marker per arc from the same input place")
+		void arcMultiplicity() {
+			petriNet.addArc("a5", "p2", "t2");
+			petriNet.fire(petriNet.transitions.get(0));
+			assertTrue(!petriNet.transitions.get(1).isEnabled);
+			petriNet.fire(petriNet.transitions.get(0));
+			assertTrue(petriNet.transitions.get(1).isEnabled);
+			petriNet.fire(petriNet.transitions.get(1));
+			assertAll("tokens",
+					() -> assertEquals(2, petriNet.places.get(0).currentTokens),
+					() -> assertEquals(0, petriNet.places.get(1).currentTokens)
+					);
+		}
+
+		@Test
+		@DisplayName("fires into a marking vector without changing the net")
+		void firesIntoVector() {
+			int[] marking = petriNet.getMarkingVector();
+			int[] target = new int[marking.length];
+			assertTrue(petriNet.fire(0, marking, target));
+			assertFalse(petriNet.fire(1, marking, target));
+			assertAll("vectors",
+					() -> assertArrayEquals(new int[] {3, 0}, marking),
+					() -> assertArrayEquals(new int[] {2, 1}, target),
+					() -> assertEquals(3, petriNet.places.get(0).currentTokens)
+					);
+			petriNet.setMarkingVector(target);
+			assertAll("set marking",
+					() -> assertEquals(1, petriNet.places.get(1).currentTokens),
+					() -> assertTrue(petriNet.transitions.get(1).isEnabled)
+					);
+		}
+
+		@Test
+		@DisplayName("computes successors without firing events")
+		void headlessSuccessors() {
+			List<Event> events = new ArrayList<>();
+			petriNet.addEventListener(new EventListener() {
+				@Override
+				public void event(Event eventType) {
+					events.add(eventType);
+				}
+			});
+			List<int[]> successors = new ArrayList<>();
+			int count = petriNet.getStructure().forEachSuccessor(
+					new int[] {2, 1}, new NetStructure.SuccessorConsumer() {
+						@Override
+						public void accept(int transition, int[] successor) {
+							successors.add(successor.clone());
+						}
+					});
+			assertAll("successors",
+					() -> assertEquals(2, count),
+					() -> assertArrayEquals(new int[] {1, 2},
+							successors.get(0)),
+					() -> assertArrayEquals(new int[] {3, 0},
+							successors.get(1)),
+					() -> assertTrue(events.isEmpty())
+					);
+		}
+
+		@Test
+		@DisplayName("keeps the set of enabled transitions up to date")
+		void enabledSet() {
+			assertEquals("{0}", petriNet.getEnabledTransitions().toString());
+			petriNet.fire(petriNet.transitions.get(0));
+			assertEquals("{0, 1}", petriNet.getEnabledTransitions().toString());
+			petriNet.fire(petriNet.transitions.get(0));
+			petriNet.fire(petriNet.transitions.get(0));
+			assertEquals("{1}", petriNet.getEnabledTransitions().toString());
+			petriNet.reset();
+			assertEquals("{0}", petriNet.getEnabledTransitions().toString());
+		}
 	}	
 
 	@Test
@@ -409,6 +486,31 @@ class PetriNetModelTest {
 				);
 	}
 
+	@Test
+	@DisplayName("builds a petri net in one step")
+	void builds() {
+		petriNet = new PetriNetModel.Builder()
+				.addPlace("p1")
+				.addTransition("t1")
+				.addPlace("p2")
+				.addArc("a1", "p1", "t1")
+				.addArc("a2", "t1", "p2")
+				.setTokens("p1", 2)
+				.setName("t1", "t1 transition")
+				.setPosition("p2", 5, 7)
+				.setTokens("unknown", 1)
+				.build();
+		assertAll("built",
+				() -> assertEquals(2, petriNet.places.get(0).startTokens),
+				() -> assertEquals(-7, petriNet.places.get(1).y),
+				() -> assertEquals("t1 transition",
+						petriNet.transitions.get(0).name),
+				() -> assertTrue(petriNet.transitions.get(0).isEnabled),
+				() -> assertEquals(petriNet.places.get(1),
+						petriNet.arcs.get(1).target)
+				);
+	}
+
 	@Test
 	@DisplayName("loads another petri net")
 	void loads() {
@@ -8,6 +8,8 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import io.petermueller.petrinetz.models.petrinet.PetriNetModel;
+import io.petermueller.petrinetz.models.rgraph.Marking;
+import io.petermueller.petrinetz.models.rgraph.MarkingStore;
 import io.petermueller.petrinetz.models.rgraph.RGraphModel;
 
 /**
@@ -44,7 +46,7 @@ class RGraphModelTest {
 	void addsMarking() {
 
 		rGraph.addMarking(petriNet.places);
-		assertEquals("(3|0)", rGraph.markings.get(0).id);
+		assertEquals("(3|0)", rGraph.markings.get(0).getId());
 	}
 
 	@Test
@@ -62,8 +64,8 @@ class RGraphModelTest {
 		assertAll("adds transition",
 				() -> assertEquals(2, rGraph.markings.size()),
 				() -> assertEquals(1, rGraph.arcs.size()),
-				() -> assertEquals("(3|0)", rGraph.markings.get(0).id),
-				() -> assertEquals("(2|1)", rGraph.markings.get(1).id),
+				() -> assertEquals("(3|0)", rGraph.markings.get(0).getId()),
+				() -> assertEquals("(2|1)", rGraph.markings.get(1).getId()),
 				() -> assertEquals("[t1] first", rGraph.arcs.get(0).id),
 				() -> assertTrue(rGraph.markings.get(1).isActive)
 				);
@@ -96,8 +98,8 @@ class RGraphModelTest {
 		assertAll("adds transition",
 				() -> assertEquals(2, rGraph.markings.size()),
 				() -> assertEquals(2, rGraph.arcs.size()),
-				() -> assertEquals("(3|0)", rGraph.markings.get(0).id),
-				() -> assertEquals("(2|1)", rGraph.markings.get(1).id),
+				() -> assertEquals("(3|0)", rGraph.markings.get(0).getId()),
+				() -> assertEquals("(2|1)", rGraph.markings.get(1).getId()),
 				() -> assertEquals("[t1] first", rGraph.arcs.get(0).id),
 				() -> assertEquals("[t2] second", rGraph.arcs.get(1).id),
 				() -> assertTrue(rGraph.markings.get(1).isActive)
@@ -128,7 +130,7 @@ class RGraphModelTest {
 		assertAll("resets",
 				() -> assertEquals(1, rGraph.markings.size()),
 				() -> assertEquals(0, rGraph.arcs.size()),
-				() -> assertEquals("(3|0)", rGraph.markings.get(0).id)
+				() -> assertEquals("(3|0)", rGraph.markings.get(0).getId())
 				);	
 	}
 
@@ -143,7 +145,80 @@ class RGraphModelTest {
 	@DisplayName("gets marking by id")
 	void getsMarking() {
 		petriNet.fire(petriNet.transitions.get(0));
-		assertEquals("(2|1)", rGraph.getMarkingById("(2|1)").id);
+		assertEquals("(2|1)", rGraph.getMarkingById("(2|1)").getId());
+	}
+
+	@Test
+	@DisplayName("orders places alphabetically without reordering the net")
+	void keepsPlaceOrder() {
+		PetriNetModel petriNet2 = new PetriNetModel();
+		petriNet2.addPlace("q2");
+		petriNet2.addPlace("q1");
+		petriNet2.setTokens("q1", 1);
+		petriNet2.addTransition("u1");
+		petriNet2.addArc("b1", "q1", "u1");
+		petriNet2.addArc("b2", "u1", "q2");
+		RGraphModel rGraph2 = new RGraphModel(petriNet2);
+		petriNet2.fire(petriNet2.transitions.get(0));
+		assertAll("place order",
+				() -> assertEquals("q2", petriNet2.places.get(0).id),
+				() -> assertEquals("(1|0)", rGraph2.markings.get(0).getId()),
+				() -> assertEquals("(0|1)", rGraph2.markings.get(1).getId())
+				);
+	}
+
+	@Test
+	@DisplayName("compares markings by their marker counts")
+	void comparesMarkings() {
+		String[] ids = {"p1", "p2", "p3"};
+		Marking marking1 = new Marking(ids, new int[] {0, 70000, 3});
+		Marking marking2 = new Marking(ids, new int[] {0, 70000, 3});
+		Marking marking3 = new Marking(ids, new int[] {0, 70000, 4});
+		assertAll("compares",
+				() -> assertEquals(marking1, marking2),
+				() -> assertEquals(marking1.hashCode(), marking2.hashCode()),
+				() -> assertNotEquals(marking1, marking3),
+				() -> assertEquals("(0|70000|3)", marking1.getId()),
+				() -> assertEquals(70000, marking1.getPlaces().get(1)
+						.currentTokens)
+				);
+	}
+
+	@Test
+	@DisplayName("interns markings with stable state ids")
+	void internsMarkings() {
+		String[] ids = {"p1", "p2"};
+		MarkingStore store = new MarkingStore();
+		Marking first = store.intern(ids, new int[] {3, 0});
+		for (int i = 0; i < 100; i++) {
+			store.intern(ids, new int[] {i, 1});
+		}
+		assertAll("interns",
+				() -> assertSame(first, store.intern(ids, new int[] {3, 0})),
+				() -> assertSame(first,
+						store.intern(new Marking(ids, new int[] {3, 0}))),
+				() -> assertEquals(0, first.getStateId()),
+				() -> assertEquals(101, store.size()),
+				() -> assertEquals("(42|1)", store.get(43).getId())
+				);
+	}
+
+	@Test
+	@DisplayName("keeps incoming and outgoing arcs of each marking")
+	void adjacentArcs() {
+		petriNet.fire(petriNet.transitions.get(0));
+		petriNet.fire(petriNet.transitions.get(1));
+		assertAll("arcs",
+				() -> assertEquals(2, rGraph.arcs.size()),
+				() -> assertEquals(rGraph.arcs.get(0), rGraph.getOutgoingArcs(
+						rGraph.markings.get(0)).get(0)),
+				() -> assertEquals(rGraph.arcs.get(1), rGraph.getIncomingArcs(
+						rGraph.markings.get(0)).get(0)),
+				() -> assertFalse(rGraph.arcs.get(0).isLatest),
+				() -> assertTrue(rGraph.arcs.get(1).isLatest),
+				() -> assertSame(rGraph.markings.get(0),
+						rGraph.getActiveMarking())
+				);
 	}
 
 	@Test
@@ -169,7 +244,7 @@ class RGraphModelTest {
 		assertAll("loads",
 				() -> assertEquals(1, rGraph.markings.size()),
 				() -> assertEquals(0, rGraph.arcs.size()),
-				() -> assertEquals("(3|0)", rGraph.markings.get(0).id)
+				() -> assertEquals("(3|0)", rGraph.markings.get(0).getId())
 				);
 	}
 }
@@ -0,0 +1,79 @@
+package tests;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import io.petermueller.petrinetz.models.petrinet.Arc;
+import io.petermueller.petrinetz.models.petrinet.PetriNetModel;
+import io.petermueller.petrinetz.models.petrinet.Place;
+import io.petermueller.petrinetz.models.petrinet.Transition;
+
+/**
+ * Helpers for the tests which read, write and compare Petri nets.
+ *
+ * @author petermueller
+ *
+ */
+final class TestNets {
+	/**
+	 * The example nets of the base project.
+	 */
+	static final File EXAMPLES = new File(System.getProperty(
+			"user.dir") + "/../ProPra-WS21-Basis/Beispiele");
+
+	/**
+	 * The optional details of a description.
+	 */
+	enum Detail {
+		/**
+		 * The positions of the places and transitions.
+		 */
+		POSITIONS,
+		/**
+		 * The weights of the arcs.
+		 */
+		WEIGHTS,
+		/**
+		 * The current tokens of the places and the enabled transitions.
+		 */
+		STATE
+	}
+
+	private TestNets() {
+	}
+
+	/**
+	 * Describes a Petri net line by line, so two Petri nets can be compared
+	 * with a readable difference. Each line holds a place, a transition or an
+	 * arc with its id, its name or its source and target, the start tokens of
+	 * a place and the requested details.
+	 *
+	 * @param petriNet the Petri net to describe
+	 * @param details  the details to describe
+	 * @return         the lines
+	 */
+	static List<String> describe(PetriNetModel petriNet, Detail... details) {
+		List<Detail> detailList = Arrays.asList(details);
+		boolean positions = detailList.contains(Detail.POSITIONS);
+		boolean weights = detailList.contains(Detail.WEIGHTS);
+		boolean state = detailList.contains(Detail.STATE);
+		List<String> lines = new ArrayList<String>();
+		for (Place place : petriNet.places) {
+			lines.add("P " + place.id + " " + place.name + " "
+					+ place.startTokens
+					+ (positions ? " " + place.x + " " + place.y : "")
+					+ (state ? " " + place.currentTokens : ""));
+		}
+		for (Transition transition : petriNet.transitions) {
+			lines.add("T " + transition.id + " " + transition.name
+					+ (positions ? " " + transition.x + " " + transition.y : "")
+					+ (state ? " " + transition.isEnabled : ""));
+		}
+		for (Arc arc : petriNet.arcs) {
+			lines.add("A " + arc.id + " " + arc.source.id + " "
+					+ arc.target.id + (weights ? " " + arc.weight : ""));
+		}
+		return lines;
+	}
+}